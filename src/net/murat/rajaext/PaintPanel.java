@@ -7,10 +7,62 @@ extends javax.swing.JPanel
   
   private java.awt.image.BufferedImage bimg = null;
   
+  // Region of the image selected by dragging the mouse, or null
+  private java.awt.Rectangle selection = null;
+  private java.awt.Point anchor = null;
+  
   public PaintPanel ()
   {
     super (true);
     setPreferredSize (new java.awt.Dimension (640, 480));
+    
+    java.awt.event.MouseAdapter selector = new java.awt.event.MouseAdapter ()
+    {
+      public void mousePressed (java.awt.event.MouseEvent e)
+      {
+        anchor = e.getPoint ();
+        selection = null;
+        repaint ();
+      }
+      
+      public void mouseDragged (java.awt.event.MouseEvent e)
+      {
+        if ((anchor == null) || (bimg == null))
+        {
+          return;
+        }
+        java.awt.Rectangle r = new java.awt.Rectangle (anchor);
+        r.add (e.getPoint ());
+        r = r.intersection (new java.awt.Rectangle (0, 0, bimg.getWidth (), bimg.getHeight ()));
+        selection = r.isEmpty () ? null : r;
+        repaint ();
+      }
+      
+      public void mouseReleased (java.awt.event.MouseEvent e)
+      {
+        anchor = null;
+      }
+    };
+    addMouseListener (selector);
+    addMouseMotionListener (selector);
+    setToolTipText ("Drag to select a region rendered alone, click to render the whole image");
+  }
+  
+  /**
+   * Returns the region of the image selected with the mouse, or null if
+   * there is none.
+   */
+  final
+  public java.awt.Rectangle getSelection ()
+  {
+    return (selection == null) ? null : new java.awt.Rectangle (selection);
+  }
+  
+  final
+  public void clearSelection ()
+  {
+    selection = null;
+    repaint ();
   }
   
   final
@@ -56,6 +108,19 @@ extends javax.swing.JPanel
     {
       g.drawImage (bimg, 0, 0, this);
     }
+    
+    if (selection != null)
+    {
+      // Dashed outline, visible on dark and light pixels
+      java.awt.Graphics2D g2 = (java.awt.Graphics2D) g.create ();
+      g2.setColor (java.awt.Color.black);
+      g2.drawRect (selection.x, selection.y, selection.width - 1, selection.height - 1);
+      g2.setColor (java.awt.Color.white);
+      g2.setStroke (new java.awt.BasicStroke (1, java.awt.BasicStroke.CAP_BUTT,
+      java.awt.BasicStroke.JOIN_MITER, 1, new float[] { 4, 4 }, 0));
+      g2.drawRect (selection.x, selection.y, selection.width - 1, selection.height - 1);
+      g2.dispose ();
+    }
     return;
   }
   
@@ -74,6 +74,7 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
   private final String[] OPTVALS = new String[] {"Set", "Cancel"};
   
   //private final int MILS = 500;
+  private static final int REPAINT_PERIOD = 100; // ms, at most 10 repaints per second
   
   private JButton createButton = new JButton("");
   private final JProgressBar bar = new JProgressBar ();
@@ -101,8 +102,14 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
   
   private Sampler sampler = new DiadicSampler();
   private int alias = 2;
+  private int threads = Runtime.getRuntime().availableProcessors();
   
-  private boolean processing = false;
+  private RenderThread renderThread = null;
+  private final javax.swing.Timer repaintTimer = new javax.swing.Timer(REPAINT_PERIOD, new ActionListener() {
+      public void actionPerformed(ActionEvent evt) {
+        paintPanel.repaint();
+      }
+  });
   
   private RajaRayTracerGUI() {
     super(new BorderLayout());
@@ -135,7 +142,7 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
     
     add(tabbedPane, BorderLayout.CENTER);
     
-    JPanel southPanel = new JPanel(new GridLayout(0, 3, 0, 5));
+    JPanel southPanel = new JPanel(new GridLayout(0, 4, 0, 5));
     
     createButton = getButton("Generate Image");
     createButton.addActionListener(this);
@@ -144,6 +151,17 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
     createButton.setFont(new Font("Segoe UI", Font.BOLD, 24));
     southPanel.add(createButton);
     
+    JButton stopButton = getButton("Stop");
+    stopButton.setBackground(new Color(255, 193, 7)); // Sarı tonu
+    stopButton.setForeground(Color.WHITE);
+    stopButton.setFont(new Font("Segoe UI", Font.BOLD, 24));
+    stopButton.addActionListener(new ActionListener() {
+        public void actionPerformed(ActionEvent evt) {
+          stopRendering();
+        }
+    });
+    southPanel.add(stopButton);
+    
     JButton fromFileButton = getButton("Reproduce");
     fromFileButton.setBackground(new Color(90, 43, 83));
     fromFileButton.setForeground(Color.WHITE);
@@ -334,13 +352,17 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
     // Sampler Settings
     JPanel samplerPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
     samplerPanel.add(getLabel("Sampler:"));
-    final String[] samplers = {"Diadic Sampler", "Basic Sampler", "Naive Super Sampler"};
+    final String[] samplers = {"Diadic Sampler", "Basic Sampler", "Naive Super Sampler", "Parallel Sampler", "Progressive Sampler", "Adaptive Sampler"};
     samplerBox = getComboBox(samplers);
     samplerPanel.add(samplerBox);
     samplerPanel.add(getLabel("Alias:"));
     final JTextField aliasField = getField("2");
     aliasField.setColumns(4);
     samplerPanel.add(aliasField);
+    samplerPanel.add(getLabel("Threads:"));
+    final JTextField threadsField = getField(Integer.toString(Runtime.getRuntime().availableProcessors()));
+    threadsField.setColumns(4);
+    samplerPanel.add(threadsField);
     mainPanel.add(samplerPanel);
     
     // Render Quality Settings
@@ -406,6 +428,7 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
             bimg = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
             
             alias = Integer.parseInt(aliasField.getText());
+            threads = Math.max(0, Integer.parseInt(threadsField.getText()));
             depth = Integer.parseInt(depthField.getText());
             volume = new IsotropicVolume(Double.parseDouble(volumeField.getText()));
             
@@ -417,6 +440,12 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
               sampler = new BasicSampler();
               } else if (sindex == 2) {
               sampler = new NaiveSuperSampler(alias);
+              } else if (sindex == 3) {
+              sampler = new ParallelSampler(threads, Math.max(1, alias));
+              } else if (sindex == 4) {
+              sampler = new ProgressiveSampler(threads, Math.max(1, alias));
+              } else if (sindex == 5) {
+              sampler = new AdaptiveSampler(Math.max(1, alias));
               } else {
               sampler = new BasicSampler();
             }
@@ -433,6 +462,7 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
             return;
           }
           
+          sceneChanged();
           return;
         }
     });
@@ -492,6 +522,7 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
           // System.out.println("DEBUG: "+aremac.toExampleString());
           System.out.println(camera.toString());
           
+          sceneChanged();
           return;
         }
     });
@@ -543,6 +574,7 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
           lights.add(lsource);
           // lightsInfoList.add(lxs.toExampleString());
           
+          sceneChanged();
           return;
         }
     });
@@ -558,6 +590,7 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
           System.out.println("Removing: " + (lights.getLast().toString()));
           lights.removeLast();
           // lightsInfoList.removeLast();
+          sceneChanged();
           return;
         }
     });
@@ -569,6 +602,7 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
           lights.clear();
           // lightsInfoList.clear();
           System.out.println("Removed all lights from list.");
+          sceneChanged();
           return;
         }
     });
@@ -748,6 +782,7 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
             //txFormFullNamesList.add(union.toString());
             //texturesInfoList.add("UNION");
             
+            sceneChanged();
             return;
             } else if (cindex == 9) { // intersection
             int size = txFormList.size();
@@ -815,6 +850,7 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
             //txFormFullNamesList.add(ise.toString());
             //texturesInfoList.add("INTERSECTION");
             
+            sceneChanged();
             return;
             } else { //other basic shapes
             xfx = xformes[cindex];
@@ -1004,6 +1040,7 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
           
           System.out.println("Added: "+form.toString()+"\n#####\n"+texture.toString());
           
+          sceneChanged();
           return;
         }
     });
@@ -1109,6 +1146,7 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
             //texturesInfoList.remove(numbers[i]);
           }
           
+          sceneChanged();
           return;
         }
     });
@@ -1124,6 +1162,7 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
           txFormNamesList.removeLast();
           //texturesInfoList.removeLast();
           //txFormFullNamesList.removeLast();
+          sceneChanged();
           return;
         }
     });
@@ -1139,6 +1178,7 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
           //texturesInfoList.clear();
           //txFormFullNamesList.clear();
           System.out.println("Removed all solids from list.");
+          sceneChanged();
           return;
         }
     });
@@ -1404,44 +1444,134 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
   
   // CREATE Button Action
   public void actionPerformed(ActionEvent evt) {
-    Thread thr = new Thread() {
-      public void run() {
-        processing = true;
-        createButton.setEnabled (false);
-        
+    if ((paintPanel.getSelection() != null) && ! rendersRegions(sampler)) {
+      JOptionPane.showMessageDialog(paintPanel,
+      "A region cannot be rendered with the diadic, progressive or adaptive sampler.\n" +
+      "Click on the image to clear the selection, or choose another sampler.");
+      return;
+    }
+    startRendering();
+  }
+  
+  /**
+   * Returns whether a region rendered alone matches the pixels that
+   * <code>renderSampler</code> draws around it.  Regions are rendered by
+   * the parallel sampler, whose pixels match the basic and super samplers
+   * only.
+   */
+  private static boolean rendersRegions(Sampler renderSampler) {
+    return ! ((renderSampler instanceof DiadicSampler) ||
+    (renderSampler instanceof ProgressiveSampler) ||
+    (renderSampler instanceof AdaptiveSampler));
+  }
+  
+  /**
+   * Returns the number of rays per pixel along each axis with which
+   * <code>renderSampler</code> draws the pixels around a region.
+   */
+  private static int regionAntialiasLevel(Sampler renderSampler) {
+    if (renderSampler instanceof NaiveSuperSampler) {
+      return ((NaiveSuperSampler) renderSampler).getAntialiasLevel();
+    }
+    if (renderSampler instanceof ParallelSampler) {
+      return ((ParallelSampler) renderSampler).getAntialiasLevel();
+    }
+    return 1; // BasicSampler traces one ray per pixel
+  }
+  
+  /**
+   * Renders the scene with the sampler selected when it was started, or
+   * only the region selected on the image then.  A newer rendering cancels
+   * it and waits for it to stop before drawing into the same image.
+   */
+  private class RenderThread extends Thread {
+    private final Sampler renderSampler;
+    private final Rectangle region;
+    private final RenderThread previous;
+    
+    RenderThread(Sampler renderSampler, Rectangle region, RenderThread previous) {
+      this.renderSampler = renderSampler;
+      this.region = region;
+      this.previous = previous;
+    }
+    
+    void cancel() {
+      if (renderSampler instanceof ProgressiveSampler) {
+        ((ProgressiveSampler) renderSampler).cancel();
+      }
+      interrupt();
+    }
+    
+    public void run() {
+      boolean cancelled = false;
+      while ((previous != null) && previous.isAlive()) {
         try {
-          drawScene(); // this too runs under his own thread
-          } catch (Exception e) {
-          e.printStackTrace ();
-          processing = false;
-          createButton.setEnabled (true);
+          previous.join();
+          } catch (InterruptedException ie) {
+          cancelled = true;
         }
-        
-        createButton.setEnabled (true);
-        processing = false;
       }
-    };
-    thr.start();
+      
+      try {
+        if (! cancelled && ! isInterrupted()) {
+          drawScene(renderSampler, region);
+        }
+        } finally {
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+              renderFinished(RenderThread.this);
+            }
+        });
+      }
+    }
   }
   
-  private final void drawScene() {
-    processing = true;
-    bimg = new BufferedImage(width, height,  BufferedImage.TYPE_INT_ARGB);
-    paintPanel.setBufferedImage(bimg);
+  // Called on the event dispatch thread
+  private final void startRendering() {
+    RenderThread previous = renderThread;
+    if (previous != null) {
+      previous.cancel();
+    }
     
-    createButton.setEnabled(false);
-    Thread thr = new Thread() {
-      public void run() {
-        while(processing) {
-          paintPanel.repaint();
-          //try {
-          //sleep (MILS);
-          //} catch (InterruptedException ie) {
-          //}
-        }
-      }
-    };
-    thr.start();
+    Rectangle region = rendersRegions(sampler) ? paintPanel.getSelection() : null;
+    renderThread = new RenderThread(sampler, region, previous);
+    repaintTimer.start();
+    renderThread.start();
+  }
+  
+  // Called on the event dispatch thread
+  private final void stopRendering() {
+    if (renderThread != null) {
+      renderThread.cancel();
+    }
+  }
+  
+  // Called on the event dispatch thread
+  private final void renderFinished(RenderThread thr) {
+    if (thr != renderThread) return; // A newer rendering is running
+      
+    renderThread = null;
+    repaintTimer.stop();
+    bar.setValue (0);
+    paintPanel.repaint();
+  }
+  
+  /**
+   * Restarts a rendering in progress after an edit of the scene, or starts
+   * one if the progressive sampler is selected.
+   */
+  private final void sceneChanged() {
+    if ((renderThread != null) || (sampler instanceof ProgressiveSampler)) {
+      startRendering();
+    }
+  }
+  
+  private final void drawScene(Sampler renderSampler, Rectangle region) {
+    if ((bimg == null) || (bimg.getWidth() != width) || (bimg.getHeight() != height)) {
+      bimg = new BufferedImage(width, height,  BufferedImage.TYPE_INT_ARGB);
+      region = null; // Selected on another image
+    }
+    paintPanel.setBufferedImage(bimg);
     
     bar.setValue (0);
     
@@ -1454,20 +1584,33 @@ public class RajaRayTracerGUI extends JPanel implements Serializable, ActionList
     final RayTracer tracer = new AdvancedRayTracer(world, depth);
     
     try {
-      sampler.compute(camera, tracer, bar.getModel(), bimg);
+      if (region != null) {
+        // Only the rays of the region are traced, with the projection of
+        // the whole image, and the rest of the image is kept
+        ParallelSampler regionSampler = new ParallelSampler(threads, regionAntialiasLevel(renderSampler));
+        regionSampler.compute(camera, tracer, bar.getModel(), width, height, region.x, region.y,
+        new FrameBuffer(region.width, region.height), bimg);
+      }
+      else {
+        renderSampler.compute(camera, tracer, bar.getModel(), bimg);
+      }
     }
     catch (Exception e)
     {
-      createButton.setEnabled (true);
+      if (Thread.currentThread().isInterrupted()) {
+        // The scene was edited under the cancelled rendering
+        return;
+      }
+      e.printStackTrace();
       JOptionPane.showMessageDialog (paintPanel, "Error Computing!!!!");
-      processing=false;
-      bar.setValue (0);
       return;
     }
     
-    processing = false;
-    createButton.setEnabled(true);
-    bar.setValue (0);
+    if ((region == null) && (renderSampler instanceof AdaptiveSampler)) {
+      AdaptiveSampler adaptive = (AdaptiveSampler) renderSampler;
+      System.out.println("Samples per pixel: " + adaptive.getAverageSamplesPerPixel() +
+      " (" + adaptive.getRefinedPixelCount() + " pixels refined)");
+    }
     
     return;
   }
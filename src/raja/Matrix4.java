@@ -687,27 +687,14 @@ public class Matrix4 implements java.io.Serializable, raja.io.Writable {
   }
   
   public static Object build(raja.io.ObjectReader reader) throws java.io.IOException {
-    /* Initialisation */
-    java.util.HashMap map = new java.util.HashMap();
-    
-    // Matrix4 için 16 elemanlık bir dizi bekliyoruz
-    map.put("m00", null); map.put("m01", null); map.put("m02", null); map.put("m03", null);
-    map.put("m10", null); map.put("m11", null); map.put("m12", null); map.put("m13", null);
-    map.put("m20", null); map.put("m21", null); map.put("m22", null); map.put("m23", null);
-    map.put("m30", null); map.put("m31", null); map.put("m32", null); map.put("m33", null);
-    
-    /* Parsing */
-    reader.readFields(map);
+    // Same layout as write(): the 16 coefficients, row by row
+    Number[] params = reader.readNumbers(16);
     
     return new Matrix4(
-      ((Number)map.get("m00")).doubleValue(), ((Number)map.get("m01")).doubleValue(),
-      ((Number)map.get("m02")).doubleValue(), ((Number)map.get("m03")).doubleValue(),
-      ((Number)map.get("m10")).doubleValue(), ((Number)map.get("m11")).doubleValue(),
-      ((Number)map.get("m12")).doubleValue(), ((Number)map.get("m13")).doubleValue(),
-      ((Number)map.get("m20")).doubleValue(), ((Number)map.get("m21")).doubleValue(),
-      ((Number)map.get("m22")).doubleValue(), ((Number)map.get("m23")).doubleValue(),
-      ((Number)map.get("m30")).doubleValue(), ((Number)map.get("m31")).doubleValue(),
-      ((Number)map.get("m32")).doubleValue(), ((Number)map.get("m33")).doubleValue()
+      params[0].doubleValue(), params[1].doubleValue(), params[2].doubleValue(), params[3].doubleValue(),
+      params[4].doubleValue(), params[5].doubleValue(), params[6].doubleValue(), params[7].doubleValue(),
+      params[8].doubleValue(), params[9].doubleValue(), params[10].doubleValue(), params[11].doubleValue(),
+      params[12].doubleValue(), params[13].doubleValue(), params[14].doubleValue(), params[15].doubleValue()
     );
   }
   
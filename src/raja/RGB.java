@@ -155,7 +155,18 @@ public class RGB implements java.io.Serializable, Writable
       ((double) c.getGreen()) / 255,
     ((double) c.getBlue()) / 255);
   }
-  
+
+  /**
+   * Initializes a newly created <code>RGB</code> object so that it
+   * represents the same wavelength-dependent value as the argument.
+   *
+   * @param rgb an <code>RGB</code> object.
+   */
+  public RGB(RGB rgb)
+  {
+    this(rgb.r, rgb.g, rgb.b);
+  }
+
   /**
    * Creates an <code>RGB</code> object from the specified
    * <code>ObjectReader</code>.
@@ -260,7 +271,134 @@ public class RGB implements java.io.Serializable, Writable
       Math.max(rgb1.g, rgb2.g),
     Math.max(rgb1.b, rgb2.b));
   }
-  
+
+  /**
+   * Sets the samples of this <code>RGB</code> object to those of the
+   * specified <code>RGB</code> wavelength-dependent value.
+   * This method and the following <code>...InPlace</code> methods modify
+   * this object instead of returning a new one; they are meant for
+   * scratch values owned by the caller, never for shared values such as
+   * the color constants of this class or the samples of a texture.
+   *
+   * @param rgb the <code>RGB</code> value to copy.
+   * @return this <code>RGB</code> object.
+   */
+  public RGB set(RGB rgb)
+  {
+    r = rgb.r;
+    g = rgb.g;
+    b = rgb.b;
+    return this;
+  }
+
+  /**
+   * Adds the specified <code>RGB</code> wavelength-dependent value to
+   * this one (componentwise).
+   *
+   * @param rgb the <code>RGB</code> value to add.
+   * @return this <code>RGB</code> object.
+   */
+  public RGB addInPlace(RGB rgb)
+  {
+    r += rgb.r;
+    g += rgb.g;
+    b += rgb.b;
+    return checkInPlace();
+  }
+
+  /**
+   * Adds the product of the specified <code>RGB</code>
+   * wavelength-dependent value with the specified double factor to this
+   * one.  This is the in-place counterpart of
+   * <code>sum(this, product(rgb, f))</code>.
+   *
+   * @param rgb the <code>RGB</code> value to add.
+   * @param f   the double factor.
+   * @return this <code>RGB</code> object.
+   */
+  public RGB addScaledInPlace(RGB rgb, double f)
+  {
+    r += f * rgb.r;
+    g += f * rgb.g;
+    b += f * rgb.b;
+    return checkInPlace();
+  }
+
+  /**
+   * Multiplies this <code>RGB</code> object by the specified
+   * <code>RGB</code> wavelength-dependent value (componentwise).
+   *
+   * @param rgb the <code>RGB</code> value to multiply with.
+   * @return this <code>RGB</code> object.
+   */
+  public RGB multiplyInPlace(RGB rgb)
+  {
+    r *= rgb.r;
+    g *= rgb.g;
+    b *= rgb.b;
+    return checkInPlace();
+  }
+
+  /**
+   * Multiplies this <code>RGB</code> object by the specified double
+   * factor.
+   *
+   * @param f the double factor.
+   * @return this <code>RGB</code> object.
+   */
+  public RGB scaleInPlace(double f)
+  {
+    r *= f;
+    g *= f;
+    b *= f;
+    return checkInPlace();
+  }
+
+  /**
+   * Sets the components of this <code>RGB</code> object.  Like
+   * {@link #set(RGB)}, this method must only be used on scratch values
+   * owned by the caller.
+   *
+   * @return this <code>RGB</code> object.
+   */
+  public RGB set(double r, double g, double b)
+  {
+    this.r = r;
+    this.g = g;
+    this.b = b;
+    return checkInPlace();
+  }
+
+  /**
+   * Moves this <code>RGB</code> object towards the specified one by
+   * <code>factor</code>, clamped between 0 and 1.  This is the in-place
+   * counterpart of <code>interpolate(this, rgb, factor)</code>.
+   *
+   * @return this <code>RGB</code> object.
+   */
+  public RGB interpolateInPlace(RGB rgb, double factor)
+  {
+    double t = Math.max(0.0, Math.min(1.0, factor));
+    r = r + (rgb.r - r) * t;
+    g = g + (rgb.g - g) * t;
+    b = b + (rgb.b - b) * t;
+    return checkInPlace();
+  }
+
+  /**
+   * Enforces the same range as the constructor on the result of an
+   * in-place operation.
+   */
+  private RGB checkInPlace()
+  {
+    if ((r < 0) || (g < 0) || (b < 0) ||
+    Double.isNaN(r) || Double.isNaN(g) || Double.isNaN(b))
+    {
+      throw new IllegalArgumentException("RGB parameter outside of expected range");
+    }
+    return this;
+  }
+
   //////// ADDED by Murat Inan ///////////
   // Skaler ile çarpma
   public RGB multiply(double scalar) {
@@ -427,6 +565,7 @@ public class RGB implements java.io.Serializable, Writable
    */
   public void write(ObjectWriter writer) throws java.io.IOException
   {
-    writer.write(" " + r + " ; " + g + " ; " + b + " ");
+    Number[] fields = { Double.valueOf(r), Double.valueOf(g), Double.valueOf(b) };
+    writer.writeFields(fields);
   }
 }
@@ -48,7 +48,21 @@ public class Ray
    * @serial
    */
   public Vector3D direction;   // normed vector
-  
+
+  /**
+   * The width of the beam of light this ray stands for, at its origin.
+   * Together with <code>spread</code>, it gives the footprint of a pixel
+   * where the ray hits a form, so that textures can filter what the pixel
+   * covers.  Both are 0 for rays standing for a single point.
+   */
+  public double footprint;
+
+  /**
+   * How much the width of the beam grows per unit of distance along the
+   * ray.
+   */
+  public double spread;
+
   /**
    * Creates a <code>Ray</code> object initialized with the
    * specified origin and direction.
@@ -77,9 +91,27 @@ public class Ray
    */
   public Ray(Point3D origin, Point3D destination)
   {
-    this(origin, new Vector3D(origin, destination));
+    this.origin = origin;
+    this.direction = new Vector3D(origin, destination).normalizeInPlace();
+  }
+
+  /**
+   * Makes this <code>Ray</code> start at the specified origin in the
+   * specified direction, without allocating.  The direction is copied
+   * into the direction vector of this ray and normed, so this method must
+   * only be used on rays owned by the caller.
+   *
+   * @param origin    the new origin.
+   * @param direction the new direction.
+   * @return this <code>Ray</code>.
+   */
+  public Ray set(Point3D origin, Vector3D direction)
+  {
+    this.origin = origin;
+    this.direction.set(direction).normalizeInPlace();
+    return this;
   }
-  
+
   // ADDED by Murat Inan
   public Ray transform(Matrix4 matrix) {
     Point3D transformedOrigin = matrix.transformPoint(origin);
@@ -105,7 +137,9 @@ public class Ray
    * @return the point at distance t from the ray origin
    */
   public Point3D pointAt(double t) {
-    return new Point3D(origin, Vector3D.product(direction, t));
+    return new Point3D(origin.x + t * direction.x,
+      origin.y + t * direction.y,
+    origin.z + t * direction.z);
   }
   
 }
@@ -285,7 +285,93 @@ public class Vector3D implements java.io.Serializable, Writable
     double sc = dotProduct(v, n);
     return Vector3D.sum(v, Vector3D.product(n, -sc));
   }
-  
+
+  /**
+   * Sets the coordinates of this <code>Vector3D</code>.
+   * This method and the following <code>...InPlace</code> methods modify
+   * this object instead of returning a new one; they are meant for
+   * scratch vectors owned by the caller, never for vectors shared with
+   * other objects.
+   *
+   * @param x,&nbsp;y,&nbsp;z the new coordinates.
+   * @return this <code>Vector3D</code>.
+   */
+  public Vector3D set(double x, double y, double z)
+  {
+    this.x = x;
+    this.y = y;
+    this.z = z;
+    return this;
+  }
+
+  /**
+   * Sets the coordinates of this <code>Vector3D</code> to those of the
+   * specified <code>Vector3D</code>.
+   *
+   * @param v the <code>Vector3D</code> to copy.
+   * @return this <code>Vector3D</code>.
+   */
+  public Vector3D set(Vector3D v)
+  {
+    return set(v.x, v.y, v.z);
+  }
+
+  /**
+   * Adds the specified <code>Vector3D</code> to this one.
+   *
+   * @param v the <code>Vector3D</code> to add.
+   * @return this <code>Vector3D</code>.
+   */
+  public Vector3D addInPlace(Vector3D v)
+  {
+    x += v.x;
+    y += v.y;
+    z += v.z;
+    return this;
+  }
+
+  /**
+   * Adds the product of the specified <code>Vector3D</code> with the
+   * specified double factor to this one.  This is the in-place
+   * counterpart of <code>sum(this, product(v, f))</code>.
+   *
+   * @param v the <code>Vector3D</code> to add.
+   * @param f the double factor.
+   * @return this <code>Vector3D</code>.
+   */
+  public Vector3D addScaledInPlace(Vector3D v, double f)
+  {
+    x += f * v.x;
+    y += f * v.y;
+    z += f * v.z;
+    return this;
+  }
+
+  /**
+   * Multiplies this <code>Vector3D</code> by the specified double factor.
+   *
+   * @param f the double factor.
+   * @return this <code>Vector3D</code>.
+   */
+  public Vector3D scaleInPlace(double f)
+  {
+    x *= f;
+    y *= f;
+    z *= f;
+    return this;
+  }
+
+  /**
+   * Norms this <code>Vector3D</code>, whose norm is assumed to be non
+   * zero.  This is the in-place counterpart of {@link #normalization(Vector3D)}.
+   *
+   * @return this <code>Vector3D</code>.
+   */
+  public Vector3D normalizeInPlace()
+  {
+    return scaleInPlace(1.0 / norm());
+  }
+
   /**
    * Returns a textual <code>String</code> representation of this
    * <code>Vector3D</code> object.
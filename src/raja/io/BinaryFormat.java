@@ -0,0 +1,48 @@
+package raja.io;
+
+
+/**
+ * Constants of the binary scene format written by
+ * {@link BinaryObjectWriter} and read by {@link BinaryObjectReader}.
+ * All numbers are big-endian, and strings are written as their length in
+ * bytes followed by their UTF-8 encoding.
+ * <pre>
+ * file    := MAGIC VERSION classes names value*
+ * classes := count string*                  class names, by class id
+ * names   := count string*                  field names, by name id
+ * value   := NUMBER double | TRUE | FALSE | STRING string | CHARACTER char
+ *          | OBJECT classId length body     defines the next object index
+ *          | REFERENCE index                object defined earlier
+ *          | LIST count value*
+ *          | GRAPH count (value value)*     edges
+ * body    := FIELDS count (nameId value)* | NUMBERS count double*
+ * </pre>
+ * The length of an object is the size in bytes of its body, so that a
+ * reader can check that the object consumed exactly its own fields.
+ * Objects are numbered from 0 in the order their definition starts,
+ * like the labels of the textual format.
+ */
+final class BinaryFormat
+{
+  static final int MAGIC = 0x52414A42;  // "RAJB"
+  static final int VERSION = 1;
+
+  // Value tags
+  static final byte NUMBER = 1;
+  static final byte TRUE = 2;
+  static final byte FALSE = 3;
+  static final byte STRING = 4;
+  static final byte CHARACTER = 5;
+  static final byte OBJECT = 6;
+  static final byte REFERENCE = 7;
+  static final byte LIST = 8;
+  static final byte GRAPH = 9;
+
+  // Body tags
+  static final byte FIELDS = 16;
+  static final byte NUMBERS = 17;
+
+  private BinaryFormat()
+  {
+  }
+}
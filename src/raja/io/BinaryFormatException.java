@@ -0,0 +1,10 @@
+package raja.io;
+
+
+public class BinaryFormatException extends ReadException
+{
+  BinaryFormatException(String message, int offset)
+  {
+    super("Offset:" + offset + "   " + message);
+  }
+}
@@ -0,0 +1,305 @@
+package raja.io;
+
+import java.io.*;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Map;
+
+import raja.util.List;
+import raja.util.DirectedGraph;
+
+
+/**
+ * An <code>ObjectReader</code> that reads objects saved in the binary scene
+ * format by {@link BinaryObjectWriter}.  Objects are built by their usual
+ * <code>build(ObjectReader)</code> method, for which this reader provides
+ * <code>readFields</code> and <code>readNumbers</code> from the binary
+ * data instead of the text.
+ * <p>
+ * No text is scanned: numbers are read as they are stored, and the class
+ * and field names are read once from the tables at the start of the file.
+ * The <code>build</code> method of each class of the table is looked up
+ * when the reader is created, so building an object is a single call
+ * through the table.  Files are memory-mapped rather than read into the
+ * heap.
+ *
+ * @see BinaryFormat
+ */
+public class BinaryObjectReader extends ObjectReader
+{
+  private ByteBuffer buffer;
+  private String[] classNames;
+  private MethodHandle[] factories;   // class id -> build method
+  private String[] names;
+  private ArrayList objects;          // object index -> object
+
+  /**
+   * Creates a reader for the binary data between the position and the
+   * limit of <code>buffer</code>.
+   */
+  public BinaryObjectReader(ByteBuffer buffer) throws IOException
+  {
+    // The textual input is never used
+    super(new StringReader(""));
+    this.buffer = buffer;
+    objects = new ArrayList();
+
+    if ((buffer.remaining() < 8) || (buffer.getInt() != BinaryFormat.MAGIC)) {
+      throw new BinaryFormatException("not a binary scene", 0);
+    }
+    int version = buffer.getInt();
+    if (version != BinaryFormat.VERSION) {
+      throw new BinaryFormatException("unsupported version " + version, 4);
+    }
+
+    classNames = readTable();
+    factories = new MethodHandle[classNames.length];
+    for (int i = 0 ; i < classNames.length ; i++)
+    {
+      factories[i] = factory(classNames[i]);
+    }
+    names = readTable();
+  }
+
+  /**
+   * Creates a reader for a binary scene file, which is memory-mapped.
+   */
+  public BinaryObjectReader(File file) throws IOException
+  {
+    this(map(file));
+  }
+
+  private static ByteBuffer map(File file) throws IOException
+  {
+    RandomAccessFile in = new RandomAccessFile(file, "r");
+
+    try {
+      FileChannel channel = in.getChannel();
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Returns whether <code>file</code> starts like a binary scene file.
+   */
+  public static boolean isBinary(File file) throws IOException
+  {
+    DataInputStream in = new DataInputStream(new FileInputStream(file));
+
+    try {
+      return in.readInt() == BinaryFormat.MAGIC;
+    }
+    catch (EOFException e) {
+      return false;
+    }
+    finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Returns whether <code>data</code> starts like a binary scene file.
+   */
+  public static boolean isBinary(byte[] data)
+  {
+    return (data.length >= 4) && (ByteBuffer.wrap(data).getInt() == BinaryFormat.MAGIC);
+  }
+
+  private MethodHandle factory(String name) throws IOException
+  {
+    try {
+      return getFactory(name);
+    }
+    catch (ClassNotFoundException e) {
+      throw new BinaryFormatException("undefined class '" + name + "'", buffer.position());
+    }
+    catch (NoSuchMethodException e) {
+      throw new BinaryFormatException("incompatible class '" + name + "'", buffer.position());
+    }
+    catch (IllegalAccessException e) {
+      throw new BinaryFormatException("incompatible class '" + name + "'", buffer.position());
+    }
+  }
+
+  public Object readObject() throws IOException
+  {
+    if (! buffer.hasRemaining()) {
+      throw new EOFException();
+    }
+
+    try {
+      return readValue();
+    }
+    catch (java.nio.BufferUnderflowException e) {
+      throw new BinaryFormatException("unexpected end of data", buffer.position());
+    }
+  }
+
+  public void readFields(Map map) throws IOException
+  {
+    expect(BinaryFormat.FIELDS, "fields");
+    int count = readCount();
+
+    for (int i = 0 ; i < count ; i++)
+    {
+      String field = names[readIndex(names.length, "field name")];
+      if (! map.containsKey(field)) {
+        throw new BinaryFormatException("unexpected field '" + field + "'", buffer.position());
+      }
+      map.put(field, readValue());
+    }
+  }
+
+  public Number[] readNumbers(int max) throws IOException
+  {
+    expect(BinaryFormat.NUMBERS, "numbers");
+    int count = readCount();
+    if (count != max) {
+      throw new BinaryFormatException(max + " numbers expected but found " + count, buffer.position());
+    }
+
+    Number[] numbers = new Number[count];
+    for (int i = 0 ; i < count ; i++)
+    {
+      numbers[i] = Double.valueOf(buffer.getDouble());
+    }
+    return numbers;
+  }
+
+  private Object readValue() throws IOException
+  {
+    int offset = buffer.position();
+    byte tag = buffer.get();
+
+    switch (tag)
+    {
+    case BinaryFormat.NUMBER:
+      return Double.valueOf(buffer.getDouble());
+    case BinaryFormat.TRUE:
+      return Boolean.TRUE;
+    case BinaryFormat.FALSE:
+      return Boolean.FALSE;
+    case BinaryFormat.STRING:
+      return readString();
+    case BinaryFormat.CHARACTER:
+      return Character.valueOf(buffer.getChar());
+    case BinaryFormat.OBJECT:
+      return readDefinition();
+    case BinaryFormat.REFERENCE:
+      {
+        int index = readIndex(objects.size(), "object index");
+        Object obj = objects.get(index);
+        if (obj == null) {
+          // Reference to an object from its own fields
+          throw new BinaryFormatException("object " + index + " is not built yet", offset);
+        }
+        return obj;
+      }
+    case BinaryFormat.LIST:
+      {
+        int count = readCount();
+        List list = new List();
+        for (int i = 0 ; i < count ; i++)
+        {
+          list.add(readValue());
+        }
+        return list;
+      }
+    case BinaryFormat.GRAPH:
+      {
+        int count = readCount();
+        DirectedGraph graph = new DirectedGraph();
+        for (int i = 0 ; i < count ; i++)
+        {
+          Object source = readValue();
+          graph.addEdge(source, readValue());
+        }
+        return graph;
+      }
+    default:
+      throw new BinaryFormatException("unknown tag " + tag, offset);
+    }
+  }
+
+  private Object readDefinition() throws IOException
+  {
+    int classId = readIndex(classNames.length, "class id");
+    int length = readCount();
+    int end = buffer.position() + length;
+    int index = objects.size();
+    objects.add(null);
+
+    Object obj;
+    try {
+      obj = factories[classId].invokeExact((ObjectReader) this);
+    }
+    catch (IOException e) {
+      throw e;
+    }
+    catch (RuntimeException e) {
+      throw e;
+    }
+    catch (Error e) {
+      throw e;
+    }
+    catch (Throwable t) {
+      throw new IllegalArgumentException(t.toString());
+    }
+
+    if (buffer.position() != end) {
+      throw new BinaryFormatException(classNames[classId] + " did not read its own fields", buffer.position());
+    }
+
+    objects.set(index, obj);
+    return obj;
+  }
+
+  private void expect(byte tag, String expected) throws IOException
+  {
+    if (! buffer.hasRemaining() || (buffer.get(buffer.position()) != tag)) {
+      throw new BinaryFormatException(expected + " expected", buffer.position());
+    }
+    buffer.get();
+  }
+
+  private int readCount() throws IOException
+  {
+    int count = buffer.getInt();
+    if ((count < 0) || (count > buffer.remaining())) {
+      throw new BinaryFormatException("invalid count " + count, buffer.position() - 4);
+    }
+    return count;
+  }
+
+  private int readIndex(int size, String what) throws IOException
+  {
+    int index = buffer.getInt();
+    if ((index < 0) || (index >= size)) {
+      throw new BinaryFormatException("invalid " + what + " " + index, buffer.position() - 4);
+    }
+    return index;
+  }
+
+  private String readString() throws IOException
+  {
+    byte[] bytes = new byte[readCount()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private String[] readTable() throws IOException
+  {
+    String[] table = new String[readCount()];
+    for (int i = 0 ; i < table.length ; i++)
+    {
+      table[i] = readString();
+    }
+    return table;
+  }
+}
@@ -0,0 +1,266 @@
+package raja.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import raja.util.DirectedGraph;
+
+
+/**
+ * An <code>ObjectWriter</code> that saves objects in the binary scene
+ * format read by {@link BinaryObjectReader}.  Objects describe themselves
+ * exactly as for the textual format, through {@link Writable#write} and
+ * <code>writeFields</code>, so any object that only writes fields can be
+ * saved in binary form.  Blanks and comments written directly are dropped,
+ * and any other text is rejected with a
+ * <code>NotWritableException</code>.
+ * <p>
+ * The class names and field names are gathered in two tables while the
+ * objects are written, and the whole file is written to the underlying
+ * stream when this writer is closed.
+ *
+ * @see BinaryFormat
+ */
+public class BinaryObjectWriter extends ObjectWriter
+{
+  private static final int INITIAL_CAPACITY = 1 << 16;
+
+  private OutputStream out;
+  private ByteBuffer data;
+  private Map labels;     // object -> index, as the labels of ObjectWriter
+  private Map classIds;   // class name -> id
+  private Map nameIds;    // field name -> id
+  private int depth;      // objects being written
+  private boolean bodyWritten;
+
+  public BinaryObjectWriter(OutputStream out)
+  {
+    // The textual output is never used
+    super(new StringWriter());
+    this.out = out;
+    data = ByteBuffer.allocate(INITIAL_CAPACITY);
+    labels = new HashMap();
+    classIds = new LinkedHashMap();
+    nameIds = new LinkedHashMap();
+  }
+
+  /**
+   * Writes a top level object.  Nested objects are written as fields of
+   * their enclosing object.
+   */
+  public void writeObject(Object obj) throws IOException
+  {
+    if (depth > 0) {
+      throw new NotWritableException("object " + obj.getClass().getName() + " written outside of a field");
+    }
+
+    writeValue(obj);
+  }
+
+  public void writeFields(Object[][] fields) throws IOException
+  {
+    startBody();
+    putByte(BinaryFormat.FIELDS);
+    putInt(fields.length);
+    for (int i = 0 ; i < fields.length ; i++)
+    {
+      putInt(id(nameIds, (String) fields[i][0]));
+      writeValue(fields[i][1]);
+    }
+  }
+
+  public void writeFields(Number[] fields) throws IOException
+  {
+    startBody();
+    putByte(BinaryFormat.NUMBERS);
+    putInt(fields.length);
+    for (int i = 0 ; i < fields.length ; i++)
+    {
+      ensure(8);
+      data.putDouble(fields[i].doubleValue());
+    }
+  }
+
+  private void startBody() throws IOException
+  {
+    if (depth == 0) {
+      throw new NotWritableException("fields written outside of an object");
+    }
+    if (bodyWritten) {
+      throw new NotWritableException("fields written twice for the same object");
+    }
+    bodyWritten = true;
+  }
+
+  private void writeValue(Object value) throws IOException
+  {
+    if (value instanceof Number) {
+      putByte(BinaryFormat.NUMBER);
+      ensure(8);
+      data.putDouble(((Number) value).doubleValue());
+    }
+    else if (value instanceof Boolean) {
+      putByte(((Boolean) value).booleanValue() ? BinaryFormat.TRUE : BinaryFormat.FALSE);
+    }
+    else if (value instanceof String) {
+      putByte(BinaryFormat.STRING);
+      putString((String) value);
+    }
+    else if (value instanceof Character) {
+      putByte(BinaryFormat.CHARACTER);
+      ensure(2);
+      data.putChar(((Character) value).charValue());
+    }
+    else if (! (value instanceof Writable)) {
+      throw new NotWritableException(String.valueOf(value));
+    }
+    else if (labels.containsKey(value)) {
+      putByte(BinaryFormat.REFERENCE);
+      putInt(((Integer) labels.get(value)).intValue());
+    }
+    else if (value instanceof raja.util.List) {
+      raja.util.List list = (raja.util.List) value;
+      putByte(BinaryFormat.LIST);
+      putInt(list.size());
+      for (Iterator iter = list.iterator() ; iter.hasNext() ;)
+      {
+        writeValue(iter.next());
+      }
+    }
+    else if (value instanceof DirectedGraph) {
+      putByte(BinaryFormat.GRAPH);
+      int countPosition = data.position();
+      putInt(0);
+      int count = 0;
+      for (Iterator iter = ((DirectedGraph) value).edges() ; iter.hasNext() ; count++)
+      {
+        DirectedGraph.Edge edge = (DirectedGraph.Edge) iter.next();
+        writeValue(edge.getSource());
+        writeValue(edge.getDest());
+      }
+      data.putInt(countPosition, count);
+    }
+    else if (value instanceof DirectedGraph.Edge) {
+      throw new NotWritableException("edge written outside of a graph");
+    }
+    else {
+      labels.put(value, Integer.valueOf(labels.size()));
+
+      putByte(BinaryFormat.OBJECT);
+      putInt(id(classIds, value.getClass().getName()));
+      int lengthPosition = data.position();
+      putInt(0);
+      int start = data.position();
+
+      boolean enclosingBodyWritten = bodyWritten;
+      bodyWritten = false;
+      depth++;
+      ((Writable) value).write(this);
+      depth--;
+      if (! bodyWritten) {
+        putByte(BinaryFormat.FIELDS);
+        putInt(0);
+      }
+      bodyWritten = enclosingBodyWritten;
+
+      data.putInt(lengthPosition, data.position() - start);
+    }
+  }
+
+  private static int id(Map ids, String name)
+  {
+    Integer id = (Integer) ids.get(name);
+    if (id == null) {
+      id = Integer.valueOf(ids.size());
+      ids.put(name, id);
+    }
+    return id.intValue();
+  }
+
+  private void ensure(int bytes)
+  {
+    if (data.remaining() < bytes) {
+      ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * data.capacity(), data.position() + bytes));
+      data.flip();
+      larger.put(data);
+      data = larger;
+    }
+  }
+
+  private void putByte(byte b)
+  {
+    ensure(1);
+    data.put(b);
+  }
+
+  private void putInt(int i)
+  {
+    ensure(4);
+    data.putInt(i);
+  }
+
+  private void putString(String s)
+  {
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    putInt(bytes.length);
+    ensure(bytes.length);
+    data.put(bytes);
+  }
+
+  /*
+   * Text written directly by the objects: only blanks, such as the
+   * indentation, and comments are accepted.
+   */
+
+  public void write(int c) throws IOException
+  {
+    write(String.valueOf((char) c));
+  }
+
+  public void write(char[] cbuf, int off, int len) throws IOException
+  {
+    write(new String(cbuf, off, len));
+  }
+
+  public void write(String s, int off, int len) throws IOException
+  {
+    String text = s.substring(off, off + len).trim();
+    if ((text.length() != 0) && ! text.startsWith("//")) {
+      throw new NotWritableException("text \"" + text + "\" cannot be written in binary form");
+    }
+  }
+
+  /**
+   * Writes the binary file to the underlying stream and closes it.
+   */
+  public void close() throws IOException
+  {
+    if (out == null) {
+      return;
+    }
+
+    DataOutputStream file = new DataOutputStream(new BufferedOutputStream(out));
+    file.writeInt(BinaryFormat.MAGIC);
+    file.writeInt(BinaryFormat.VERSION);
+    writeTable(file, classIds);
+    writeTable(file, nameIds);
+    file.write(data.array(), 0, data.position());
+    file.close();
+    out = null;
+
+    super.close();
+  }
+
+  private static void writeTable(DataOutputStream file, Map ids) throws IOException
+  {
+    file.writeInt(ids.size());
+    for (Iterator iter = ids.keySet().iterator() ; iter.hasNext() ;)
+    {
+      byte[] bytes = ((String) iter.next()).getBytes(StandardCharsets.UTF_8);
+      file.writeInt(bytes.length);
+      file.write(bytes);
+    }
+  }
+}
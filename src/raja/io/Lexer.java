@@ -21,6 +21,13 @@ package raja.io;
 import java.io.*;
 
 
+/**
+ * The scanner of the textual scene format.  Characters are read from the
+ * stream in blocks into a <code>char</code> array, and the characters of
+ * the current token are gathered into another array that is reused from a
+ * token to the next, so scanning needs no synchronization and allocates
+ * nothing until the text of a token is asked for.
+ */
 class Lexer
 {
   static final Token CLASS = new Token ();
@@ -48,15 +55,21 @@ class Lexer
   /**  Special token mark the End Of Stream (EOS) */
   static Token EOS = new Token();
   
+  private static final int BUFFER_SIZE = 8192;
+
   private Reader stream;
-  private StringBuffer svalue;
+  private char[] buffer;        // block of characters read from the stream
+  private int position, limit;  // next character and end of the block
+  private char[] text;          // characters of the current token
+  private int length;
   private int inputChar, nbLines, nbCol, nbCurrentCol;
   
   Lexer(Reader r) throws IOException
   {
     stream = r;
-    svalue = new StringBuffer();
-    inputChar = stream.read();
+    buffer = new char[BUFFER_SIZE];
+    text = new char[64];
+    inputChar = read();
     nbLines = 1;
     nbCol = 0;
   }
@@ -64,7 +77,7 @@ class Lexer
   /** Gives the string value of the current token */
   String getLexedString()
   {
-    return svalue.toString();
+    return new String(text, 0, length);
   }
   
   /** Gives the current line number */
@@ -79,6 +92,36 @@ class Lexer
     return nbCol;
   }
   
+  private int read() throws IOException
+  {
+    if (position == limit)
+    {
+      limit = stream.read(buffer, 0, buffer.length);
+      position = 0;
+      
+      if (limit <= 0)
+      {
+        limit = 0;
+        return -1;
+      }
+    }
+    return buffer[position++];
+  }
+  
+  private void skipChar() throws IOException
+  {
+    if (inputChar == '\n')
+    {
+      nbLines++;
+      nbCurrentCol = 0;
+    }
+    else
+    {
+      nbCurrentCol++;
+    }
+    inputChar = read();
+  }
+  
   private void readNextChar() throws IOException
   {
     if (inputChar == '\n')
@@ -91,30 +134,96 @@ class Lexer
       nbCurrentCol++;
     }
     
-    svalue.append((char) inputChar);
-    inputChar = stream.read();
+    if (length == text.length)
+    {
+      char[] larger = new char[2 * text.length];
+      System.arraycopy(text, 0, larger, 0, length);
+      text = larger;
+    }
+    text[length++] = (char) inputChar;
+    inputChar = read();
   }
   
-  //ADDED by Murat Inan - Helper method to peek at next characters without consuming them
-  private boolean peekNextChars(String chars) throws IOException {
-    stream.mark(chars.length());
-    boolean matches = true;
-    for (int i = 0; i < chars.length(); i++) {
-      int nextChar = stream.read();
-      if (nextChar != chars.charAt(i)) {
-        matches = false;
-        break;
+  /** Returns whether the current token is the word <code>word</code> */
+  private boolean lexed(String word)
+  {
+    if (length != word.length())
+    {
+      return false;
+    }
+    for (int i = 0 ; i < length ; i++)
+    {
+      if (text[i] != word.charAt(i))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  /**
+   * Reads the exponent of a number, if any, as written by
+   * <code>Double.toString</code> for small and large values (1.0E-5).
+   */
+  private void readExponent() throws IOException
+  {
+    if ((inputChar == 'E') || (inputChar == 'e'))
+    {
+      readNextChar();
+      if ((inputChar == '-') || (inputChar == '+'))
+      {
+        readNextChar();
+      }
+      if (! Character.isDigit((char) inputChar))
+      {
+        throw new NoMatchingTokenException(getLexedString() + ((char) inputChar));
+      }
+      while (Character.isDigit((char) inputChar))
+      {
+        readNextChar();
+      }
+    }
+  }
+  
+  /** Skips blanks and comments */
+  private void skipBlanks() throws IOException
+  {
+    length = 0;
+    
+    while (true)
+    {
+      if ((inputChar == ' ') || Character.isWhitespace((char) inputChar))
+      {
+        skipChar();
+      }
+      else if (inputChar == '/')
+      {
+        readNextChar();
+        if (inputChar == '/')
+        {
+          while ((inputChar != '\n') && (inputChar != -1))
+          {
+            skipChar();
+          }
+          length = 0;
+        }
+        else
+        {
+          throw new NoMatchingTokenException(getLexedString() + ((char) inputChar));
+        }
+      }
+      else
+      {
+        return;
       }
     }
-    stream.reset();
-    return matches;
   }
   
   /** Read the next token */
   Token nextToken()
   throws IOException
   {
-    svalue = new StringBuffer();
+    skipBlanks();
     nbCol = nbCurrentCol;
     
     Token token = null;
@@ -149,7 +258,7 @@ class Lexer
       }
       else
       {
-        throw new NoMatchingTokenException(svalue.toString() + ((char) inputChar));
+        throw new NoMatchingTokenException(getLexedString() + ((char) inputChar));
       }
     }
     else if (inputChar == '(')
@@ -228,26 +337,6 @@ class Lexer
         throw new NoMatchingTokenException("Empty character literal");
       }
     }
-    //ADDED by Murat Inan - Boolean literal support
-    else if (inputChar == 't' && peekNextChars("rue"))
-    {
-      // true
-      readNextChar(); // t
-      readNextChar(); // r
-      readNextChar(); // u
-      readNextChar(); // e
-      token = BOOLEAN;
-    }
-    else if (inputChar == 'f' && peekNextChars("alse"))
-    {
-      // false
-      readNextChar(); // f
-      readNextChar(); // a
-      readNextChar(); // l
-      readNextChar(); // s
-      readNextChar(); // e
-      token = BOOLEAN;
-    }
     else if (Character.isLetter((char) inputChar) && Character.isUpperCase((char) inputChar))
     {
       readNextChar();
@@ -286,7 +375,7 @@ class Lexer
         }
         else
         {
-          throw new NoMatchingTokenException(svalue.toString() + ((char) inputChar));
+          throw new NoMatchingTokenException(getLexedString() + ((char) inputChar));
         }
       }
       else
@@ -296,7 +385,16 @@ class Lexer
         {
           readNextChar();
         }
-        token = FIELD;
+        
+        //ADDED by Murat Inan - Boolean literal support
+        if (lexed("true") || lexed("false"))
+        {
+          token = BOOLEAN;
+        }
+        else
+        {
+          token = FIELD;
+        }
       }
     }
     else if (inputChar == '@')
@@ -323,6 +421,7 @@ class Lexer
           readNextChar();
         }
       }
+      readExponent();
       token = NUMBER;
     }
     else if (inputChar == '.')
@@ -332,37 +431,12 @@ class Lexer
       {
         readNextChar();
       }
+      readExponent();
       token = NUMBER;
     }
-    else if (inputChar == '/')
-    {
-      readNextChar();
-      if (inputChar == '/')
-      {
-        readNextChar();
-        while (inputChar != '\n')
-        {
-          readNextChar();
-        }
-        return nextToken();
-      }
-      else
-      {
-        throw new NoMatchingTokenException(svalue.toString() + ((char) inputChar));
-      }
-    }
-    else if (Character.isWhitespace((char) inputChar))
-    {
-      readNextChar();
-      while (Character.isWhitespace((char) inputChar))
-      {
-        readNextChar();
-      }
-      return nextToken();
-    }
     else
     {
-      throw new NoMatchingTokenException(svalue.toString() + ((char) inputChar));
+      throw new NoMatchingTokenException(getLexedString() + ((char) inputChar));
     }
     return token;
   }
@@ -1,9 +1,13 @@
 package raja.io;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.*;
 import java.io.*;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import raja.*;
 import raja.util.List;
@@ -12,13 +16,22 @@ import raja.util.DirectedGraph;
 
 public class ObjectReader extends BufferedReader
 {
+  // Initial capacity of the label map, enough for the labels of usual
+  // scenes without rehashing
+  private static final int LABELS_CAPACITY = 1024;
+  
+  private static final MethodType BUILD_TYPE = MethodType.methodType(Object.class, ObjectReader.class);
+  
+  /** The <code>build</code> methods already looked up, by class name */
+  private static final Map factories = new ConcurrentHashMap();
+  
   private Map labels;
   private Lexer lexer;
   
   public ObjectReader(Reader in) throws IOException
   {
     super(in);
-    labels = new HashMap();
+    labels = new HashMap(LABELS_CAPACITY);
     lexer = new Lexer(this);
   }
   
@@ -36,16 +49,29 @@ public class ObjectReader extends BufferedReader
   }
   
   
-  private static Class[] tab_class = new Class[1];
-  
-  static
+  /**
+   * Returns the static <code>build</code> method of the class
+   * <code>name</code>, as a handle of type <code>(ObjectReader)Object</code>.
+   * The lookup is done once per class and shared by all the readers.
+   */
+  static MethodHandle getFactory(String name)
+  throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException
   {
-    try {
-      tab_class[0] = Class.forName ("raja.io.ObjectReader");
-    }
-    catch (ClassNotFoundException e) {
-      e.printStackTrace();
+    MethodHandle factory = (MethodHandle) factories.get(name);
+    
+    if (factory == null)
+    {
+      Method build = Class.forName(name).getMethod("build", ObjectReader.class);
+      
+      if (! Modifier.isStatic(build.getModifiers()))
+      {
+        throw new NoSuchMethodException(name + ".build");
+      }
+      
+      factory = MethodHandles.publicLookup().unreflect(build).asType(BUILD_TYPE);
+      factories.put(name, factory);
     }
+    return factory;
   }
   
   private Token readNextToken(String expected)
@@ -68,11 +94,10 @@ public class ObjectReader extends BufferedReader
   private Object buildObject (String name, int classCol)
   throws IOException
   {
-    Method meth_class;
+    MethodHandle factory;
     try
     {
-      Class object_class = Class.forName (name);
-      meth_class = object_class.getMethod ("build", tab_class);
+      factory = getFactory(name);
     }
     catch (ClassNotFoundException e)
     {
@@ -82,33 +107,27 @@ public class ObjectReader extends BufferedReader
     {
       throw new IncompatibleClassException (name, lexer.getLine(), classCol);
     }
-    
-    Object[] tab_param = { this };
+    catch (IllegalAccessException e)
+    {
+      throw new IncompatibleClassException (name, lexer.getLine(), classCol);
+    }
     
     try
     {
-      return meth_class.invoke(null,tab_param);
+      return factory.invokeExact(this);
     }
-    catch (InvocationTargetException e)
+    catch (IOException e)
     {
-      Throwable target = e.getTargetException();
-      if (target instanceof IOException)
-      {
-        throw (IOException) target;
-      }
-      else if (target instanceof IllegalArgumentException)
-      {
-        throw (IllegalArgumentException) target;
-      }
-      else
-      {
-        e.printStackTrace();
-        throw new IllegalArgumentException(e.toString());
-      }
+      throw e;
     }
-    catch (IllegalAccessException e)
+    catch (IllegalArgumentException e)
     {
-      throw new IncompatibleClassException (name, lexer.getLine(), classCol);
+      throw e;
+    }
+    catch (Throwable e)
+    {
+      e.printStackTrace();
+      throw new IllegalArgumentException(e.toString());
     }
   }
   
@@ -129,9 +148,10 @@ public class ObjectReader extends BufferedReader
     
     while (token != Lexer.RBRA)
     {
-      if ((token == Lexer.FIELD) && (map.containsKey (lexer.getLexedString())))
+      String field = (token == Lexer.FIELD) ? lexer.getLexedString() : null;
+      
+      if ((field != null) && (map.containsKey (field)))
       {
-        String field = lexer.getLexedString();
         
         /* Checking for Lexer.EQUAL */
         token = readNextToken("\'=\'");
@@ -259,21 +279,7 @@ public class ObjectReader extends BufferedReader
     else if (token == Lexer.LABEL)
     {
       /* Label */
-      if (labels.containsKey(lexer.getLexedString()))
-      {
-        Object currentObject = labels.get(lexer.getLexedString());
-        
-        if (currentObject == null)
-        {
-          throw new IllegalArgumentException("Raja Internal Error !!!!");
-        }
-        
-        return currentObject;
-      }
-      else
-      {
-        throw new UndefinedLabelException(lexer.getLexedString(), lexer.getLine(), lexer.getCol());
-      }
+      return getLabelled();
     }
     else if (token == Lexer.CLASS)
     {
@@ -296,6 +302,24 @@ public class ObjectReader extends BufferedReader
     }
   }
   
+  /**
+   * Returns the object of the label just read from the lexer.
+   */
+  private Object getLabelled()
+  throws IOException
+  {
+    String label = lexer.getLexedString();
+    Object currentObject = labels.get(label);
+    
+    if (currentObject == null)
+    {
+      // Objects are never null, so the label is not defined
+      throw new UndefinedLabelException(label, lexer.getLine(), lexer.getCol());
+    }
+    
+    return currentObject;
+  }
+  
   private List parseList()
   throws IOException
   {
@@ -336,21 +360,7 @@ public class ObjectReader extends BufferedReader
       }
       else if (token == Lexer.LABEL)
       {
-        if (labels.containsKey(lexer.getLexedString()))
-        {
-          Object currentObject = labels.get(lexer.getLexedString());
-          
-          if (currentObject == null)
-          {
-            throw new IllegalArgumentException("Raja Internal Error !!!!");
-          }
-          
-          currentList.add (currentObject);
-        }
-        else
-        {
-          throw new UndefinedLabelException(lexer.getLexedString(), lexer.getLine(), lexer.getCol());
-        }
+        currentList.add (getLabelled());
       }
       else if (token == Lexer.CLASS)
       {
@@ -400,21 +410,7 @@ public class ObjectReader extends BufferedReader
         throw new SyntaxException ("@label", lexer.getLexedString(), lexer.getLine(), lexer.getCol());
       }
       
-      Object source, dest;
-      
-      if (labels.containsKey(lexer.getLexedString()))
-      {
-        source = labels.get(lexer.getLexedString());
-        
-        if (source == null)
-        {
-          throw new IllegalArgumentException("Raja Internal Error !!!!");
-        }
-      }
-      else
-      {
-        throw new UndefinedLabelException(lexer.getLexedString(), lexer.getLine(), lexer.getCol());
-      }
+      Object source = getLabelled();
       
       token = readNextToken("\'>>\'");
       
@@ -430,21 +426,7 @@ public class ObjectReader extends BufferedReader
         throw new SyntaxException ("@label", lexer.getLexedString(), lexer.getLine(), lexer.getCol());
       }
       
-      if (labels.containsKey(lexer.getLexedString()))
-      {
-        dest = labels.get(lexer.getLexedString());
-        
-        if (dest == null)
-        {
-          throw new IllegalArgumentException("Raja Internal Error !!!!");
-        }
-      }
-      else
-      {
-        throw new UndefinedLabelException(lexer.getLexedString(), lexer.getLine(), lexer.getCol());
-      }
-      
-      currentDirectedGraph.addEdge (source, dest);
+      currentDirectedGraph.addEdge (source, getLabelled());
       
       token = readNextToken("\',\' or \']]\'");
       
@@ -471,7 +453,7 @@ public class ObjectReader extends BufferedReader
   private Number[] parseNumbers (int max)
   throws IOException
   {
-    Token token = new Token ();
+    Token token;
     Number[] parameters = new Number[max];
     
     /* Getting first token */
@@ -0,0 +1,157 @@
+package raja.io;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+
+/**
+ * A {@link ScanlineWriter} encoding 8 bit RGB PNG images.  Rows are
+ * compressed as they are written, and the compressed data is flushed in
+ * IDAT chunks of bounded size, so that only a chunk is held in memory.
+ * Each row is filtered with the <code>Sub</code> filter.
+ */
+public class PNGScanlineWriter implements ScanlineWriter
+{
+  private static final byte[] SIGNATURE = { (byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n' };
+  private static final int CHUNK_SIZE = 1 << 16;
+  private static final int FILTER_SUB = 1;
+
+  private DataOutputStream out;
+  private int width;
+  private int height;
+  private int rowsWritten;
+  private ChunkOutputStream idat;
+  private Deflater deflater;
+  private DeflaterOutputStream data;
+  private int[] pixels;
+  private byte[] row;
+
+  public PNGScanlineWriter(OutputStream out, int width, int height) throws IOException
+  {
+    if ((width < 1) || (height < 1)) {
+      throw new IllegalArgumentException("empty image");
+    }
+
+    this.out = new DataOutputStream(out);
+    this.width = width;
+    this.height = height;
+    pixels = new int[width];
+    row = new byte[1 + 3 * width];
+
+    this.out.write(SIGNATURE);
+    ByteArrayOutputStream header = new ByteArrayOutputStream();
+    DataOutputStream headerData = new DataOutputStream(header);
+    headerData.writeInt(width);
+    headerData.writeInt(height);
+    headerData.writeByte(8);   // bits per sample
+    headerData.writeByte(2);   // RGB
+    headerData.writeByte(0);   // deflate
+    headerData.writeByte(0);   // adaptive filtering
+    headerData.writeByte(0);   // no interlace
+    writeChunk("IHDR", header.toByteArray(), header.size());
+
+    idat = new ChunkOutputStream();
+    deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    data = new DeflaterOutputStream(idat, deflater, CHUNK_SIZE);
+  }
+
+  public void write(BufferedImage band, int rows) throws IOException
+  {
+    if (band.getWidth() != width) {
+      throw new IllegalArgumentException("band and image widths differ");
+    }
+    if ((rows < 0) || (rows > band.getHeight())) {
+      throw new IllegalArgumentException("rows out of band");
+    }
+    if (rowsWritten + rows > height) {
+      throw new IOException("too many rows for a " + width + "x" + height + " image");
+    }
+
+    for (int y = 0 ; y < rows ; y++)
+    {
+      band.getRGB(0, y, width, 1, pixels, 0, width);
+      row[0] = FILTER_SUB;
+      int previous = 0;
+      for (int x = 0, k = 1 ; x < width ; x++, k += 3)
+      {
+        int pixel = pixels[x];
+        row[k]     = (byte) ((pixel >> 16) - (previous >> 16));
+        row[k + 1] = (byte) ((pixel >> 8) - (previous >> 8));
+        row[k + 2] = (byte) (pixel - previous);
+        previous = pixel;
+      }
+      data.write(row);
+    }
+    rowsWritten += rows;
+  }
+
+  public void close() throws IOException
+  {
+    if (rowsWritten < height) {
+      throw new IOException("missing " + (height - rowsWritten) + " rows");
+    }
+
+    data.finish();
+    deflater.end();
+    idat.flushChunk();
+    writeChunk("IEND", new byte[0], 0);
+    out.close();
+  }
+
+  private void writeChunk(String type, byte[] bytes, int length) throws IOException
+  {
+    byte[] typeBytes = type.getBytes("US-ASCII");
+    CRC32 crc = new CRC32();
+    crc.update(typeBytes);
+    crc.update(bytes, 0, length);
+
+    out.writeInt(length);
+    out.write(typeBytes);
+    out.write(bytes, 0, length);
+    out.writeInt((int) crc.getValue());
+  }
+
+  /**
+   * Collects compressed data, and writes it in IDAT chunks of
+   * <code>CHUNK_SIZE</code> bytes.
+   */
+  private class ChunkOutputStream extends OutputStream
+  {
+    private byte[] buffer = new byte[CHUNK_SIZE];
+    private int count;
+
+    public void write(int b) throws IOException
+    {
+      write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    public void write(byte[] bytes, int offset, int length) throws IOException
+    {
+      while (length > 0)
+      {
+        int n = Math.min(length, CHUNK_SIZE - count);
+        System.arraycopy(bytes, offset, buffer, count, n);
+        count += n;
+        offset += n;
+        length -= n;
+        if (count == CHUNK_SIZE) {
+          flushChunk();
+        }
+      }
+    }
+
+    void flushChunk() throws IOException
+    {
+      if (count > 0) {
+        writeChunk("IDAT", buffer, count);
+        count = 0;
+      }
+    }
+  }
+}
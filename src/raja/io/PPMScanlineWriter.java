@@ -0,0 +1,70 @@
+package raja.io;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * A {@link ScanlineWriter} writing uncompressed binary PPM (P6) images,
+ * which are read row by row by most image tools and are the fastest to
+ * write.
+ */
+public class PPMScanlineWriter implements ScanlineWriter
+{
+  private OutputStream out;
+  private int width;
+  private int height;
+  private int rowsWritten;
+  private int[] pixels;
+  private byte[] row;
+
+  public PPMScanlineWriter(OutputStream out, int width, int height) throws IOException
+  {
+    if ((width < 1) || (height < 1)) {
+      throw new IllegalArgumentException("empty image");
+    }
+
+    this.out = out;
+    this.width = width;
+    this.height = height;
+    pixels = new int[width];
+    row = new byte[3 * width];
+
+    out.write(("P6\n" + width + " " + height + "\n255\n").getBytes("US-ASCII"));
+  }
+
+  public void write(BufferedImage band, int rows) throws IOException
+  {
+    if (band.getWidth() != width) {
+      throw new IllegalArgumentException("band and image widths differ");
+    }
+    if ((rows < 0) || (rows > band.getHeight())) {
+      throw new IllegalArgumentException("rows out of band");
+    }
+    if (rowsWritten + rows > height) {
+      throw new IOException("too many rows for a " + width + "x" + height + " image");
+    }
+
+    for (int y = 0 ; y < rows ; y++)
+    {
+      band.getRGB(0, y, width, 1, pixels, 0, width);
+      for (int x = 0, k = 0 ; x < width ; x++, k += 3)
+      {
+        row[k]     = (byte) (pixels[x] >> 16);
+        row[k + 1] = (byte) (pixels[x] >> 8);
+        row[k + 2] = (byte) pixels[x];
+      }
+      out.write(row);
+    }
+    rowsWritten += rows;
+  }
+
+  public void close() throws IOException
+  {
+    if (rowsWritten < height) {
+      throw new IOException("missing " + (height - rowsWritten) + " rows");
+    }
+    out.close();
+  }
+}
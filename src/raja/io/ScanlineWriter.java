@@ -0,0 +1,32 @@
+package raja.io;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+
+/**
+ * An interface specifying objects that write an image of a known size
+ * band after band, from the top of the image to its bottom, so that the
+ * whole image never has to be held in memory.
+ *
+ * @see ImageWriter
+ */
+public interface ScanlineWriter
+{
+  /**
+   * Writes the first <code>rows</code> rows of <code>band</code>, which is
+   * as wide as the image, below the rows already written.
+   *
+   * @exception IOException if an I/O error occurs, or if the image has
+   *            fewer rows left.
+   */
+  public void write(BufferedImage band, int rows) throws IOException;
+
+  /**
+   * Ends the image, which must be complete, and closes the underlying
+   * stream.
+   *
+   * @exception IOException if an I/O error occurs, or if rows are missing.
+   */
+  public void close() throws IOException;
+}
@@ -6,6 +6,7 @@ import java.util.HashMap;
 import raja.*;
 import raja.shape.*;
 import raja.io.*;
+import raja.material.noise.Noise;
 
 public class AnodizedTexture implements Texture, java.io.Serializable, Writable
 {
@@ -107,34 +108,13 @@ public class AnodizedTexture implements Texture, java.io.Serializable, Writable
   
   private double calculateFilmThickness(double x, double y, double z)
   {
-    // Multi-scale smooth noise for realistic oxide layer variation
-    // Frequencies optimized for natural-looking anodized surface
-    
-    // Large-scale variation (main color zones)
-    double large = Math.sin(x * 0.6) * Math.cos(y * 0.55) * Math.sin(z * 0.5);
-    
-    // Medium-scale variation (secondary patterns)
-    double medium = Math.sin(x * 1.3 + y * 1.1) *
-    Math.cos(z * 1.5 - x * 0.8) *
-    Math.sin(y * 1.4 + z * 0.9);
-    
-    // Fine-scale variation (micro detail)
-    double fine = Math.sin(x * 2.8 + z * 2.5) *
-    Math.cos(y * 3.1 - z * 2.2) *
-    Math.sin(x * 2.9 + y * 2.6);
-    
-    // Very fine detail (adds texture richness)
-    double veryFine = Math.sin(x * 4.5 + y * 4.2 + z * 3.8) *
-    Math.cos(x * 3.9 - y * 4.1);
-    
-    // Weighted combination for natural appearance
-    double thickness = large * 0.45 +
-    medium * 0.30 +
-    fine * 0.18 +
-    veryFine * 0.07;
+    // Multi-scale smooth noise for realistic oxide layer variation:
+    // main color zones, secondary patterns, micro detail and very fine
+    // detail, each octave about twice finer and weaker
+    double thickness = Noise.fbm(x * 0.6, y * 0.55, z * 0.5, 4, 2.1, 0.6);
     
     // Apply smoothstep for more organic transitions
-    thickness = thickness * 0.5 + 0.5; // [0, 1]
+    thickness = thickness * 1.5 + 0.5; // [0, 1]
     return smoothstep(0.0, 1.0, thickness);
   }
   
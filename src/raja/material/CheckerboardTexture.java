@@ -13,6 +13,7 @@ public class CheckerboardTexture implements Texture, java.io.Serializable, Writa
 {
   private RGB kd1, kd2, kr, kt;
   private int ns, nt;
+  private LocalTexture local1, local2;    // the local textures of both colors
   private double step, x0, y0, z0;
   
   public CheckerboardTexture(RGB kd1, RGB kd2, RGB kr, RGB kt,
@@ -29,6 +30,8 @@ public class CheckerboardTexture implements Texture, java.io.Serializable, Writa
     this.x0 = x0;
     this.y0 = y0;
     this.z0 = z0;
+    this.local1 = new LocalTexture(kd1, kr, kt, ns, nt);
+    this.local2 = new LocalTexture(kd2, kr, kt, ns, nt);
   }
   
   /**
@@ -77,9 +80,9 @@ public class CheckerboardTexture implements Texture, java.io.Serializable, Writa
     double k = Math.floor((p.z - z0) / step);
     
     if ((i + j + k) % 2 == 0) {
-      return new LocalTexture(kd1, kr, kt, ns, nt);
+      return local1;
       } else {
-      return new LocalTexture(kd2, kr, kt, ns, nt);
+      return local2;
     }
   }
   
@@ -4,6 +4,7 @@ package raja.material;
 import raja.*;
 import raja.shape.*;
 import raja.io.*;
+import raja.material.noise.Noise;
 
 import java.util.HashMap;
 
@@ -25,6 +26,7 @@ public class CrystalCaveTexture implements Texture, java.io.Serializable, Writab
   private static final double AMBIENT_FACTOR = 0.6;
   private static final double SPECULAR_FACTOR = 0.5;
   private static final RGB SPECULAR_COLOR = new RGB(0.95, 0.85, 1.0);
+  private static final RGB SPECULAR = SPECULAR_COLOR.multiply(SPECULAR_FACTOR);
   private static final int REFLECTIVITY = 2;
   private static final int SHININESS = 80;
   
@@ -63,9 +65,12 @@ public class CrystalCaveTexture implements Texture, java.io.Serializable, Writab
     double z = p.z * scale;
     
     // Simple procedural "crystal centers" using modulo grid
-    double gridX = x - Math.floor(x);
-    double gridY = y - Math.floor(y);
-    double gridZ = z - Math.floor(z);
+    int cellX = Noise.floor(x);
+    int cellY = Noise.floor(y);
+    int cellZ = Noise.floor(z);
+    double gridX = x - cellX;
+    double gridY = y - cellY;
+    double gridZ = z - cellZ;
     
     // Distance to nearest grid point (simulates crystal origin)
     double dx = Math.min(gridX, 1.0 - gridX);
@@ -76,8 +81,11 @@ public class CrystalCaveTexture implements Texture, java.io.Serializable, Writab
     // Invert: crystals grow from surface inward → closer to center = brighter
     double crystalIntensity = 1.0 - Math.min(1.0, distToCenter * 2.5);
     
-    // Apply density mask: randomly suppress some crystals
-    double noiseSeed = (Math.sin(x * 12.9898 + y * 78.233 + z * 45.164) * 43758.5453) % 1.0;
+    // Apply density mask: randomly suppress some crystals, each one as a
+    // whole, picked by the lattice point it grows from
+    double noiseSeed = Noise.hash((gridX < 0.5) ? cellX : cellX + 1,
+      (gridY < 0.5) ? cellY : cellY + 1,
+    (gridZ < 0.5) ? cellZ : cellZ + 1);
     if (noiseSeed > density) {
       crystalIntensity = 0.0;
     }
@@ -88,7 +96,7 @@ public class CrystalCaveTexture implements Texture, java.io.Serializable, Writab
     return new LocalTexture(
       color,
       color.multiply(AMBIENT_FACTOR),
-      SPECULAR_COLOR.multiply(SPECULAR_FACTOR),
+      SPECULAR,
       SHININESS,
       REFLECTIVITY
     );
@@ -6,10 +6,11 @@ import raja.shape.*;
 import raja.io.*;
 import java.util.HashMap;
 
-public class DielectricTexture implements Texture, java.io.Serializable, Writable
+public class DielectricTexture implements ConstantTexture, java.io.Serializable, Writable
 {
   private RGB kd, kr, kt;
   private int ns, nt;
+  private LocalTexture localTexture;
   
   public DielectricTexture(RGB baseColor, double reflection, double transparency, int shininess)
   {
@@ -18,6 +19,7 @@ public class DielectricTexture implements Texture, java.io.Serializable, Writabl
     this.kt = new RGB(transparency, transparency, transparency); // XDamier'deki gibi kt
     this.ns = shininess;
     this.nt = 12;
+    this.localTexture = new LocalTexture(kd, kr, kt, ns, nt);
   }
   
   public DielectricTexture() {
@@ -26,12 +28,13 @@ public class DielectricTexture implements Texture, java.io.Serializable, Writabl
     this.kt = new RGB(0.35, 0.35, 0.35);    // TRANSPARENCY biraz artırıldı
     this.ns = 220;                          // SHININESS korundu
     this.nt = 12;                           // NT biraz azaltıldı
+    this.localTexture = new LocalTexture(kd, kr, kt, ns, nt);
   }
   
   @Override
   public LocalTexture getLocalTexture(Point3D p)
   {
-    return new LocalTexture(kd, kr, kt, ns, nt);
+    return localTexture;
   }
   
   public static Object build(ObjectReader reader) throws java.io.IOException {
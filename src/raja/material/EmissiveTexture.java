@@ -7,15 +7,28 @@ import raja.*;
 import raja.shape.*;
 import raja.io.*;
 
-public class EmissiveTexture implements Texture, java.io.Serializable, Writable
+public class EmissiveTexture implements ConstantTexture, java.io.Serializable, Writable
 {
   private RGB emissiveColor;
   private double emissiveStrength;
+  private LocalTexture localTexture;
   
   public EmissiveTexture(RGB color, double emissiveStrength)
   {
     this.emissiveColor = color;
     this.emissiveStrength = emissiveStrength;
+    
+    // Emissive boost (parlak ama shape'i bozmayacak kadar)
+    double r = Math.min(1.0, color.getR() * emissiveStrength);
+    double g = Math.min(1.0, color.getG() * emissiveStrength);
+    double b = Math.min(1.0, color.getB() * emissiveStrength);
+    
+    // Normal shading ile emissive'i dengele
+    this.localTexture = new LocalTexture(new RGB(r, g, b),
+      new RGB(0.1, 0.1, 0.1),  // biraz reflection (shading için)
+      new RGB(0.0, 0.0, 0.0),
+      50,   // ns: düzgün shading
+    1);
   }
   
   public EmissiveTexture(RGB color)
@@ -26,22 +39,7 @@ public class EmissiveTexture implements Texture, java.io.Serializable, Writable
   @Override
   public LocalTexture getLocalTexture(Point3D p)
   {
-    // Base color (normal shading için)
-    RGB baseColor = emissiveColor;
-    
-    // Emissive boost (parlak ama shape'i bozmayacak kadar)
-    double r = Math.min(1.0, emissiveColor.getR() * emissiveStrength);
-    double g = Math.min(1.0, emissiveColor.getG() * emissiveStrength);
-    double b = Math.min(1.0, emissiveColor.getB() * emissiveStrength);
-    
-    RGB brightColor = new RGB(r, g, b);
-    
-    // Normal shading ile emissive'i dengele
-    return new LocalTexture(brightColor,
-      new RGB(0.1, 0.1, 0.1),  // biraz reflection (shading için)
-      new RGB(0.0, 0.0, 0.0),
-      50,   // ns: düzgün shading
-    1);
+    return localTexture;
   }
   
   public static Object build(ObjectReader reader) throws java.io.IOException {
@@ -5,14 +5,19 @@ import raja.io.*;
 import raja.shape.*;
 import java.util.HashMap;
 
-public class HologramTexture implements Texture, java.io.Serializable, Writable {
+public class HologramTexture implements ConstantTexture, java.io.Serializable, Writable {
   private RGB baseColor = new RGB(0.3, 0.8, 1.0);
   private double time = 0.0;
+  private LocalTexture localTexture = pulse(0.0);
   
   public HologramTexture() {}
   
   @Override
   public LocalTexture getLocalTexture(Point3D p) {
+    return localTexture;
+  }
+  
+  private LocalTexture pulse(double time) {
     double pulse = (Math.sin(time * 5) + 1) * 0.3;
     RGB emissive = new RGB(baseColor.getR() + pulse, baseColor.getG() + pulse, baseColor.getB());
     
@@ -25,7 +30,10 @@ public class HologramTexture implements Texture, java.io.Serializable, Writable
     );
   }
   
-  public void updateTime(double t) { this.time = t; }
+  public void updateTime(double t) {
+    this.time = t;
+    this.localTexture = pulse(t);
+  }
   
   @Override
   public String getUsageInformation() {
@@ -6,13 +6,12 @@ import raja.shape.*;
 import raja.io.*;
 
 import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
-import javax.imageio.ImageIO;
 
 public class ImageSpheringTexture implements Texture, java.io.Serializable, Writable {
   private BufferedImage texture;
+  private transient MipMap mipmap;
   private String imagePath;
   private RGB kd, kr, kt;
   private int ns, nt;
@@ -30,6 +29,7 @@ public class ImageSpheringTexture implements Texture, java.io.Serializable, Writ
     int ns, int nt, double reflectivity,
     double uOffset, double vOffset, double uScale, double vScale) {
     this.texture = texture;
+    this.mipmap = (texture == null) ? null : MipMap.of(texture);
     this.kd = kd;
     this.kr = kr;
     this.kt = kt;
@@ -55,7 +55,7 @@ public class ImageSpheringTexture implements Texture, java.io.Serializable, Writ
   
   @Override
   public LocalTexture getLocalTexture(Point3D p) {
-    if (texture == null) {
+    if (mipmap == null) {
       return new LocalTexture(kd, kr, kt, ns, nt);
     }
     
@@ -86,13 +86,7 @@ public class ImageSpheringTexture implements Texture, java.io.Serializable, Writ
     v = Math.max(0.0, Math.min(1.0, v));
     
     // Texture pixel
-    int x = (int) (u * (texture.getWidth() - 1));
-    int y = (int) (v * (texture.getHeight() - 1));
-    
-    x = Math.max(0, Math.min(texture.getWidth() - 1, x));
-    y = Math.max(0, Math.min(texture.getHeight() - 1, y));
-    
-    int argb = texture.getRGB(x, y);
+    int argb = mipmap.getTexel(0, u, v);
     int alpha = (argb >> 24) & 0xFF;
     
     // DEĞİŞEN KOD: KTV transparency kontrolü
@@ -129,6 +123,7 @@ public class ImageSpheringTexture implements Texture, java.io.Serializable, Writ
   
   public void setTexture(BufferedImage texture) {
     this.texture = texture;
+    this.mipmap = (texture == null) ? null : MipMap.of(texture);
   }
   
   // Offset ve Scale setter'ları
@@ -206,7 +201,7 @@ public class ImageSpheringTexture implements Texture, java.io.Serializable, Writ
     
     try {
       String imagePath = split[0].replaceAll("\"", "");
-      BufferedImage img = ImageIO.read(new File(imagePath));
+      BufferedImage img = TextureCache.getShared().load(imagePath).getImage();
       
       double kdR = Double.parseDouble(split[1]);
       double kdG = Double.parseDouble(split[2]);
@@ -1,19 +1,15 @@
 // Murat Inan
 package raja.material;
 
-import java.io.File;
 import java.io.IOException;
 import java.awt.image.BufferedImage;
-import java.awt.Graphics2D;
-import java.awt.geom.AffineTransform;
 import java.util.HashMap;
-import javax.imageio.ImageIO;
 
 import raja.*;
 import raja.shape.*;
 import raja.io.*;
 
-public class ImageTexture implements Texture, java.io.Serializable, Writable
+public class ImageTexture implements FillableTexture, java.io.Serializable, Writable
 {
   public String imagePath = "textures/turkeyFlag.png";
   
@@ -26,9 +22,10 @@ public class ImageTexture implements Texture, java.io.Serializable, Writable
   private double rotZ = 0.0;
   
   private BufferedImage texture;
-  private BufferedImage rotatedTexture; // Döndürülmüş texture cache'i
+  private transient MipMap mipmap; // Döndürülmüş texture'ın piramidi
   private RGB kd, kr, kt;
   private int ns, nt;
+  private LocalTexture plain, transparent;    // local textures where the image is missing or transparent
   private double uScale, vScale;
   
   // Ana constructor - tüm parametrelerle
@@ -46,6 +43,8 @@ public class ImageTexture implements Texture, java.io.Serializable, Writable
     this.kt = kt;
     this.ns = ns;
     this.nt = nt;
+    this.plain = new LocalTexture(kd, kr, kt, ns, nt);
+    this.transparent = new LocalTexture(kd, kr, new RGB(0.9, 0.9, 0.9), ns, nt);
     this.uScale = uScale;
     this.vScale = vScale;
     this.uOffset = uOffset;
@@ -73,48 +72,55 @@ public class ImageTexture implements Texture, java.io.Serializable, Writable
   
   // Texture rotation uygula
   private void applyRotation() {
-    if (texture == null || (rotX == 0.0 && rotY == 0.0 && rotZ == 0.0)) {
-      rotatedTexture = texture;
+    if (texture == null) {
+      mipmap = null;
       return;
     }
     
-    // Toplam rotation açısı (derece)
-    double totalRotation = rotZ; // Z-ekseni ana rotation
-    
-    // Rotation matrisi oluştur
-    AffineTransform transform = new AffineTransform();
-    
-    // Merkez etrafında döndür
-    transform.rotate(Math.toRadians(totalRotation),
-      texture.getWidth() / 2.0,
-    texture.getHeight() / 2.0);
-    
-    // Yeni image oluştur
-    rotatedTexture = new BufferedImage(texture.getWidth(), texture.getHeight(),
-    BufferedImage.TYPE_INT_ARGB); // ARGB type
-    Graphics2D g2d = rotatedTexture.createGraphics();
-    
-    // Önce tüm background'u transparent yap
-    g2d.setComposite(java.awt.AlphaComposite.Clear);
-    g2d.fillRect(0, 0, texture.getWidth(), texture.getHeight());
-    
-    // Sonra resmi çiz
-    g2d.setComposite(java.awt.AlphaComposite.SrcOver);
-    g2d.setTransform(transform);
-    g2d.drawImage(texture, 0, 0, null);
-    g2d.dispose();
+    mipmap = MipMap.of(texture);
+    if (rotX != 0.0 || rotY != 0.0 || rotZ != 0.0) {
+      // Z-ekseni ana rotation, aynı dosyanın aynı açısı paylaşılır
+      mipmap = TextureCache.getShared().rotate(mipmap, rotZ);
+    }
   }
   
   @Override
   public LocalTexture getLocalTexture(Point3D p)
   {
-    if (rotatedTexture == null) {
-      return new LocalTexture(kd, kr, kt, ns, nt);
+    if (mipmap == null) {
+      return plain;
     }
     
-    final int imgWidth = rotatedTexture.getWidth();
-    final int imgHeight = rotatedTexture.getHeight();
+    int argb = getColor(p);
+    if (((argb >> 24) & 0xFF) < 128) {
+      return transparent;
+      } else {
+      RGB textureColor = new RGB(((argb >> 16) & 0xFF)/255.0, ((argb >> 8) & 0xFF)/255.0, (argb & 0xFF)/255.0);
+      return new LocalTexture(textureColor, kr, kt, ns, nt);
+    }
+  }
+  
+  public LocalTexture getLocalTexture(Point3D p, LocalTexture result)
+  {
+    if (mipmap == null) {
+      return plain;
+    }
     
+    int argb = getColor(p);
+    if (((argb >> 24) & 0xFF) < 128) {
+      return transparent;
+      } else {
+      RGB textureColor = result.getKd().set(((argb >> 16) & 0xFF)/255.0, ((argb >> 8) & 0xFF)/255.0, (argb & 0xFF)/255.0);
+      return result.set(textureColor, kr, kt, ns, nt);
+    }
+  }
+  
+  /**
+   * Returns the filtered color of the image at <code>p</code>, as packed
+   * ARGB.
+   */
+  private int getColor(Point3D p)
+  {
     // UV koordinatlarını al
     double u = p.x;
     double v = p.y;
@@ -138,65 +144,17 @@ public class ImageTexture implements Texture, java.io.Serializable, Writable
     // V koordinatını flip et (image coordinate system için)
     v = 1.0 - v;
     
-    // BİLİNEAR FILTERING
-    double x = u * (imgWidth - 1);
-    double y = v * (imgHeight - 1);
-    
-    int x0 = (int) Math.floor(x);
-    int y0 = (int) Math.floor(y);
-    int x1 = (int) Math.ceil(x);
-    int y1 = (int) Math.ceil(y);
-    
-    // Wrap coordinates
-    x0 = wrapCoordinate(x0, imgWidth);
-    y0 = wrapCoordinate(y0, imgHeight);
-    x1 = wrapCoordinate(x1, imgWidth);
-    y1 = wrapCoordinate(y1, imgHeight);
-    
-    // Renkleri al ve interpolate et
-    int argb00 = rotatedTexture.getRGB(x0, y0);
-    int argb10 = rotatedTexture.getRGB(x1, y0);
-    int argb01 = rotatedTexture.getRGB(x0, y1);
-    int argb11 = rotatedTexture.getRGB(x1, y1);
-    
-    // Bilinear interpolation
-    double tx = x - x0;
-    double ty = y - y0;
-    
-    int red = bilinearInterpolate(
-      (argb00 >> 16) & 0xFF, (argb10 >> 16) & 0xFF,
-    (argb01 >> 16) & 0xFF, (argb11 >> 16) & 0xFF, tx, ty);
-    int green = bilinearInterpolate(
-      (argb00 >> 8) & 0xFF, (argb10 >> 8) & 0xFF,
-    (argb01 >> 8) & 0xFF, (argb11 >> 8) & 0xFF, tx, ty);
-    int blue = bilinearInterpolate(
-      argb00 & 0xFF, argb10 & 0xFF,
-    argb01 & 0xFF, argb11 & 0xFF, tx, ty);
-    int alpha = bilinearInterpolate(
-      (argb00 >> 24) & 0xFF, (argb10 >> 24) & 0xFF,
-    (argb01 >> 24) & 0xFF, (argb11 >> 24) & 0xFF, tx, ty);
-    
-    if (alpha < 128) {
-      return new LocalTexture(kd, kr, new RGB(0.9, 0.9, 0.9), ns, nt);
-      } else {
-      RGB textureColor = new RGB(red/255.0, green/255.0, blue/255.0);
-      return new LocalTexture(textureColor, kr, kt, ns, nt);
+    // Level of the pyramid whose pixels are as wide as the pixel footprint
+    double level = 0;
+    if (p instanceof TexturedLocalGeometry) {
+      double footprint = ((TexturedLocalGeometry) p).getFootprint();
+      double texels = footprint * Math.max(Math.abs(tileSizeU * uScale) * (mipmap.getWidth() - 1),
+      Math.abs(tileSizeV * vScale) * (mipmap.getHeight() - 1));
+      level = MipMap.level(texels);
     }
-  }
-  
-  // Diğer projedeki wrapCoordinate methodu
-  private int wrapCoordinate(int coord, int max) {
-    if (coord < 0) return max - 1 - ((-coord - 1) % max);
-    return coord % max;
-  }
-  
-  // Diğer projedeki bilinear interpolation
-  private int bilinearInterpolate(int c00, int c10, int c01, int c11, double tx, double ty) {
-    double a = c00 * (1 - tx) * (1 - ty);
-    double b = c10 * tx * (1 - ty);
-    double c = c01 * (1 - tx) * ty;
-    double d = c11 * tx * ty;
-    return (int) (a + b + c + d);
+    
+    // TRILINEAR FILTERING
+    return mipmap.getColor(u, v, level);
   }
   
   public static Object build(ObjectReader reader) throws java.io.IOException {
@@ -322,7 +280,7 @@ public class ImageTexture implements Texture, java.io.Serializable, Writable
       String tstr = split[0];
       tstr = tstr.trim();
       tstr = tstr.replaceAll("\"", "");
-      BufferedImage timg = ImageIO.read(new File(tstr));
+      BufferedImage timg = TextureCache.getShared().load(tstr).getImage();
       
       double c1r = Double.parseDouble(split[1]);
       double c1g = Double.parseDouble(split[2]);
@@ -6,8 +6,9 @@ import raja.shape.*;
 import raja.io.*;
 import java.util.HashMap;
 
-public class LambertianTexture implements Texture, java.io.Serializable, Writable {
+public class LambertianTexture implements ConstantTexture, java.io.Serializable, Writable {
   private RGB albedo;
+  private LocalTexture localTexture;
   
   public LambertianTexture() {
     this(new RGB(0.7, 0.7, 0.7));
@@ -15,12 +16,9 @@ public class LambertianTexture implements Texture, java.io.Serializable, Writabl
   
   public LambertianTexture(RGB albedo) {
     this.albedo = albedo;
-  }
-  
-  @Override
-  public LocalTexture getLocalTexture(Point3D p) {
+    
     // Tamamen diffuse, tamamen mat
-    return new LocalTexture(
+    this.localTexture = new LocalTexture(
       albedo,
       albedo.multiply(0.1),  // minimal ambient
       new RGB(0, 0, 0),      // NO specular
@@ -29,6 +27,11 @@ public class LambertianTexture implements Texture, java.io.Serializable, Writabl
     );
   }
   
+  @Override
+  public LocalTexture getLocalTexture(Point3D p) {
+    return localTexture;
+  }
+  
   // --- IO ---
   public static Object build(ObjectReader reader) throws java.io.IOException {
     HashMap<String, Object> map = new HashMap<>();
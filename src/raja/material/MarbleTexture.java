@@ -4,10 +4,11 @@ package raja.material;
 import raja.*;
 import raja.shape.*;
 import raja.io.*;
+import raja.material.noise.Noise;
 
 import java.util.HashMap;
 
-public class MarbleTexture implements Texture, java.io.Serializable, Writable {
+public class MarbleTexture implements FillableTexture, java.io.Serializable, Writable {
   private RGB veinColor;
   private RGB baseColor;
   private double scale;
@@ -18,6 +19,7 @@ public class MarbleTexture implements Texture, java.io.Serializable, Writable {
   private static final double AMBIENT_FACTOR = 0.3;
   private static final double SPECULAR_FACTOR = 0.7;
   private static final RGB SPECULAR_COLOR = new RGB(1.0, 1.0, 1.0);
+  private static final RGB SPECULAR = SPECULAR_COLOR.multiply(SPECULAR_FACTOR);
   private static final int REFLECTIVITY = 4;
   private static final int SHININESS = 200;
   
@@ -41,57 +43,41 @@ public class MarbleTexture implements Texture, java.io.Serializable, Writable {
   
   @Override
   public LocalTexture getLocalTexture(Point3D p) {
+    return getLocalTexture(p, new LocalTexture());
+  }
+  
+  @Override
+  public LocalTexture getLocalTexture(Point3D p, LocalTexture result) {
     double u = p.x * scale;
     double v = p.y * scale;
     double w = p.z * scale;
     
-    // Turbulence (simple noise approximation)
-    double t = turbulence(u, v, w);
+    // Turbulence of the gradient noise, octaves turbulenceScale times finer
+    double t = 3.0 * Noise.turbulence(u, v, w, turbulenceLayers, turbulenceScale, 1.0 / turbulenceScale);
     
     // Sinus wave + turbulence -> veines
     double marble = Math.sin(u + t) * 0.5 + 0.5;
     
-    // clear veines
-    RGB color;
+    // clear veines, computed into the coefficients of result
+    RGB color = result.getKd();
     if (marble < 0.3) {
-      color = veinColor;
+      color.set(veinColor);
       } else if (marble < 0.7) {
       double blend = (marble - 0.3) / 0.4;
-      color = RGB.interpolate(veinColor, baseColor, blend);
+      color.set(veinColor).interpolateInPlace(baseColor, blend);
       } else {
-      color = baseColor;
+      color.set(baseColor);
     }
     
-    return new LocalTexture(
+    return result.set(
       color,
-      color.multiply(AMBIENT_FACTOR),
-      SPECULAR_COLOR.multiply(SPECULAR_FACTOR),
+      result.getKrl().set(color).scaleInPlace(AMBIENT_FACTOR),
+      SPECULAR,
       SHININESS,
       REFLECTIVITY
     );
   }
   
-  private double turbulence(double x, double y, double z) {
-    double value = 0.0;
-    double scale = 1.0;
-    for (int i = 0; i < turbulenceLayers; i++) {
-      value += noise(x * scale, y * scale, z * scale) / scale;
-      scale *= turbulenceScale;
-    }
-    return value;
-  }
-  
-  //Simple noise function
-  private double noise(double x, double y, double z) {
-    int X = (int) Math.floor(x) & 255;
-    int Y = (int) Math.floor(y) & 255;
-    int Z = (int) Math.floor(z) & 255;
-    
-    // Deterministic "random" value
-    long hash = (X * 73856093L) ^ (Y * 19349663L) ^ (Z * 83492791L);
-    return (double)(hash % 256) / 256.0;
-  }
-  
   // --- IO Support ---
   public static Object build(ObjectReader reader) throws java.io.IOException {
     HashMap<String, Object> map = new HashMap<>();
@@ -9,11 +9,12 @@ import raja.*;
 import raja.shape.*;
 import raja.io.*;
 
-public class MetalTexture implements Texture, java.io.Serializable, Writable
+public class MetalTexture implements ConstantTexture, java.io.Serializable, Writable
 {
   private RGB kd, kr, kt;
   private int ns, nt;
   private double step, x0, y0;
+  private LocalTexture localTexture;
   
   // Ana constructor - metal rengi ve özellikleri ile
   public MetalTexture(RGB metalColor, double reflectivity, double shininess)
@@ -31,6 +32,8 @@ public class MetalTexture implements Texture, java.io.Serializable, Writable
     this.step = 0.5;
     this.x0 = 0.0;
     this.y0 = 0.0;
+    
+    this.localTexture = new LocalTexture(kd, kr, kt, ns, nt);
   }
   
   // Basit constructor - sadece metal rengi
@@ -50,6 +53,7 @@ public class MetalTexture implements Texture, java.io.Serializable, Writable
     this.step = step;
     this.x0 = x0;
     this.y0 = y0;
+    this.localTexture = new LocalTexture(kd, kr, kt, ns, nt);
   }
   
   // Predefined metal types - kolay kullanım için static factory methods
@@ -130,7 +134,7 @@ public class MetalTexture implements Texture, java.io.Serializable, Writable
   public LocalTexture getLocalTexture(Point3D p)
   {
     // TAMAMEN DÜZ METAL
-    return new LocalTexture(kd, kr, kt, ns, nt);
+    return localTexture;
   }
   
   // ADDED by Murat Inan
@@ -0,0 +1,286 @@
+package raja.material;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+
+/**
+ * An image decoded once into packed ARGB pixels, with its reductions by
+ * two down to a single pixel.  Textures look up pixels in the arrays
+ * directly, instead of going through the color model of a
+ * <code>BufferedImage</code> for every sample, and pick the reduction
+ * matching the footprint of the ray so that distant textures do not
+ * alias.
+ * <p>
+ * Reductions average the colors weighted by their alpha, so that
+ * transparent pixels do not darken the opaque ones next to them.
+ * <p>
+ * Textures built on the same image share the same pyramid, and
+ * {@link TextureCache} shares the pyramids of image files.
+ */
+public class MipMap
+{
+  private static final double LN2 = Math.log(2);
+
+  // image -> pyramid built from it
+  private static final WeakHashMap images = new WeakHashMap();
+
+  private int[][] levels;
+  private int[] widths;
+  private int[] heights;
+  private BufferedImage image;
+
+  // Key of this pyramid in the TextureCache, or null
+  String key;
+
+  MipMap(BufferedImage source)
+  {
+    int w = source.getWidth();
+    int h = source.getHeight();
+
+    int count = 1;
+    while ((w >> count) > 0 || (h >> count) > 0)
+    {
+      count++;
+    }
+
+    levels = new int[count][];
+    widths = new int[count];
+    heights = new int[count];
+
+    widths[0] = w;
+    heights[0] = h;
+    levels[0] = source.getRGB(0, 0, w, h, null, 0, w);
+
+    for (int l = 1 ; l < count ; l++)
+    {
+      widths[l] = Math.max(1, widths[l-1] >> 1);
+      heights[l] = Math.max(1, heights[l-1] >> 1);
+      levels[l] = reduce(levels[l-1], widths[l-1], heights[l-1], widths[l], heights[l]);
+    }
+  }
+
+  /**
+   * Averages 2x2 blocks of <code>src</code>, repeating the last column or
+   * row of images of odd size.
+   */
+  private static int[] reduce(int[] src, int sw, int sh, int w, int h)
+  {
+    int[] dst = new int[w * h];
+
+    for (int y = 0 ; y < h ; y++)
+    {
+      int y0 = Math.min(2 * y, sh - 1) * sw;
+      int y1 = Math.min(2 * y + 1, sh - 1) * sw;
+
+      for (int x = 0 ; x < w ; x++)
+      {
+        int x0 = Math.min(2 * x, sw - 1);
+        int x1 = Math.min(2 * x + 1, sw - 1);
+        int[] block = { src[y0 + x0], src[y0 + x1], src[y1 + x0], src[y1 + x1] };
+
+        int a = 0, r = 0, g = 0, b = 0;
+        for (int k = 0 ; k < 4 ; k++)
+        {
+          int alpha = block[k] >>> 24;
+          a += alpha;
+          r += alpha * ((block[k] >> 16) & 0xFF);
+          g += alpha * ((block[k] >> 8) & 0xFF);
+          b += alpha * (block[k] & 0xFF);
+        }
+
+        if (a == 0) {
+          dst[y * w + x] = 0;
+        }
+        else {
+          dst[y * w + x] = (((a + 2) / 4) << 24) | ((r / a) << 16) | ((g / a) << 8) | (b / a);
+        }
+      }
+    }
+    return dst;
+  }
+
+  /**
+   * Returns the pyramid of <code>image</code>, which is built the first
+   * time and then shared by all the textures using this image.
+   */
+  public static MipMap of(BufferedImage image)
+  {
+    synchronized(images) {
+      WeakReference ref = (WeakReference) images.get(image);
+      MipMap mipmap = (ref == null) ? null : (MipMap) ref.get();
+      if (mipmap == null) {
+        mipmap = new MipMap(image);
+        images.put(image, new WeakReference(mipmap));
+      }
+      return mipmap;
+    }
+  }
+
+  /**
+   * Returns an image of the full resolution pixels.  The image shares the
+   * pixels of this pyramid, so it must not be modified.
+   */
+  public BufferedImage getImage()
+  {
+    synchronized(images) {
+      if (image == null) {
+        DirectColorModel cm = (DirectColorModel) ColorModel.getRGBdefault();
+        WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(levels[0], levels[0].length),
+        widths[0], heights[0], widths[0], cm.getMasks(), null);
+        image = new BufferedImage(cm, raster, false, null);
+        images.put(image, new WeakReference(this));
+      }
+      return image;
+    }
+  }
+
+  /**
+   * Returns the pyramid of the image turned by <code>degrees</code> around
+   * its center.  The corners uncovered by the image are transparent.
+   */
+  MipMap rotate(double degrees)
+  {
+    int w = widths[0];
+    int h = heights[0];
+
+    AffineTransform transform = new AffineTransform();
+    transform.rotate(Math.toRadians(degrees), w / 2.0, h / 2.0);
+
+    BufferedImage rotated = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g2d = rotated.createGraphics();
+    g2d.setComposite(AlphaComposite.Clear);
+    g2d.fillRect(0, 0, w, h);
+    g2d.setComposite(AlphaComposite.SrcOver);
+    g2d.setTransform(transform);
+    g2d.drawImage(getImage(), 0, 0, null);
+    g2d.dispose();
+
+    return new MipMap(rotated);
+  }
+
+  public int getWidth()
+  {
+    return widths[0];
+  }
+  public int getHeight()
+  {
+    return heights[0];
+  }
+
+  /**
+   * Returns the number of bytes taken by the pixels of all the levels.
+   */
+  public long getByteSize()
+  {
+    long size = 0;
+    for (int l = 0 ; l < levels.length ; l++)
+    {
+      size += 4L * levels[l].length;
+    }
+    return size;
+  }
+
+  /**
+   * Returns the number of levels, from the full resolution image (level 0)
+   * to the single pixel one.
+   */
+  public int getLevelCount()
+  {
+    return levels.length;
+  }
+
+  /**
+   * Returns the level at which one pixel covers <code>texels</code> pixels
+   * of the full resolution image.
+   */
+  public static double level(double texels)
+  {
+    return (texels > 1) ? Math.log(texels) / LN2 : 0;
+  }
+
+  /**
+   * Returns the pixel of level <code>level</code> nearest to
+   * (<code>u</code>, <code>v</code>), both between 0 and 1, as packed ARGB.
+   */
+  public int getTexel(int level, double u, double v)
+  {
+    level = Math.max(0, Math.min(levels.length - 1, level));
+    int w = widths[level];
+    int h = heights[level];
+
+    int x = Math.max(0, Math.min(w - 1, (int) (u * (w - 1))));
+    int y = Math.max(0, Math.min(h - 1, (int) (v * (h - 1))));
+    return levels[level][y * w + x];
+  }
+
+  /**
+   * Returns the color at (<code>u</code>, <code>v</code>), both between 0
+   * and 1, as packed ARGB, interpolated between the pixels of the two
+   * levels around <code>level</code>.
+   */
+  public int getColor(double u, double v, double level)
+  {
+    if (level <= 0) {
+      return bilinear(0, u, v);
+    }
+
+    int l0 = (int) level;
+    if (l0 >= levels.length - 1) {
+      return bilinear(levels.length - 1, u, v);
+    }
+
+    double t = level - l0;
+    int c0 = bilinear(l0, u, v);
+    int c1 = bilinear(l0 + 1, u, v);
+    return (lerp(c0 >>> 24, c1 >>> 24, t) << 24) |
+    (lerp((c0 >> 16) & 0xFF, (c1 >> 16) & 0xFF, t) << 16) |
+    (lerp((c0 >> 8) & 0xFF, (c1 >> 8) & 0xFF, t) << 8) |
+    lerp(c0 & 0xFF, c1 & 0xFF, t);
+  }
+
+  private int bilinear(int level, double u, double v)
+  {
+    int w = widths[level];
+    int h = heights[level];
+    int[] pixels = levels[level];
+
+    double x = Math.max(0, Math.min(w - 1, u * (w - 1)));
+    double y = Math.max(0, Math.min(h - 1, v * (h - 1)));
+    int x0 = (int) x;
+    int y0 = (int) y;
+    int x1 = (x0 < x) ? x0 + 1 : x0;
+    int y1 = (y0 < y) ? y0 + 1 : y0;
+    double tx = x - x0;
+    double ty = y - y0;
+
+    int c00 = pixels[y0 * w + x0];
+    int c10 = pixels[y0 * w + x1];
+    int c01 = pixels[y1 * w + x0];
+    int c11 = pixels[y1 * w + x1];
+
+    return (interpolate(c00 >>> 24, c10 >>> 24, c01 >>> 24, c11 >>> 24, tx, ty) << 24) |
+    (interpolate((c00 >> 16) & 0xFF, (c10 >> 16) & 0xFF, (c01 >> 16) & 0xFF, (c11 >> 16) & 0xFF, tx, ty) << 16) |
+    (interpolate((c00 >> 8) & 0xFF, (c10 >> 8) & 0xFF, (c01 >> 8) & 0xFF, (c11 >> 8) & 0xFF, tx, ty) << 8) |
+    interpolate(c00 & 0xFF, c10 & 0xFF, c01 & 0xFF, c11 & 0xFF, tx, ty);
+  }
+
+  private static int interpolate(int c00, int c10, int c01, int c11, double tx, double ty)
+  {
+    return (int) ((c00 * (1 - tx) * (1 - ty)) + (c10 * tx * (1 - ty)) + (c01 * (1 - tx) * ty) + (c11 * tx * ty));
+  }
+
+  private static int lerp(int c0, int c1, double t)
+  {
+    return (int) (c0 + (c1 - c0) * t + 0.5);
+  }
+}
@@ -5,10 +5,11 @@ import raja.io.*;
 import raja.shape.*;
 import java.util.HashMap;
 
-public class PlasticTexture implements Texture, java.io.Serializable, Writable {
+public class PlasticTexture implements ConstantTexture, java.io.Serializable, Writable {
   private RGB plasticColor;
   private double shininess;
   private double glossiness;
+  private LocalTexture localTexture;
   
   // Default constructor
   public PlasticTexture() {
@@ -20,12 +21,9 @@ public class PlasticTexture implements Texture, java.io.Serializable, Writable {
     this.plasticColor = plasticColor;
     this.shininess = shininess;
     this.glossiness = glossiness;
-  }
-  
-  @Override
-  public LocalTexture getLocalTexture(Point3D p) {
+    
     // Simple plastic material with specular highlights
-    return new LocalTexture(
+    this.localTexture = new LocalTexture(
       plasticColor,
       plasticColor.multiply(0.3),
       new RGB(glossiness, glossiness, glossiness),
@@ -34,6 +32,11 @@ public class PlasticTexture implements Texture, java.io.Serializable, Writable {
     );
   }
   
+  @Override
+  public LocalTexture getLocalTexture(Point3D p) {
+    return localTexture;
+  }
+  
   public static Object build(ObjectReader reader) throws java.io.IOException {
     HashMap<String, Object> map = new HashMap<>();
     map.put("plasticColor", new RGB(0.8, 0.8, 0.8));
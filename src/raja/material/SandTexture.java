@@ -3,14 +3,17 @@ package raja.material;
 import raja.*;
 import raja.io.*;
 import raja.shape.*;
+import raja.material.noise.Noise;
 import java.util.HashMap;
 
-public class SandTexture implements Texture, java.io.Serializable, Writable {
+public class SandTexture implements FillableTexture, java.io.Serializable, Writable {
   private RGB baseSandColor;
   private RGB darkSandColor;
   private double grainSize;
   private double roughness;
   
+  private static final RGB SPECULAR = new RGB(0.1, 0.1, 0.1);
+  
   // Default constructor
   public SandTexture() {
     this(new RGB(0.76, 0.70, 0.50),   // Light sand color
@@ -29,29 +32,29 @@ public class SandTexture implements Texture, java.io.Serializable, Writable {
   
   @Override
   public LocalTexture getLocalTexture(Point3D p) {
-    // Simple noise-like sand pattern
-    double noise = improvedNoise(p.x * 10, p.y * 10, p.z * 10);
-    double grainPattern = Math.sin(p.x * 100 * grainSize) * Math.cos(p.y * 100 * grainSize);
+    return getLocalTexture(p, new LocalTexture());
+  }
+  
+  @Override
+  public LocalTexture getLocalTexture(Point3D p, LocalTexture result) {
+    // Dunes of fractal noise, and grains of fine noise
+    double noise = Noise.fbm(p.x * 10, p.y * 10, p.z * 10, 4, 2.0, 0.5);
+    double grainPattern = Noise.noise(p.x * 100 * grainSize, p.y * 100 * grainSize, p.z * 100 * grainSize);
     
-    RGB surfaceColor = interpolateColor(baseSandColor, darkSandColor, (noise + grainPattern) * 0.5);
+    RGB surfaceColor = interpolateColor(baseSandColor, darkSandColor, (noise + grainPattern) * 0.5, result.getKd());
     
-    return new LocalTexture(
+    return result.set(
       surfaceColor,
-      surfaceColor.multiply(0.5),  // High ambient - soft shadows
-      new RGB(0.1, 0.1, 0.1),      // Low specular
+      result.getKrl().set(surfaceColor).scaleInPlace(0.5),  // High ambient - soft shadows
+      SPECULAR,                    // Low specular
       5,                           // Low shininess
       1
     );
   }
   
-  private double improvedNoise(double x, double y, double z) {
-    // Simple perlin noise-like function
-    return (Math.sin(x * 12.9898 + y * 78.233 + z * 45.164) * 43758.5453) % 1.0;
-  }
-  
-  private RGB interpolateColor(RGB color1, RGB color2, double factor) {
+  private RGB interpolateColor(RGB color1, RGB color2, double factor, RGB result) {
     factor = Math.max(0, Math.min(1, (factor + 1) * 0.5));
-    return new RGB(
+    return result.set(
       color1.getR() * (1 - factor) + color2.getR() * factor,
       color1.getG() * (1 - factor) + color2.getG() * factor,
       color1.getB() * (1 - factor) + color2.getB() * factor
@@ -3,17 +3,26 @@ package raja.material;
 import raja.*;
 import raja.io.*;
 import raja.shape.*;
+import raja.material.noise.Noise;
 import java.util.HashMap;
 
 public class StormTexture implements Texture, java.io.Serializable, Writable {
   private double time = 0.0;
   
+  private static final RGB KR = new RGB(0.1, 0.1, 0.2);
+  private static final RGB NO_LIGHTNING = new RGB(0.0, 0.0, 0.0);
+  private static final RGB LIGHTNING = new RGB(0.8, 0.9, 1.0);
+  
   public StormTexture() {}
   
   @Override
   public LocalTexture getLocalTexture(Point3D p) {
-    double cloud = Math.sin(time + p.x * 2 + p.y * 3) * 0.2;
-    double lightning = Math.random() > 0.98 ? 1.0 : 0.0;
+    // Clouds drifting with time
+    double cloud = Noise.noise(p.x * 2, p.y * 3, p.z * 2 + time) * 0.2;
+    
+    // Lightning flickers on a few points at random, but the same ones in
+    // every rendering of the same time
+    boolean lightning = Noise.pointHash(p.x, p.y, p.z + time) > 0.98;
     
     RGB stormColor = new RGB(
       0.3 + cloud * 0.1,
@@ -21,16 +30,10 @@ public class StormTexture implements Texture, java.io.Serializable, Writable {
       0.4 + cloud * 0.1
     );
     
-    RGB emissive = new RGB(
-      lightning * 0.8,
-      lightning * 0.9,
-      lightning * 1.0
-    );
-    
     return new LocalTexture(
       stormColor,
-      new RGB(0.1, 0.1, 0.2),
-      emissive,
+      KR,
+      lightning ? LIGHTNING : NO_LIGHTNING,
       30, 10
     );
   }
@@ -0,0 +1,215 @@
+package raja.material;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.imageio.ImageIO;
+
+
+/**
+ * A cache of the texture images read from files, so that textures loading
+ * the same file share a single decoded {@link MipMap}, and textures
+ * turning it by the same angle share a single rotated one.
+ * <p>
+ * Images are identified by their canonical path and the modification
+ * time of the file, so that a file that changed is read again.  The cache
+ * holds at most a given number of bytes of pixels, and forgets the least
+ * recently used images beyond; textures keep the images they use anyway.
+ */
+public class TextureCache
+{
+  public static final long DEFAULT_MAX_SIZE = 256L << 20;   // 256 MB
+
+  private static final TextureCache shared = new TextureCache(DEFAULT_MAX_SIZE);
+
+  private LinkedHashMap entries;    // key -> MipMap, least recently used first
+  private long maxSize;
+  private long size;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * Creates a cache holding at most <code>maxSize</code> bytes of pixels.
+   */
+  public TextureCache(long maxSize)
+  {
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("maxSize < 0");
+    }
+    this.maxSize = maxSize;
+    entries = new LinkedHashMap(16, 0.75f, true);
+  }
+
+  /**
+   * Returns the cache shared by the textures of this process.
+   */
+  public static TextureCache getShared()
+  {
+    return shared;
+  }
+
+  /**
+   * Returns the image of a file, which is read only if it is not in the
+   * cache.
+   */
+  public MipMap load(String path) throws IOException
+  {
+    File file = new File(path).getCanonicalFile();
+    if (! file.isFile()) {
+      throw new IOException("no such file: " + path);
+    }
+
+    String key = file.getPath() + "@" + file.lastModified();
+    MipMap mipmap = get(key);
+    if (mipmap != null) {
+      return mipmap;
+    }
+
+    BufferedImage image = ImageIO.read(file);
+    if (image == null) {
+      throw new IOException("unknown image format: " + path);
+    }
+    return put(key, new MipMap(image));
+  }
+
+  /**
+   * Returns <code>mipmap</code> turned by <code>degrees</code> around its
+   * center.  Only the rotations of images read by this cache are kept.
+   */
+  public MipMap rotate(MipMap mipmap, double degrees)
+  {
+    if (mipmap.key == null) {
+      return mipmap.rotate(degrees);
+    }
+
+    String key = mipmap.key + " rotated " + degrees;
+    MipMap rotated = get(key);
+    if (rotated != null) {
+      return rotated;
+    }
+    return put(key, mipmap.rotate(degrees));
+  }
+
+  private synchronized MipMap get(String key)
+  {
+    MipMap mipmap = (MipMap) entries.get(key);
+    if (mipmap != null) {
+      hits++;
+    }
+    else {
+      misses++;
+    }
+    return mipmap;
+  }
+
+  /**
+   * Adds an image read outside of the lock, unless another thread added
+   * the same one meanwhile.
+   */
+  private synchronized MipMap put(String key, MipMap mipmap)
+  {
+    MipMap previous = (MipMap) entries.get(key);
+    if (previous != null) {
+      return previous;
+    }
+
+    mipmap.key = key;
+    entries.put(key, mipmap);
+    size += mipmap.getByteSize();
+    evict();
+    return mipmap;
+  }
+
+  private void evict()
+  {
+    Iterator iter = entries.entrySet().iterator();
+    while ((size > maxSize) && iter.hasNext())
+    {
+      MipMap mipmap = (MipMap) ((Map.Entry) iter.next()).getValue();
+      iter.remove();
+      size -= mipmap.getByteSize();
+      evictions++;
+    }
+  }
+
+  /**
+   * Sets the number of bytes of pixels the cache holds at most, and
+   * forgets the least recently used images beyond.
+   */
+  public synchronized void setMaxSize(long maxSize)
+  {
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("maxSize < 0");
+    }
+    this.maxSize = maxSize;
+    evict();
+  }
+
+  public synchronized long getMaxSize()
+  {
+    return maxSize;
+  }
+
+  /**
+   * Returns the number of bytes of pixels in the cache.
+   */
+  public synchronized long getSize()
+  {
+    return size;
+  }
+
+  /**
+   * Returns the number of images in the cache, rotations included.
+   */
+  public synchronized int getCount()
+  {
+    return entries.size();
+  }
+
+  /**
+   * Returns the number of images found in the cache.
+   */
+  public synchronized long getHits()
+  {
+    return hits;
+  }
+
+  /**
+   * Returns the number of images that had to be read or turned.
+   */
+  public synchronized long getMisses()
+  {
+    return misses;
+  }
+
+  /**
+   * Returns the number of images forgotten to keep the cache within its
+   * maximum size.
+   */
+  public synchronized long getEvictions()
+  {
+    return evictions;
+  }
+
+  /**
+   * Forgets all the images, and resets the statistics.
+   */
+  public synchronized void clear()
+  {
+    entries.clear();
+    size = 0;
+    hits = 0;
+    misses = 0;
+    evictions = 0;
+  }
+
+  public synchronized String toString()
+  {
+    return "TextureCache[" + entries.size() + " images, " + (size >> 10) + "/" + (maxSize >> 10) + " KB, " +
+    hits + " hits, " + misses + " misses, " + evictions + " evictions]";
+  }
+}
@@ -1,13 +1,9 @@
 // Murat Inan
 package raja.material;
 
-import java.io.File;
 import java.io.IOException;
 import java.awt.image.BufferedImage;
-import java.awt.Graphics2D;
-import java.awt.geom.AffineTransform;
 import java.util.HashMap;
-import javax.imageio.ImageIO;
 
 import raja.*;
 import raja.shape.*;
@@ -22,7 +18,7 @@ public class TransparentPNGTexture implements Texture, java.io.Serializable, Wri
   private String imagePath="textures/turkeyFlag.png";
   
   private BufferedImage texture;
-  private BufferedImage rotatedTexture; // Döndürülmüş texture cache'i
+  private transient MipMap mipmap; // Döndürülmüş texture'ın piramidi
   private RGB kd, kr, kt;
   private final double KTV; //0.0-1.0 (and 1.0 is full transparen)
   private int ns, nt;
@@ -76,36 +72,16 @@ public class TransparentPNGTexture implements Texture, java.io.Serializable, Wri
   
   // Texture rotation uygula
   private void applyRotation() {
-    if (texture == null || (rotX == 0.0 && rotY == 0.0 && rotZ == 0.0)) {
-      rotatedTexture = texture;
+    if (texture == null) {
+      mipmap = null;
       return;
     }
     
-    // Toplam rotation açısı (derece)
-    double totalRotation = rotZ; // Z-ekseni ana rotation
-    
-    // Rotation matrisi oluştur
-    AffineTransform transform = new AffineTransform();
-    
-    // Merkez etrafında döndür
-    transform.rotate(Math.toRadians(totalRotation),
-      texture.getWidth() / 2.0,
-    texture.getHeight() / 2.0);
-    
-    // Yeni image oluştur - ARGB type
-    rotatedTexture = new BufferedImage(texture.getWidth(), texture.getHeight(),
-    BufferedImage.TYPE_INT_ARGB);
-    Graphics2D g2d = rotatedTexture.createGraphics();
-    
-    // Önce tüm background'u transparent yap
-    g2d.setComposite(java.awt.AlphaComposite.Clear);
-    g2d.fillRect(0, 0, texture.getWidth(), texture.getHeight());
-    
-    // Sonra resmi çiz
-    g2d.setComposite(java.awt.AlphaComposite.SrcOver);
-    g2d.setTransform(transform);
-    g2d.drawImage(texture, 0, 0, null);
-    g2d.dispose();
+    mipmap = MipMap.of(texture);
+    if (rotX != 0.0 || rotY != 0.0 || rotZ != 0.0) {
+      // Z-ekseni ana rotation, aynı dosyanın aynı açısı paylaşılır
+      mipmap = TextureCache.getShared().rotate(mipmap, rotZ);
+    }
   }
   
   public void setBillboardDimensions(double width, double height) {
@@ -124,9 +100,7 @@ public class TransparentPNGTexture implements Texture, java.io.Serializable, Wri
   @Override
   public LocalTexture getLocalTexture(Point3D p)
   {
-    BufferedImage currentTexture = (rotatedTexture != null) ? rotatedTexture : texture;
-    
-    if (currentTexture == null || billboardWidth <= 0 || billboardHeight <= 0) {
+    if (mipmap == null || billboardWidth <= 0 || billboardHeight <= 0) {
       return new LocalTexture(kd, kr, kt, ns, nt);
     }
     
@@ -159,13 +133,16 @@ public class TransparentPNGTexture implements Texture, java.io.Serializable, Wri
     u = Math.max(0.0, Math.min(1.0, u));
     v = Math.max(0.0, Math.min(1.0, v));
     
-    int px = (int) (u * (currentTexture.getWidth() - 1));
-    int py = (int) (v * (currentTexture.getHeight() - 1));
-    
-    px = Math.max(0, Math.min(currentTexture.getWidth() - 1, px));
-    py = Math.max(0, Math.min(currentTexture.getHeight() - 1, py));
+    // Level of the pyramid whose pixels are as wide as the pixel footprint
+    double level = 0;
+    if (p instanceof TexturedLocalGeometry) {
+      double footprint = ((TexturedLocalGeometry) p).getFootprint();
+      level = MipMap.level(footprint * Math.max((mipmap.getWidth() - 1) / billboardWidth,
+      (mipmap.getHeight() - 1) / billboardHeight));
+    }
     
-    int argb = currentTexture.getRGB(px, py);
+    // Magnified pixels stay sharp, reduced ones are filtered
+    int argb = (level > 0) ? mipmap.getColor(u, v, level) : mipmap.getTexel(0, u, v);
     int alpha = (argb >> 24) & 0xFF;
     
     // ÖBÜR PROJEDEKİ GİBİ: alpha < 5 ise TAMAMEN TRANSPARENT
@@ -296,7 +273,7 @@ public class TransparentPNGTexture implements Texture, java.io.Serializable, Wri
       String tstr = split[0];
       tstr = tstr.trim();
       tstr = tstr.replaceAll("\"", "");
-      BufferedImage timg = ImageIO.read(new File(tstr));
+      BufferedImage timg = TextureCache.getShared().load(tstr).getImage();
       
       double c1r = Double.parseDouble(split[1]);
       double c1g = Double.parseDouble(split[2]);
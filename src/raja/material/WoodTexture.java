@@ -4,10 +4,11 @@ package raja.material;
 import raja.*;
 import raja.shape.*;
 import raja.io.*;
+import raja.material.noise.Noise;
 
 import java.util.HashMap;
 
-public class WoodTexture implements Texture, java.io.Serializable, Writable {
+public class WoodTexture implements FillableTexture, java.io.Serializable, Writable {
   private RGB baseColor;
   private RGB ringColor;
   private double scale;
@@ -17,6 +18,7 @@ public class WoodTexture implements Texture, java.io.Serializable, Writable {
   private static final double AMBIENT_FACTOR = 0.3;
   private static final double SPECULAR_FACTOR = 0.2;
   private static final RGB SPECULAR_COLOR = new RGB(0.9, 0.9, 0.9);
+  private static final RGB SPECULAR = SPECULAR_COLOR.multiply(SPECULAR_FACTOR);
   private static final int REFLECTIVITY = 1;
   private static final int SHININESS = 30;
   
@@ -38,6 +40,11 @@ public class WoodTexture implements Texture, java.io.Serializable, Writable {
   
   @Override
   public LocalTexture getLocalTexture(Point3D p) {
+    return getLocalTexture(p, new LocalTexture());
+  }
+  
+  @Override
+  public LocalTexture getLocalTexture(Point3D p, LocalTexture result) {
     // Use XY plane for standard wood flooring or paneling
     double u = p.x * scale;
     double v = p.y * scale;
@@ -51,32 +58,33 @@ public class WoodTexture implements Texture, java.io.Serializable, Writable {
     // Annual rings: sine wave along radial direction
     double rings = Math.sin(radial * 2.0 * Math.PI) * 0.5 + 0.5;
     
-    // Wood fiber: subtle vertical grain using sine noise
-    double fiber = Math.sin(u * 3.0) * 0.1 + Math.sin(v * 1.5) * 0.05;
+    // Wood fiber: noise stretched along the grain
+    double fiber = Noise.noise(u * 3.0, v * 0.3, p.z * scale * 3.0) * 0.15;
     double grain = 1.0 + fiber * grainStrength;
     
-    // Blend base and ring colors based on ring intensity
-    RGB color;
+    // Blend base and ring colors based on ring intensity, into the
+    // coefficients of result
+    RGB color = result.getKd();
     if (rings < 0.4) {
-      color = ringColor;
+      color.set(ringColor);
       } else if (rings < 0.6) {
       double blend = (rings - 0.4) / 0.2;
-      color = RGB.interpolate(ringColor, baseColor, blend);
+      color.set(ringColor).interpolateInPlace(baseColor, blend);
       } else {
-      color = baseColor;
+      color.set(baseColor);
     }
     
     // Apply grain modulation (slight brightness variation)
-    color = new RGB(
+    color.set(
       Math.min(1.0, Math.max(0.0, color.getR() * grain)),
       Math.min(1.0, Math.max(0.0, color.getG() * grain)),
       Math.min(1.0, Math.max(0.0, color.getB() * grain))
     );
     
-    return new LocalTexture(
+    return result.set(
       color,
-      color.multiply(AMBIENT_FACTOR),
-      SPECULAR_COLOR.multiply(SPECULAR_FACTOR),
+      result.getKrl().set(color).scaleInPlace(AMBIENT_FACTOR),
+      SPECULAR,
       SHININESS,
       REFLECTIVITY
     );
@@ -12,6 +12,7 @@ public class XDamierTexture implements Texture, java.io.Serializable, Writable
 {
   private RGB kd1, kd2, kr, kt;
   private int ns, nt;
+  private LocalTexture local1, local2;    // the local textures of both colors
   private double step, x0, y0;
   
   public XDamierTexture(RGB kd1, RGB kd2, RGB kr, RGB kt, int ns, int nt, double step, double x0, double y0)
@@ -25,6 +26,8 @@ public class XDamierTexture implements Texture, java.io.Serializable, Writable
     this.step = step;
     this.x0 = x0;
     this.y0 = y0;
+    this.local1 = new LocalTexture(kd1, kr, kt, ns, nt);
+    this.local2 = new LocalTexture(kd2, kr, kt, ns, nt);
   }
   
   /**
@@ -67,10 +70,10 @@ public class XDamierTexture implements Texture, java.io.Serializable, Writable
     double j = Math.floor((p.y - y0) / step);
     
     if ((i - j) % 2 == 0) {
-      return new LocalTexture(kd1, kr, kt, ns, nt);
+      return local1;
     }
     else {
-      return new LocalTexture(kd2, kr, kt, ns, nt);
+      return local2;
     }
   }
   
@@ -25,7 +25,7 @@ import raja.shape.*;
 import java.util.HashMap;
 
 
-public class XPlainTexture implements Texture, java.io.Serializable, Writable
+public class XPlainTexture implements ConstantTexture, java.io.Serializable, Writable
 {
   private RGB kd = RGB.red;
   private RGB krl = RGB.green;
@@ -34,6 +34,7 @@ public class XPlainTexture implements Texture, java.io.Serializable, Writable
   private RGB ktg = RGB.yellow;
   int ns = 40;
   int nt = 10;
+  private LocalTexture localTexture = new LocalTexture(kd, krl, krg, ktl, ktg, ns, nt);
   
   public XPlainTexture()
   {}
@@ -47,6 +48,7 @@ public class XPlainTexture implements Texture, java.io.Serializable, Writable
     this.ktg = ktg;
     this.ns = ns;
     this.nt = nt;
+    this.localTexture = new LocalTexture(kd, krl, krg, ktl, ktg, ns, nt);
   }
   
   public static Object build(ObjectReader reader)
@@ -58,17 +60,7 @@ public class XPlainTexture implements Texture, java.io.Serializable, Writable
   @Override
   public LocalTexture getLocalTexture(Point3D p)
   {
-    LocalTexture lcl = new LocalTexture(
-      this.kd,
-      this.krl,
-      this.krg,
-      this.ktl,
-      this.ktg,
-      this.ns,
-      this.nt
-    );
-    
-    return lcl;
+    return localTexture;
   }
   
   // ADDED by Murat Inan
@@ -0,0 +1,224 @@
+package raja.material.noise;
+
+
+/**
+ * Gradient noise, as defined by Ken Perlin's "improved noise": a smooth
+ * pseudo-random function of 3D space, whose values are between -1 and 1
+ * and whose details are about 1 unit wide.  Sums of octaves of noise
+ * (fractal brownian motion and turbulence) give the irregular patterns of
+ * natural materials.
+ * <p>
+ * The noise is deterministic: a point always has the same value, so that
+ * images do not depend on the order in which pixels are rendered.  No
+ * object is allocated, and arrays of points can be evaluated at once.
+ */
+public final class Noise
+{
+  // Ken Perlin's permutation, repeated so that indices never wrap
+  private static final int[] p = new int[512];
+
+  // The 12 gradients pointing to the middle of the edges of a cube, and 4
+  // of them again to make 16
+  private static final double[] gx = { 1, -1, 1, -1, 1, -1, 1, -1, 0, 0, 0, 0, 1, 0, -1, 0 };
+  private static final double[] gy = { 1, 1, -1, -1, 0, 0, 0, 0, 1, -1, 1, -1, 1, -1, 1, -1 };
+  private static final double[] gz = { 0, 0, 0, 0, 1, 1, -1, -1, 1, 1, -1, -1, 0, 1, 0, -1 };
+
+  static {
+    int[] permutation = {
+    151, 160, 137, 91, 90, 15, 131, 13, 201, 95, 96, 53, 194, 233, 7, 225,
+    140, 36, 103, 30, 69, 142, 8, 99, 37, 240, 21, 10, 23, 190, 6, 148,
+    247, 120, 234, 75, 0, 26, 197, 62, 94, 252, 219, 203, 117, 35, 11, 32,
+    57, 177, 33, 88, 237, 149, 56, 87, 174, 20, 125, 136, 171, 168, 68, 175,
+    74, 165, 71, 134, 139, 48, 27, 166, 77, 146, 158, 231, 83, 111, 229, 122,
+    60, 211, 133, 230, 220, 105, 92, 41, 55, 46, 245, 40, 244, 102, 143, 54,
+    65, 25, 63, 161, 1, 216, 80, 73, 209, 76, 132, 187, 208, 89, 18, 169,
+    200, 196, 135, 130, 116, 188, 159, 86, 164, 100, 109, 198, 173, 186, 3, 64,
+    52, 217, 226, 250, 124, 123, 5, 202, 38, 147, 118, 126, 255, 82, 85, 212,
+    207, 206, 59, 227, 47, 16, 58, 17, 182, 189, 28, 42, 223, 183, 170, 213,
+    119, 248, 152, 2, 44, 154, 163, 70, 221, 153, 101, 155, 167, 43, 172, 9,
+    129, 22, 39, 253, 19, 98, 108, 110, 79, 113, 224, 232, 178, 185, 112, 104,
+    218, 246, 97, 228, 251, 34, 242, 193, 238, 210, 144, 12, 191, 179, 162, 241,
+    81, 51, 145, 235, 249, 14, 239, 107, 49, 192, 214, 31, 181, 199, 106, 157,
+    184, 84, 204, 176, 115, 121, 50, 45, 127, 4, 150, 254, 138, 236, 205, 93,
+    222, 114, 67, 29, 24, 72, 243, 141, 128, 195, 78, 66, 215, 61, 156, 180
+    };
+    for (int i = 0 ; i < 256 ; i++)
+    {
+      p[i] = p[i + 256] = permutation[i];
+    }
+  }
+
+  private Noise()
+  {
+  }
+
+  /**
+   * Returns the largest integer less than or equal to <code>x</code>.
+   */
+  public static int floor(double x)
+  {
+    int i = (int) x;
+    return (x < i) ? i - 1 : i;
+  }
+
+  /**
+   * Returns the noise at (x, y, z), between -1 and 1.
+   */
+  public static double noise(double x, double y, double z)
+  {
+    int xi = floor(x);
+    int yi = floor(y);
+    int zi = floor(z);
+    x -= xi;
+    y -= yi;
+    z -= zi;
+    xi &= 255;
+    yi &= 255;
+    zi &= 255;
+
+    double u = fade(x);
+    double v = fade(y);
+    double w = fade(z);
+
+    int a = p[xi] + yi;
+    int aa = p[a] + zi;
+    int ab = p[a + 1] + zi;
+    int b = p[xi + 1] + yi;
+    int ba = p[b] + zi;
+    int bb = p[b + 1] + zi;
+
+    return lerp(w, lerp(v, lerp(u, grad(p[aa], x, y, z), grad(p[ba], x - 1, y, z)),
+    lerp(u, grad(p[ab], x, y - 1, z), grad(p[bb], x - 1, y - 1, z))),
+    lerp(v, lerp(u, grad(p[aa + 1], x, y, z - 1), grad(p[ba + 1], x - 1, y, z - 1)),
+    lerp(u, grad(p[ab + 1], x, y - 1, z - 1), grad(p[bb + 1], x - 1, y - 1, z - 1))));
+  }
+
+  /**
+   * Returns the fractal brownian motion at (x, y, z): the sum of
+   * <code>octaves</code> octaves of noise, each one <code>lacunarity</code>
+   * times finer and <code>gain</code> times weaker than the previous one.
+   * The sum is divided by the total weight, so it is between -1 and 1.
+   */
+  public static double fbm(double x, double y, double z, int octaves, double lacunarity, double gain)
+  {
+    double sum = 0;
+    double weight = 0;
+    double amplitude = 1;
+
+    for (int i = 0 ; i < octaves ; i++)
+    {
+      sum += amplitude * noise(x, y, z);
+      weight += amplitude;
+      amplitude *= gain;
+      x *= lacunarity;
+      y *= lacunarity;
+      z *= lacunarity;
+    }
+    return (weight > 0) ? sum / weight : 0;
+  }
+
+  /**
+   * Returns the turbulence at (x, y, z): like {@link #fbm fbm}, but with
+   * the absolute value of each octave, so it is between 0 and 1 and has
+   * sharp creases where the noise is 0.
+   */
+  public static double turbulence(double x, double y, double z, int octaves, double lacunarity, double gain)
+  {
+    double sum = 0;
+    double weight = 0;
+    double amplitude = 1;
+
+    for (int i = 0 ; i < octaves ; i++)
+    {
+      sum += amplitude * Math.abs(noise(x, y, z));
+      weight += amplitude;
+      amplitude *= gain;
+      x *= lacunarity;
+      y *= lacunarity;
+      z *= lacunarity;
+    }
+    return (weight > 0) ? sum / weight : 0;
+  }
+
+  /**
+   * Computes the fractal brownian motion at <code>count</code> points,
+   * given by their coordinates in <code>x</code>, <code>y</code> and
+   * <code>z</code>, into <code>result</code>.
+   */
+  public static void fbm(double[] x, double[] y, double[] z, double[] result, int count,
+    int octaves, double lacunarity, double gain)
+  {
+    for (int i = 0 ; i < count ; i++)
+    {
+      result[i] = fbm(x[i], y[i], z[i], octaves, lacunarity, gain);
+    }
+  }
+
+  /**
+   * Computes the turbulence at <code>count</code> points, given by their
+   * coordinates in <code>x</code>, <code>y</code> and <code>z</code>, into
+   * <code>result</code>.
+   */
+  public static void turbulence(double[] x, double[] y, double[] z, double[] result, int count,
+    int octaves, double lacunarity, double gain)
+  {
+    for (int i = 0 ; i < count ; i++)
+    {
+      result[i] = turbulence(x[i], y[i], z[i], octaves, lacunarity, gain);
+    }
+  }
+
+  /**
+   * Returns a pseudo-random value between 0 (included) and 1 (excluded)
+   * for the cell (x, y, z) of the integer lattice, to pick features such
+   * as cells or crystals at random.
+   */
+  public static double hash(int x, int y, int z)
+  {
+    return p[p[p[x & 255] + (y & 255)] + (z & 255)] / 256.0;
+  }
+
+  /**
+   * Returns a pseudo-random value between 0 (included) and 1 (excluded)
+   * for the point (x, y, z).  Unlike the noise, it is not continuous: two
+   * points as close as they can be get unrelated values, which makes
+   * sparkles that are the same in every rendering.
+   */
+  public static double pointHash(double x, double y, double z)
+  {
+    long h = mix(Double.doubleToLongBits(x));
+    h = mix(h ^ Double.doubleToLongBits(y));
+    h = mix(h ^ Double.doubleToLongBits(z));
+    return (h >>> 11) * 0x1.0p-53;
+  }
+
+  /**
+   * Scrambles the bits of <code>h</code> (the finalizer of SplitMix64).
+   */
+  private static long mix(long h)
+  {
+    h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+    h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+    return h ^ (h >>> 31);
+  }
+
+  private static double fade(double t)
+  {
+    return t * t * t * (t * (t * 6 - 15) + 10);
+  }
+
+  private static double lerp(double t, double a, double b)
+  {
+    return a + t * (b - a);
+  }
+
+  /**
+   * Returns the dot product of (x, y, z) with the gradient picked by
+   * <code>hash</code>.
+   */
+  private static double grad(int hash, double x, double y, double z)
+  {
+    int h = hash & 15;
+    return gx[h] * x + gy[h] * y + gz[h] * z;
+  }
+}
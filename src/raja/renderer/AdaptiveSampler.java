@@ -0,0 +1,310 @@
+package raja.renderer;
+
+import raja.*;
+
+import java.awt.image.BufferedImage;
+import javax.swing.BoundedRangeModel;
+
+
+/**
+ * A sampler that spends antialiasing rays only where the image needs them.
+ * A first pass traces one ray through the center of each pixel.  A pixel
+ * is then refined when the color of one of its 8 neighbours differs from
+ * its own by more than the contrast threshold on some channel.  Flat
+ * regions such as the background thus cost a single ray per pixel.
+ * <p>
+ * A refined pixel is sampled in steps, by grids of 2 by 2 rays, then 4 by
+ * 4 rays and so on up to <code>maxLevel</code> by <code>maxLevel</code>
+ * rays, and holds the average of all its rays, the ray of the first pass
+ * included.  Its refinement stops as soon as the average of a step differs
+ * from the color before it by less than half the threshold on every
+ * channel, or when the next step would exceed the budget of rays per pixel.
+ * <p>
+ * The number of rays traced by the last rendering can be read afterwards
+ * to tune the threshold against the cost.
+ */
+public class AdaptiveSampler implements FrameBufferSampler
+{
+  public static final double DEFAULT_THRESHOLD = 1.0 / 16;
+
+  private int maxLevel;
+  private double threshold;
+  private int maxSamples;
+
+  private long samples;        // rays traced
+  private int refinedPixels;
+  private int pixels;
+
+  /**
+   * @param maxLevel the number of rays per pixel along each axis of a
+   *        refined pixel.
+   * @param threshold the contrast, between 0 and 1 on each color channel,
+   *        above which a pixel is refined.
+   * @param maxSamples the maximum number of rays traced through a pixel.
+   */
+  public AdaptiveSampler(int maxLevel, double threshold, int maxSamples)
+  {
+    if (maxLevel < 1) {
+      throw new IllegalArgumentException("maxLevel < 1");
+    }
+    if (threshold < 0) {
+      throw new IllegalArgumentException("threshold < 0");
+    }
+    if (maxSamples < 1) {
+      throw new IllegalArgumentException("maxSamples < 1");
+    }
+
+    this.maxLevel = maxLevel;
+    this.threshold = threshold;
+    this.maxSamples = maxSamples;
+  }
+
+  /**
+   * Creates a sampler whose budget allows every step of a refinement.
+   */
+  public AdaptiveSampler(int maxLevel, double threshold)
+  {
+    this(maxLevel, threshold, allSteps(maxLevel));
+  }
+
+  public AdaptiveSampler(int maxLevel)
+  {
+    this(maxLevel, DEFAULT_THRESHOLD);
+  }
+
+  /**
+   * Returns the number of rays traced through a pixel refined by every
+   * step up to <code>maxLevel</code>.
+   */
+  private static int allSteps(int maxLevel)
+  {
+    int count = 1;
+    for (int level = nextLevel(1, maxLevel) ; level > 1 ; level = nextLevel(level, maxLevel))
+    {
+      count += level * level;
+    }
+    return count;
+  }
+
+  /**
+   * Returns the grid size of the step following a step of
+   * <code>level</code> by <code>level</code> rays, or 0 after the last.
+   */
+  private static int nextLevel(int level, int maxLevel)
+  {
+    return (level >= maxLevel) ? 0 : Math.min(2 * level, maxLevel);
+  }
+
+  /**
+   * Returns the average number of rays traced per pixel by the last
+   * rendering.
+   */
+  public double getAverageSamplesPerPixel()
+  {
+    return (pixels == 0) ? 0 : ((double) samples) / pixels;
+  }
+
+  /**
+   * Returns the number of pixels refined by the last rendering.
+   */
+  public int getRefinedPixelCount()
+  {
+    return refinedPixels;
+  }
+
+  public void compute(Camera camera, RayTracer rt, BoundedRangeModel model, BufferedImage image)
+  {
+    if (image == null) {
+      throw new IllegalArgumentException("null image");
+    }
+
+    compute(camera, rt, model, new FrameBuffer(image.getWidth(), image.getHeight()), image);
+  }
+
+  public void compute(Camera camera, RayTracer rt, BufferedImage image)
+  {
+    compute(camera, rt, null, image);
+  }
+
+  /**
+   * Renders the image into <code>frame</code>, where each pixel holds
+   * all the rays traced through it.
+   */
+  public void compute(Camera camera, RayTracer rt, BoundedRangeModel model, FrameBuffer frame, BufferedImage image)
+  {
+    if (frame == null) {
+      throw new IllegalArgumentException("null frame buffer");
+    }
+
+    if (model != null) {
+      // Both passes visit every pixel
+      model.setMinimum(1);
+      model.setMaximum(2 * frame.getWidth() * frame.getHeight());
+      model.setValue(1);
+    }
+
+    render(camera, rt, model, frame, image);
+  }
+
+  private void render(Camera camera, RayTracer rt, BoundedRangeModel model, FrameBuffer frame, BufferedImage image)
+  {
+    int width = frame.getWidth();
+    int height = frame.getHeight();
+    double[] colors = new double[3 * width * height];
+
+    pixels = width * height;
+    samples = 0;
+    refinedPixels = 0;
+
+    // First pass: one ray per pixel
+    for (int i = 0 ; i < width ; i++)
+    {
+      for (int j = 0 ; j < height ; j++)
+      {
+        Ray ray = camera.getRay(((double) i + 0.5) / width,
+        ((double) j + 0.5) / height, 1.0 / width);
+        RGB light = rt.getLight(ray);
+        int base = 3 * (j * width + i);
+        colors[base] = light.getR();
+        colors[base + 1] = light.getG();
+        colors[base + 2] = light.getB();
+        frame.add(i, j, light);
+        samples++;
+      }
+
+      if (image != null) {
+        frame.toImage(image, i, 0, 1, height);
+      }
+      if (model != null) {
+        model.setValue(model.getValue() + height);
+      }
+      if (Thread.currentThread().isInterrupted()) {
+        return;
+      }
+    }
+
+    if (maxLevel == 1) {
+      return;
+    }
+
+    // Second pass: refine the pixels that contrast with a neighbour
+    for (int i = 0 ; i < width ; i++)
+    {
+      boolean refined = false;
+
+      for (int j = 0 ; j < height ; j++)
+      {
+        if (contrasts(colors, width, height, i, j)) {
+          refine(camera, rt, frame, i, j, colors);
+          refinedPixels++;
+          refined = true;
+        }
+      }
+
+      if ((image != null) && refined) {
+        frame.toImage(image, i, 0, 1, height);
+      }
+      if (model != null) {
+        model.setValue(model.getValue() + height);
+      }
+      if (Thread.currentThread().isInterrupted()) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns whether the displayed color of pixel (i, j) differs from the
+   * color of one of its neighbours by more than the threshold.
+   */
+  private boolean contrasts(double[] colors, int width, int height, int i, int j)
+  {
+    int base = 3 * (j * width + i);
+
+    for (int x = Math.max(0, i - 1) ; x <= Math.min(width - 1, i + 1) ; x++)
+    {
+      for (int y = Math.max(0, j - 1) ; y <= Math.min(height - 1, j + 1) ; y++)
+      {
+        int other = 3 * (y * width + x);
+        for (int c = 0 ; c < 3 ; c++)
+        {
+          if (Math.abs(clamp(colors[base + c]) - clamp(colors[other + c])) > threshold) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private static double clamp(double value)
+  {
+    return Math.min(1, Math.max(0, value));
+  }
+
+  /**
+   * Adds to pixel (i, j) of the frame steps of rays on finer and finer
+   * grids, until its average color converges or the budget is spent.
+   * The frame already holds the ray of the first pass, whose color is in
+   * <code>colors</code>.
+   */
+  private void refine(Camera camera, RayTracer rt, FrameBuffer frame, int i, int j, double[] colors)
+  {
+    int width = frame.getWidth();
+    int height = frame.getHeight();
+    int base = 3 * (j * width + i);
+    double r = colors[base];
+    double g = colors[base + 1];
+    double b = colors[base + 2];
+    int count = 1;
+
+    for (int level = nextLevel(1, maxLevel) ; level > 1 ; level = nextLevel(level, maxLevel))
+    {
+      if (count + level * level > maxSamples) {
+        break;
+      }
+
+      double decalX = 1.0 / (level * width);
+      double decalY = 1.0 / (level * height);
+      double px = (0.5 * decalX) + (((double) i) / width);
+      double py = (0.5 * decalY) + (((double) j) / height);
+      double stepR = 0;
+      double stepG = 0;
+      double stepB = 0;
+
+      for (int kx = 0 ; kx < level ; kx++)
+      {
+        for (int ky = 0 ; ky < level ; ky++)
+        {
+          Ray ray = camera.getRay(px + (kx * decalX),
+          py + (ky * decalY), decalX);
+          RGB light = rt.getLight(ray);
+          stepR += light.getR();
+          stepG += light.getG();
+          stepB += light.getB();
+        }
+      }
+
+      int stepCount = level * level;
+      frame.add(i, j, stepR, stepG, stepB, stepCount);
+      samples += stepCount;
+
+      // Compare the average of this step with the estimate before it
+      double before = 1.0 / count;
+      double step = 1.0 / stepCount;
+      boolean converged =
+        (Math.abs(clamp(stepR * step) - clamp(r * before)) < threshold / 2)
+        && (Math.abs(clamp(stepG * step) - clamp(g * before)) < threshold / 2)
+        && (Math.abs(clamp(stepB * step) - clamp(b * before)) < threshold / 2);
+
+      count += stepCount;
+      r += stepR;
+      g += stepG;
+      b += stepB;
+
+      if (converged) {
+        break;
+      }
+    }
+  }
+}
@@ -21,6 +21,7 @@ package raja.renderer;
 import raja.*;
 import raja.light.LightSource;
 import raja.shape.*;
+import raja.util.RenderStatistics;
 
 import java.awt.image.BufferedImage;
 import java.util.Iterator;
@@ -31,12 +32,20 @@ public class AdvancedRayTracer implements RayTracer
   private World world;
   private RGB cutLevel;
   private int maxDepth;
-  
+  private ThreadLocal scratch;
+
   public AdvancedRayTracer(World world, int maxDepth, float accuracy)
   {
     this.world = world;
     this.maxDepth = maxDepth;
     computeCutLevel(accuracy);
+
+    scratch = new ThreadLocal() {
+      protected Object initialValue()
+      {
+        return new Scratch(AdvancedRayTracer.this.maxDepth);
+      }
+    };
   }
   public AdvancedRayTracer(World world, int maxDepth)
   {
@@ -55,11 +64,59 @@ public class AdvancedRayTracer implements RayTracer
     cutLevel = RGB.product(RGB.product(RGB.inverse(maxLight), 1.0 / (3 * 255)), accuracy);
   }
   
+  /**
+   * Per-thread scratch values of the tracer.  Values indexed by depth
+   * belong to the call of <code>acceleratedRecursiveRay</code> at that
+   * depth: a call only writes its own slot, and reads the slot of its
+   * child call once the child has returned.
+   */
+  private static class Scratch
+  {
+    RGB[] result, coeff, krg, ktg;
+    Vector3D[] mirror, transmission;
+    Ray[] ray;
+    LocalTexture[] local;
+    RGB light = new RGB(0);
+    RGB halo = new RGB(0);
+
+    Scratch(int maxDepth)
+    {
+      int n = Math.max(0, maxDepth) + 1;
+
+      result = new RGB[n];
+      coeff = new RGB[n];
+      krg = new RGB[n];
+      ktg = new RGB[n];
+      mirror = new Vector3D[n];
+      transmission = new Vector3D[n];
+      ray = new Ray[n];
+      local = new LocalTexture[n];
+
+      for (int i = 0 ; i < n ; i++)
+      {
+        result[i] = new RGB(0);
+        coeff[i] = new RGB(0);
+        krg[i] = new RGB(0);
+        ktg[i] = new RGB(0);
+        mirror[i] = new Vector3D(0, 0, 0);
+        transmission[i] = new Vector3D(0, 0, 0);
+        ray[i] = new Ray(new Point3D(0, 0, 0), new Vector3D(0, 0, 1));
+        local[i] = new LocalTexture();
+      }
+    }
+  }
+
   public RGB getLight(Ray ray)
   {
-    return acceleratedRecursiveRay(maxDepth, ray, RGB.white);
+    return new RGB(acceleratedRecursiveRay(maxDepth, ray, RGB.white, RenderStatistics.PRIMARY_RAY, (Scratch) scratch.get()));
   }
-  private RGB acceleratedRecursiveRay(int depth, Ray ray, RGB coeff)
+  /**
+   * Returns the light along the specified ray.  The returned value is
+   * either a constant or the <code>result</code> scratch slot of this
+   * depth, so it must be consumed before the slot is reused.  The
+   * <code>type</code> of the ray is only used by the statistics.
+   */
+  private RGB acceleratedRecursiveRay(int depth, Ray ray, RGB coeff, int type, Scratch s)
   {
     // Cherche le point d'intersection du rayon ray avec les objets et :
     // 1. s'il n'y a pas d'intersection : on renvoie la lumière de fond
@@ -71,6 +128,10 @@ public class AdvancedRayTracer implements RayTracer
       return RGB.black;
     }
     
+    if (RenderStatistics.isEnabled()) {
+      RenderStatistics.countRay(type, maxDepth - depth);
+    }
+    
     SolidLocalGeometry intersection = world.getSolid().intersection(ray);
     
     if (intersection == null)
@@ -78,7 +139,7 @@ public class AdvancedRayTracer implements RayTracer
       // Le rayon n'a rencontré aucun objet 3D du monde
       // On colorie donc le pixel avec la couleur de fond
       
-      return RGB.product(world.getBackgroundLight(), coeff);
+      return s.result[depth].set(world.getBackgroundLight()).multiplyInPlace(coeff);
     }
     else
     {
@@ -88,24 +149,30 @@ public class AdvancedRayTracer implements RayTracer
       
       Vector3D normalAtIntersection = intersection.getNormal();
       double sc = Vector3D.dotProduct(normalAtIntersection, ray.direction);
-      Vector3D mirrorDirection = Vector3D.sum(ray.direction, Vector3D.product(normalAtIntersection, - 2 * sc));
+      Vector3D mirrorDirection = s.mirror[depth].set(ray.direction).addScaledInPlace(normalAtIntersection, - 2 * sc);
       
       boolean rayIntersectsIn = (sc > 0);
       
+      double footprint = ray.footprint;
+      if (ray.spread > 0) {
+        footprint += ray.spread * Point3D.distance(ray.origin, intersection);
+      }
+      intersection.setFootprint(footprint);
+      
       LocalTexture localTexture;
       if (rayIntersectsIn) {
-        localTexture = intersection.getInLocalTexture();
+        localTexture = intersection.getInLocalTexture(s.local[depth]);
       }
       else {
-        localTexture = intersection.getOutLocalTexture();
+        localTexture = intersection.getOutLocalTexture(s.local[depth]);
       }
       
-      RGB krg = localTexture.getKrg();
-      RGB ktg = localTexture.getKtg();
-      
-      RGB result = RGB.product(localLight(ray, intersection, normalAtIntersection, mirrorDirection, localTexture, rayIntersectsIn), coeff);
-      
-      if (! (RGB.product(ktg, coeff)).isSmaller(cutLevel)) {
+      RGB krg = s.krg[depth].set(localTexture.getKrg());
+      RGB ktg = s.ktg[depth].set(localTexture.getKtg());
+
+      RGB result = localLight(ray, intersection, normalAtIntersection, mirrorDirection, localTexture, rayIntersectsIn, s.result[depth], s).multiplyInPlace(coeff);
+
+      if (! s.coeff[depth].set(ktg).multiplyInPlace(coeff).isSmaller(cutLevel)) {
         double nI;
         double nT;
         
@@ -174,7 +241,7 @@ public class AdvancedRayTracer implements RayTracer
         
         if (sinThetaT > 1) {
           // Réflexion totale : pas de rayon réfracté
-          krg = RGB.sum(krg, ktg);
+          krg.addInPlace(ktg);
         }
         else {
           double cosThetaT = Math.sqrt(1 - sinThetaT*sinThetaT);
@@ -194,9 +261,9 @@ public class AdvancedRayTracer implements RayTracer
           double reflex = 0.5 * ((sinThetaImoinsThetaT*sinThetaImoinsThetaT) / (sinThetaIplusThetaT*sinThetaIplusThetaT))
           * (1 + ((cosThetaIplusThetaT*cosThetaIplusThetaT) / (cosThetaImoinsThetaT*cosThetaImoinsThetaT)));
           
-          krg = RGB.sum(krg, RGB.product(ktg, reflex));
-          ktg = RGB.product(ktg, 1 - reflex);
-          
+          krg.addScaledInPlace(ktg, reflex);
+          ktg.scaleInPlace(1 - reflex);
+
           double sc2;
           
           if (rayIntersectsIn) {
@@ -206,23 +273,33 @@ public class AdvancedRayTracer implements RayTracer
             sc2 = - cosThetaT;
           }
           
-          Vector3D transmissionDirection = Vector3D.sum(Vector3D.product(ray.direction, k),
-          Vector3D.product(normalAtIntersection, sc2 - (k * sc)));
-          Ray refractedRay = new Ray(intersection, transmissionDirection);
-          result = RGB.sum(result, acceleratedRecursiveRay(depth - 1, refractedRay, RGB.product(ktg, coeff)));
+          Vector3D transmissionDirection = s.transmission[depth].set(ray.direction).scaleInPlace(k)
+          .addScaledInPlace(normalAtIntersection, sc2 - (k * sc));
+          Ray refractedRay = s.ray[depth].set(intersection, transmissionDirection);
+          refractedRay.footprint = footprint;
+          refractedRay.spread = ray.spread;
+          result.addInPlace(acceleratedRecursiveRay(depth - 1, refractedRay, s.coeff[depth].set(ktg).multiplyInPlace(coeff),
+          RenderStatistics.REFRACTED_RAY, s));
         }
       }
-      Ray reflectedRay = new Ray(intersection, mirrorDirection);
-      result = RGB.sum(result, acceleratedRecursiveRay(depth - 1, reflectedRay, RGB.product(krg, coeff)));
-      
+      Ray reflectedRay = s.ray[depth].set(intersection, mirrorDirection);
+      reflectedRay.footprint = footprint;
+      reflectedRay.spread = ray.spread;
+      result.addInPlace(acceleratedRecursiveRay(depth - 1, reflectedRay, s.coeff[depth].set(krg).multiplyInPlace(coeff),
+      RenderStatistics.REFLECTED_RAY, s));
+
       return result;
     }
   }
-  private RGB localLight(Ray ray, Point3D intersection, Vector3D normalAtIntersection, Vector3D mirrorDirection, LocalTexture localTexture, boolean rayIntersectsIn)
+  /**
+   * Computes the light leaving the intersection point into the
+   * specified <code>result</code> value, and returns it.
+   */
+  private RGB localLight(Ray ray, Point3D intersection, Vector3D normalAtIntersection, Vector3D mirrorDirection, LocalTexture localTexture, boolean rayIntersectsIn, RGB result, Scratch s)
   {
     // On détermine la lumière reçue par le point d'intersection
     
-    RGB outgoingLightAtIntersection = RGB.product(world.getAmbiantLight(), localTexture.getKd());
+    RGB outgoingLightAtIntersection = result.set(world.getAmbiantLight()).multiplyInPlace(localTexture.getKd());
     
     for(Iterator iterLight = world.lightIterator() ; iterLight.hasNext() ;)
     {
@@ -250,8 +327,11 @@ public class AdvancedRayTracer implements RayTracer
       if (dotProduct < 0) {
         isInShadow = true;
       }
-      else if (world.getSolid().intersects(rayToLightSource)) {
-        isInShadow = true;
+      else {
+        if (RenderStatistics.isEnabled()) {
+          RenderStatistics.countRay(RenderStatistics.SHADOW_RAY, 0);
+        }
+        isInShadow = world.getSolid().intersects(rayToLightSource);
       }
       
       if (! isInShadow)
@@ -259,11 +339,11 @@ public class AdvancedRayTracer implements RayTracer
         // Le point d'intersection est illuminé par la source de lumière en cours de traitement
         // et on ajoute donc la contribution de cette source de lumière
         
-        RGB diffusionLight = RGB.product(RGB.product(rayToLightSource.light, dotProduct), localTexture.getKd());
+        RGB diffusionLight = s.light.set(rayToLightSource.light).scaleInPlace(dotProduct).multiplyInPlace(localTexture.getKd());
         double scHalo = Vector3D.dotProduct(rayToLightSource.direction, mirrorDirection);
-        RGB reflectionLight = RGB.product(rayToLightSource.light, Math.pow(Math.max(0, scHalo), localTexture.getNs()));
-        RGB localLight = RGB.sum(diffusionLight, RGB.product(reflectionLight, localTexture.getKrl()));
-        outgoingLightAtIntersection = RGB.sum(outgoingLightAtIntersection, localLight);
+        RGB reflectionLight = s.halo.set(rayToLightSource.light).scaleInPlace(Math.pow(Math.max(0, scHalo), localTexture.getNs()));
+        RGB localLight = diffusionLight.addInPlace(reflectionLight.multiplyInPlace(localTexture.getKrl()));
+        outgoingLightAtIntersection.addInPlace(localLight);
       }
     }
     return outgoingLightAtIntersection;
@@ -29,6 +29,7 @@ public class BasicRenderer implements Renderer
   private RayTracer rt;
   private Sampler sampler;
   private BufferedImage image;
+  private FrameBuffer frame;
   private BoundedRangeModel model;
   
   public BasicRenderer(Camera camera, Resolution res, RayTracer rt, Sampler sampler, int imageType)
@@ -38,18 +39,38 @@ public class BasicRenderer implements Renderer
     this.sampler = sampler;
     
     image = new BufferedImage(res.width, res.height, imageType);
+    if (sampler instanceof FrameBufferSampler) {
+      frame = new FrameBuffer(res.width, res.height);
+    }
     model = new DefaultBoundedRangeModel();
   }
   public BufferedImage getImage()
   {
     return image;
   }
+  /**
+   * Returns the high dynamic range image of the render, or
+   * <code>null</code> if the sampler does not fill frame buffers.
+   */
+  public FrameBuffer getFrameBuffer()
+  {
+    return frame;
+  }
+  public Sampler getSampler()
+  {
+    return sampler;
+  }
   public BoundedRangeModel getModel()
   {
     return model;
   }
   public void run()
   {
-    sampler.compute(camera, rt, model, image);
+    if (frame != null) {
+      ((FrameBufferSampler) sampler).compute(camera, rt, model, frame, image);
+    }
+    else {
+      sampler.compute(camera, rt, model, image);
+    }
   }
 }
@@ -23,7 +23,7 @@ import java.awt.image.BufferedImage;
 import javax.swing.BoundedRangeModel;
 
 
-public class BasicSampler implements Sampler
+public class BasicSampler implements FrameBufferSampler
 {
   public void compute(Camera camera, RayTracer rt, BoundedRangeModel model, BufferedImage image)
   {
@@ -31,46 +31,45 @@ public class BasicSampler implements Sampler
       throw new IllegalArgumentException("null image");
     }
     
-    if (model == null) {
-      compute(camera, rt, image);
-    }
-    
-    model.setMinimum(1);
-    model.setMaximum(image.getWidth() * image.getHeight());
-    model.setValue(1);
-    
-    int width = image.getWidth();
-    int height = image.getHeight();
-    
-    for (int i = 0 ; i < width ; i++)
-    {
-      for (int j = 0 ; j < height ; j++)
-      {
-        Ray ray = camera.getRay(((double) i + 0.5) / width,
-        ((double) j + 0.5) / height);
-        RGB light = rt.getLight(ray);
-        image.setRGB(i, j, light.getColor().getRGB());
-        model.setValue(model.getValue() + 1);
-      }
-    }
+    compute(camera, rt, model, new FrameBuffer(image.getWidth(), image.getHeight()), image);
   }
   public void compute(Camera camera, RayTracer rt, BufferedImage image)
   {
-    if (image == null) {
-      throw new IllegalArgumentException("null image");
+    compute(camera, rt, null, image);
+  }
+  public void compute(Camera camera, RayTracer rt, BoundedRangeModel model, FrameBuffer frame, BufferedImage image)
+  {
+    if (frame == null) {
+      throw new IllegalArgumentException("null frame buffer");
     }
     
-    int width = image.getWidth();
-    int height = image.getHeight();
+    int width = frame.getWidth();
+    int height = frame.getHeight();
+    
+    if (model != null) {
+      model.setMinimum(1);
+      model.setMaximum(width * height);
+      model.setValue(1);
+    }
     
     for (int i = 0 ; i < width ; i++)
     {
       for (int j = 0 ; j < height ; j++)
       {
         Ray ray = camera.getRay(((double) i + 0.5) / width,
-        ((double) j + 0.5) / height);
-        RGB light = rt.getLight(ray);
-        image.setRGB(i, j, light.getColor().getRGB());
+        ((double) j + 0.5) / height, 1.0 / width);
+        frame.add(i, j, rt.getLight(ray));
+      }
+      
+      // Show the column, once converted
+      if (image != null) {
+        frame.toImage(image, i, 0, 1, height);
+      }
+      if (model != null) {
+        model.setValue(model.getValue() + height);
+      }
+      if (Thread.currentThread().isInterrupted()) {
+        return;
       }
     }
   }
@@ -24,7 +24,13 @@ import raja.Ray;
 public abstract class Camera implements java.io.Serializable
 {
   abstract Ray getRay(double x, double y);
-  
+
+  /**
+   * Returns the ray through (x, y), whose footprint covers a pixel of
+   * width <code>pixelWidth</code> (on the same scale as <code>x</code>).
+   */
+  abstract Ray getRay(double x, double y, double pixelWidth);
+
   // ADDED by Murat Inan
   abstract public String getUsageInformation();
   abstract public Camera getInstance(String info);
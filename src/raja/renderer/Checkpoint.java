@@ -0,0 +1,341 @@
+package raja.renderer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+
+/**
+ * A file keeping the tiles of an image as they are rendered, so that a
+ * render which was stopped can be resumed without rendering these tiles
+ * again.
+ * <p>
+ * The file starts with a hash of the scene and rendering parameters, and
+ * the size of the image and of its tiles.  Each finished tile is then
+ * appended with its sums and sample counts, as held by the
+ * {@link FrameBuffer}, and a checksum, so that a tile cut by a crash is
+ * detected and dropped.  Tiles are synced to the disk at most once per
+ * <code>syncPeriod</code>, and when the checkpoint is closed.
+ * <p>
+ * A checkpoint never stops a render: if the file cannot be written any
+ * more, the error is kept (see {@link #getError}) and the following tiles
+ * are not saved; if a saved tile cannot be read back, it is rendered
+ * again.
+ */
+public class Checkpoint
+{
+  public static final long DEFAULT_SYNC_PERIOD = 1000; // ms
+
+  private static final int MAGIC = 0x52414A43;   // "RAJC"
+  private static final int VERSION = 1;
+  private static final int HASH_SIZE = 32;       // SHA-256
+  private static final int HEADER_SIZE = 4 + 4 + HASH_SIZE + 4 + 4 + 4;
+  private static final int TILE_HEADER_SIZE = 4 * 4;
+  private static final int STRIDE = 4;           // floats per pixel
+
+  private File file;
+  private FileChannel channel;
+  private long size;               // bytes of complete tiles
+  private long syncPeriod;
+  private long lastSync;
+  private HashMap saved;           // Long(x, y) -> Long(offset), read when opened
+  private IOException error;
+
+  private Checkpoint(File file, FileChannel channel, long syncPeriod)
+  {
+    this.file = file;
+    this.channel = channel;
+    this.syncPeriod = syncPeriod;
+    saved = new HashMap();
+    lastSync = System.currentTimeMillis();
+  }
+
+  /**
+   * Returns the hash identifying a render of the scene file
+   * <code>scene</code>, whose camera is part of the file, with the given
+   * parameters.
+   */
+  public static byte[] getHash(byte[] scene, Resolution res, int depth, boolean exact, int antialiasLevel)
+  {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(scene);
+      digest.update(("\n" + res.width + "x" + res.height + " depth " + depth + " exact " + exact +
+      " antialias " + antialiasLevel).getBytes("US-ASCII"));
+      return digest.digest();
+    }
+    catch (NoSuchAlgorithmException e) {
+      // Every Java platform has SHA-256
+      throw new RuntimeException(e);
+    }
+    catch (UnsupportedEncodingException e) {
+      // Every Java platform has US-ASCII
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Creates an empty checkpoint, replacing <code>file</code>.
+   */
+  public static Checkpoint create(File file, byte[] hash, int width, int height, int tileSize, long syncPeriod)
+  throws IOException
+  {
+    checkHash(hash);
+    FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    Checkpoint checkpoint = new Checkpoint(file, channel, syncPeriod);
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(VERSION).put(hash);
+    header.putInt(width).putInt(height).putInt(tileSize);
+    header.flip();
+    checkpoint.writeFully(header, 0);
+    checkpoint.size = HEADER_SIZE;
+    channel.force(true);
+    return checkpoint;
+  }
+
+  /**
+   * Opens the checkpoint <code>file</code> to resume a render, after
+   * checking that it was made for the same scene, parameters and tiles.
+   * The tiles cut by a crash are dropped.
+   *
+   * @exception IOException if the file cannot be read, or was made for
+   *            another render.
+   */
+  public static Checkpoint resume(File file, byte[] hash, int width, int height, int tileSize, long syncPeriod)
+  throws IOException
+  {
+    checkHash(hash);
+    FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    Checkpoint checkpoint = new Checkpoint(file, channel, syncPeriod);
+
+    try {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      if (! checkpoint.readFully(header, 0) || (header.getInt() != MAGIC)) {
+        throw new IOException(file + " is not a checkpoint");
+      }
+      if (header.getInt() != VERSION) {
+        throw new IOException(file + " is a checkpoint of another version");
+      }
+      byte[] fileHash = new byte[HASH_SIZE];
+      header.get(fileHash);
+      if (! Arrays.equals(fileHash, hash)) {
+        throw new IOException(file + " is a checkpoint of another scene or other parameters");
+      }
+      if ((header.getInt() != width) || (header.getInt() != height) || (header.getInt() != tileSize)) {
+        throw new IOException(file + " is a checkpoint of another resolution or tile size");
+      }
+
+      checkpoint.size = HEADER_SIZE;
+      checkpoint.scanTiles(width, height);
+
+      // Drop what follows the last complete tile
+      channel.truncate(checkpoint.size);
+    }
+    catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    return checkpoint;
+  }
+
+  private static void checkHash(byte[] hash)
+  {
+    if ((hash == null) || (hash.length != HASH_SIZE)) {
+      throw new IllegalArgumentException("hash is not a SHA-256 hash");
+    }
+  }
+
+  /**
+   * Reads the tiles of the file until its end, or until a tile which is
+   * incomplete or whose checksum is wrong.
+   */
+  private void scanTiles(int width, int height) throws IOException
+  {
+    ByteBuffer tileHeader = ByteBuffer.allocate(TILE_HEADER_SIZE);
+    while (readFully(tileHeader, size))
+    {
+      int x = tileHeader.getInt();
+      int y = tileHeader.getInt();
+      int w = tileHeader.getInt();
+      int h = tileHeader.getInt();
+      if ((x < 0) || (y < 0) || (w < 1) || (h < 1) || (x + w > width) || (y + h > height)) {
+        return;
+      }
+
+      ByteBuffer tile = ByteBuffer.allocate(TILE_HEADER_SIZE + 4 * w * h * STRIDE + 4);
+      if (! readFully(tile, size)) {
+        return;
+      }
+      CRC32 crc = new CRC32();
+      crc.update(tile.array(), 0, tile.limit() - 4);
+      if (tile.getInt(tile.limit() - 4) != (int) crc.getValue()) {
+        return;
+      }
+
+      saved.put(Long.valueOf(key(x, y)), Long.valueOf(size));
+      size += tile.limit();
+      tileHeader.clear();
+    }
+  }
+
+  private static long key(int x, int y)
+  {
+    return ((long) x << 32) | y;
+  }
+
+  /**
+   * Reads <code>buffer</code> from <code>position</code>, and returns
+   * <code>false</code> if the file ends before.  The buffer is flipped.
+   */
+  private boolean readFully(ByteBuffer buffer, long position) throws IOException
+  {
+    buffer.clear();
+    while (buffer.hasRemaining())
+    {
+      int n = channel.read(buffer, position + buffer.position());
+      if (n < 0) {
+        return false;
+      }
+    }
+    buffer.flip();
+    return true;
+  }
+
+  private void writeFully(ByteBuffer buffer, long position) throws IOException
+  {
+    while (buffer.hasRemaining())
+    {
+      channel.write(buffer, position + buffer.position());
+    }
+  }
+
+  public File getFile()
+  {
+    return file;
+  }
+
+  /**
+   * Returns the number of tiles saved when the checkpoint was opened.
+   */
+  public int getSavedTileCount()
+  {
+    return saved.size();
+  }
+
+  /**
+   * Puts back into <code>frame</code> the tile of <code>w</code> by
+   * <code>h</code> pixels at (x, y), and returns <code>true</code>, if it
+   * was saved when the checkpoint was opened.
+   */
+  public boolean restore(FrameBuffer frame, int x, int y, int w, int h)
+  {
+    Long offset = (Long) saved.get(Long.valueOf(key(x, y)));
+    if (offset == null) {
+      return false;
+    }
+
+    try {
+      ByteBuffer tile = ByteBuffer.allocate(TILE_HEADER_SIZE + 4 * w * h * STRIDE);
+      if (! readFully(tile, offset.longValue()) || (tile.getInt(8) != w) || (tile.getInt(12) != h)) {
+        return false;
+      }
+      tile.position(TILE_HEADER_SIZE);
+      float[] samples = new float[w * h * STRIDE];
+      tile.asFloatBuffer().get(samples);
+      frame.setSamples(x, y, w, h, samples);
+      return true;
+    }
+    catch (IOException e) {
+      // Rendered again
+      return false;
+    }
+  }
+
+  /**
+   * Appends the tile of <code>w</code> by <code>h</code> pixels at (x, y)
+   * of <code>frame</code>, and syncs the file if it was not synced for
+   * <code>syncPeriod</code>.
+   */
+  public void save(FrameBuffer frame, int x, int y, int w, int h)
+  {
+    float[] samples = new float[w * h * STRIDE];
+    frame.getSamples(x, y, w, h, samples);
+
+    ByteBuffer tile = ByteBuffer.allocate(TILE_HEADER_SIZE + 4 * samples.length + 4);
+    tile.putInt(x).putInt(y).putInt(w).putInt(h);
+    tile.asFloatBuffer().put(samples);
+    CRC32 crc = new CRC32();
+    crc.update(tile.array(), 0, tile.capacity() - 4);
+    tile.putInt(tile.capacity() - 4, (int) crc.getValue());
+    tile.rewind();
+
+    synchronized(this) {
+      if (error != null) {
+        return;
+      }
+      try {
+        writeFully(tile, size);
+        size += tile.capacity();
+
+        long now = System.currentTimeMillis();
+        if (now - lastSync >= syncPeriod) {
+          channel.force(false);
+          lastSync = now;
+        }
+      }
+      catch (IOException e) {
+        error = e;
+      }
+    }
+  }
+
+  /**
+   * Returns the error that stopped the saving of tiles, or
+   * <code>null</code> if there was none.
+   */
+  public synchronized IOException getError()
+  {
+    return error;
+  }
+
+  /**
+   * Syncs and closes the file.
+   */
+  public synchronized void close() throws IOException
+  {
+    if (channel.isOpen()) {
+      try {
+        channel.force(false);
+      }
+      finally {
+        channel.close();
+      }
+    }
+  }
+
+  /**
+   * Closes and deletes the file, once the image it was kept for is saved.
+   */
+  public void delete() throws IOException
+  {
+    close();
+    if (! file.delete()) {
+      throw new IOException("cannot delete " + file);
+    }
+  }
+
+  public String toString()
+  {
+    return "Checkpoint[" + file + ", " + saved.size() + " tiles saved]";
+  }
+}
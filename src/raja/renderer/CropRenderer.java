@@ -0,0 +1,94 @@
+package raja.renderer;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import javax.swing.BoundedRangeModel;
+import javax.swing.DefaultBoundedRangeModel;
+
+
+/**
+ * A renderer computing only a rectangle of the image, the crop window,
+ * with the projection of the whole image, so that a detail can be
+ * rendered again at the cost of its area.  Only the rays of the crop
+ * window are traced.
+ * <p>
+ * The crop window is drawn into an image as large as itself or, given a
+ * previous image of the whole frame, into a copy of it, so that the new
+ * pixels replace the old ones at their place.  Pixels are computed by a
+ * {@link ParallelSampler}, so they are the same as in the whole image.
+ */
+public class CropRenderer implements Renderer
+{
+  private Camera camera;
+  private RayTracer rt;
+  private ParallelSampler sampler;
+  private Resolution res;
+  private Rectangle crop;
+  private FrameBuffer frame;
+  private BufferedImage image;
+  private BoundedRangeModel model;
+
+  /**
+   * @param crop the crop window, in the pixels of the whole image.
+   * @param background the previous image of the whole frame, or
+   *        <code>null</code> for an image of the crop window only.
+   */
+  public CropRenderer(Camera camera, Resolution res, RayTracer rt, ParallelSampler sampler,
+    Rectangle crop, BufferedImage background, int imageType)
+  {
+    if (crop.isEmpty() || (crop.x < 0) || (crop.y < 0) ||
+    (crop.x + crop.width > res.width) || (crop.y + crop.height > res.height)) {
+      throw new IllegalArgumentException("crop window out of image");
+    }
+    if ((background != null) &&
+    ((background.getWidth() != res.width) || (background.getHeight() != res.height))) {
+      throw new IllegalArgumentException("background and image sizes differ");
+    }
+
+    this.camera = camera;
+    this.rt = rt;
+    this.sampler = sampler;
+    this.res = res;
+    this.crop = new Rectangle(crop);
+
+    frame = new FrameBuffer(crop.width, crop.height);
+    if (background != null) {
+      image = new BufferedImage(res.width, res.height, imageType);
+      Graphics2D g = image.createGraphics();
+      g.drawImage(background, 0, 0, null);
+      g.dispose();
+    }
+    else {
+      image = new BufferedImage(crop.width, crop.height, imageType);
+    }
+    model = new DefaultBoundedRangeModel();
+  }
+
+  public BufferedImage getImage()
+  {
+    return image;
+  }
+  public BoundedRangeModel getModel()
+  {
+    return model;
+  }
+
+  /**
+   * Returns the high dynamic range image of the crop window.
+   */
+  public FrameBuffer getFrameBuffer()
+  {
+    return frame;
+  }
+
+  public Rectangle getCrop()
+  {
+    return new Rectangle(crop);
+  }
+
+  public void run()
+  {
+    sampler.compute(camera, rt, model, res.width, res.height, crop.x, crop.y, frame, image);
+  }
+}
@@ -24,7 +24,7 @@ import javax.swing.BoundedRangeModel;
 import java.util.Vector;
 
 
-public class DiadicSampler implements Sampler
+public class DiadicSampler implements FrameBufferSampler
 {
   public void compute(Camera camera, RayTracer rt, BoundedRangeModel model, BufferedImage image)
   {
@@ -32,54 +32,33 @@ public class DiadicSampler implements Sampler
       throw new IllegalArgumentException("null image");
     }
     
-    if (model == null) {
-      compute(camera, rt, image);
-    }
-    
-    model.setMinimum(1);
-    model.setMaximum(image.getWidth() * image.getHeight());
-    model.setValue(0);
-    
-    int width = image.getWidth();
-    int height = image.getHeight();
-    
-    int[] currentXpix = {0, width - 1};
-    int[] currentYpix = {0, height - 1};
-    
-    computePixels(camera, rt, model, image, currentXpix, currentYpix, width, height);
-    
-    while(true)
-    {
-      int[] newXpix = holes(currentXpix);
-      int[] newYpix = holes(currentYpix);
-      
-      if ((newXpix.length == 0) && (newYpix.length == 0)) {
-        break;
-      }
-      
-      computePixels(camera, rt, model, image, newXpix, newYpix, width, height);
-      computePixels(camera, rt, model, image, currentXpix, newYpix, width, height);
-      computePixels(camera, rt, model, image, newXpix, currentYpix, width, height);
-      
-      currentXpix = merge(currentXpix, newXpix);
-      currentYpix = merge(currentYpix, newYpix);
-    }
+    compute(camera, rt, model, new FrameBuffer(image.getWidth(), image.getHeight()), image);
   }
   public void compute(Camera camera, RayTracer rt, BufferedImage image)
   {
-    if (image == null) {
-      throw new IllegalArgumentException("null image");
+    compute(camera, rt, null, image);
+  }
+  public void compute(Camera camera, RayTracer rt, BoundedRangeModel model, FrameBuffer frame, BufferedImage image)
+  {
+    if (frame == null) {
+      throw new IllegalArgumentException("null frame buffer");
     }
     
-    int width = image.getWidth();
-    int height = image.getHeight();
+    int width = frame.getWidth();
+    int height = frame.getHeight();
+    
+    if (model != null) {
+      model.setMinimum(1);
+      model.setMaximum(width * height);
+      model.setValue(0);
+    }
     
     int[] currentXpix = {0, width - 1};
     int[] currentYpix = {0, height - 1};
     
-    computePixels(camera, rt, image, currentXpix, currentYpix, width, height);
+    computePixels(camera, rt, model, frame, image, currentXpix, currentYpix, width, height);
     
-    while(true)
+    while(! Thread.currentThread().isInterrupted())
     {
       int[] newXpix = holes(currentXpix);
       int[] newYpix = holes(currentYpix);
@@ -88,34 +67,18 @@ public class DiadicSampler implements Sampler
         break;
       }
       
-      computePixels(camera, rt, image, newXpix, newYpix, width, height);
-      computePixels(camera, rt, image, currentXpix, newYpix, width, height);
-      computePixels(camera, rt, image, newXpix, currentYpix, width, height);
+      computePixels(camera, rt, model, frame, image, newXpix, newYpix, width, height);
+      computePixels(camera, rt, model, frame, image, currentXpix, newYpix, width, height);
+      computePixels(camera, rt, model, frame, image, newXpix, currentYpix, width, height);
       
       currentXpix = merge(currentXpix, newXpix);
       currentYpix = merge(currentYpix, newYpix);
     }
   }
-  private void computePixels(Camera camera, RayTracer rt, BoundedRangeModel model, BufferedImage image, int [] xPix, int [] yPix, int width, int height)
-  {
-    for(int k = 0 ; k < xPix.length ; k++)
-    {
-      for(int l = 0 ; l < yPix.length ; l++)
-      {
-        int i = xPix[k];
-        int j = yPix[l];
-        
-        Ray ray = camera.getRay(((double) i + 0.5) / width,
-        ((double) j + 0.5) / height);
-        RGB light = rt.getLight(ray);
-        image.setRGB(i, j, light.getColor().getRGB());
-        model.setValue(model.getValue() + 1);
-      }
-    }
-  }
-  private void computePixels(Camera camera, RayTracer rt, BufferedImage image, int [] xPix, int [] yPix, int width, int height)
+  private void computePixels(Camera camera, RayTracer rt, BoundedRangeModel model, FrameBuffer frame, BufferedImage image,
+    int [] xPix, int [] yPix, int width, int height)
   {
-    for(int k = 0 ; k < xPix.length ; k++)
+    for(int k = 0 ; (k < xPix.length) && ! Thread.currentThread().isInterrupted() ; k++)
     {
       for(int l = 0 ; l < yPix.length ; l++)
       {
@@ -123,9 +86,14 @@ public class DiadicSampler implements Sampler
         int j = yPix[l];
         
         Ray ray = camera.getRay(((double) i + 0.5) / width,
-        ((double) j + 0.5) / height);
-        RGB light = rt.getLight(ray);
-        image.setRGB(i, j, light.getColor().getRGB());
+        ((double) j + 0.5) / height, 1.0 / width);
+        frame.add(i, j, rt.getLight(ray));
+        if (image != null) {
+          image.setRGB(i, j, frame.getRGB(i, j));
+        }
+        if (model != null) {
+          model.setValue(model.getValue() + 1);
+        }
       }
     }
   }
@@ -0,0 +1,365 @@
+package raja.renderer;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.BoundedRangeModel;
+import javax.swing.DefaultBoundedRangeModel;
+
+
+/**
+ * A renderer that has the image rendered by {@link RenderWorker}s,
+ * usually other processes on this machine or on other machines, connected
+ * through a server socket.
+ * <p>
+ * The image is split into square tiles, which are handed out to the
+ * workers as they ask for work.  Each worker receives the scene file once
+ * when it connects, and then the tiles to render; it sends back the pixels
+ * of each tile as soon as it is rendered.  When a worker dies, the tiles
+ * it had not sent back are handed out again to the other workers, and new
+ * workers can connect at any time until the image is complete.  Workers
+ * tell the coordinator they are alive while they render, and a worker
+ * that stays silent for <code>WORKER_TIMEOUT</code> is dropped as dead.
+ * <p>
+ * Pixels are computed as {@link ParallelSampler} computes them, so the
+ * image is the same as with the local samplers.  Workers send the light
+ * of the pixels, which is kept in a {@link FrameBuffer}.
+ */
+public class DistributedRenderer implements Renderer
+{
+  public static final int DEFAULT_TILE_SIZE = 64;
+
+  /*
+   * Protocol: the coordinator sends MAGIC, VERSION, the scene file (length
+   * and bytes), and the width, height, depth, exactness and antialiasing
+   * level of the image.  The worker answers with its parallelism.  Then
+   * the coordinator sends TILE x y width height messages, the worker
+   * answers each one with x y width height followed by the red, green and
+   * blue light of each pixel of the tile as floats, and the coordinator
+   * ends with DONE.  From the header on, the worker also sends ALIVE
+   * every ALIVE_PERIOD, in place of any answer.
+   */
+  static final int MAGIC = 0x52414A57;   // "RAJW"
+  static final int VERSION = 3;
+  static final int TILE = 1;
+  static final int DONE = 0;
+  static final int ALIVE = -1;   // never a parallelism nor a tile position
+
+  static final int ALIVE_PERIOD = 5000;     // ms
+  static final int WORKER_TIMEOUT = 30000;  // ms
+
+  private static final long PROGRESS_PERIOD = 100; // ms
+
+  private byte[] scene;
+  private int depth;
+  private boolean exact;
+  private int antialiasLevel;
+  private FrameBuffer frame;
+  private BufferedImage image;
+  private BoundedRangeModel model;
+  private ServerSocket server;
+  private PrintStream log;
+
+  private LinkedBlockingQueue tiles;    // tiles not assigned to a worker
+  private AtomicInteger remaining;      // tiles not rendered yet
+  private AtomicInteger donePixels;
+  private AtomicInteger workerCount;
+
+  /**
+   * Creates a renderer waiting for workers on the given port.
+   *
+   * @param scene the contents of the scene file, textual or binary, which
+   *        is sent to the workers.
+   * @param port the port to listen on, or 0 for any free port.
+   * @param exact whether rays are followed without any threshold.
+   * @param antialiasLevel the number of rays per pixel along each axis.
+   */
+  public DistributedRenderer(byte[] scene, Resolution res, int depth, boolean exact, int antialiasLevel,
+    int port, int tileSize, int imageType)
+  throws IOException
+  {
+    if (antialiasLevel < 1) {
+      throw new IllegalArgumentException("antialiasLevel < 1");
+    }
+    if (tileSize < 1) {
+      throw new IllegalArgumentException("tileSize < 1");
+    }
+
+    this.scene = scene;
+    this.depth = depth;
+    this.exact = exact;
+    this.antialiasLevel = antialiasLevel;
+    frame = new FrameBuffer(res.width, res.height);
+    image = new BufferedImage(res.width, res.height, imageType);
+    model = new DefaultBoundedRangeModel();
+
+    tiles = new LinkedBlockingQueue();
+    for (int y = 0 ; y < res.height ; y += tileSize)
+    {
+      for (int x = 0 ; x < res.width ; x += tileSize)
+      {
+        tiles.add(new int[] { x, y, Math.min(tileSize, res.width - x), Math.min(tileSize, res.height - y) });
+      }
+    }
+    remaining = new AtomicInteger(tiles.size());
+    donePixels = new AtomicInteger();
+    workerCount = new AtomicInteger();
+
+    server = new ServerSocket(port);
+  }
+
+  public DistributedRenderer(byte[] scene, Resolution res, int depth, boolean exact, int antialiasLevel, int port)
+  throws IOException
+  {
+    this(scene, res, depth, exact, antialiasLevel, port, DEFAULT_TILE_SIZE, BufferedImage.TYPE_3BYTE_BGR);
+  }
+
+  /**
+   * Returns the port workers connect to.
+   */
+  public int getPort()
+  {
+    return server.getLocalPort();
+  }
+
+  /**
+   * Sets the stream workers joining and leaving are reported to, or
+   * <code>null</code> for none.
+   */
+  public void setLog(PrintStream log)
+  {
+    this.log = log;
+  }
+
+  public BufferedImage getImage()
+  {
+    return image;
+  }
+
+  /**
+   * Returns the high dynamic range image of the render.
+   */
+  public FrameBuffer getFrameBuffer()
+  {
+    return frame;
+  }
+  public BoundedRangeModel getModel()
+  {
+    return model;
+  }
+
+  /**
+   * Serves tiles to the workers until the image is complete.
+   */
+  public void run()
+  {
+    model.setMinimum(1);
+    model.setMaximum(image.getWidth() * image.getHeight());
+    model.setValue(1);
+
+    Thread acceptor = new Thread("Raja coordinator") {
+      public void run()
+      {
+        accept();
+      }
+    };
+    acceptor.setDaemon(true);
+    acceptor.start();
+
+    try {
+      while (remaining.get() > 0)
+      {
+        Thread.sleep(PROGRESS_PERIOD);
+        model.setValue(1 + donePixels.get());
+      }
+      model.setValue(1 + donePixels.get());
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    finally {
+      try {
+        server.close();
+      }
+      catch (IOException e) {
+        // Nothing left to serve anyway
+      }
+    }
+  }
+
+  private void accept()
+  {
+    while (remaining.get() > 0)
+    {
+      final Socket socket;
+      try {
+        socket = server.accept();
+      }
+      catch (IOException e) {
+        // Closed once the image is complete
+        return;
+      }
+
+      Thread handler = new Thread("Raja worker " + socket.getRemoteSocketAddress()) {
+        public void run()
+        {
+          serve(socket);
+        }
+      };
+      handler.setDaemon(true);
+      handler.start();
+    }
+  }
+
+  /**
+   * Hands out tiles to one worker, keeping enough of them in flight for
+   * all its threads, until no tile is left to render.
+   */
+  private void serve(Socket socket)
+  {
+    String name = String.valueOf(socket.getRemoteSocketAddress());
+    ArrayList assigned = new ArrayList();
+    boolean joined = false;
+
+    try {
+      socket.setTcpNoDelay(true);
+      socket.setSoTimeout(WORKER_TIMEOUT);
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(scene.length);
+      out.write(scene);
+      out.writeInt(image.getWidth());
+      out.writeInt(image.getHeight());
+      out.writeInt(depth);
+      out.writeBoolean(exact);
+      out.writeInt(antialiasLevel);
+      out.flush();
+
+      int inFlight = 2 * Math.max(1, readAnswer(in));
+      joined = true;
+      log("Worker " + name + " joined (" + workerCount.incrementAndGet() + " connected)");
+
+      while (remaining.get() > 0)
+      {
+        int[] tile = null;
+        while ((assigned.size() < inFlight) && ((tile = (int[]) tiles.poll()) != null))
+        {
+          assigned.add(tile);
+          out.writeInt(TILE);
+          for (int k = 0 ; k < 4 ; k++)
+          {
+            out.writeInt(tile[k]);
+          }
+        }
+        out.flush();
+
+        if (assigned.isEmpty()) {
+          // Other workers have the last tiles: wait in case one dies
+          tile = (int[]) tiles.poll(PROGRESS_PERIOD, TimeUnit.MILLISECONDS);
+          if (tile != null) {
+            // Assigned in the next round
+            tiles.add(tile);
+          }
+        }
+        else {
+          receiveTile(in, assigned);
+        }
+      }
+
+      out.writeInt(DONE);
+      out.flush();
+      workerCount.decrementAndGet();
+    }
+    catch (IOException e) {
+      tiles.addAll(assigned);
+      String reason = (e instanceof EOFException) ? "connection closed" :
+      (e instanceof SocketTimeoutException) ? "silent for " + (WORKER_TIMEOUT / 1000) + " s" : e.getMessage();
+      if (joined) {
+        log("Worker " + name + " lost, " + assigned.size() + " tiles reassigned (" +
+        workerCount.decrementAndGet() + " connected): " + reason);
+      }
+      else {
+        log("Worker " + name + " could not join: " + reason);
+      }
+    }
+    catch (InterruptedException e) {
+      tiles.addAll(assigned);
+    }
+    finally {
+      try {
+        socket.close();
+      }
+      catch (IOException e) {
+        // Already broken
+      }
+    }
+  }
+
+  /**
+   * Reads the first int of the next answer of a worker, skipping the ALIVE
+   * messages sent before it.
+   */
+  private static int readAnswer(DataInputStream in) throws IOException
+  {
+    int answer;
+    do {
+      answer = in.readInt();
+    } while (answer == ALIVE);
+    return answer;
+  }
+
+  private void receiveTile(DataInputStream in, ArrayList assigned) throws IOException
+  {
+    int x = readAnswer(in);
+    int y = in.readInt();
+    int w = in.readInt();
+    int h = in.readInt();
+
+    int[] tile = null;
+    for (int k = 0 ; k < assigned.size() ; k++)
+    {
+      int[] t = (int[]) assigned.get(k);
+      if ((t[0] == x) && (t[1] == y) && (t[2] == w) && (t[3] == h)) {
+        tile = t;
+        assigned.remove(k);
+        break;
+      }
+    }
+    if (tile == null) {
+      throw new IOException("unexpected tile " + x + "," + y);
+    }
+
+    // Read whole before being set, as the tile is handed out again if the
+    // worker dies in the middle
+    float[] samples = new float[4 * w * h];
+    for (int k = 0 ; k < samples.length ; k += 4)
+    {
+      samples[k] = in.readFloat();
+      samples[k + 1] = in.readFloat();
+      samples[k + 2] = in.readFloat();
+      samples[k + 3] = 1;
+    }
+
+    // Tiles are disjoint, so they are set without synchronization
+    frame.setSamples(x, y, w, h, samples);
+    frame.toImage(image, x, y, w, h);
+    donePixels.addAndGet(w * h);
+    remaining.decrementAndGet();
+  }
+
+  private void log(String message)
+  {
+    if (log != null) {
+      log.println(message);
+    }
+  }
+}
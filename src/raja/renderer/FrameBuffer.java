@@ -0,0 +1,367 @@
+package raja.renderer;
+
+import raja.RGB;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+
+/**
+ * A high dynamic range image, in which samplers add up the light of the
+ * rays traced through each pixel.  Each pixel holds the sums of its red,
+ * green and blue samples and the number of samples, in a single flat
+ * <code>float</code> array, so that light above 1 is kept and no object
+ * is allocated per pixel.
+ * <p>
+ * The pixels are only converted to 8 bit colors when an image is
+ * needed, possibly with an exposure, so that a render can be exposed
+ * again without being traced again.  They can also be saved and read in
+ * the PFM format.
+ * <p>
+ * Threads may add samples to disjoint regions concurrently without
+ * synchronization, but must synchronize with the readers of these
+ * regions.
+ */
+public class FrameBuffer
+{
+  private static final int R = 0;
+  private static final int G = 1;
+  private static final int B = 2;
+  private static final int COUNT = 3;
+  private static final int STRIDE = 4;
+
+  private int width;
+  private int height;
+  private float[] data;
+
+  public FrameBuffer(int width, int height)
+  {
+    if ((width < 1) || (height < 1)) {
+      throw new IllegalArgumentException("empty frame buffer");
+    }
+    if ((long) width * height * STRIDE > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("frame buffer too large");
+    }
+
+    this.width = width;
+    this.height = height;
+    data = new float[width * height * STRIDE];
+  }
+
+  public int getWidth()
+  {
+    return width;
+  }
+
+  public int getHeight()
+  {
+    return height;
+  }
+
+  private int offset(int x, int y)
+  {
+    if ((x < 0) || (x >= width) || (y < 0) || (y >= height)) {
+      throw new IllegalArgumentException("pixel (" + x + ", " + y + ") out of frame buffer");
+    }
+    return (y * width + x) * STRIDE;
+  }
+
+  /**
+   * Adds a sample of light to pixel (x, y).
+   */
+  public void add(int x, int y, RGB light)
+  {
+    add(x, y, light.getR(), light.getG(), light.getB(), 1);
+  }
+
+  /**
+   * Adds to pixel (x, y) the sum of <code>count</code> samples.
+   */
+  public void add(int x, int y, double r, double g, double b, int count)
+  {
+    int k = offset(x, y);
+    data[k + R] += (float) r;
+    data[k + G] += (float) g;
+    data[k + B] += (float) b;
+    data[k + COUNT] += count;
+  }
+
+  /**
+   * Returns the number of samples added to pixel (x, y).
+   */
+  public int getCount(int x, int y)
+  {
+    return (int) data[offset(x, y) + COUNT];
+  }
+
+  /**
+   * Returns the average light of pixel (x, y), black if it has no sample.
+   */
+  public RGB getLight(int x, int y)
+  {
+    int k = offset(x, y);
+    float count = data[k + COUNT];
+    if (count == 0) {
+      return new RGB(RGB.black);
+    }
+    return new RGB(data[k + R] / count, data[k + G] / count, data[k + B] / count);
+  }
+
+  /**
+   * Copies the sums and sample counts of the region of <code>w</code> by
+   * <code>h</code> pixels at (x, y) into <code>samples</code>, four floats
+   * per pixel, row after row.
+   */
+  public void getSamples(int x, int y, int w, int h, float[] samples)
+  {
+    offset(x, y);
+    offset(x + w - 1, y + h - 1);
+    for (int j = 0 ; j < h ; j++)
+    {
+      System.arraycopy(data, ((y + j) * width + x) * STRIDE, samples, j * w * STRIDE, w * STRIDE);
+    }
+  }
+
+  /**
+   * Replaces the sums and sample counts of the region of <code>w</code>
+   * by <code>h</code> pixels at (x, y) by those of <code>samples</code>,
+   * as given by {@link #getSamples}.
+   */
+  public void setSamples(int x, int y, int w, int h, float[] samples)
+  {
+    offset(x, y);
+    offset(x + w - 1, y + h - 1);
+    for (int j = 0 ; j < h ; j++)
+    {
+      System.arraycopy(samples, j * w * STRIDE, data, ((y + j) * width + x) * STRIDE, w * STRIDE);
+    }
+  }
+
+  /**
+   * Removes all the samples.
+   */
+  public void clear()
+  {
+    Arrays.fill(data, 0);
+  }
+
+  /**
+   * Returns the 8 bit color of the pixel at offset <code>k</code> in the
+   * default RGB color model, with its light multiplied by
+   * <code>scale</code> and clamped to 1.  It is the color
+   * {@link RGB#getColor} gives for the average light of the pixel.
+   */
+  private int toRGB(int k, float scale)
+  {
+    float count = data[k + COUNT];
+    if (count == 0) {
+      return 0xff000000;
+    }
+    scale /= count;
+    return 0xff000000 | (toByte(data[k + R] * scale) << 16) |
+    (toByte(data[k + G] * scale) << 8) | toByte(data[k + B] * scale);
+  }
+
+  /**
+   * Returns the 8 bit color of pixel (x, y) in the default RGB color
+   * model, black if it has no sample, so that samplers writing pixels one
+   * at a time into an image need not convert a region.
+   */
+  public int getRGB(int x, int y)
+  {
+    return toRGB(offset(x, y), 1);
+  }
+
+  private static int toByte(float value)
+  {
+    // Rounded as java.awt.Color does
+    return (int) (Math.min(1, value) * 255 + 0.5);
+  }
+
+  /**
+   * Returns the scale of the light for an exposure of
+   * <code>stops</code>, each stop doubling the light.
+   */
+  public static float getScale(double stops)
+  {
+    return (float) Math.pow(2, stops);
+  }
+
+  /**
+   * Converts the region of <code>w</code> by <code>h</code> pixels at
+   * (x, y) into the region of <code>image</code> at (imageX, imageY),
+   * with an exposure of <code>stops</code>.
+   */
+  public void toImage(BufferedImage image, int imageX, int imageY, int x, int y, int w, int h, double stops)
+  {
+    if ((w <= 0) || (h <= 0)) {
+      return;
+    }
+    offset(x, y);
+    offset(x + w - 1, y + h - 1);
+
+    float scale = getScale(stops);
+    int[] pixels = new int[w * h];
+    for (int j = 0 ; j < h ; j++)
+    {
+      int k = ((y + j) * width + x) * STRIDE;
+      for (int i = 0 ; i < w ; i++, k += STRIDE)
+      {
+        pixels[j * w + i] = toRGB(k, scale);
+      }
+    }
+
+    // The color model of the image is not thread safe
+    synchronized(image) {
+      image.setRGB(imageX, imageY, w, h, pixels, 0, w);
+    }
+  }
+
+  /**
+   * Converts the region of <code>w</code> by <code>h</code> pixels at
+   * (x, y) into the same region of <code>image</code>, with an exposure
+   * of <code>stops</code>.
+   */
+  public void toImage(BufferedImage image, int x, int y, int w, int h, double stops)
+  {
+    toImage(image, x, y, x, y, w, h, stops);
+  }
+
+  public void toImage(BufferedImage image, int x, int y, int w, int h)
+  {
+    toImage(image, x, y, w, h, 0);
+  }
+
+  /**
+   * Converts all the pixels into <code>image</code>, which must be as
+   * large as this frame buffer, with an exposure of <code>stops</code>.
+   */
+  public void toImage(BufferedImage image, double stops)
+  {
+    if ((image.getWidth() != width) || (image.getHeight() != height)) {
+      throw new IllegalArgumentException("image and frame buffer sizes differ");
+    }
+    toImage(image, 0, 0, width, height, stops);
+  }
+
+  /**
+   * Returns a new image of <code>imageType</code> with all the pixels,
+   * with an exposure of <code>stops</code>.
+   */
+  public BufferedImage getImage(int imageType, double stops)
+  {
+    BufferedImage image = new BufferedImage(width, height, imageType);
+    toImage(image, stops);
+    return image;
+  }
+
+  /**
+   * Writes the average light of the pixels in the little-endian PFM
+   * format, whose rows go from the bottom to the top of the image.
+   */
+  public void writePFM(OutputStream out) throws IOException
+  {
+    out.write(("PF\n" + width + " " + height + "\n-1.0\n").getBytes("US-ASCII"));
+
+    ByteBuffer row = ByteBuffer.allocate(width * 3 * 4).order(ByteOrder.LITTLE_ENDIAN);
+    for (int y = height - 1 ; y >= 0 ; y--)
+    {
+      row.clear();
+      for (int x = 0, k = y * width * STRIDE ; x < width ; x++, k += STRIDE)
+      {
+        float count = data[k + COUNT];
+        if (count == 0) {
+          count = 1;
+        }
+        row.putFloat(data[k + R] / count);
+        row.putFloat(data[k + G] / count);
+        row.putFloat(data[k + B] / count);
+      }
+      out.write(row.array());
+    }
+    out.flush();
+  }
+
+  /**
+   * Reads a color PFM image, whose pixels become single samples.
+   */
+  public static FrameBuffer readPFM(InputStream in) throws IOException
+  {
+    if (! (in instanceof BufferedInputStream)) {
+      in = new BufferedInputStream(in);
+    }
+    if (! "PF".equals(readToken(in))) {
+      throw new IOException("not a color PFM image");
+    }
+
+    FrameBuffer frame;
+    float scale;
+    try {
+      int width = Integer.parseInt(readToken(in));
+      int height = Integer.parseInt(readToken(in));
+      scale = Float.parseFloat(readToken(in));
+      frame = new FrameBuffer(width, height);
+    }
+    catch (IllegalArgumentException e) {
+      throw new IOException("bad PFM header: " + e.getMessage());
+    }
+
+    int width = frame.width;
+    ByteBuffer row = ByteBuffer.allocate(width * 3 * 4);
+    row.order((scale < 0) ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+    for (int y = frame.height - 1 ; y >= 0 ; y--)
+    {
+      byte[] bytes = row.array();
+      for (int n = 0 ; n < bytes.length ;)
+      {
+        int read = in.read(bytes, n, bytes.length - n);
+        if (read < 0) {
+          throw new IOException("truncated PFM image");
+        }
+        n += read;
+      }
+      row.clear();
+      for (int x = 0, k = y * width * STRIDE ; x < width ; x++, k += STRIDE)
+      {
+        frame.data[k + R] = row.getFloat();
+        frame.data[k + G] = row.getFloat();
+        frame.data[k + B] = row.getFloat();
+        frame.data[k + COUNT] = 1;
+      }
+    }
+    return frame;
+  }
+
+  /**
+   * Reads a token of a PFM header and the single white space after it.
+   */
+  private static String readToken(InputStream in) throws IOException
+  {
+    StringBuffer token = new StringBuffer();
+    int c = in.read();
+    while (Character.isWhitespace((char) c))
+    {
+      c = in.read();
+    }
+    while ((c >= 0) && ! Character.isWhitespace((char) c))
+    {
+      token.append((char) c);
+      c = in.read();
+    }
+    if (token.length() == 0) {
+      throw new IOException("truncated PFM header");
+    }
+    return token.toString();
+  }
+
+  public String toString()
+  {
+    return "FrameBuffer[" + width + "x" + height + "]";
+  }
+}
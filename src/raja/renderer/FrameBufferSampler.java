@@ -0,0 +1,20 @@
+package raja.renderer;
+
+import java.awt.image.BufferedImage;
+import javax.swing.BoundedRangeModel;
+
+
+/**
+ * A sampler that can add the light of the rays it traces into a
+ * {@link FrameBuffer}, keeping the image in high dynamic range.
+ */
+public interface FrameBufferSampler extends Sampler
+{
+  /**
+   * Adds the light of each pixel of <code>frame</code> as a single
+   * sample, and converts the pixels into <code>image</code>, if not
+   * <code>null</code>, as they are computed.  <code>model</code> may be
+   * <code>null</code> if the progress is not followed.
+   */
+  public void compute(Camera camera, RayTracer rt, BoundedRangeModel model, FrameBuffer frame, BufferedImage image);
+}
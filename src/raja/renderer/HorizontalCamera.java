@@ -185,4 +185,27 @@ public class HorizontalCamera extends Camera implements Writable
     return new Ray(pixel, direct);
   }
   
+  Ray getRay(double x, double y, double pixelWidth)
+  {
+    Ray ray = getRay(x, y);
+
+    // The neighbouring pixel is one pixel width along the top edge of the
+    // screen, so its ray is derived from this one without building it
+    double step = (x + pixelWidth <= 1) ? pixelWidth : -pixelWidth;
+    double ex = step * (screenTopRight.x - screenTopLeft.x);
+    double ey = step * (screenTopRight.y - screenTopLeft.y);
+    double ez = step * (screenTopRight.z - screenTopLeft.z);
+    ray.footprint = Math.sqrt(ex*ex + ey*ey + ez*ez);
+
+    double nx = ray.origin.x - origin.x + ex;
+    double ny = ray.origin.y - origin.y + ey;
+    double nz = ray.origin.z - origin.z + ez;
+    double norm = Math.sqrt(nx*nx + ny*ny + nz*nz);
+    double sx = ray.direction.x - nx / norm;
+    double sy = ray.direction.y - ny / norm;
+    double sz = ray.direction.z - nz / norm;
+    ray.spread = Math.sqrt(sx*sx + sy*sy + sz*sz);
+    return ray;
+  }
+  
 }
@@ -24,7 +24,7 @@ import java.awt.image.BufferedImage;
 import javax.swing.BoundedRangeModel;
 
 
-public class NaiveSuperSampler implements Sampler
+public class NaiveSuperSampler implements FrameBufferSampler
 {
   private int antialiasLevel;
   
@@ -37,59 +37,37 @@ public class NaiveSuperSampler implements Sampler
     this.antialiasLevel = antialiasLevel;
   }
   
+  public int getAntialiasLevel()
+  {
+    return antialiasLevel;
+  }
+  
   public void compute(Camera camera, RayTracer rt, BoundedRangeModel model, BufferedImage image)
   {
     if (image == null) {
       throw new IllegalArgumentException("null image");
     }
     
-    if (model == null) {
-      compute(camera, rt, image);
-    }
-    
-    model.setMinimum(1);
-    model.setMaximum(image.getWidth() * image.getHeight());
-    model.setValue(1);
-    
-    int width = image.getWidth();
-    int height = image.getHeight();
-    
-    double decalX = 1.0 / (antialiasLevel * width);
-    double decalY = 1.0 / (antialiasLevel * height);
-    
-    for (int i = 0 ; i < width ; i++)
-    {
-      for (int j = 0 ; j < height ; j++)
-      {
-        double px = (0.5 * decalX) + (((double) i) / width);
-        double py = (0.5 * decalY) + (((double) j) / height);
-        
-        RGB light = RGB.black;
-        
-        for (int kx = 0 ; kx < antialiasLevel ; kx++)
-        {
-          for (int ky = 0 ; ky < antialiasLevel ; ky++)
-          {
-            Ray ray = camera.getRay(px + (kx * decalX),
-            py + (ky * decalY));
-            light = RGB.sum(light, rt.getLight(ray));
-          }
-        }
-        
-        light = RGB.product(light, 1.0 / (antialiasLevel * antialiasLevel));
-        image.setRGB(i, j, light.getColor().getRGB());
-        model.setValue(model.getValue() + 1);
-      }
-    }
+    compute(camera, rt, model, new FrameBuffer(image.getWidth(), image.getHeight()), image);
   }
   public void compute(Camera camera, RayTracer rt, BufferedImage image)
   {
-    if (image == null) {
-      throw new IllegalArgumentException("null image");
+    compute(camera, rt, null, image);
+  }
+  public void compute(Camera camera, RayTracer rt, BoundedRangeModel model, FrameBuffer frame, BufferedImage image)
+  {
+    if (frame == null) {
+      throw new IllegalArgumentException("null frame buffer");
     }
     
-    int width = image.getWidth();
-    int height = image.getHeight();
+    int width = frame.getWidth();
+    int height = frame.getHeight();
+    
+    if (model != null) {
+      model.setMinimum(1);
+      model.setMaximum(width * height);
+      model.setValue(1);
+    }
     
     double decalX = 1.0 / (antialiasLevel * width);
     double decalY = 1.0 / (antialiasLevel * height);
@@ -108,13 +86,23 @@ public class NaiveSuperSampler implements Sampler
           for (int ky = 0 ; ky < antialiasLevel ; ky++)
           {
             Ray ray = camera.getRay(px + (kx * decalX),
-            py + (ky * decalY));
+            py + (ky * decalY), decalX);
             light = RGB.sum(light, rt.getLight(ray));
           }
         }
         
-        light = RGB.product(light, 1.0 / (antialiasLevel * antialiasLevel));
-        image.setRGB(i, j, light.getColor().getRGB());
+        // Averaged here, so that the pixel is the same as with an image
+        frame.add(i, j, RGB.product(light, 1.0 / (antialiasLevel * antialiasLevel)));
+      }
+      
+      if (image != null) {
+        frame.toImage(image, i, 0, 1, height);
+      }
+      if (model != null) {
+        model.setValue(model.getValue() + height);
+      }
+      if (Thread.currentThread().isInterrupted()) {
+        return;
       }
     }
   }
@@ -0,0 +1,368 @@
+package raja.renderer;
+
+import raja.*;
+
+import java.awt.image.BufferedImage;
+import javax.swing.BoundedRangeModel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A sampler that splits the image into square tiles and renders them on a
+ * work-stealing <code>ForkJoinPool</code>.
+ * Each pixel is computed exactly as the single-threaded samplers do
+ * (as {@link BasicSampler} for an antialiasing level of 1, as
+ * {@link NaiveSuperSampler} above), so the resulting image is the same.
+ * <p>
+ * Workers only count finished pixels in an atomic counter; the calling
+ * thread publishes that counter into the <code>BoundedRangeModel</code>,
+ * so listeners of the model are still notified from a single thread.
+ * <p>
+ * Tiles are added to a {@link FrameBuffer}, and each finished tile is
+ * converted into the image at once.  With a {@link Checkpoint}, finished
+ * tiles are also saved, and the tiles it saved before are restored
+ * instead of being rendered.
+ */
+public class ParallelSampler implements FrameBufferSampler
+{
+  public static final int DEFAULT_TILE_SIZE = 32;
+
+  private static final long PROGRESS_PERIOD = 100; // ms
+
+  private int parallelism;
+  private int antialiasLevel;
+  private int tileSize;
+  private Checkpoint checkpoint;
+
+  /**
+   * @param parallelism the number of worker threads, or 0 to use one
+   *        thread per available processor.
+   * @param antialiasLevel the number of rays per pixel along each axis.
+   * @param tileSize the width and height of a tile in pixels.
+   */
+  public ParallelSampler(int parallelism, int antialiasLevel, int tileSize)
+  {
+    if (parallelism < 0) {
+      throw new IllegalArgumentException("parallelism < 0");
+    }
+    if (antialiasLevel < 1) {
+      throw new IllegalArgumentException("antialiasLevel < 1");
+    }
+    if (tileSize < 1) {
+      throw new IllegalArgumentException("tileSize < 1");
+    }
+
+    this.parallelism = (parallelism == 0) ? Runtime.getRuntime().availableProcessors() : parallelism;
+    this.antialiasLevel = antialiasLevel;
+    this.tileSize = tileSize;
+  }
+
+  public ParallelSampler(int parallelism, int antialiasLevel)
+  {
+    this(parallelism, antialiasLevel, DEFAULT_TILE_SIZE);
+  }
+
+  public ParallelSampler(int parallelism)
+  {
+    this(parallelism, 1);
+  }
+
+  public int getParallelism()
+  {
+    return parallelism;
+  }
+
+  public int getAntialiasLevel()
+  {
+    return antialiasLevel;
+  }
+
+  public int getTileSize()
+  {
+    return tileSize;
+  }
+
+  /**
+   * Sets the checkpoint finished tiles are saved to, or <code>null</code>
+   * for none.  It is only used when whole images are computed.
+   */
+  public void setCheckpoint(Checkpoint checkpoint)
+  {
+    this.checkpoint = checkpoint;
+  }
+
+  public Checkpoint getCheckpoint()
+  {
+    return checkpoint;
+  }
+
+  public void compute(Camera camera, RayTracer rt, BoundedRangeModel model, BufferedImage image)
+  {
+    if (image == null) {
+      throw new IllegalArgumentException("null image");
+    }
+
+    compute(camera, rt, model, new FrameBuffer(image.getWidth(), image.getHeight()), image);
+  }
+
+  public void compute(Camera camera, RayTracer rt, BufferedImage image)
+  {
+    compute(camera, rt, null, image);
+  }
+
+  public void compute(Camera camera, RayTracer rt, BoundedRangeModel model, FrameBuffer frame, BufferedImage image)
+  {
+    if (frame == null) {
+      throw new IllegalArgumentException("null frame buffer");
+    }
+
+    compute(camera, rt, model, frame.getWidth(), frame.getHeight(), 0, 0, frame, image);
+  }
+
+  /**
+   * Renders a region of a <code>width</code> by <code>height</code>
+   * image, as large as <code>frame</code> and whose top left pixel is
+   * (left, top), so that images can be computed part by part.  The
+   * pixels are added to <code>frame</code>, and converted into
+   * <code>image</code>, if not <code>null</code>.  The image is either as
+   * large as the whole image, and the region is converted at its place,
+   * or as the region.  <code>model</code> may be <code>null</code> if the
+   * progress is not followed.
+   * <p>
+   * The checkpoint is used only if the region is the whole image.
+   * <p>
+   * If the calling thread is interrupted, the render stops: the tiles
+   * being rendered are left unfinished, and no worker writes into
+   * <code>frame</code>, <code>image</code> or the checkpoint once this
+   * method has returned.
+   */
+  public void compute(Camera camera, RayTracer rt, BoundedRangeModel model, int width, int height,
+    int left, int top, FrameBuffer frame, BufferedImage image)
+  {
+    if (frame == null) {
+      throw new IllegalArgumentException("null frame buffer");
+    }
+    if ((left < 0) || (top < 0) || (left + frame.getWidth() > width) || (top + frame.getHeight() > height)) {
+      throw new IllegalArgumentException("region out of image");
+    }
+
+    boolean whole = (frame.getWidth() == width) && (frame.getHeight() == height);
+    AtomicInteger done = new AtomicInteger();
+    AtomicBoolean cancelled = new AtomicBoolean();
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+    try {
+      TileRange task = new TileRange(camera, rt, width, height, left, top,
+      frame, image, whole ? checkpoint : null, done, cancelled, 0, tileCount(frame));
+
+      if (model != null) {
+        model.setMinimum(1);
+        model.setMaximum(frame.getWidth() * frame.getHeight());
+        model.setValue(1);
+      }
+
+      pool.execute(task);
+
+      while (! task.isDone())
+      {
+        try {
+          task.get(PROGRESS_PERIOD, TimeUnit.MILLISECONDS);
+        }
+        catch (java.util.concurrent.TimeoutException e) {
+          // Still running: publish progress below
+        }
+        catch (InterruptedException e) {
+          task.cancel(true);
+          Thread.currentThread().interrupt();
+          return;
+        }
+        catch (java.util.concurrent.ExecutionException e) {
+          rethrow(e.getCause());
+        }
+        if (model != null) {
+          model.setValue(1 + done.get());
+        }
+      }
+      if (model != null) {
+        model.setValue(1 + done.get());
+      }
+    }
+    finally {
+      // Running tiles stop at their next row, and none is written into
+      // the frame buffer, the image or the checkpoint once this returns
+      cancelled.set(true);
+      pool.shutdownNow();
+      awaitTermination(pool);
+    }
+  }
+
+  /**
+   * Waits until the workers of <code>pool</code> have stopped, keeping
+   * the interrupt status of the calling thread.
+   */
+  private static void awaitTermination(ForkJoinPool pool)
+  {
+    boolean interrupted = Thread.interrupted();
+    while (true)
+    {
+      try {
+        if (pool.awaitTermination(PROGRESS_PERIOD, TimeUnit.MILLISECONDS)) {
+          break;
+        }
+      }
+      catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private int tilesX(FrameBuffer frame)
+  {
+    return (frame.getWidth() + tileSize - 1) / tileSize;
+  }
+
+  private int tileCount(FrameBuffer frame)
+  {
+    return tilesX(frame) * ((frame.getHeight() + tileSize - 1) / tileSize);
+  }
+
+  private static void rethrow(Throwable t)
+  {
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    }
+    if (t instanceof Error) {
+      throw (Error) t;
+    }
+    throw new RuntimeException(t);
+  }
+
+  /**
+   * Renders the tiles of index <code>from</code> (inclusive) to
+   * <code>to</code> (exclusive), splitting the range in halves until a
+   * single tile remains so that idle workers can steal the other half.
+   * Tiles are numbered in <code>frame</code>, which holds the region of
+   * the image whose top left pixel is (left, top).
+   */
+  private class TileRange extends RecursiveAction
+  {
+    private Camera camera;
+    private RayTracer rt;
+    private int width, height;
+    private int left, top;
+    private FrameBuffer frame;
+    private BufferedImage image;
+    private Checkpoint checkpoint;
+    private AtomicInteger done;
+    private AtomicBoolean cancelled;
+    private int from, to;
+
+    TileRange(Camera camera, RayTracer rt, int width, int height, int left, int top,
+      FrameBuffer frame, BufferedImage image, Checkpoint checkpoint, AtomicInteger done,
+      AtomicBoolean cancelled, int from, int to)
+    {
+      this.camera = camera;
+      this.rt = rt;
+      this.width = width;
+      this.height = height;
+      this.left = left;
+      this.top = top;
+      this.frame = frame;
+      this.image = image;
+      this.checkpoint = checkpoint;
+      this.done = done;
+      this.cancelled = cancelled;
+      this.from = from;
+      this.to = to;
+    }
+
+    protected void compute()
+    {
+      if (cancelled.get()) {
+        return;
+      }
+      if (to - from > 1) {
+        int mid = (from + to) >>> 1;
+        invokeAll(new TileRange(camera, rt, width, height, left, top,
+          frame, image, checkpoint, done, cancelled, from, mid),
+        new TileRange(camera, rt, width, height, left, top,
+          frame, image, checkpoint, done, cancelled, mid, to));
+      }
+      else if (to > from) {
+        renderTile(from);
+      }
+    }
+
+    private void renderTile(int tile)
+    {
+      int x0 = (tile % tilesX(frame)) * tileSize;
+      int y0 = (tile / tilesX(frame)) * tileSize;
+      int w = Math.min(tileSize, frame.getWidth() - x0);
+      int h = Math.min(tileSize, frame.getHeight() - y0);
+
+      if ((checkpoint == null) || ! checkpoint.restore(frame, x0, y0, w, h)) {
+        // Tiles are disjoint, so they are added without synchronization
+        for (int j = 0 ; j < h ; j++)
+        {
+          if (cancelled.get()) {
+            // The tile is left unfinished, and neither shown nor saved
+            return;
+          }
+          for (int i = 0 ; i < w ; i++)
+          {
+            frame.add(x0 + i, y0 + j,
+            computePixel(camera, rt, left + x0 + i, top + y0 + j, width, height, antialiasLevel));
+          }
+        }
+        if (checkpoint != null) {
+          checkpoint.save(frame, x0, y0, w, h);
+        }
+      }
+
+      if (image != null) {
+        boolean whole = (image.getWidth() == width) && (image.getHeight() == height);
+        frame.toImage(image, whole ? left + x0 : x0, whole ? top + y0 : y0, x0, y0, w, h, 0);
+      }
+      done.addAndGet(w * h);
+    }
+  }
+
+  /**
+   * Returns the light of pixel (i, j), averaged over
+   * <code>antialiasLevel</code> by <code>antialiasLevel</code> rays.
+   */
+  static RGB computePixel(Camera camera, RayTracer rt, int i, int j, int width, int height, int antialiasLevel)
+  {
+    if (antialiasLevel == 1) {
+      Ray ray = camera.getRay(((double) i + 0.5) / width,
+      ((double) j + 0.5) / height, 1.0 / width);
+      return rt.getLight(ray);
+    }
+
+    double decalX = 1.0 / (antialiasLevel * width);
+    double decalY = 1.0 / (antialiasLevel * height);
+    double px = (0.5 * decalX) + (((double) i) / width);
+    double py = (0.5 * decalY) + (((double) j) / height);
+
+    RGB light = RGB.black;
+
+    for (int kx = 0 ; kx < antialiasLevel ; kx++)
+    {
+      for (int ky = 0 ; ky < antialiasLevel ; ky++)
+      {
+        Ray ray = camera.getRay(px + (kx * decalX),
+        py + (ky * decalY), decalX);
+        light = RGB.sum(light, rt.getLight(ray));
+      }
+    }
+
+    return RGB.product(light, 1.0 / (antialiasLevel * antialiasLevel));
+  }
+}
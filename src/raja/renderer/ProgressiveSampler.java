@@ -0,0 +1,265 @@
+package raja.renderer;
+
+import java.awt.image.BufferedImage;
+import javax.swing.BoundedRangeModel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A sampler that renders the image in passes of decreasing block size, so
+ * that a coarse picture is available early and then refined.
+ * The first pass traces the top left pixel of each block of
+ * <code>initialBlockSize</code> by <code>initialBlockSize</code> pixels and
+ * fills the whole block with its color.  Each following pass halves the
+ * block size and only traces the pixels that no previous pass traced, so
+ * every pixel is traced once, and the last pass leaves the same image as
+ * {@link ParallelSampler}.
+ * <p>
+ * Blocks are rendered on a work-stealing <code>ForkJoinPool</code>, one
+ * row of blocks per task, and a finished row is written into the image at
+ * once.  A rendering stops within a pixel when {@link #cancel} is called or
+ * when the calling thread is interrupted; the image then keeps the picture
+ * of the last finished rows.
+ * <p>
+ * Only the traced pixels are added to a {@link FrameBuffer}, which holds
+ * the whole image once the last pass is finished.
+ */
+public class ProgressiveSampler implements FrameBufferSampler
+{
+  public static final int DEFAULT_INITIAL_BLOCK_SIZE = 16;
+
+  private static final long PROGRESS_PERIOD = 100; // ms
+
+  private int parallelism;
+  private int antialiasLevel;
+  private int initialBlockSize;
+  private volatile boolean cancelled;
+
+  /**
+   * @param parallelism the number of worker threads, or 0 to use one
+   *        thread per available processor.
+   * @param antialiasLevel the number of rays per pixel along each axis.
+   * @param initialBlockSize the width and height in pixels of the blocks
+   *        of the first pass, a power of 2.
+   */
+  public ProgressiveSampler(int parallelism, int antialiasLevel, int initialBlockSize)
+  {
+    if (parallelism < 0) {
+      throw new IllegalArgumentException("parallelism < 0");
+    }
+    if (antialiasLevel < 1) {
+      throw new IllegalArgumentException("antialiasLevel < 1");
+    }
+    if ((initialBlockSize < 1) || (Integer.bitCount(initialBlockSize) != 1)) {
+      throw new IllegalArgumentException("initialBlockSize is not a power of 2");
+    }
+
+    this.parallelism = (parallelism == 0) ? Runtime.getRuntime().availableProcessors() : parallelism;
+    this.antialiasLevel = antialiasLevel;
+    this.initialBlockSize = initialBlockSize;
+  }
+
+  public ProgressiveSampler(int parallelism, int antialiasLevel)
+  {
+    this(parallelism, antialiasLevel, DEFAULT_INITIAL_BLOCK_SIZE);
+  }
+
+  public ProgressiveSampler(int parallelism)
+  {
+    this(parallelism, 1);
+  }
+
+  public int getParallelism()
+  {
+    return parallelism;
+  }
+
+  /**
+   * Stops the rendering in progress, if any.  A rendering started after
+   * this call is not affected.
+   */
+  public void cancel()
+  {
+    cancelled = true;
+  }
+
+  /**
+   * Returns whether the last rendering was stopped before its end.
+   */
+  public boolean isCancelled()
+  {
+    return cancelled;
+  }
+
+  public void compute(Camera camera, RayTracer rt, BoundedRangeModel model, BufferedImage image)
+  {
+    if (image == null) {
+      throw new IllegalArgumentException("null image");
+    }
+
+    compute(camera, rt, model, new FrameBuffer(image.getWidth(), image.getHeight()), image);
+  }
+
+  public void compute(Camera camera, RayTracer rt, BufferedImage image)
+  {
+    compute(camera, rt, null, image);
+  }
+
+  public void compute(Camera camera, RayTracer rt, BoundedRangeModel model, FrameBuffer frame, BufferedImage image)
+  {
+    if (frame == null) {
+      throw new IllegalArgumentException("null frame buffer");
+    }
+
+    if (model != null) {
+      model.setMinimum(1);
+      model.setMaximum(frame.getWidth() * frame.getHeight());
+      model.setValue(1);
+    }
+
+    cancelled = false;
+    AtomicInteger done = new AtomicInteger();
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+    try {
+      for (int blockSize = initialBlockSize ; (blockSize >= 1) && ! cancelled ; blockSize /= 2)
+      {
+        Pass task = new Pass(camera, rt, frame, image, done, blockSize, 0, rows(frame, blockSize));
+        pool.execute(task);
+
+        while (! task.isDone())
+        {
+          try {
+            task.get(PROGRESS_PERIOD, TimeUnit.MILLISECONDS);
+          }
+          catch (java.util.concurrent.TimeoutException e) {
+            // Still running: publish progress below
+          }
+          catch (InterruptedException e) {
+            // Let the workers finish their pixel before returning, so that
+            // nothing is written into the image afterwards
+            cancelled = true;
+            task.quietlyJoin();
+            Thread.currentThread().interrupt();
+            return;
+          }
+          catch (java.util.concurrent.ExecutionException e) {
+            rethrow(e.getCause());
+          }
+          if (model != null) {
+            model.setValue(1 + done.get());
+          }
+        }
+        if (model != null) {
+          model.setValue(1 + done.get());
+        }
+      }
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private static int rows(FrameBuffer frame, int blockSize)
+  {
+    return (frame.getHeight() + blockSize - 1) / blockSize;
+  }
+
+  private static void rethrow(Throwable t)
+  {
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    }
+    if (t instanceof Error) {
+      throw (Error) t;
+    }
+    throw new RuntimeException(t);
+  }
+
+  /**
+   * Renders the rows of blocks of index <code>from</code> (inclusive) to
+   * <code>to</code> (exclusive) of one pass, splitting the range in halves
+   * until a single row remains so that idle workers can steal the other
+   * half.
+   */
+  private class Pass extends RecursiveAction
+  {
+    private Camera camera;
+    private RayTracer rt;
+    private FrameBuffer frame;
+    private BufferedImage image;
+    private AtomicInteger done;
+    private int blockSize;
+    private int from, to;
+
+    Pass(Camera camera, RayTracer rt, FrameBuffer frame, BufferedImage image, AtomicInteger done,
+      int blockSize, int from, int to)
+    {
+      this.camera = camera;
+      this.rt = rt;
+      this.frame = frame;
+      this.image = image;
+      this.done = done;
+      this.blockSize = blockSize;
+      this.from = from;
+      this.to = to;
+    }
+
+    protected void compute()
+    {
+      if (to - from > 1) {
+        int mid = (from + to) >>> 1;
+        invokeAll(new Pass(camera, rt, frame, image, done, blockSize, from, mid),
+        new Pass(camera, rt, frame, image, done, blockSize, mid, to));
+      }
+      else if (to > from) {
+        renderRow(from);
+      }
+    }
+
+    private void renderRow(int row)
+    {
+      int width = frame.getWidth();
+      int height = frame.getHeight();
+      int y0 = row * blockSize;
+      int h = Math.min(blockSize, height - y0);
+      int[] pixels = new int[width * h];
+      boolean firstPass = (blockSize == initialBlockSize);
+      boolean evenRow = (y0 % (2 * blockSize) == 0);
+      int traced = 0;
+
+      for (int x0 = 0 ; x0 < width ; x0 += blockSize)
+      {
+        if (cancelled) {
+          return;
+        }
+
+        if (firstPass || ! evenRow || (x0 % (2 * blockSize) != 0)) {
+          // Pixels are traced once, so they are added without synchronization
+          frame.add(x0, y0, ParallelSampler.computePixel(camera, rt, x0, y0, width, height, antialiasLevel));
+          traced++;
+        }
+        // Else traced by a previous pass, which filled this block with its color
+        int color = frame.getRGB(x0, y0);
+
+        int w = Math.min(blockSize, width - x0);
+        for (int j = 0 ; j < h ; j++)
+        {
+          Arrays.fill(pixels, j * width + x0, j * width + x0 + w, color);
+        }
+      }
+
+      // Rows are disjoint, but the color model of the image is shared
+      if (image != null) {
+        synchronized(image) {
+          image.setRGB(0, y0, width, h, pixels, 0, width);
+        }
+      }
+      done.addAndGet(traced);
+    }
+  }
+}
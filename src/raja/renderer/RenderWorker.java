@@ -0,0 +1,197 @@
+package raja.renderer;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import raja.RGB;
+import raja.io.BinaryObjectReader;
+import raja.io.ObjectReader;
+
+
+/**
+ * Renders tiles for a {@link DistributedRenderer}.  A worker connects to
+ * the coordinator, builds the scene it receives once, then renders the
+ * tiles it is sent on its own threads and sends the light of their pixels
+ * back as soon as each one is done, until the coordinator tells it the
+ * image is complete.
+ */
+public class RenderWorker
+{
+  private String host;
+  private int port;
+  private int parallelism;
+
+  /**
+   * @param parallelism the number of tiles rendered at the same time, or
+   *        0 for one per available processor.
+   */
+  public RenderWorker(String host, int port, int parallelism)
+  {
+    if (parallelism < 0) {
+      throw new IllegalArgumentException("parallelism < 0");
+    }
+
+    this.host = host;
+    this.port = port;
+    this.parallelism = (parallelism == 0) ? Runtime.getRuntime().availableProcessors() : parallelism;
+  }
+
+  /**
+   * Renders tiles until the image is complete, and returns the number of
+   * tiles rendered by this worker.  If a tile cannot be rendered, the
+   * connection is closed so that the coordinator hands out the tiles of
+   * this worker again, and the failure is thrown.
+   */
+  public int run() throws IOException
+  {
+    final Socket socket = new Socket(host, port);
+    socket.setTcpNoDelay(true);
+    DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    ScheduledExecutorService alive = Executors.newSingleThreadScheduledExecutor();
+    final AtomicReference failure = new AtomicReference();
+    int count = 0;
+
+    try {
+      if ((in.readInt() != DistributedRenderer.MAGIC) || (in.readInt() != DistributedRenderer.VERSION)) {
+        throw new IOException("not a compatible Raja coordinator");
+      }
+
+      // Keeps the coordinator from dropping this worker while the scene is
+      // built and tiles are rendered
+      alive.scheduleAtFixedRate(new Runnable() {
+        public void run()
+        {
+          try {
+            synchronized(out) {
+              out.writeInt(DistributedRenderer.ALIVE);
+              out.flush();
+            }
+          }
+          catch (IOException e) {
+            // The coordinator is gone: the reading loop stops too
+          }
+        }
+      }, DistributedRenderer.ALIVE_PERIOD, DistributedRenderer.ALIVE_PERIOD, TimeUnit.MILLISECONDS);
+
+      byte[] data = new byte[in.readInt()];
+      in.readFully(data);
+      final int width = in.readInt();
+      final int height = in.readInt();
+      int depth = in.readInt();
+      boolean exact = in.readBoolean();
+      final int antialiasLevel = in.readInt();
+
+      Scene scene = readScene(data);
+      final Camera camera = scene.getCamera();
+      final RayTracer rt = exact ? new AdvancedRayTracer(scene.getWorld(), depth, 0) : new AdvancedRayTracer(scene.getWorld(), depth);
+
+      synchronized(out) {
+        out.writeInt(parallelism);
+        out.flush();
+      }
+
+      while (in.readInt() == DistributedRenderer.TILE)
+      {
+        final int x0 = in.readInt();
+        final int y0 = in.readInt();
+        final int w = in.readInt();
+        final int h = in.readInt();
+        count++;
+
+        executor.execute(new Runnable() {
+          public void run()
+          {
+            try {
+              sendTile(out, computeTile(camera, rt, x0, y0, w, h, width, height, antialiasLevel), x0, y0, w, h);
+            }
+            catch (IOException e) {
+              // The coordinator is gone: the reading loop stops too
+            }
+            catch (Throwable e) {
+              failure.compareAndSet(null, e);
+              try {
+                socket.close();
+              }
+              catch (IOException ce) {
+                // Closed anyway
+              }
+            }
+          }
+        });
+      }
+    }
+    catch (IOException e) {
+      if (failure.get() != null) {
+        throw new IOException("tile rendering failed", (Throwable) failure.get());
+      }
+      throw e;
+    }
+    finally {
+      alive.shutdownNow();
+      executor.shutdownNow();
+      socket.close();
+    }
+    return count;
+  }
+
+  private static float[] computeTile(Camera camera, RayTracer rt, int x0, int y0, int w, int h,
+    int width, int height, int antialiasLevel)
+  {
+    float[] lights = new float[3 * w * h];
+    for (int j = 0 ; j < h ; j++)
+    {
+      for (int i = 0 ; i < w ; i++)
+      {
+        RGB light = ParallelSampler.computePixel(camera, rt, x0 + i, y0 + j, width, height, antialiasLevel);
+        int k = 3 * (j * w + i);
+        lights[k] = (float) light.getR();
+        lights[k + 1] = (float) light.getG();
+        lights[k + 2] = (float) light.getB();
+      }
+    }
+    return lights;
+  }
+
+  private static void sendTile(DataOutputStream out, float[] lights, int x0, int y0, int w, int h)
+  throws IOException
+  {
+    synchronized(out) {
+      out.writeInt(x0);
+      out.writeInt(y0);
+      out.writeInt(w);
+      out.writeInt(h);
+      for (int k = 0 ; k < lights.length ; k++)
+      {
+        out.writeFloat(lights[k]);
+      }
+      out.flush();
+    }
+  }
+
+  private static Scene readScene(byte[] data) throws IOException
+  {
+    ObjectReader reader;
+
+    if (BinaryObjectReader.isBinary(data)) {
+      reader = new BinaryObjectReader(ByteBuffer.wrap(data));
+    }
+    else {
+      reader = new ObjectReader(new InputStreamReader(new ByteArrayInputStream(data)));
+    }
+
+    try {
+      return (Scene) reader.readObject();
+    }
+    finally {
+      reader.close();
+    }
+  }
+}
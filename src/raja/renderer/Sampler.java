@@ -22,6 +22,12 @@ import java.awt.image.BufferedImage;
 import javax.swing.BoundedRangeModel;
 
 
+/**
+ * Computes the pixels of an image by tracing rays from a camera.  A
+ * sampler stops when the calling thread is interrupted, within a column
+ * or a tile, and returns with the image unfinished and the thread still
+ * interrupted.
+ */
 public interface Sampler
 {
   public void compute(Camera camera, RayTracer rt, BoundedRangeModel model, BufferedImage image);
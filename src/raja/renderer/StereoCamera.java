@@ -85,7 +85,24 @@ public class StereoCamera extends Camera
     
     return r;
   }
-  
+
+  Ray getRay(double x, double y, double pixelWidth)
+  {
+    Ray r;
+
+    // Each eye has its own half of the image
+    if (x < 0.5) {
+      r = camera.getRay(2*x, y, 2*pixelWidth);
+      r.origin.translate(trans);
+    }
+    else {
+      r = camera.getRay(2*x - 1, y, 2*pixelWidth);
+      r.origin.translate(Vector3D.opposite(trans));
+    }
+
+    return r;
+  }
+
   // ADDED by Murat Inan
   @Override
   public String getUsageInformation()
@@ -0,0 +1,107 @@
+package raja.renderer;
+
+import raja.io.ScanlineWriter;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import javax.swing.BoundedRangeModel;
+import javax.swing.DefaultBoundedRangeModel;
+
+
+/**
+ * A renderer computing the image band after band, each band being as high
+ * as a few rows of tiles, and handing each band to a
+ * {@link ScanlineWriter} as soon as it is complete.  Only a band is held
+ * in memory, whatever the resolution, so that images too large for the
+ * heap can be rendered.
+ * <p>
+ * Bands are rendered by a {@link ParallelSampler}, so the pixels are the
+ * same as in an image rendered at once.  {@link #getImage} returns the
+ * band being rendered.
+ */
+public class StreamingRenderer implements Renderer
+{
+  private Camera camera;
+  private RayTracer rt;
+  private ParallelSampler sampler;
+  private ScanlineWriter writer;
+  private int width;
+  private int height;
+  private FrameBuffer frame;
+  private BufferedImage band;
+  private BoundedRangeModel model;
+  private IOException error;
+
+  /**
+   * @param bandHeight the number of rows rendered at once.
+   */
+  public StreamingRenderer(Camera camera, Resolution res, RayTracer rt, ParallelSampler sampler,
+    int bandHeight, ScanlineWriter writer)
+  {
+    if (bandHeight < 1) {
+      throw new IllegalArgumentException("bandHeight < 1");
+    }
+
+    this.camera = camera;
+    this.rt = rt;
+    this.sampler = sampler;
+    this.writer = writer;
+    width = res.width;
+    height = res.height;
+
+    bandHeight = Math.min(bandHeight, height);
+    frame = new FrameBuffer(width, bandHeight);
+    band = new BufferedImage(width, bandHeight, BufferedImage.TYPE_INT_RGB);
+    model = new DefaultBoundedRangeModel();
+  }
+
+  public BufferedImage getImage()
+  {
+    return band;
+  }
+  public BoundedRangeModel getModel()
+  {
+    return model;
+  }
+
+  /**
+   * Returns the error that stopped the writing of the image, or
+   * <code>null</code> if there was none.
+   */
+  public IOException getError()
+  {
+    return error;
+  }
+
+  /**
+   * Renders and writes the bands, and closes the writer once the image is
+   * complete.
+   */
+  public void run()
+  {
+    model.setMinimum(1);
+    model.setMaximum(width * height);
+    model.setValue(1);
+
+    try {
+      for (int top = 0 ; top < height ; top += frame.getHeight())
+      {
+        if (top + frame.getHeight() > height) {
+          // The last band is lower
+          frame = new FrameBuffer(width, height - top);
+        }
+        else {
+          frame.clear();
+        }
+
+        sampler.compute(camera, rt, null, width, height, 0, top, frame, band);
+        writer.write(band, frame.getHeight());
+        model.setValue(1 + width * (top + frame.getHeight()));
+      }
+      writer.close();
+    }
+    catch (IOException e) {
+      error = e;
+    }
+  }
+}
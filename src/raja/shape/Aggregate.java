@@ -32,11 +32,21 @@ import java.util.Iterator;
 import java.util.Comparator;
 
 
-public class Aggregate implements Solid, java.io.Serializable, Writable
+/**
+ * A set of solids with priorities between them.
+ * Rays are not tested against every solid: the solids are organized in a
+ * bounding volume hierarchy, (re)built lazily whenever the list of solids
+ * has changed, so that only the solids whose box is crossed by the ray are
+ * intersected.
+ */
+public class Aggregate implements Solid, Bounded, java.io.Serializable, Writable
 {
   private List solids;
   private DirectedGraph priorities;
   
+  private transient volatile BoundingVolumeHierarchy hierarchy;
+  private transient int hierarchyModificationCount;
+  
   public Aggregate()
   {
     solids = new List();
@@ -95,6 +105,62 @@ public class Aggregate implements Solid, java.io.Serializable, Writable
     priorities.addEdge(major, minor);
   }
   
+  private BoundingVolumeHierarchy getHierarchy()
+  {
+    BoundingVolumeHierarchy result = hierarchy;
+    
+    if ((result == null) || (hierarchyModificationCount != solids.getModificationCount())) {
+      synchronized(this) {
+        result = hierarchy;
+        if ((result == null) || (hierarchyModificationCount != solids.getModificationCount())) {
+          hierarchyModificationCount = solids.getModificationCount();
+          result = new BoundingVolumeHierarchy(solids);
+          hierarchy = result;
+        }
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Returns the solids other than <code>ignored</code> that contain the
+   * given point, strictly or not, among those whose box contains it.  Only
+   * the first one found is returned unless <code>all</code> is set.
+   *
+   * @return the solids found, or <code>null</code> if there is none, so
+   *         that no set is created for the many points inside no solid.
+   */
+  private Set solidsContaining(final Point3D p, final boolean strictly, final Solid ignored, final boolean all)
+  {
+    class Containing implements BoundingVolumeHierarchy.Visitor
+    {
+      Set solids = null;
+      
+      public double visit(Object item, double maxDistance)
+      {
+        Solid currentSolid = (Solid) item;
+        if ((currentSolid != ignored) &&
+        (strictly ? currentSolid.strictlyContains(p) : currentSolid.contains(p))) {
+          if (solids == null) {
+            solids = new HashSet();
+          }
+          solids.add(currentSolid);
+          return all ? maxDistance : -1;
+        }
+        return maxDistance;
+      }
+    }
+    
+    Containing containing = new Containing();
+    getHierarchy().visitContaining(p, containing);
+    return containing.solids;
+  }
+  
+  public BoundingBox getBounds()
+  {
+    return getHierarchy().getBounds();
+  }
+  
   private boolean hasPriority(Solid major, Solid minor)
   {
     return priorities.hasEdge(major, minor);
@@ -133,7 +199,7 @@ public class Aggregate implements Solid, java.io.Serializable, Writable
     }
   }
   
-  public SolidLocalGeometry intersection(Ray r)
+  public SolidLocalGeometry intersection(final Ray r)
   {
     class Point3DComparator implements Comparator
     {
@@ -162,45 +228,72 @@ public class Aggregate implements Solid, java.io.Serializable, Writable
       }
     }
     
-    TreeMap Intersections = new TreeMap(new Point3DComparator(r.origin));
-    
-    for(Iterator iterSolid = solids.iterator() ; iterSolid.hasNext() ;)
+    class ClosestHit implements BoundingVolumeHierarchy.Visitor
     {
-      Solid currentSolid = (Solid) iterSolid.next();
-      SolidLocalGeometry currentIntersection = currentSolid.intersection(r);
-      if (currentIntersection != null) {
-        Intersections.put(currentIntersection, currentSolid);
+      SolidLocalGeometry intersection = null;
+      Solid solid = null;
+      
+      public double visit(Object item, double maxDistance)
+      {
+        Solid currentSolid = (Solid) item;
+        SolidLocalGeometry currentIntersection = currentSolid.intersection(r);
+        if (currentIntersection != null) {
+          double d = Point3D.distance(r.origin, currentIntersection);
+          if ((intersection == null) || (d < maxDistance)) {
+            intersection = currentIntersection;
+            solid = currentSolid;
+            return d;
+          }
+        }
+        return maxDistance;
       }
     }
     
-    if (Intersections.isEmpty()) {
+    final BoundingVolumeHierarchy bvh = getHierarchy();
+    ClosestHit closest = new ClosestHit();
+    bvh.traverse(r, Double.POSITIVE_INFINITY, closest);
+    
+    if (closest.intersection == null) {
       return null;
     }
     
-    SolidLocalGeometry first = (SolidLocalGeometry) Intersections.firstKey();
-    
-    Set formsIn = new HashSet();
-    
-    for(Iterator iterSolid = solids.iterator() ; iterSolid.hasNext() ;)
-    {
-      Solid currentSolid = (Solid) iterSolid.next();
-      if (currentSolid.strictlyContains(first)) {
-        formsIn.add(currentSolid);
-      }
-    }
+    final SolidLocalGeometry first = closest.intersection;
+    final Solid firstSolid = closest.solid;
     
-    Solid firstSolid = (Solid) Intersections.get(first);
+    Set formsIn = solidsContaining(first, true, null, true);
     
     if (! firstSolid.strictlyContains(first)) {
       if (Vector3D.dotProduct(r.direction, first.getNormal()) > 0) {
+        if (formsIn == null) {
+          formsIn = new HashSet();
+        }
         formsIn.add(firstSolid);
       }
     }
     
-    if (formsIn.isEmpty()) {
+    if (formsIn == null) {
       return first;
     }
     
+    // The first hit lies inside other solids: the priorities decide which
+    // hit along the ray is the valid one, so all of them are needed.
+    final TreeMap Intersections = new TreeMap(new Point3DComparator(r.origin));
+    Intersections.put(first, firstSolid);
+    
+    bvh.traverse(r, Double.POSITIVE_INFINITY, new BoundingVolumeHierarchy.Visitor() {
+        public double visit(Object item, double maxDistance)
+        {
+          Solid currentSolid = (Solid) item;
+          if (currentSolid != firstSolid) {
+            SolidLocalGeometry currentIntersection = currentSolid.intersection(r);
+            if (currentIntersection != null) {
+              Intersections.put(currentIntersection, currentSolid);
+            }
+          }
+          return maxDistance;
+        }
+    });
+    
     Solid mainSolid = mainSolid(formsIn);
     
     SolidLocalGeometry validIntersection = null;
@@ -268,54 +361,70 @@ public class Aggregate implements Solid, java.io.Serializable, Writable
     return validIntersection;
   }
   
-  public boolean intersects(LightRay r)
+  /**
+   * Tells whether a solid hides the light source of the specified ray.
+   * Stops at the first solid hit before the light.  The priorities only
+   * discard hits lying strictly inside other solids, so such a hit is
+   * decisive unless another solid strictly contains it, in which case the
+   * full intersection is computed.
+   */
+  public boolean intersects(final LightRay r)
   {
-    Point3D intersection = intersection(r);
-    if (intersection != null) {
-      double d = Point3D.distance(r.origin, intersection);
-      if (d < r.distance) {
-        return true;
+    class AnyHit implements BoundingVolumeHierarchy.Visitor
+    {
+      Solid solid = null;
+      double distance;
+      
+      public double visit(Object item, double maxDistance)
+      {
+        Solid currentSolid = (Solid) item;
+        double d = currentSolid.hitDistance(r);
+        if (d < r.distance) {
+          solid = currentSolid;
+          distance = d;
+          return -1;
+        }
+        return maxDistance;
       }
     }
-    return false;
+    
+    AnyHit hit = new AnyHit();
+    getHierarchy().traverse(r, r.distance, hit);
+    
+    if (hit.solid == null) {
+      return false;
+    }
+    
+    Point3D p = new Point3D(r.origin, Vector3D.product(r.direction, hit.distance));
+    
+    if (solidsContaining(p, true, hit.solid, false) != null) {
+      return (hitDistance(r) < r.distance);
+    }
+    return true;
+  }
+  public double hitDistance(Ray r)
+  {
+    Point3D intersection = intersection(r);
+    if (intersection == null) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return Point3D.distance(r.origin, intersection);
   }
   
   public boolean contains(Point3D p)
   {
-    for(Iterator iterSolid = solids.iterator() ; iterSolid.hasNext() ;)
-    {
-      Solid currentSolid = (Solid) iterSolid.next();
-      if (currentSolid.contains(p)) {
-        return true;
-      }
-    }
-    return false;
+    return (solidsContaining(p, false, null, false) != null);
   }
   public boolean strictlyContains(Point3D p)
   {
-    for(Iterator iterSolid = solids.iterator() ; iterSolid.hasNext() ;)
-    {
-      Solid currentSolid = (Solid) iterSolid.next();
-      if (currentSolid.strictlyContains(p)) {
-        return true;
-      }
-    }
-    return false;
+    return (solidsContaining(p, true, null, false) != null);
   }
   
   public double refractiveIndex(Point3D p)
   {
-    Set formsIn = new HashSet();
+    Set formsIn = solidsContaining(p, false, null, true);
     
-    for(Iterator iterSolid = solids.iterator() ; iterSolid.hasNext() ;)
-    {
-      Solid currentSolid = (Solid) iterSolid.next();
-      if (currentSolid.contains(p)) {
-        formsIn.add(currentSolid);
-      }
-    }
-    
-    Solid mainSolid = mainSolid(formsIn);
+    Solid mainSolid = mainSolid((formsIn != null) ? formsIn : new HashSet());
     return mainSolid.refractiveIndex(p);
   }
   
@@ -19,9 +19,11 @@
 package raja.shape;
 
 import raja.*;
+import raja.util.RenderStatistics;
+import java.util.Arrays;
 
 
-public abstract class BasicForm implements Form
+public abstract class BasicForm implements Form, Bounded
 {
   protected abstract Point3D computeIntersection(Ray r);
   protected abstract Vector3D computeNormal(Point3D p);
@@ -38,34 +40,49 @@ public abstract class BasicForm implements Form
   public abstract void setVolumeValue(double vlm);
   ////////////////////
   
-  public LocalGeometry intersection(Ray r)
+  // Shared by the points returned by intersection, which it only tells
+  // apart by their form
+  private transient AcneCorrection acneCorrection;
+  
+  AcneCorrection getAcneCorrection()
+  {
+    if (acneCorrection == null) {
+      acneCorrection = new AcneCorrection() {
+        BasicForm getBasicForm()
+        {
+          return BasicForm.this;
+        }
+      };
+    }
+    return acneCorrection;
+  }
+  
+  private static class BasicLocalGeometry extends LocalGeometry
   {
-    class BasicLocalGeometry extends LocalGeometry
+    BasicForm form;
+    
+    BasicLocalGeometry(Point3D p, BasicForm f)
     {
-      BasicForm form;
-      
-      BasicLocalGeometry(Point3D p, BasicForm f)
-      {
-        super(p);
-        this.form = f;
-      }
-      
-      AcneCorrection getAcneCorrection()
-      {
-        return new AcneCorrection() {
-          BasicForm getBasicForm()
-          {
-            return form;
-          }
-        };
-      }
-      public Vector3D getNormal()
-      {
-        return form.computeNormal(this);
-      }
+      super(p);
+      this.form = f;
     }
     
+    AcneCorrection getAcneCorrection()
+    {
+      return form.getAcneCorrection();
+    }
+    public Vector3D getNormal()
+    {
+      return form.computeNormal(this);
+    }
+  }
+  
+  public LocalGeometry intersection(Ray r)
+  {
     Point3D intersection = computeIntersection(r);
+    if (RenderStatistics.isEnabled()) {
+      RenderStatistics.countIntersection(this, intersection != null);
+    }
     
     if (intersection == null) {
       return null;
@@ -75,16 +92,93 @@ public abstract class BasicForm implements Form
     }
   }
   
+  /**
+   * Returns the points where <code>r</code> crosses the boundary of this
+   * form, by increasing distance from the origin of the ray.  CSG forms
+   * combine these crossings along the ray.
+   */
+  LocalGeometry[] crossings(Ray r)
+  {
+    Point3D[] points = computeCrossings(r);
+    if (RenderStatistics.isEnabled()) {
+      RenderStatistics.countIntersection(this, points.length > 0);
+    }
+    
+    LocalGeometry[] result = new LocalGeometry[points.length];
+    for(int i = 0 ; i < points.length ; i++)
+    {
+      result[i] = new BasicLocalGeometry(points[i], this);
+    }
+    return result;
+  }
+  
+  /**
+   * Returns the points where <code>r</code> crosses the boundary of this
+   * form, by increasing distance from the origin of the ray.  This
+   * implementation looks for each point with {@link #computeIntersection}
+   * from just after the previous one, and stops if the form does not move
+   * along the ray.  Forms that solve for all their crossings at once
+   * override it.
+   */
+  protected Point3D[] computeCrossings(Ray r)
+  {
+    Point3D[] points = new Point3D[2];
+    int count = 0;
+    double last = 0;
+    
+    Point3D p = computeIntersection(r);
+    while (p != null)
+    {
+      double d = Point3D.distance(r.origin, p);
+      if ((count > 0) && (d <= last)) {
+        break;
+      }
+      if (count == points.length) {
+        points = Arrays.copyOf(points, 2 * count);
+      }
+      points[count++] = p;
+      last = d;
+      p = computeIntersection(new Ray(new Point3D(p, Vector3D.product(r.direction, Ray.EPSILON)), r.direction));
+    }
+    return Arrays.copyOf(points, count);
+  }
+  
   public boolean intersects(LightRay r)
+  {
+    return (hitDistance(r) < r.distance);
+  }
+  public double hitDistance(Ray r)
   {
     Point3D intersection = computeIntersection(r);
-    if (intersection != null) {
-      double d = Point3D.distance(r.origin, intersection);
-      if (d < r.distance) {
-        return true;
-      }
+    if (RenderStatistics.isEnabled()) {
+      RenderStatistics.countIntersection(this, intersection != null);
     }
-    return false;
+    if (intersection == null) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return Point3D.distance(r.origin, intersection);
+  }
+  
+  /**
+   * Returns the world space box of this form: its local box mapped through
+   * its transform, or <code>null</code> if the form is unbounded.
+   */
+  public BoundingBox getBounds()
+  {
+    BoundingBox local = getLocalBounds();
+    if (local == null) {
+      return null;
+    }
+    return local.transform(getTransform());
+  }
+  
+  /**
+   * Returns the box of this form in its local space (before its transform
+   * is applied), or <code>null</code> if the form is unbounded.
+   */
+  protected BoundingBox getLocalBounds()
+  {
+    return null;
   }
   
   public boolean contains(Point3D p)
@@ -147,20 +241,87 @@ public abstract class BasicForm implements Form
     }
     
     if (tMin > 0) {
-      Point3D intersection = new Point3D(r.origin, Vector3D.product(r.direction, tMin));
+      Point3D intersection = r.pointAt(tMin);
       if (isValid(intersection, r)) {
         return intersection;
       }
     }
     
-    Point3D intersection = new Point3D(r.origin, Vector3D.product(r.direction, tMax));
+    Point3D intersection = r.pointAt(tMax);
     if (isValid(intersection, r)) {
       return intersection;
     }
     return null;
   }
   
-  private boolean isValid(Point3D intersection, Ray r)
+  /**
+   * Returns the points on the ray corresponding to all the positive
+   * solutions to the equation a*X^2 + b*X + c = 0, by increasing X, with
+   * the same tests as {@link #solve2ndOrder}.
+   * @param a, b, c the coefficients of the equation.
+   * @param r the ray.
+   * @return the crossings of the ray with the form, possibly none.
+   */
+  protected Point3D[] solve2ndOrderCrossings(double a, double b, double c, Ray r)
+  {
+    Point3D[] none = new Point3D[0];
+    
+    if (a == 0) {
+      if (b != 0) {
+        double t = (- c) / b;
+        if (t > 0) {
+          Point3D intersection = r.pointAt(t);
+          if (isValid(intersection, r)) {
+            return new Point3D[] { intersection };
+          }
+        }
+      }
+      return none;
+    }
+    
+    double det = b*b - 4 * a *c;
+    
+    if (det < 0) {
+      return none;
+    }
+    
+    double tMin, tMax;
+    
+    if (a < 0) {
+      tMin = (-b + Math.sqrt(det)) / (2 * a);
+      tMax = (-b - Math.sqrt(det)) / (2 * a);
+    }
+    else {
+      tMin = (-b - Math.sqrt(det)) / (2 * a);
+      tMax = (-b + Math.sqrt(det)) / (2 * a);
+    }
+    if (tMax <= 0) {
+      return none;
+    }
+    
+    Point3D first = null;
+    if (tMin > 0) {
+      first = r.pointAt(tMin);
+      if (! isValid(first, r)) {
+        first = null;
+      }
+    }
+    
+    Point3D second = r.pointAt(tMax);
+    if (! isValid(second, r)) {
+      return (first == null) ? none : new Point3D[] { first };
+    }
+    return (first == null) ? new Point3D[] { second } : new Point3D[] { first, second };
+  }
+  
+  /**
+   * Returns whether <code>intersection</code> is a hit of <code>r</code>
+   * rather than the origin of the ray found again, when the ray starts on
+   * this form.  The successive crossings of a closed surface alternate
+   * between entering and leaving it, so a hit crossed the same way as the
+   * origin is the origin itself.
+   */
+  protected boolean isValid(Point3D intersection, Ray r)
   {
     if (r.origin instanceof LocalGeometry) {
       LocalGeometry lg = (LocalGeometry) r.origin;
@@ -23,7 +23,7 @@ import raja.io.*;
 import java.util.HashMap;
 
 
-public class BasicSolid implements Solid, java.io.Serializable, Writable
+public class BasicSolid implements Solid, Bounded, java.io.Serializable, Writable
 {
   private TexturedForm texturedForm;
   private Volume volume;
@@ -67,6 +67,17 @@ public class BasicSolid implements Solid, java.io.Serializable, Writable
   {
     return texturedForm.intersects(r);
   }
+  public double hitDistance(Ray r)
+  {
+    return texturedForm.hitDistance(r);
+  }
+  public BoundingBox getBounds()
+  {
+    if (texturedForm instanceof Bounded) {
+      return ((Bounded) texturedForm).getBounds();
+    }
+    return null;
+  }
   public boolean contains(Point3D p)
   {
     return texturedForm.contains(p);
@@ -20,10 +20,11 @@ package raja.shape;
 
 import raja.*;
 import raja.io.*;
+import raja.util.RenderStatistics;
 import java.util.HashMap;
 
 
-public class BasicTexturedForm implements TexturedForm, java.io.Serializable, Writable
+public class BasicTexturedForm implements TexturedForm, Bounded, java.io.Serializable, Writable
 {
   private Form form;
   private Texture in, out;
@@ -64,10 +65,16 @@ public class BasicTexturedForm implements TexturedForm, java.io.Serializable, Wr
     map.put("texture",null);
     map.put("textureIn",null);
     map.put("textureOut",null);
+    map.put("transform",null);
     
     /* Parsing */
     reader.readFields(map);
     
+    // The transform written by write() belongs to the form
+    if ((map.get("transform") != null) && (map.get("form") instanceof BasicForm)) {
+      ((BasicForm) map.get("form")).setTransform((Matrix4) map.get("transform"));
+    }
+    
     if (map.get("texture") != null)
     {
       return new BasicTexturedForm((Form) map.get("form"),
@@ -81,29 +88,47 @@ public class BasicTexturedForm implements TexturedForm, java.io.Serializable, Wr
     }
   }
   
-  public TexturedLocalGeometry intersection(Ray r)
+  private static class BasicTexturedLocalGeometry extends TexturedLocalGeometry
   {
-    class BasicTexturedLocalGeometry extends TexturedLocalGeometry
+    Texture in, out;
+    
+    BasicTexturedLocalGeometry(LocalGeometry lgf, Texture in, Texture out)
     {
-      Texture in, out;
-      
-      BasicTexturedLocalGeometry(LocalGeometry lgf, Texture in, Texture out)
-      {
-        super(lgf);
-        this.in  = in;
-        this.out = out;
-      }
-      
-      public LocalTexture getInLocalTexture()
-      {
-        return in.getLocalTexture(this);
+      super(lgf);
+      this.in  = in;
+      this.out = out;
+    }
+    
+    public LocalTexture getInLocalTexture()
+    {
+      return getLocalTexture(in, null);
+    }
+    public LocalTexture getOutLocalTexture()
+    {
+      return getLocalTexture(out, null);
+    }
+    public LocalTexture getInLocalTexture(LocalTexture result)
+    {
+      return getLocalTexture(in, result);
+    }
+    public LocalTexture getOutLocalTexture(LocalTexture result)
+    {
+      return getLocalTexture(out, result);
+    }
+    private LocalTexture getLocalTexture(Texture t, LocalTexture result)
+    {
+      if (RenderStatistics.isEnabled()) {
+        RenderStatistics.countLocalTexture(t);
       }
-      public LocalTexture getOutLocalTexture()
-      {
-        return out.getLocalTexture(this);
+      if ((result != null) && (t instanceof FillableTexture)) {
+        return ((FillableTexture) t).getLocalTexture(this, result);
       }
+      return t.getLocalTexture(this);
     }
-    
+  }
+  
+  public TexturedLocalGeometry intersection(Ray r)
+  {
     LocalGeometry intersection = form.intersection(r);
     
     if (intersection == null) {
@@ -113,10 +138,39 @@ public class BasicTexturedForm implements TexturedForm, java.io.Serializable, Wr
       return new BasicTexturedLocalGeometry(intersection, in, out);
     }
   }
+  /**
+   * Returns the points where <code>r</code> crosses the boundary of this
+   * form, by increasing distance from the origin of the ray.
+   */
+  TexturedLocalGeometry[] crossings(Ray r)
+  {
+    if (! (form instanceof BasicForm)) {
+      return Crossings.walk(this, r);
+    }
+    
+    LocalGeometry[] crossings = ((BasicForm) form).crossings(r);
+    TexturedLocalGeometry[] result = new TexturedLocalGeometry[crossings.length];
+    for(int i = 0 ; i < crossings.length ; i++)
+    {
+      result[i] = new BasicTexturedLocalGeometry(crossings[i], in, out);
+    }
+    return result;
+  }
   public boolean intersects(LightRay r)
   {
     return form.intersects(r);
   }
+  public double hitDistance(Ray r)
+  {
+    return form.hitDistance(r);
+  }
+  public BoundingBox getBounds()
+  {
+    if (form instanceof Bounded) {
+      return ((Bounded) form).getBounds();
+    }
+    return null;
+  }
   public boolean contains(Point3D p)
   {
     return form.contains(p);
@@ -198,6 +198,15 @@ public class Billboard extends BasicForm implements java.io.Serializable, Writab
     return isRectangle;
   }
   
+  /**
+   * Returns the box of the untransformed quad, lying in the <i>xy</i>
+   * plane with its height along <i>x</i> and its width along <i>y</i>.
+   */
+  @Override
+  protected BoundingBox getLocalBounds() {
+    return new BoundingBox(-height / 2.0, -width / 2.0, 0, height / 2.0, width / 2.0, 0);
+  }
+  
   // ADDED by Murat Inan
   @Override
   public String getUsageInformation()
@@ -0,0 +1,14 @@
+package raja.shape;
+
+
+/**
+ * Implemented by shapes that know their spatial extent.
+ * The returned box must enclose every point at which a ray can hit the
+ * shape and every point the shape contains.  Shapes that cannot guarantee
+ * this (half-spaces, complements...) return <code>null</code> and are
+ * treated as unbounded.
+ */
+public interface Bounded
+{
+  public BoundingBox getBounds();
+}
@@ -0,0 +1,210 @@
+package raja.shape;
+
+import raja.*;
+
+/**
+ * An axis aligned box in world space.
+ * Boxes are used to reject rays and point queries cheaply before the
+ * exact (and much more expensive) shape tests are run, so they are always
+ * slightly padded: a box never loses a point that lies on its shape.
+ */
+public class BoundingBox implements java.io.Serializable
+{
+  private static final double PADDING = 1e-7;
+
+  public final double minX, minY, minZ;
+  public final double maxX, maxY, maxZ;
+
+  /**
+   * Constructs the box spanning the two given corners, in any order.
+   */
+  public BoundingBox(double x0, double y0, double z0,
+    double x1, double y1, double z1)
+  {
+    double pad = PADDING * (1 + Math.max(Math.max(Math.abs(x0), Math.abs(x1)),
+        Math.max(Math.max(Math.abs(y0), Math.abs(y1)),
+    Math.max(Math.abs(z0), Math.abs(z1)))));
+
+    this.minX = Math.min(x0, x1) - pad;
+    this.minY = Math.min(y0, y1) - pad;
+    this.minZ = Math.min(z0, z1) - pad;
+    this.maxX = Math.max(x0, x1) + pad;
+    this.maxY = Math.max(y0, y1) + pad;
+    this.maxZ = Math.max(z0, z1) + pad;
+  }
+
+  public BoundingBox(Point3D p0, Point3D p1)
+  {
+    this(p0.x, p0.y, p0.z, p1.x, p1.y, p1.z);
+  }
+
+  /**
+   * Returns the smallest box containing the given points.
+   */
+  public static BoundingBox enclosing(Point3D[] points)
+  {
+    double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY, z0 = Double.POSITIVE_INFINITY;
+    double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY, z1 = Double.NEGATIVE_INFINITY;
+
+    for (int i = 0; i < points.length; i++) {
+      Point3D p = points[i];
+      x0 = Math.min(x0, p.x); y0 = Math.min(y0, p.y); z0 = Math.min(z0, p.z);
+      x1 = Math.max(x1, p.x); y1 = Math.max(y1, p.y); z1 = Math.max(z1, p.z);
+    }
+    return new BoundingBox(x0, y0, z0, x1, y1, z1);
+  }
+
+  /**
+   * Returns the smallest box containing both boxes, or <code>null</code>
+   * (unbounded) if one of them is <code>null</code>.
+   */
+  public static BoundingBox union(BoundingBox b1, BoundingBox b2)
+  {
+    if ((b1 == null) || (b2 == null)) {
+      return null;
+    }
+    return new BoundingBox(Math.min(b1.minX, b2.minX), Math.min(b1.minY, b2.minY), Math.min(b1.minZ, b2.minZ),
+    Math.max(b1.maxX, b2.maxX), Math.max(b1.maxY, b2.maxY), Math.max(b1.maxZ, b2.maxZ));
+  }
+
+  /**
+   * Returns the overlap of both boxes, where <code>null</code> stands for
+   * an unbounded box.  Disjoint boxes overlap in a flat box on the face of
+   * the first one nearest to the second one.
+   */
+  public static BoundingBox intersection(BoundingBox b1, BoundingBox b2)
+  {
+    if (b1 == null) {
+      return b2;
+    }
+    if (b2 == null) {
+      return b1;
+    }
+    double x0 = Math.max(b1.minX, b2.minX), y0 = Math.max(b1.minY, b2.minY), z0 = Math.max(b1.minZ, b2.minZ);
+    double x1 = Math.min(b1.maxX, b2.maxX), y1 = Math.min(b1.maxY, b2.maxY), z1 = Math.min(b1.maxZ, b2.maxZ);
+    return new BoundingBox(Math.min(x0, b1.maxX), Math.min(y0, b1.maxY), Math.min(z0, b1.maxZ),
+    Math.max(x1, b1.minX), Math.max(y1, b1.minY), Math.max(z1, b1.minZ));
+  }
+
+  /**
+   * Returns the box enclosing this box once transformed by the given
+   * affine matrix (a local space box mapped to world space).
+   */
+  public BoundingBox transform(Matrix4 m)
+  {
+    double[] center = { 0.5 * (minX + maxX), 0.5 * (minY + maxY), 0.5 * (minZ + maxZ) };
+    double[] extent = { 0.5 * (maxX - minX), 0.5 * (maxY - minY), 0.5 * (maxZ - minZ) };
+    double[] newCenter = new double[3];
+    double[] newExtent = new double[3];
+
+    for (int i = 0; i < 3; i++) {
+      newCenter[i] = m.m[i][3];
+      for (int j = 0; j < 3; j++) {
+        newCenter[i] += m.m[i][j] * center[j];
+        newExtent[i] += Math.abs(m.m[i][j]) * extent[j];
+      }
+    }
+    return new BoundingBox(newCenter[0] - newExtent[0], newCenter[1] - newExtent[1], newCenter[2] - newExtent[2],
+    newCenter[0] + newExtent[0], newCenter[1] + newExtent[1], newCenter[2] + newExtent[2]);
+  }
+
+  public boolean contains(Point3D p)
+  {
+    return ((p.x >= minX) && (p.x <= maxX) &&
+      (p.y >= minY) && (p.y <= maxY) &&
+    (p.z >= minZ) && (p.z <= maxZ));
+  }
+
+  /**
+   * Computes the distance along the ray at which it enters this box.
+   *
+   * @param r the ray.
+   * @param maxDistance entries farther than this distance are ignored.
+   * @return 0 if the ray origin is inside the box, the entry distance if the
+   *         ray enters the box before <code>maxDistance</code>, and
+   *         {@link Double#POSITIVE_INFINITY} otherwise.
+   */
+  public double entryDistance(Ray r, double maxDistance)
+  {
+    return entryDistance(r.origin.x, r.origin.y, r.origin.z,
+    r.direction.x, r.direction.y, r.direction.z, maxDistance);
+  }
+
+  /**
+   * Same as {@link #entryDistance(Ray, double)} on an unpacked ray.
+   */
+  public double entryDistance(double ox, double oy, double oz,
+    double dx, double dy, double dz,
+  double maxDistance)
+  {
+    double tNear = 0;
+    double tFar = maxDistance;
+
+    if (dx != 0) {
+      double t0 = (minX - ox) / dx;
+      double t1 = (maxX - ox) / dx;
+      if (t0 > t1) { double t = t0; t0 = t1; t1 = t; }
+      if (t0 > tNear) tNear = t0;
+      if (t1 < tFar) tFar = t1;
+      if (tNear > tFar) return Double.POSITIVE_INFINITY;
+    }
+    else if ((ox < minX) || (ox > maxX)) {
+      return Double.POSITIVE_INFINITY;
+    }
+
+    if (dy != 0) {
+      double t0 = (minY - oy) / dy;
+      double t1 = (maxY - oy) / dy;
+      if (t0 > t1) { double t = t0; t0 = t1; t1 = t; }
+      if (t0 > tNear) tNear = t0;
+      if (t1 < tFar) tFar = t1;
+      if (tNear > tFar) return Double.POSITIVE_INFINITY;
+    }
+    else if ((oy < minY) || (oy > maxY)) {
+      return Double.POSITIVE_INFINITY;
+    }
+
+    if (dz != 0) {
+      double t0 = (minZ - oz) / dz;
+      double t1 = (maxZ - oz) / dz;
+      if (t0 > t1) { double t = t0; t0 = t1; t1 = t; }
+      if (t0 > tNear) tNear = t0;
+      if (t1 < tFar) tFar = t1;
+      if (tNear > tFar) return Double.POSITIVE_INFINITY;
+    }
+    else if ((oz < minZ) || (oz > maxZ)) {
+      return Double.POSITIVE_INFINITY;
+    }
+
+    return tNear;
+  }
+
+  public double surfaceArea()
+  {
+    double dx = maxX - minX;
+    double dy = maxY - minY;
+    double dz = maxZ - minZ;
+    return 2 * (dx * dy + dy * dz + dz * dx);
+  }
+
+  /**
+   * Returns the center coordinate of this box along the given axis
+   * (0 for <i>x</i>, 1 for <i>y</i>, 2 for <i>z</i>).
+   */
+  public double center(int axis)
+  {
+    switch (axis) {
+      case 0:
+        return 0.5 * (minX + maxX);
+      case 1:
+        return 0.5 * (minY + maxY);
+      default:
+        return 0.5 * (minZ + maxZ);
+    }
+  }
+
+  public String toString()
+  {
+    return "[" + minX + ", " + minY + ", " + minZ + "] - [" + maxX + ", " + maxY + ", " + maxZ + "]";
+  }
+}
@@ -0,0 +1,197 @@
+package raja.shape;
+
+import raja.*;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+
+/**
+ * A bounding volume hierarchy over a set of shapes.
+ * The tree is a {@link FlatHierarchy} built over the world space boxes of
+ * the {@link Bounded} items.  Items without bounds are kept aside and
+ * handed to every query.
+ * <p>
+ * The hierarchy does not know what its items are; queries report candidate
+ * items to a {@link Visitor} that performs the exact test.
+ */
+public class BoundingVolumeHierarchy implements java.io.Serializable
+{
+  /**
+   * Receives the candidate items of a ray query.
+   */
+  public interface Visitor
+  {
+    /**
+     * Called for each item whose box the ray enters before
+     * <code>maxDistance</code>.
+     *
+     * @param item the candidate item.
+     * @param maxDistance the current maximal distance of the query.
+     * @return the new maximal distance: <code>maxDistance</code> to keep
+     *         searching, a smaller value to prune farther nodes, or a
+     *         negative value to stop the query.
+     */
+    public double visit(Object item, double maxDistance);
+  }
+
+  private Object[] items;        // in the order of the leaves
+  private Object[] unbounded;
+  private FlatHierarchy tree;
+  private BoundingBox bounds;
+  private transient FlatHierarchy.LeafVisitor leafVisitor;
+
+  public BoundingVolumeHierarchy(Collection objects)
+  {
+    int boundedCount = 0;
+    int unboundedCount = 0;
+    BoundingBox[] allBoxes = new BoundingBox[objects.size()];
+
+    int k = 0;
+    for(Iterator iter = objects.iterator() ; iter.hasNext() ; k++)
+    {
+      Object o = iter.next();
+      if (o instanceof Bounded) {
+        allBoxes[k] = ((Bounded) o).getBounds();
+      }
+      if (allBoxes[k] == null) {
+        unboundedCount++;
+      }
+      else {
+        boundedCount++;
+      }
+    }
+
+    Object[] boundedItems = new Object[boundedCount];
+    final BoundingBox[] itemBoxes = new BoundingBox[boundedCount];
+    unbounded = new Object[unboundedCount];
+
+    int b = 0, u = 0;
+    k = 0;
+    for(Iterator iter = objects.iterator() ; iter.hasNext() ; k++)
+    {
+      Object o = iter.next();
+      if (allBoxes[k] == null) {
+        unbounded[u++] = o;
+      }
+      else {
+        boundedItems[b] = o;
+        itemBoxes[b] = allBoxes[k];
+        bounds = (bounds == null) ? allBoxes[k] : BoundingBox.union(bounds, allBoxes[k]);
+        b++;
+      }
+    }
+
+    tree = new FlatHierarchy(boundedCount, new FlatHierarchy.Items() {
+        public void addBounds(int item, double[] box, int base)
+        {
+          BoundingBox itemBox = itemBoxes[item];
+          box[base] = Math.min(box[base], itemBox.minX);
+          box[base + 1] = Math.min(box[base + 1], itemBox.minY);
+          box[base + 2] = Math.min(box[base + 2], itemBox.minZ);
+          box[base + 3] = Math.max(box[base + 3], itemBox.maxX);
+          box[base + 4] = Math.max(box[base + 4], itemBox.maxY);
+          box[base + 5] = Math.max(box[base + 5], itemBox.maxZ);
+        }
+    });
+
+    int[] order = tree.getOrder();
+    items = new Object[boundedCount];
+    for(int i = 0 ; i < boundedCount ; i++)
+    {
+      items[i] = boundedItems[order[i]];
+    }
+    tree.releaseOrder();
+  }
+
+  /**
+   * Returns the box enclosing all items, or <code>null</code> if some item
+   * is unbounded or if there is no item at all.
+   */
+  public BoundingBox getBounds()
+  {
+    if (unbounded.length > 0) {
+      return null;
+    }
+    return bounds;
+  }
+
+  /**
+   * Reports to the visitor every item that may be hit by the ray before
+   * <code>maxDistance</code>.  Unbounded items are reported first, then
+   * nodes are visited front to back so that a visitor looking for the
+   * closest hit can prune the rest of the tree.
+   */
+  public void traverse(Ray r, double maxDistance, Visitor visitor)
+  {
+    for(int i = 0 ; i < unbounded.length ; i++)
+    {
+      maxDistance = visitor.visit(unbounded[i], maxDistance);
+      if (maxDistance < 0) {
+        return;
+      }
+    }
+
+    tree.traverse(r.origin.x, r.origin.y, r.origin.z,
+      1 / r.direction.x, 1 / r.direction.y, 1 / r.direction.z,
+      maxDistance, getLeafVisitor(), visitor);
+  }
+
+  /**
+   * Adds to <code>result</code> every item whose box contains the given
+   * point, and every unbounded item.
+   */
+  public void collectContaining(Point3D p, final Collection result)
+  {
+    visitContaining(p, new Visitor() {
+        public double visit(Object item, double maxDistance)
+        {
+          result.add(item);
+          return maxDistance;
+        }
+    });
+  }
+
+  /**
+   * Reports to the visitor every unbounded item, then every item whose box
+   * contains the given point, until the visitor returns a negative value.
+   * The visitor is given a maximal distance of 0, which it should return
+   * to keep searching.
+   */
+  public void visitContaining(Point3D p, Visitor visitor)
+  {
+    for(int i = 0 ; i < unbounded.length ; i++)
+    {
+      if (visitor.visit(unbounded[i], 0) < 0) {
+        return;
+      }
+    }
+
+    tree.visitContaining(p.x, p.y, p.z, 0, getLeafVisitor(), visitor);
+  }
+
+  /**
+   * Returns the visitor that hands the items of a leaf to the
+   * {@link Visitor} given as context, shared by all the queries.
+   */
+  private FlatHierarchy.LeafVisitor getLeafVisitor()
+  {
+    if (leafVisitor == null) {
+      leafVisitor = new FlatHierarchy.LeafVisitor() {
+          public double visitLeaf(int first, int count, double maxDistance, Object context)
+          {
+            Visitor visitor = (Visitor) context;
+            for(int i = first ; i < first + count ; i++)
+            {
+              maxDistance = visitor.visit(items[i], maxDistance);
+              if (maxDistance < 0) {
+                break;
+              }
+            }
+            return maxDistance;
+          }
+      };
+    }
+    return leafVisitor;
+  }
+}
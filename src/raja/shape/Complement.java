@@ -23,9 +23,11 @@ import raja.io.*;
 import java.util.HashMap;
 
 
-public class Complement implements TexturedForm, java.io.Serializable, Writable
+public class Complement implements TexturedForm, Bounded, java.io.Serializable, Writable
 {
   private TexturedForm texturedForm;
+  private transient volatile BoundingBox[] formBounds;   // box of the complemented form
+  private transient int formBoundsModificationCount;
   
   public Complement(TexturedForm f)
   {
@@ -46,36 +48,44 @@ public class Complement implements TexturedForm, java.io.Serializable, Writable
     return new Complement((TexturedForm) map.get("texturedForm"));
   }
   
-  public TexturedLocalGeometry intersection(Ray r)
+  private static class ComplementTexturedLocalGeometry extends TexturedLocalGeometry
   {
-    class ComplementTexturedLocalGeometry extends TexturedLocalGeometry
+    TexturedLocalGeometry lgf;
+    
+    ComplementTexturedLocalGeometry(TexturedLocalGeometry lgf)
     {
-      TexturedLocalGeometry lgf;
-      
-      ComplementTexturedLocalGeometry(TexturedLocalGeometry lgf)
-      {
-        super(lgf);
-        this.lgf = lgf;
-      }
-      
-      AcneCorrection getAcneCorrection()
-      {
-        return lgf.getAcneCorrection();
-      }
-      public Vector3D getNormal()
-      {
-        return Vector3D.opposite(lgf.getNormal());
-      }
-      public LocalTexture getInLocalTexture()
-      {
-        return lgf.getOutLocalTexture();
-      }
-      public LocalTexture getOutLocalTexture()
-      {
-        return lgf.getInLocalTexture();
-      }
+      super(lgf);
+      this.lgf = lgf;
     }
     
+    AcneCorrection getAcneCorrection()
+    {
+      return lgf.getAcneCorrection();
+    }
+    public Vector3D getNormal()
+    {
+      return Vector3D.opposite(lgf.getNormal());
+    }
+    public LocalTexture getInLocalTexture()
+    {
+      return lgf.getOutLocalTexture();
+    }
+    public LocalTexture getOutLocalTexture()
+    {
+      return lgf.getInLocalTexture();
+    }
+    public LocalTexture getInLocalTexture(LocalTexture result)
+    {
+      return lgf.getOutLocalTexture(result);
+    }
+    public LocalTexture getOutLocalTexture(LocalTexture result)
+    {
+      return lgf.getInLocalTexture(result);
+    }
+  }
+  
+  public TexturedLocalGeometry intersection(Ray r)
+  {
     TexturedLocalGeometry intersection = texturedForm.intersection(r);
     
     if (intersection == null) {
@@ -85,10 +95,106 @@ public class Complement implements TexturedForm, java.io.Serializable, Writable
       return new ComplementTexturedLocalGeometry(intersection);
     }
   }
+  
+  /**
+   * The complement of a form is unbounded: the box of the complemented
+   * form only bounds where this form can be hit.
+   */
+  public BoundingBox getBounds()
+  {
+    return null;
+  }
+  
+  /**
+   * Returns the box of the complemented form.  It is computed once, and
+   * again only when forms are added to the complemented form, at any
+   * depth.
+   */
+  private BoundingBox getFormBounds()
+  {
+    BoundingBox[] result = formBounds;
+    int modificationCount = getModificationCount();
+    
+    if ((result == null) || (formBoundsModificationCount != modificationCount)) {
+      synchronized(this) {
+        result = formBounds;
+        if ((result == null) || (formBoundsModificationCount != modificationCount)) {
+          formBoundsModificationCount = modificationCount;
+          result = new BoundingBox[1];
+          if (texturedForm instanceof Bounded) {
+            result[0] = ((Bounded) texturedForm).getBounds();
+          }
+          formBounds = result;
+        }
+      }
+    }
+    return result[0];
+  }
+  
+  /**
+   * Returns a count that changes whenever forms are added to the
+   * complemented form, at any depth.
+   */
+  int getModificationCount()
+  {
+    return CompositeForm.getModificationCount(texturedForm);
+  }
+  
+  Crossings crossings(Ray r)
+  {
+    if (! CompositeForm.mayHit(getFormBounds(), r, Double.POSITIVE_INFINITY)) {
+      // The ray starts in this form and never leaves it
+      return new ComplementCrossings(Crossings.NONE);
+    }
+    return new ComplementCrossings(Crossings.of(texturedForm, r));
+  }
+  
+  /**
+   * The crossings of the complemented form, where the ray enters this form
+   * when it leaves the complemented form.
+   */
+  private static class ComplementCrossings extends Crossings
+  {
+    private Crossings complemented;
+    
+    ComplementCrossings(Crossings complemented)
+    {
+      this.complemented = complemented;
+      update();
+    }
+    
+    boolean startsInside()
+    {
+      return (! complemented.startsInside());
+    }
+    
+    void next()
+    {
+      complemented.next();
+      update();
+    }
+    
+    private void update()
+    {
+      if (complemented.geometry == null) {
+        geometry = null;
+      }
+      else {
+        geometry = new ComplementTexturedLocalGeometry(complemented.geometry);
+        distance = complemented.distance;
+        entering = ! complemented.entering;
+      }
+    }
+  }
+  
   public boolean intersects(LightRay r)
   {
     return texturedForm.intersects(r);
   }
+  public double hitDistance(Ray r)
+  {
+    return texturedForm.hitDistance(r);
+  }
   public boolean contains(Point3D p)
   {
     return (! texturedForm.strictlyContains(p));
@@ -22,13 +22,18 @@ import raja.*;
 import raja.io.*;
 import raja.util.List;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 
 
-public abstract class CompositeForm implements TexturedForm, java.io.Serializable, Writable
+public abstract class CompositeForm implements TexturedForm, Bounded, java.io.Serializable, Writable
 {
   private List texturedForms;
+  private transient volatile BoundingBox[] formBounds;
+  private transient int formBoundsModificationCount;
+  private transient volatile Object[] nestedForms;   // composed forms whose forms can be added to
+  private transient int nestedFormsModificationCount;
   
   public CompositeForm()
   {
@@ -49,20 +54,256 @@ public abstract class CompositeForm implements TexturedForm, java.io.Serializabl
     return texturedForms.iterator();
   }
   
-  public abstract TexturedLocalGeometry intersection(Ray r);
+  /**
+   * Returns a count that changes whenever forms are added to this form or
+   * to the composite forms it is made of, at any depth, so that what is
+   * computed from the composed forms can be computed again.
+   */
+  int getModificationCount()
+  {
+    Object[] nested = getNestedForms();
+    int count = texturedForms.getModificationCount();
+    
+    for(int i = 0 ; i < nested.length ; i++)
+    {
+      count = 31 * count + getModificationCount(nested[i]);
+    }
+    return count;
+  }
+  
+  /**
+   * Returns the modification count of the given form, which is 0 for the
+   * forms made of no other form.
+   */
+  static int getModificationCount(Object form)
+  {
+    if (form instanceof CompositeForm) {
+      return ((CompositeForm) form).getModificationCount();
+    }
+    if (form instanceof Complement) {
+      return ((Complement) form).getModificationCount();
+    }
+    return 0;
+  }
+  
+  /**
+   * Returns the composed forms that are made of other forms, so that
+   * counting their modifications needs no iterator.
+   */
+  private Object[] getNestedForms()
+  {
+    Object[] result = nestedForms;
+    
+    if ((result == null) || (nestedFormsModificationCount != texturedForms.getModificationCount())) {
+      synchronized(this) {
+        result = nestedForms;
+        if ((result == null) || (nestedFormsModificationCount != texturedForms.getModificationCount())) {
+          nestedFormsModificationCount = texturedForms.getModificationCount();
+          ArrayList nested = new ArrayList();
+          for(Iterator iterForm = formIterator() ; iterForm.hasNext() ; )
+          {
+            Object form = iterForm.next();
+            if ((form instanceof CompositeForm) || (form instanceof Complement)) {
+              nested.add(form);
+            }
+          }
+          result = nested.toArray();
+          nestedForms = result;
+        }
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Returns the boxes of the composed forms, in the order of
+   * {@link #formIterator}, with <code>null</code> for the unbounded ones.
+   * They are computed once, and again only when forms are added, here or
+   * to a composed form.
+   */
+  protected BoundingBox[] getFormBounds()
+  {
+    BoundingBox[] result = formBounds;
+    int modificationCount = getModificationCount();
+    
+    if ((result == null) || (formBoundsModificationCount != modificationCount)) {
+      synchronized(this) {
+        result = formBounds;
+        if ((result == null) || (formBoundsModificationCount != modificationCount)) {
+          formBoundsModificationCount = modificationCount;
+          result = new BoundingBox[texturedForms.size()];
+          int i = 0;
+          for(Iterator iterForm = formIterator() ; iterForm.hasNext() ; i++)
+          {
+            Object form = iterForm.next();
+            if (form instanceof Bounded) {
+              result[i] = ((Bounded) form).getBounds();
+            }
+          }
+          formBounds = result;
+        }
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Returns whether a ray may hit a form of the given box before the given
+   * distance: only rays that miss a box are rejected.
+   */
+  static boolean mayHit(BoundingBox bounds, Ray r, double maxDistance)
+  {
+    return ((bounds == null) ||
+    (bounds.entryDistance(r, maxDistance) != Double.POSITIVE_INFINITY));
+  }
+  
+  /**
+   * Returns whether a form of the given box may contain <code>p</code>.
+   */
+  static boolean mayContain(BoundingBox bounds, Point3D p)
+  {
+    return ((bounds == null) || bounds.contains(p));
+  }
+  
+  /**
+   * Returns the first point where <code>r</code> crosses the boundary of
+   * this form.  The crossings of the composed forms along the ray are
+   * merged by increasing distance, and counting the forms the ray is in
+   * tells where it enters or leaves this form.
+   */
+  public TexturedLocalGeometry intersection(Ray r)
+  {
+    return crossings(r).geometry;
+  }
   public abstract boolean contains(Point3D p);
   public abstract boolean strictlyContains(Point3D p);
   
+  /**
+   * Returns whether a point that is inside <code>insideCount</code> of the
+   * <code>formCount</code> composed forms is inside this form.
+   */
+  protected abstract boolean isInside(int insideCount, int formCount);
+  
+  Crossings crossings(Ray r)
+  {
+    return new CompositeCrossings(r);
+  }
+  
+  /**
+   * The crossings of this form, found by merging the crossings of the
+   * composed forms.
+   */
+  private class CompositeCrossings extends Crossings
+  {
+    private Crossings[] crossings;
+    private boolean[] inside;     // whether the ray is in each form
+    private int insideCount;
+    private boolean startsInside;
+    private boolean in;           // whether the ray is in this form
+    private int consumed = -1;    // form whose crossing was returned last
+    
+    CompositeCrossings(Ray r)
+    {
+      BoundingBox[] bounds = getFormBounds();
+      crossings = new Crossings[bounds.length];
+      inside = new boolean[crossings.length];
+      
+      int i = 0;
+      for(Iterator iterForm = formIterator() ; iterForm.hasNext() ; i++)
+      {
+        TexturedForm form = (TexturedForm) iterForm.next();
+        // A ray that misses the box of a form starts outside of it
+        crossings[i] = mayHit(bounds[i], r, Double.POSITIVE_INFINITY) ? Crossings.of(form, r) : Crossings.NONE;
+        inside[i] = crossings[i].startsInside();
+        if (inside[i]) {
+          insideCount++;
+        }
+      }
+      startsInside = isInside(insideCount, crossings.length);
+      in = startsInside;
+      next();
+    }
+    
+    boolean startsInside()
+    {
+      return startsInside;
+    }
+    
+    void next()
+    {
+      // The form of the last crossing only moves on when the next one is
+      // needed
+      if (consumed >= 0) {
+        crossings[consumed].next();
+        consumed = -1;
+      }
+      
+      while (true)
+      {
+        int nearest = -1;
+        for (int i = 0 ; i < crossings.length ; i++)
+        {
+          if ((crossings[i].geometry != null) &&
+          ((nearest < 0) || (crossings[i].distance < crossings[nearest].distance))) {
+            nearest = i;
+          }
+        }
+        
+        if (nearest < 0) {
+          geometry = null;
+          return;
+        }
+        
+        Crossings current = crossings[nearest];
+        if (inside[nearest] != current.entering) {
+          inside[nearest] = current.entering;
+          insideCount += current.entering ? 1 : -1;
+        }
+        
+        if (isInside(insideCount, crossings.length) != in) {
+          in = ! in;
+          geometry = current.geometry;
+          distance = current.distance;
+          entering = in;
+          consumed = nearest;
+          return;
+        }
+        current.next();
+      }
+    }
+  }
+  
   public boolean intersects(LightRay r)
+  {
+    return (hitDistance(r) < r.distance);
+  }
+  public double hitDistance(Ray r)
   {
     Point3D intersection = intersection(r);
-    if (intersection != null) {
-      double d = Point3D.distance(r.origin, intersection);
-      if (d < r.distance) {
-        return true;
+    if (intersection == null) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return Point3D.distance(r.origin, intersection);
+  }
+  
+  /**
+   * Returns the smallest hit distance of the composed forms.  Forms whose
+   * box is entered farther than the nearest hit found so far are skipped.
+   */
+  protected double firstHitDistance(Ray r)
+  {
+    BoundingBox[] bounds = getFormBounds();
+    double dist = Double.POSITIVE_INFINITY;
+    
+    int i = 0;
+    for(Iterator iterForm = formIterator() ; iterForm.hasNext() ; i++)
+    {
+      TexturedForm currentForm = (TexturedForm) iterForm.next();
+      if (mayHit(bounds[i], r, dist)) {
+        dist = Math.min(dist, currentForm.hitDistance(r));
       }
     }
-    return false;
+    return dist;
   }
   
   public String toString()
@@ -76,6 +76,25 @@ public class Cone extends BasicForm implements java.io.Serializable, Writable
     return solve2ndOrder(a, b, c, r);
   }
   @Override
+  protected Point3D[] computeCrossings(Ray r)
+  {
+    double a, b, c;
+    
+    Vector3D alpha = new Vector3D(origin, r.origin);
+    Vector3D beta = r.direction;
+    
+    double scAlpha = Vector3D.dotProduct(alpha, direction);
+    double scBeta = Vector3D.dotProduct(beta, direction);
+    double scAlphaBeta = Vector3D.dotProduct(alpha, beta);
+    double kSquare = k*k;
+    
+    a = scBeta*scBeta - kSquare;
+    b = 2 * (scAlpha*scBeta - (kSquare * scAlphaBeta));
+    c = scAlpha*scAlpha - (kSquare * alpha.normSq());
+    
+    return solve2ndOrderCrossings(a, b, c, r);
+  }
+  @Override
   public boolean exactlyContains(Point3D p)
   {
     Vector3D originP = new Vector3D(origin, p);
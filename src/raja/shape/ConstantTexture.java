@@ -0,0 +1,15 @@
+package raja.shape;
+
+
+/**
+ * A texture whose local texture is the same at every point.  Its
+ * <code>getLocalTexture</code> method returns a single local texture
+ * built once, instead of a new one for every intersection, so the
+ * returned value is shared and must not be modified.  Callers may keep
+ * it for as long as the texture is not changed.
+ *
+ * @see PlainTexture
+ */
+public interface ConstantTexture extends Texture
+{
+}
@@ -0,0 +1,149 @@
+package raja.shape;
+
+import raja.*;
+import java.util.Arrays;
+
+
+/**
+ * The successive points where a ray crosses the boundary of a form, by
+ * increasing distance from the origin of the ray.  Each crossing tells
+ * whether the ray enters or leaves the form there, so that CSG forms can
+ * combine the spans of their forms along the ray in a single pass.
+ * <p>
+ * The crossings of each basic form are computed once per ray, all at a
+ * time; CSG forms merge them as they go and only look as far along the
+ * ray as they need to find their own crossings.
+ */
+abstract class Crossings
+{
+  /** The current crossing, or <code>null</code> if there is none left */
+  TexturedLocalGeometry geometry;
+  /** The distance of the current crossing from the origin of the ray */
+  double distance;
+  /** Whether the ray is in the form just after the current crossing */
+  boolean entering;
+
+  /**
+   * No crossing at all, for rays that miss the box of a form (and so start
+   * outside of it).
+   */
+  static final Crossings NONE = new Crossings() {
+    boolean startsInside()
+    {
+      return false;
+    }
+    void next()
+    {
+    }
+  };
+
+  /**
+   * Returns whether the origin of the ray is inside the form.
+   */
+  abstract boolean startsInside();
+
+  /**
+   * Moves to the next crossing.
+   */
+  abstract void next();
+
+  /**
+   * Returns the crossings of <code>r</code> with <code>f</code>, positioned
+   * on the first one.
+   */
+  static Crossings of(TexturedForm f, Ray r)
+  {
+    if (f instanceof CompositeForm) {
+      return ((CompositeForm) f).crossings(r);
+    }
+    if (f instanceof Complement) {
+      return ((Complement) f).crossings(r);
+    }
+    if (f instanceof BasicTexturedForm) {
+      return new Spans(f, r, ((BasicTexturedForm) f).crossings(r));
+    }
+    return new Spans(f, r, walk(f, r));
+  }
+
+  /**
+   * Returns the crossings of <code>r</code> with a form that can only
+   * give its first hit, each one found by shooting a new ray from just
+   * after the previous one.  The walk stops if the form does not move
+   * along the ray.
+   */
+  static TexturedLocalGeometry[] walk(TexturedForm f, Ray r)
+  {
+    TexturedLocalGeometry[] crossings = new TexturedLocalGeometry[2];
+    int count = 0;
+    double last = 0;
+
+    TexturedLocalGeometry geometry = f.intersection(r);
+    while (geometry != null)
+    {
+      double d = Point3D.distance(r.origin, geometry);
+      if ((count > 0) && (d <= last)) {
+        break;
+      }
+      if (count == crossings.length) {
+        crossings = Arrays.copyOf(crossings, 2 * count);
+      }
+      crossings[count++] = geometry;
+      last = d;
+      geometry = f.intersection(new Ray(step(geometry, r.direction), r.direction));
+    }
+    return Arrays.copyOf(crossings, count);
+  }
+
+  private static Point3D step(Point3D p, Vector3D direction)
+  {
+    return new Point3D(p, Vector3D.product(direction, Ray.EPSILON));
+  }
+
+  /**
+   * The crossings of a basic form, all known in advance.  Whether the ray
+   * is in the form is tested just after the origin and each crossing: not
+   * all forms correct the acne of points on their boundary, and a ray
+   * grazing an edge or a corner crosses the boundary without entering the
+   * form.
+   */
+  private static class Spans extends Crossings
+  {
+    private TexturedForm form;
+    private TexturedLocalGeometry[] crossings;
+    private Point3D origin;
+    private Vector3D direction;
+    private int index = -1;
+    private boolean startsInside;
+
+    Spans(TexturedForm form, Ray r, TexturedLocalGeometry[] crossings)
+    {
+      this.form = form;
+      this.crossings = crossings;
+      origin = r.origin;
+      direction = r.direction;
+      startsInside = form.strictlyContains(step(origin, direction));
+      next();
+    }
+
+    boolean startsInside()
+    {
+      return startsInside;
+    }
+
+    void next()
+    {
+      if (index == crossings.length) {
+        return;
+      }
+      index++;
+      if (index == crossings.length) {
+        geometry = null;
+      }
+      else {
+        geometry = crossings[index];
+        distance = Point3D.distance(origin, geometry);
+        entering = form.strictlyContains(step(geometry, direction));
+      }
+    }
+  }
+}
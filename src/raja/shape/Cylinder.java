@@ -69,6 +69,20 @@ public class Cylinder extends BasicForm implements java.io.Serializable, Writabl
     return solve2ndOrder(a, b, c, r);
   }
   @Override
+  protected Point3D[] computeCrossings(Ray r)
+  {
+    double a, b, c;
+    
+    Vector3D alpha = Vector3D.projection(new Vector3D(origin, r.origin), direction);
+    Vector3D beta = Vector3D.projection(r.direction, direction);
+    
+    a = beta.normSq();
+    b = 2 * Vector3D.dotProduct(alpha, beta);
+    c = alpha.normSq() - radius*radius;
+    
+    return solve2ndOrderCrossings(a, b, c, r);
+  }
+  @Override
   public boolean exactlyContains(Point3D p)
   {
     Vector3D v = Vector3D.projection(new Vector3D(origin, p), direction);
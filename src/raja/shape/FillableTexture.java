@@ -0,0 +1,25 @@
+package raja.shape;
+
+import raja.Point3D;
+
+
+/**
+ * A texture able to compute its local texture into one owned by the
+ * caller, so that tracing a ray does not build a new local texture at
+ * every intersection.
+ *
+ * @see TexturedLocalGeometry#getInLocalTexture(LocalTexture)
+ */
+public interface FillableTexture extends Texture
+{
+  /**
+   * Returns the local texture at <code>p</code>.  The returned value is
+   * either <code>result</code>, filled with
+   * {@link LocalTexture#set(raja.RGB, raja.RGB, raja.RGB, raja.RGB, raja.RGB, int, int)},
+   * or a local texture shared by this texture, so it must not be modified.
+   *
+   * @param result a local texture built by {@link LocalTexture#LocalTexture()}
+   *        and owned by the caller.
+   */
+  public LocalTexture getLocalTexture(Point3D p, LocalTexture result);
+}
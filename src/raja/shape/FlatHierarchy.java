@@ -0,0 +1,509 @@
+package raja.shape;
+
+import java.util.Arrays;
+
+
+/**
+ * A bounding volume hierarchy over items known by their index, shared by
+ * {@link BoundingVolumeHierarchy} and {@link TriangleMesh}.
+ * The tree is built once with the surface area heuristic (SAH) and stored
+ * flattened in arrays: the first child of an interior node immediately
+ * follows it, the index of the second child is stored in the node.  Node
+ * bounds are floats rounded outwards, so that a hierarchy over a million
+ * items takes a few tens of megabytes.
+ * <p>
+ * The build reorders the items so that each leaf holds a range of them;
+ * the owner of the items rearranges its own arrays after {@link #getOrder}.
+ * Queries report leaves to a {@link LeafVisitor}, along with an object
+ * of the caller so that one visitor can serve all the queries, and keep
+ * their stack in a per-thread array so that they allocate nothing.  A
+ * visitor may run another query on the same thread, for instance on a
+ * nested hierarchy.
+ */
+final class FlatHierarchy implements java.io.Serializable
+{
+  /**
+   * Gives the bounds of the items while the hierarchy is built.
+   */
+  interface Items
+  {
+    /**
+     * Enlarges the box stored at <code>base</code> in <code>box</code>
+     * (minimum x, y, z then maximum x, y, z) so that it encloses the item.
+     */
+    public void addBounds(int item, double[] box, int base);
+  }
+
+  /**
+   * Receives the leaves reached by a query.
+   */
+  interface LeafVisitor
+  {
+    /**
+     * Called for each leaf whose box the query reaches.
+     *
+     * @param first the position of the first item of the leaf in the
+     *        build order.
+     * @param count the number of items of the leaf.
+     * @param maxDistance the current maximal distance of a ray query.
+     * @param context the object given to the query.
+     * @return the new maximal distance: <code>maxDistance</code> to keep
+     *         searching, a smaller value to prune farther nodes, or a
+     *         negative value to stop the query.
+     */
+    public double visitLeaf(int first, int count, double maxDistance, Object context);
+  }
+
+  private static final int MAX_LEAF_SIZE = 4;
+  private static final int BUCKETS = 12;
+  private static final double TRAVERSAL_COST = 0.125;
+
+  private static final ThreadLocal<Stack> STACKS = new ThreadLocal<Stack>() {
+    protected Stack initialValue()
+    {
+      return new Stack();
+    }
+  };
+
+  private float[] boxes;       // minX, minY, minZ, maxX, maxY, maxZ per node
+  private int[] offsets;       // leaf: first item, interior: second child
+  private int[] counts;        // leaf: number of items, interior: 0
+  private int nodeCount;
+  private int maxDepth;
+
+  // Build-time data
+  private transient Items items;
+  private transient double[] centroids;
+  private transient int[] order;
+  private transient double[] bucketBox;
+  private transient int[] bucketCount;
+
+  /**
+   * Builds the hierarchy over <code>count</code> items.
+   */
+  FlatHierarchy(int count, Items items)
+  {
+    this.items = items;
+    centroids = new double[3 * count];
+    order = new int[count];
+
+    double[] box = new double[6];
+    for(int i = 0 ; i < count ; i++)
+    {
+      resetBox(box, 0);
+      items.addBounds(i, box, 0);
+      for(int axis = 0 ; axis < 3 ; axis++)
+      {
+        centroids[3 * i + axis] = 0.5 * (box[axis] + box[axis + 3]);
+      }
+      order[i] = i;
+    }
+
+    int capacity = Math.max(1, count / 2);
+    boxes = new float[6 * capacity];
+    offsets = new int[capacity];
+    counts = new int[capacity];
+    bucketBox = new double[6 * BUCKETS];
+    bucketCount = new int[BUCKETS];
+    nodeCount = 0;
+    maxDepth = 0;
+
+    if (count > 0) {
+      build(0, count, 1);
+    }
+
+    boxes = Arrays.copyOf(boxes, 6 * nodeCount);
+    offsets = Arrays.copyOf(offsets, nodeCount);
+    counts = Arrays.copyOf(counts, nodeCount);
+    this.items = null;
+    centroids = null;
+    bucketBox = null;
+    bucketCount = null;
+  }
+
+  /**
+   * Returns the items in build order: the item at position <code>i</code>
+   * of a leaf range is item <code>getOrder()[i]</code>.  Only available
+   * on the hierarchy just built.
+   */
+  int[] getOrder()
+  {
+    return order;
+  }
+
+  /**
+   * Releases the build order once the owner has rearranged its items.
+   */
+  void releaseOrder()
+  {
+    order = null;
+  }
+
+  boolean isEmpty()
+  {
+    return nodeCount == 0;
+  }
+
+  /**
+   * Returns the box of the root, rounded outwards, or <code>null</code>
+   * if there is no item.
+   */
+  BoundingBox getBounds()
+  {
+    if (nodeCount == 0) {
+      return null;
+    }
+    return new BoundingBox(boxes[0], boxes[1], boxes[2], boxes[3], boxes[4], boxes[5]);
+  }
+
+  /**
+   * Reports to the visitor every leaf that the ray enters before
+   * <code>maxDistance</code>, front to back so that a visitor looking for
+   * the closest hit can prune the rest of the tree.  The direction of the
+   * ray is given by its inverse, and need not be normed.
+   */
+  void traverse(double ox, double oy, double oz,
+    double idx, double idy, double idz,
+  double maxDistance, LeafVisitor visitor, Object context)
+  {
+    if (nodeCount == 0) {
+      return;
+    }
+    double rootEntry = entryDistance(0, ox, oy, oz, idx, idy, idz, maxDistance);
+    if (rootEntry == Double.POSITIVE_INFINITY) {
+      return;
+    }
+
+    Stack stack = STACKS.get();
+    int bottom = stack.top;
+    stack.reserve(bottom + maxDepth + 1);
+    int top = bottom;
+    stack.nodes[top] = 0;
+    stack.entries[top] = rootEntry;
+    top++;
+
+    try {
+      while (top > bottom)
+      {
+        top--;
+        if (stack.entries[top] > maxDistance) {
+          continue;
+        }
+        int node = stack.nodes[top];
+
+        if (counts[node] > 0) {
+          // Nested queries stack their nodes above the ones still pending
+          stack.top = top;
+          maxDistance = visitor.visitLeaf(offsets[node], counts[node], maxDistance, context);
+          if (maxDistance < 0) {
+            return;
+          }
+        }
+        else {
+          int near = node + 1;
+          int far = offsets[node];
+          double nearEntry = entryDistance(near, ox, oy, oz, idx, idy, idz, maxDistance);
+          double farEntry = entryDistance(far, ox, oy, oz, idx, idy, idz, maxDistance);
+
+          if (farEntry < nearEntry) {
+            int tmpNode = near; near = far; far = tmpNode;
+            double tmpEntry = nearEntry; nearEntry = farEntry; farEntry = tmpEntry;
+          }
+          if (farEntry != Double.POSITIVE_INFINITY) {
+            stack.nodes[top] = far;
+            stack.entries[top] = farEntry;
+            top++;
+          }
+          if (nearEntry != Double.POSITIVE_INFINITY) {
+            stack.nodes[top] = near;
+            stack.entries[top] = nearEntry;
+            top++;
+          }
+        }
+      }
+    }
+    finally {
+      stack.top = bottom;
+    }
+  }
+
+  /**
+   * Reports to the visitor every leaf whose box, enlarged by
+   * <code>margin</code>, contains the given point, until the visitor
+   * returns a negative value.
+   */
+  void visitContaining(double x, double y, double z, double margin, LeafVisitor visitor, Object context)
+  {
+    if (nodeCount == 0) {
+      return;
+    }
+
+    Stack stack = STACKS.get();
+    int bottom = stack.top;
+    stack.reserve(bottom + maxDepth + 1);
+    int top = bottom;
+    stack.nodes[top++] = 0;
+
+    try {
+      while (top > bottom)
+      {
+        int node = stack.nodes[--top];
+        int base = 6 * node;
+
+        if ((x < boxes[base] - margin) || (x > boxes[base + 3] + margin) ||
+          (y < boxes[base + 1] - margin) || (y > boxes[base + 4] + margin) ||
+        (z < boxes[base + 2] - margin) || (z > boxes[base + 5] + margin)) {
+          continue;
+        }
+
+        if (counts[node] > 0) {
+          stack.top = top;
+          if (visitor.visitLeaf(offsets[node], counts[node], 0, context) < 0) {
+            return;
+          }
+        }
+        else {
+          stack.nodes[top++] = offsets[node];
+          stack.nodes[top++] = node + 1;
+        }
+      }
+    }
+    finally {
+      stack.top = bottom;
+    }
+  }
+
+  /**
+   * Returns the distance at which the ray enters the box of the node, 0 if
+   * its origin is inside, or {@link Double#POSITIVE_INFINITY} if it misses
+   * the box before <code>maxDistance</code>.  A ray parallel to a face and
+   * lying in its plane gives a NaN bound on that axis, which is ignored.
+   */
+  private double entryDistance(int node, double ox, double oy, double oz,
+    double idx, double idy, double idz,
+  double maxDistance)
+  {
+    int base = 6 * node;
+    double tNear = 0;
+    double tFar = maxDistance;
+
+    double t0 = (boxes[base] - ox) * idx;
+    double t1 = (boxes[base + 3] - ox) * idx;
+    if (t0 > t1) { double t = t0; t0 = t1; t1 = t; }
+    if (t0 > tNear) tNear = t0;
+    if (t1 < tFar) tFar = t1;
+
+    t0 = (boxes[base + 1] - oy) * idy;
+    t1 = (boxes[base + 4] - oy) * idy;
+    if (t0 > t1) { double t = t0; t0 = t1; t1 = t; }
+    if (t0 > tNear) tNear = t0;
+    if (t1 < tFar) tFar = t1;
+
+    t0 = (boxes[base + 2] - oz) * idz;
+    t1 = (boxes[base + 5] - oz) * idz;
+    if (t0 > t1) { double t = t0; t0 = t1; t1 = t; }
+    if (t0 > tNear) tNear = t0;
+    if (t1 < tFar) tFar = t1;
+
+    return (tNear > tFar) ? Double.POSITIVE_INFINITY : tNear;
+  }
+
+  private int build(int start, int end, int depth)
+  {
+    if (nodeCount == offsets.length) {
+      int capacity = nodeCount + (nodeCount >> 1) + 1;
+      boxes = Arrays.copyOf(boxes, 6 * capacity);
+      offsets = Arrays.copyOf(offsets, capacity);
+      counts = Arrays.copyOf(counts, capacity);
+    }
+    int node = nodeCount++;
+    maxDepth = Math.max(maxDepth, depth);
+
+    double[] box = new double[6];
+    resetBox(box, 0);
+    double[] cMin = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+    double[] cMax = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+
+    for(int i = start ; i < end ; i++)
+    {
+      items.addBounds(order[i], box, 0);
+      for(int axis = 0 ; axis < 3 ; axis++)
+      {
+        cMin[axis] = Math.min(cMin[axis], centroids[3 * i + axis]);
+        cMax[axis] = Math.max(cMax[axis], centroids[3 * i + axis]);
+      }
+    }
+
+    // Float bounds are rounded outwards so that they still enclose the items
+    int base = 6 * node;
+    for(int axis = 0 ; axis < 3 ; axis++)
+    {
+      boxes[base + axis] = Math.nextDown((float) box[axis]);
+      boxes[base + axis + 3] = Math.nextUp((float) box[axis + 3]);
+    }
+
+    int n = end - start;
+    if (n <= MAX_LEAF_SIZE) {
+      makeLeaf(node, start, n);
+      return node;
+    }
+
+    int axis = 0;
+    for(int a = 1 ; a < 3 ; a++)
+    {
+      if ((cMax[a] - cMin[a]) > (cMax[axis] - cMin[axis])) {
+        axis = a;
+      }
+    }
+    double extent = cMax[axis] - cMin[axis];
+    if (extent <= 0) {
+      // All centroids coincide: no split can separate the items
+      makeLeaf(node, start, n);
+      return node;
+    }
+
+    // Bin the centroids and evaluate the SAH cost of each bucket boundary
+    Arrays.fill(bucketCount, 0);
+    for(int b = 0 ; b < BUCKETS ; b++)
+    {
+      resetBox(bucketBox, 6 * b);
+    }
+
+    for(int i = start ; i < end ; i++)
+    {
+      int bucket = bucket(centroids[3 * i + axis], cMin[axis], extent);
+      bucketCount[bucket]++;
+      items.addBounds(order[i], bucketBox, 6 * bucket);
+    }
+
+    // Areas and counts of the left sides, then sweep the right sides
+    double[] leftArea = new double[BUCKETS - 1];
+    int[] leftCount = new int[BUCKETS - 1];
+    double[] sweep = new double[6];
+    resetBox(sweep, 0);
+    int count = 0;
+    for(int split = 0 ; split < BUCKETS - 1 ; split++)
+    {
+      addBox(sweep, bucketBox, 6 * split);
+      count += bucketCount[split];
+      leftCount[split] = count;
+      leftArea[split] = surfaceArea(sweep);
+    }
+
+    double parentArea = surfaceArea(box);
+    double bestCost = Double.POSITIVE_INFINITY;
+    int bestSplit = -1;
+
+    resetBox(sweep, 0);
+    count = 0;
+    for(int split = BUCKETS - 2 ; split >= 0 ; split--)
+    {
+      addBox(sweep, bucketBox, 6 * (split + 1));
+      count += bucketCount[split + 1];
+      if ((leftCount[split] == 0) || (count == 0)) {
+        continue;
+      }
+
+      double cost = TRAVERSAL_COST +
+      (leftCount[split] * leftArea[split] + count * surfaceArea(sweep)) / parentArea;
+      if (cost < bestCost) {
+        bestCost = cost;
+        bestSplit = split;
+      }
+    }
+
+    if (bestSplit < 0) {
+      makeLeaf(node, start, n);
+      return node;
+    }
+
+    // Partition the items around the chosen bucket boundary
+    int mid = start;
+    for(int i = start ; i < end ; i++)
+    {
+      if (bucket(centroids[3 * i + axis], cMin[axis], extent) <= bestSplit) {
+        swap(i, mid);
+        mid++;
+      }
+    }
+
+    // The arrays may grow while the children are built
+    build(start, mid, depth + 1);
+    int second = build(mid, end, depth + 1);
+    offsets[node] = second;
+    counts[node] = 0;
+    return node;
+  }
+
+  private void makeLeaf(int node, int start, int n)
+  {
+    offsets[node] = start;
+    counts[node] = n;
+  }
+
+  private static void resetBox(double[] box, int base)
+  {
+    for(int axis = 0 ; axis < 3 ; axis++)
+    {
+      box[base + axis] = Double.POSITIVE_INFINITY;
+      box[base + axis + 3] = Double.NEGATIVE_INFINITY;
+    }
+  }
+
+  private static void addBox(double[] box, double[] other, int base)
+  {
+    for(int axis = 0 ; axis < 3 ; axis++)
+    {
+      box[axis] = Math.min(box[axis], other[base + axis]);
+      box[axis + 3] = Math.max(box[axis + 3], other[base + axis + 3]);
+    }
+  }
+
+  private static double surfaceArea(double[] box)
+  {
+    if (box[0] > box[3]) {
+      return 0;
+    }
+    double dx = box[3] - box[0];
+    double dy = box[4] - box[1];
+    double dz = box[5] - box[2];
+    return 2 * (dx * dy + dy * dz + dz * dx);
+  }
+
+  private static int bucket(double centroid, double min, double extent)
+  {
+    int bucket = (int) (BUCKETS * ((centroid - min) / extent));
+    return Math.min(BUCKETS - 1, Math.max(0, bucket));
+  }
+
+  private void swap(int i, int j)
+  {
+    int item = order[i]; order[i] = order[j]; order[j] = item;
+    for(int axis = 0 ; axis < 3 ; axis++)
+    {
+      double c = centroids[3 * i + axis];
+      centroids[3 * i + axis] = centroids[3 * j + axis];
+      centroids[3 * j + axis] = c;
+    }
+  }
+
+  /**
+   * The pending nodes of the queries running on a thread.  Each query
+   * pushes its nodes above the ones of the queries it is nested in.
+   */
+  private static final class Stack
+  {
+    int[] nodes = new int[64];
+    double[] entries = new double[64];
+    int top;
+
+    void reserve(int size)
+    {
+      if (size > nodes.length) {
+        int capacity = Math.max(size, 2 * nodes.length);
+        nodes = Arrays.copyOf(nodes, capacity);
+        entries = Arrays.copyOf(entries, capacity);
+      }
+    }
+  }
+}
@@ -52,99 +52,24 @@ public class Intersection extends CompositeForm implements java.io.Serializable
     return new Intersection((List) map.get("texturedForms"));
   }
   
-  public TexturedLocalGeometry intersection(Ray r)
+  protected boolean isInside(int insideCount, int formCount)
   {
-    List formsToIntersect = new List();
-    
-    for(Iterator iterForm = formIterator() ; iterForm.hasNext() ;)
-    {
-      TexturedForm currentForm = (TexturedForm) iterForm.next();
-      if (! currentForm.contains(r.origin)) {
-        formsToIntersect.add(currentForm);
-      }
-    }
-    
-    if (formsToIntersect.isEmpty()) {
-      TexturedLocalGeometry intersection = null;
-      double dist = Double.POSITIVE_INFINITY;
-      
-      for(Iterator iterForm = formIterator() ; iterForm.hasNext() ;)
-      {
-        TexturedForm currentForm = (TexturedForm) iterForm.next();
-        TexturedLocalGeometry currentIntersection = currentForm.intersection(r);
-        
-        if (currentIntersection != null) {
-          double currentDist = Point3D.distanceSq(r.origin, currentIntersection);
-          if (currentDist < dist) {
-            intersection = currentIntersection;
-            dist = currentDist;
-          }
-        }
-      }
-      
-      if (intersection == null) {
-        return null;
-      }
-      if (contains(intersection)) {
-        return intersection;
-      }
-      
-      List newFormsToIntersect = new List();
-      
-      for(Iterator iterForm = formIterator() ; iterForm.hasNext() ;)
-      {
-        TexturedForm currentForm = (TexturedForm) iterForm.next();
-        if (! currentForm.contains(intersection)) {
-          newFormsToIntersect.add(currentForm);
-        }
-      }
-      Ray newR = new Ray(intersection, r.direction);
-      return recursiveIntersection(newR, newFormsToIntersect);
-    }
-    return recursiveIntersection(r, formsToIntersect);
+    return (insideCount == formCount);
   }
-  private TexturedLocalGeometry recursiveIntersection(Ray r, List formsToIntersect)
+  
+  /**
+   * Returns the overlap of the boxes of the bounded forms, or
+   * <code>null</code> if all the forms are unbounded.
+   */
+  public BoundingBox getBounds()
   {
-    TexturedLocalGeometry intersection = null;
-    double dist = 0;
-    
-    for(Iterator iterForm = formsToIntersect.iterator() ; iterForm.hasNext() ;)
+    BoundingBox result = null;
+    BoundingBox[] bounds = getFormBounds();
+    for (int i = 0 ; i < bounds.length ; i++)
     {
-      TexturedForm currentForm = (TexturedForm) iterForm.next();
-      TexturedLocalGeometry currentIntersection = currentForm.intersection(r);
-      
-      if (currentIntersection == null)
-      {
-        return null;
-      }
-      else
-      {
-        double currentDist = Point3D.distanceSq(r.origin, currentIntersection);
-        if (currentDist > dist)
-        {
-          intersection = currentIntersection;
-          dist = currentDist;
-        }
-      }
-    }
-    
-    List newFormsToIntersect = new List();
-    
-    for(Iterator iterForm = formIterator() ; iterForm.hasNext() ;)
-    {
-      TexturedForm currentForm = (TexturedForm) iterForm.next();
-      if (! currentForm.contains(intersection)) {
-        newFormsToIntersect.add(currentForm);
-      }
-    }
-    
-    if (newFormsToIntersect.isEmpty()) {
-      return intersection;
-    }
-    else {
-      Ray newR = new Ray(intersection, r.direction);
-      return recursiveIntersection(newR, newFormsToIntersect);
+      result = BoundingBox.intersection(result, bounds[i]);
     }
+    return result;
   }
   
   public boolean intersects(LightRay r)
@@ -163,13 +88,25 @@ public class Intersection extends CompositeForm implements java.io.Serializable
       return super.intersects(r);
     }
   }
+  public double hitDistance(Ray r)
+  {
+    // Inside of the intersection, the first form left bounds it
+    if (strictlyContains(r.origin)) {
+      return firstHitDistance(r);
+    }
+    else {
+      return super.hitDistance(r);
+    }
+  }
   
   public boolean contains(Point3D p)
   {
-    for(Iterator iterForm = formIterator() ; iterForm.hasNext() ;)
+    BoundingBox[] bounds = getFormBounds();
+    int i = 0;
+    for(Iterator iterForm = formIterator() ; iterForm.hasNext() ; i++)
     {
       TexturedForm currentForm = (TexturedForm) iterForm.next();
-      if (! currentForm.contains(p)) {
+      if (! mayContain(bounds[i], p) || ! currentForm.contains(p)) {
         return false;
       }
     }
@@ -177,10 +114,12 @@ public class Intersection extends CompositeForm implements java.io.Serializable
   }
   public boolean strictlyContains(Point3D p)
   {
-    for(Iterator iterForm = formIterator() ; iterForm.hasNext() ;)
+    BoundingBox[] bounds = getFormBounds();
+    int i = 0;
+    for(Iterator iterForm = formIterator() ; iterForm.hasNext() ; i++)
     {
       TexturedForm currentForm = (TexturedForm) iterForm.next();
-      if (! currentForm.strictlyContains(p)) {
+      if (! mayContain(bounds[i], p) || ! currentForm.strictlyContains(p)) {
         return false;
       }
     }
@@ -93,6 +93,17 @@ public class LocalTexture implements java.io.Serializable, Writable
   }
    */
   
+  /**
+   * Builds a black local texture owning its coefficients, to be filled
+   * with {@link #set(RGB, RGB, RGB, RGB, RGB, int, int)}.
+   *
+   * @see FillableTexture
+   */
+  public LocalTexture()
+  {
+    this(new RGB(0), new RGB(0), new RGB(0), new RGB(0), new RGB(0), 0, 0);
+  }
+  
   public LocalTexture(RGB kd, RGB kr, RGB kt, int ns, int nt)
   {
     this.kd = kd;
@@ -148,6 +159,37 @@ public class LocalTexture implements java.io.Serializable, Writable
     this.nt = nt;
   }
   
+  /**
+   * Copies the specified coefficients into this local texture.  This
+   * method must only be used on local textures built by
+   * {@link #LocalTexture()} and owned by the caller, since the other
+   * constructors share the <code>RGB</code> values they are given.
+   *
+   * @return this <code>LocalTexture</code> object.
+   */
+  public LocalTexture set(RGB kd, RGB krl, RGB krg, RGB ktl, RGB ktg, int ns, int nt)
+  {
+    this.kd.set(kd);
+    this.krl.set(krl);
+    this.krg.set(krg);
+    this.ktl.set(ktl);
+    this.ktg.set(ktg);
+    this.ns = ns;
+    this.nt = nt;
+    return this;
+  }
+  
+  /**
+   * Copies the specified coefficients into this local texture, with the
+   * same local and global reflection and transmission coefficients.
+   *
+   * @see #set(RGB, RGB, RGB, RGB, RGB, int, int)
+   */
+  public LocalTexture set(RGB kd, RGB kr, RGB kt, int ns, int nt)
+  {
+    return set(kd, kr, kr, kt, kt, ns, nt);
+  }
+  
   private static RGB RGBFilter(Object obj)
   {
     if (obj instanceof Number)
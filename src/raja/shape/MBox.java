@@ -75,6 +75,16 @@ public class MBox extends BasicForm implements java.io.Serializable, Writable
     this.worldMax = new Point3D(maxX, maxY, maxZ);
   }
   
+  /**
+   * The box is intersected in world coordinates, so its bounds are the
+   * transformed corners themselves.
+   */
+  @Override
+  public BoundingBox getBounds()
+  {
+    return new BoundingBox(worldMin, worldMax);
+  }
+  
   @Override
   public Point3D computeIntersection(Ray r)
   {
@@ -269,6 +269,25 @@ public class MCone extends BasicForm implements java.io.Serializable, Writable
     return distanceToAxis < currentRadius;
   }
   
+  /**
+   * Returns the box enclosing the apex and the base disk of the cone.
+   */
+  @Override
+  protected BoundingBox getLocalBounds()
+  {
+    // A disk of unit normal n spans baseRadius * sqrt(1 - n.i^2) along axis i
+    double ex = baseRadius * Math.sqrt(Math.max(0, 1 - axis.x * axis.x));
+    double ey = baseRadius * Math.sqrt(Math.max(0, 1 - axis.y * axis.y));
+    double ez = baseRadius * Math.sqrt(Math.max(0, 1 - axis.z * axis.z));
+    Point3D baseCenter = new Point3D(apex, Vector3D.product(axis, height));
+    
+    return BoundingBox.enclosing(new Point3D[] {
+      apex,
+      new Point3D(baseCenter.x - ex, baseCenter.y - ey, baseCenter.z - ez),
+      new Point3D(baseCenter.x + ex, baseCenter.y + ey, baseCenter.z + ez)
+    });
+  }
+  
   // ADDED by Murat Inan
   @Override
   public String getUsageInformation()
@@ -122,6 +122,15 @@ public class MCylinder extends BasicForm implements java.io.Serializable, Writab
     (local.y > 0 && local.y < height);
   }
   
+  /**
+   * Returns the box of the untransformed cylinder, standing on the
+   * <i>xz</i> plane.
+   */
+  @Override
+  protected BoundingBox getLocalBounds() {
+    return new BoundingBox(-radius, 0, -radius, radius, height, radius);
+  }
+  
   // ADDED by Murat Inan
   @Override
   public String getUsageInformation()
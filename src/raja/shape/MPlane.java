@@ -126,6 +126,16 @@ public class MPlane extends BasicForm implements java.io.Serializable, Writable
     return distance < -Ray.EPSILON2;
   }
   
+  /**
+   * A plane is unbounded: rays are never rejected on a box, whatever the
+   * transform.
+   */
+  @Override
+  protected BoundingBox getLocalBounds()
+  {
+    return null;
+  }
+  
   // ADDED by Murat Inan
   @Override
   public String getUsageInformation()
@@ -202,6 +202,18 @@ public class MSphere extends BasicForm implements java.io.Serializable, Writable
     return worldNormal.normalization();
   }
   
+  /**
+   * Returns the box of the untransformed sphere.
+   *
+   * @return the local bounding box
+   */
+  @Override
+  protected BoundingBox getLocalBounds()
+  {
+    return new BoundingBox(center.x - radius, center.y - radius, center.z - radius,
+    center.x + radius, center.y + radius, center.z + radius);
+  }
+  
   /**
    * Gets the local center point (before transformation).
    *
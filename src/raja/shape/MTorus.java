@@ -8,25 +8,23 @@ import java.util.HashMap;
 /**
  * Represents a torus defined by a major radius (distance from center to tube center)
  * and a minor radius (radius of the tube itself).
+ * The untransformed torus is centered at the origin, around the z axis.
  * Supports arbitrary position and orientation via a 4x4 transformation matrix.
+ * Rays are intersected exactly, by solving the quartic equation of the torus.
  * Uses Ray.EPSILON2 for consistent epsilon values throughout the implementation.
  */
 public class MTorus extends BasicForm implements java.io.Serializable, Writable {
   private static final long serialVersionUID = 1L;
-  private static final double MAX_DISTANCE = 50.0;
-  private static final int MAX_ITERATIONS = 100;
-  private static final double SURFACE_THRESHOLD = 0.1;
+  
+  // Coefficients below this value are taken as zero by the polynomial solvers
+  private static final double EQUATION_EPSILON = 1e-9;
   
   private double majorRadius;
   private double minorRadius;
   
   private Matrix4 transform = Matrix4.identity();
   private Matrix4 inverseTransform = Matrix4.identity();
-  
-  // Orientation basis vectors derived from the transform
-  private Vector3D ox = new Vector3D(1, 0, 0); // Local X-axis
-  private Vector3D oy = new Vector3D(0, 1, 0); // Local Y-axis
-  private Vector3D oz = new Vector3D(0, 0, 1); // Local Z-axis
+  private Matrix4 normalTransform = Matrix4.identity();
   
   /**
    * Constructs a torus centered at the origin with given radii.
@@ -59,14 +57,13 @@ public class MTorus extends BasicForm implements java.io.Serializable, Writable
   }
   
   /**
-   * Sets the transformation matrix and updates derived data (inverse and orientation).
+   * Sets the transformation matrix and updates the derived matrices.
    *
    * @param transform the transformation matrix to apply
    */
   public void setTransform(Matrix4 transform) {
     this.transform = transform;
     updateTransforms();
-    updateOrientationVectors();
   }
   
   /**
@@ -79,194 +76,253 @@ public class MTorus extends BasicForm implements java.io.Serializable, Writable
   }
   
   /**
-   * Updates the inverse transformation matrix.
+   * Updates the inverse and normal transformation matrices.
    * Falls back to identity matrix if inversion fails.
    */
   private void updateTransforms() {
     Matrix4 inv = this.transform.inverse();
     this.inverseTransform = (inv != null) ? inv : Matrix4.identity();
-  }
-  
-  /**
-   * Extracts the local orientation basis vectors from the current transform matrix.
-   * These vectors represent the local coordinate system of the torus.
-   */
-  private void updateOrientationVectors() {
-    this.ox = transform.transformVector(new Vector3D(1, 0, 0)).normalization();
-    this.oy = transform.transformVector(new Vector3D(0, 1, 0)).normalization();
-    this.oz = transform.transformVector(new Vector3D(0, 0, 1)).normalization();
+    this.normalTransform = this.inverseTransform.transpose();
   }
   
   /**
    * Computes the signed distance function (SDF) in local space.
    * Positive: outside, Negative: inside, Zero: on surface.
    *
-   * @param P the point in local space to evaluate
+   * @param p the point in local space to evaluate
    * @return the signed distance from the point to the torus surface
    */
-  private double calculateSDFLocal(Point3D P) {
-    // Optimize edilmiş SDF hesaplama
-    double dx = -P.x;
-    double dy = -P.y;
-    double dz = -P.z;
-    
-    // Daha hızlı projection
-    double projX = dx * ox.x + dy * ox.y + dz * ox.z;
-    double projY = dx * oy.x + dy * oy.y + dz * oy.z;
-    
-    double radialDist = Math.sqrt(projX * projX + projY * projY);
-    double axialDist = Math.sqrt(dx*dx + dy*dy + dz*dz - projX*projX - projY*projY);
-    
-    // Daha kararlı hesaplama
-    return Math.sqrt((radialDist - majorRadius) * (radialDist - majorRadius) + axialDist * axialDist) - minorRadius;
+  private double calculateSDFLocal(Point3D p) {
+    double radial = Math.sqrt(p.x * p.x + p.y * p.y) - majorRadius;
+    return Math.sqrt(radial * radial + p.z * p.z) - minorRadius;
   }
   
   /**
-   * Computes the intersection point between the ray and the torus using sphere tracing.
+   * Computes the first intersection point between the ray and the torus.
+   * Rays missing the bounding sphere of the torus are rejected first.  The
+   * others are intersected by solving
+   * <code>(|P|^2 - R^2 - r^2)^2 = 4 R^2 (r^2 - z^2)</code> along the ray,
+   * starting from where it enters the bounding sphere and in units of its
+   * radius, which keeps the coefficients of the quartic small.
+   * Shadow rays and primary rays get the same hits.
    *
    * @param ray the ray to test for intersection
    * @return the intersection point in world coordinates, or null if no intersection
    */
-  // This makes inner shadow too.
   @Override
   public Point3D computeIntersection(Ray ray) {
-    Point3D localOrigin = inverseTransform.transformPoint(ray.getOrigin());
-    Vector3D localDirection = inverseTransform.transformVector(ray.getDirection()).normalization();
+    Point3D localOrigin = inverseTransform.transformPoint(ray.origin);
+    Vector3D localDirection = inverseTransform.transformVector(ray.direction).normalization();
     
-    // Shadow ray'ler için daha agresif parametreler
-    final double SHADOW_THRESHOLD = 0.01; // Daha yüksek threshold
-    final int SHADOW_ITERATIONS = 50;     // Daha az iteration
+    double outerRadius = majorRadius + minorRadius;
+    double ox = localOrigin.x, oy = localOrigin.y, oz = localOrigin.z;
+    double dx = localDirection.x, dy = localDirection.y, dz = localDirection.z;
     
-    double t = 0.0;
-    Point3D p = localOrigin;
+    // Bounding sphere
+    double b = ox * dx + oy * dy + oz * dz;
+    double c = ox * ox + oy * oy + oz * oz - outerRadius * outerRadius;
+    double disc = b * b - c;
+    if (disc < 0) {
+      return null;
+    }
+    double sqrtDisc = Math.sqrt(disc);
+    if (sqrtDisc - b <= 0) {
+      return null;
+    }
+    double start = Math.max(0, -b - sqrtDisc);
     
-    for (int i = 0; i < SHADOW_ITERATIONS; i++) {
-      double dist = calculateSDFLocal(p);
-      
-      // Shadow ray'ler için daha liberal intersection test
-      if (Math.abs(dist) < SHADOW_THRESHOLD) {
-        if (hasLG(ray.getOrigin())) {
-          return null;
+    // Origin at the sphere entry, in units of the sphere radius
+    double scale = 1 / outerRadius;
+    ox = (ox + start * dx) * scale;
+    oy = (oy + start * dy) * scale;
+    oz = (oz + start * dz) * scale;
+    double R2 = majorRadius * majorRadius * scale * scale;
+    double r2 = minorRadius * minorRadius * scale * scale;
+    
+    double f = ox * dx + oy * dy + oz * dz;
+    double e = ox * ox + oy * oy + oz * oz - R2 - r2;
+    double[] roots = new double[4];
+    int count = solveQuartic(4 * f,
+      2 * e + 4 * f * f + 4 * R2 * dz * dz,
+      4 * f * e + 8 * R2 * oz * dz,
+      e * e - 4 * R2 * (r2 - oz * oz),
+    roots);
+    java.util.Arrays.sort(roots, 0, count);
+    
+    for (int i = 0; i < count; i++) {
+      double t = start + roots[i] * outerRadius;
+      if (t > 0) {
+        Point3D localHit = new Point3D(localOrigin, Vector3D.product(localDirection, t));
+        Point3D hit = transform.transformPoint(localHit);
+        if (isValid(hit, ray)) {
+          return hit;
         }
-        Point3D localHit = new Point3D(
-          p.x + localDirection.x * dist,
-          p.y + localDirection.y * dist,
-          p.z + localDirection.z * dist
-        );
-        return transform.transformPoint(localHit);
       }
-      
-      // Negatif distance durumunda (içerideysek) hemen return
-      if (dist < 0) {
-        Point3D localHit = new Point3D(
-          p.x + localDirection.x * Math.abs(dist),
-          p.y + localDirection.y * Math.abs(dist),
-          p.z + localDirection.z * Math.abs(dist)
-        );
-        return transform.transformPoint(localHit);
+    }
+    return null;
+  }
+  
+  /**
+   * Computes the real roots of <code>x^4 + a x^3 + b x^2 + c x + d</code>,
+   * by Ferrari's method: the depressed quartic is split into two
+   * quadratics with a root of its resolvent cubic.  Each root is then
+   * refined by Newton's method on the original polynomial.
+   *
+   * @param roots receives the roots, in no particular order
+   * @return the number of roots
+   */
+  private static int solveQuartic(double a, double b, double c, double d, double[] roots) {
+    // x = y - a/4 gives y^4 + p y^2 + q y + r
+    double sqA = a * a;
+    double p = -3.0 / 8 * sqA + b;
+    double q = sqA * a / 8 - a * b / 2 + c;
+    double r = -3.0 / 256 * sqA * sqA + sqA * b / 16 - a * c / 4 + d;
+    int count;
+    
+    if (isZero(r)) {
+      // y (y^3 + p y + q) = 0
+      count = solveCubic(0, p, q, roots);
+      roots[count++] = 0;
+    }
+    else {
+      // Largest root of the resolvent cubic
+      int cubicCount = solveCubic(-p / 2, -r, r * p / 2 - q * q / 8, roots);
+      double z = roots[0];
+      for (int i = 1; i < cubicCount; i++) {
+        z = Math.max(z, roots[i]);
       }
       
-      t += Math.abs(dist);
-      if (t > MAX_DISTANCE) break;
+      double u = z * z - r;
+      double v = 2 * z - p;
+      if (isZero(u)) {
+        u = 0;
+      }
+      else if (u > 0) {
+        u = Math.sqrt(u);
+      }
+      else {
+        return 0;
+      }
+      if (isZero(v)) {
+        v = 0;
+      }
+      else if (v > 0) {
+        v = Math.sqrt(v);
+      }
+      else {
+        return 0;
+      }
       
-      p = new Point3D(
-        p.x + localDirection.x * dist,
-        p.y + localDirection.y * dist,
-        p.z + localDirection.z * dist
-      );
+      count = solveQuadratic((q < 0) ? -v : v, z - u, roots, 0);
+      count += solveQuadratic((q < 0) ? v : -v, z + u, roots, count);
     }
-    return null;
+    
+    for (int i = 0; i < count; i++) {
+      double x = roots[i] - a / 4;
+      for (int k = 0; k < 2; k++) {
+        double value = (((x + a) * x + b) * x + c) * x + d;
+        double slope = ((4 * x + 3 * a) * x + 2 * b) * x + c;
+        if (slope == 0) {
+          break;
+        }
+        x -= value / slope;
+      }
+      roots[i] = x;
+    }
+    return count;
   }
   
-  // This make semi-torus
   /**
-  @Override
-  public Point3D computeIntersection(Ray ray) {
-  Point3D localOrigin = inverseTransform.transformPoint(ray.getOrigin());
-  Vector3D localDirection = inverseTransform.transformVector(ray.getDirection()).normalization();
-  
-  double t = 0.0;
-  Point3D p = localOrigin;
-  
-  for (int i = 0; i < MAX_ITERATIONS; i++) {
-    double dist = calculateSDFLocal(p);
-  if (Math.abs(dist) < SURFACE_THRESHOLD) {
-    // Işın geldiği yüzeyin normali ile ışın yönünü karşılaştır
-  Vector3D normal = computeNormal(transform.transformPoint(p));
-  double dot = Vector3D.dotProduct(normal, ray.getDirection());
-  
-  // Sadece ön yüzeylerden gölge düşsün (back-face culling)
-  if (dot > 0) { // Back face - gölge düşürme
-    return null;
+   * Computes the real roots of <code>x^3 + a x^2 + b x + c</code> by
+   * Cardano's method (trigonometric when there are three roots).
+   *
+   * @param roots receives the roots from index 0
+   * @return the number of roots
+   */
+  private static int solveCubic(double a, double b, double c, double[] roots) {
+    // x = y - a/3 gives y^3 + 3 p y + 2 q
+    double sqA = a * a;
+    double p = (-sqA / 3 + b) / 3;
+    double q = (2.0 / 27 * a * sqA - a * b / 3 + c) / 2;
+    double cbP = p * p * p;
+    double disc = q * q + cbP;
+    int count;
+    
+    if (isZero(disc)) {
+      if (isZero(q)) {
+        roots[0] = 0;
+        count = 1;
+      }
+      else {
+        double u = Math.cbrt(-q);
+        roots[0] = 2 * u;
+        roots[1] = -u;
+        count = 2;
+      }
+    }
+    else if (disc < 0) {
+      double cosine = Math.max(-1, Math.min(1, -q / Math.sqrt(-cbP)));
+      double phi = Math.acos(cosine) / 3;
+      double t = 2 * Math.sqrt(-p);
+      roots[0] = t * Math.cos(phi);
+      roots[1] = -t * Math.cos(phi + Math.PI / 3);
+      roots[2] = -t * Math.cos(phi - Math.PI / 3);
+      count = 3;
+    }
+    else {
+      double sqrtDisc = Math.sqrt(disc);
+      roots[0] = Math.cbrt(sqrtDisc - q) - Math.cbrt(sqrtDisc + q);
+      count = 1;
+    }
+    
+    for (int i = 0; i < count; i++) {
+      roots[i] -= a / 3;
+    }
+    return count;
   }
   
-  if (hasLG(ray.getOrigin())) {
-    return null;
-  }
-  return transform.transformPoint(p);
-  }
-  t += dist;
-  if (t > MAX_DISTANCE) return null;
-  p = new Point3D(p.x + localDirection.x * dist, p.y + localDirection.y * dist, p.z + localDirection.z * dist);
+  /**
+   * Computes the real roots of <code>x^2 + p x + q</code>.
+   *
+   * @param roots receives the roots from index <code>offset</code>
+   * @return the number of roots
+   */
+  private static int solveQuadratic(double p, double q, double[] roots, int offset) {
+    double halfP = p / 2;
+    double disc = halfP * halfP - q;
+    
+    if (isZero(disc)) {
+      roots[offset] = -halfP;
+      return 1;
+    }
+    if (disc < 0) {
+      return 0;
+    }
+    double sqrtDisc = Math.sqrt(disc);
+    roots[offset] = sqrtDisc - halfP;
+    roots[offset + 1] = -sqrtDisc - halfP;
+    return 2;
   }
-  return null;
+  
+  private static boolean isZero(double x) {
+    return (x > -EQUATION_EPSILON) && (x < EQUATION_EPSILON);
   }
-   */
   
   /**
-   * Computes the surface normal at the given point on the torus.
+   * Computes the surface normal at the given point on the torus, from the
+   * gradient of its quartic equation.
    *
    * @param worldPoint the point on the surface in world coordinates
    * @return the normalized surface normal vector
    */
   @Override
   public Vector3D computeNormal(Point3D worldPoint) {
-    // Basit ve garantili normal hesapla
-    Point3D localPoint = inverseTransform.transformPoint(worldPoint);
-    
-    // Merkeze göre vektör
-    Vector3D toCenter = new Vector3D(localPoint, new Point3D(0, 0, 0));
-    
-    // Düzlem projeksiyonu
-    double projX = Vector3D.dotProduct(toCenter, ox);
-    double projY = Vector3D.dotProduct(toCenter, oy);
-    
-    Vector3D radial = new Vector3D(
-      ox.x * projX + oy.x * projY,
-      ox.y * projX + oy.y * projY,
-      ox.z * projX + oy.z * projY
-    );
-    
-    Vector3D localNormal = new Vector3D(localPoint.x - radial.x,
-      localPoint.y - radial.y,
-    localPoint.z - radial.z).normalization();
-    
-    return transform.transformVector(localNormal).normalization();
-  }
-  
-  /**
-   * Computes normal using finite differences for numerical stability in degenerate cases.
-   *
-   * @param localPoint the point in local coordinates
-   * @return the normalized normal vector
-   */
-  private Vector3D computeNormalFiniteDifference(Point3D localPoint) {
-    final double DELTA = 1e-6;
-    
-    double sdfCenter = calculateSDFLocal(localPoint);
-    
-    double sdfX = calculateSDFLocal(new Point3D(localPoint.x + DELTA, localPoint.y, localPoint.z));
-    double sdfY = calculateSDFLocal(new Point3D(localPoint.x, localPoint.y + DELTA, localPoint.z));
-    double sdfZ = calculateSDFLocal(new Point3D(localPoint.x, localPoint.y, localPoint.z + DELTA));
+    Point3D p = inverseTransform.transformPoint(worldPoint);
+    double R2 = majorRadius * majorRadius;
+    double s = p.x * p.x + p.y * p.y + p.z * p.z - R2 - minorRadius * minorRadius;
     
-    Vector3D gradient = new Vector3D(
-      (sdfX - sdfCenter) / DELTA,
-      (sdfY - sdfCenter) / DELTA,
-      (sdfZ - sdfCenter) / DELTA
-    );
-    
-    Vector3D localNormal = gradient.normalization();
-    return transform.transformVector(localNormal).normalization();
+    Vector3D localNormal = new Vector3D(s * p.x, s * p.y, (s + 2 * R2) * p.z);
+    return normalTransform.transformVector(localNormal).normalization();
   }
   
   /**
@@ -293,6 +349,17 @@ public class MTorus extends BasicForm implements java.io.Serializable, Writable
     return calculateSDFLocal(localPoint) < -Ray.EPSILON2;
   }
   
+  /**
+   * Returns the box of the untransformed torus.
+   *
+   * @return the local bounding box
+   */
+  @Override
+  protected BoundingBox getLocalBounds() {
+    double extent = majorRadius + minorRadius;
+    return new BoundingBox(-extent, -extent, -minorRadius, extent, extent, minorRadius);
+  }
+  
   // ADDED by Murat Inan
   @Override
   public String getUsageInformation()
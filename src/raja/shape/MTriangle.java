@@ -132,11 +132,33 @@ public class MTriangle extends BasicForm implements java.io.Serializable, Writab
     return null;
   }
   
+  /**
+   * Bounds of the transformed vertices.
+   */
+  @Override
+  public BoundingBox getBounds()
+  {
+    return BoundingBox.enclosing(new Point3D[] { worldV0, worldV1, worldV2 });
+  }
+  
+  /**
+   * A triangle has no inside: only points lying on its plane (up to
+   * Ray.EPSILON) can be contained, otherwise every point of the infinite
+   * prism above the triangle would be.
+   */
+  private boolean onPlane(Vector3D v0p)
+  {
+    return (Math.abs(Vector3D.dotProduct(v0p, worldNormal)) <= Ray.EPSILON);
+  }
+  
   @Override
   public boolean exactlyContains(Point3D p)
   {
     // World coordinates kullan
     Vector3D v0p = new Vector3D(worldV0, p);
+    if (! onPlane(v0p)) {
+      return false;
+    }
     Vector3D v0v1 = new Vector3D(worldV0, worldV1);
     Vector3D v0v2 = new Vector3D(worldV0, worldV2);
     
@@ -159,6 +181,9 @@ public class MTriangle extends BasicForm implements java.io.Serializable, Writab
   {
     // World coordinates kullan
     Vector3D v0p = new Vector3D(worldV0, p);
+    if (! onPlane(v0p)) {
+      return false;
+    }
     Vector3D v0v1 = new Vector3D(worldV0, worldV1);
     Vector3D v0v2 = new Vector3D(worldV0, worldV2);
     
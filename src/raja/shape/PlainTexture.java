@@ -23,7 +23,7 @@ import raja.io.*;
 import java.util.HashMap;
 
 
-public class PlainTexture implements Texture, java.io.Serializable, Writable
+public class PlainTexture implements ConstantTexture, java.io.Serializable, Writable
 {
   LocalTexture localTexture;
   
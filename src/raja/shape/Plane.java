@@ -61,7 +61,9 @@ public class Plane extends BasicForm implements java.io.Serializable, Writable
     }
     else
     {
-      double num = Vector3D.dotProduct(normal, new Vector3D(r.origin, origin));
+      double num = (normal.x * (origin.x - r.origin.x))
+        + (normal.y * (origin.y - r.origin.y))
+        + (normal.z * (origin.z - r.origin.z));
       double t = num / den;
       if (t <= 0)
       {
@@ -70,10 +72,20 @@ public class Plane extends BasicForm implements java.io.Serializable, Writable
       if (hasLG(r.origin)) {
         return null;
       }
-      return new Point3D(r.origin, Vector3D.product(r.direction, t));
+      return r.pointAt(t);
     }
   }
   @Override
+  protected Point3D[] computeCrossings(Ray r)
+  {
+    // A plane is crossed once at most
+    Point3D intersection = computeIntersection(r);
+    if (intersection == null) {
+      return new Point3D[0];
+    }
+    return new Point3D[] { intersection };
+  }
+  @Override
   public boolean exactlyContains(Point3D p)
   {
     return (Vector3D.dotProduct(normal, new Vector3D(origin, p)) <= 0);
@@ -25,6 +25,15 @@ public interface Shape3D
 {
   public boolean intersects(LightRay r);
   
+  /**
+   * Returns the distance from the origin of the ray to the point
+   * <code>intersection(r)</code> would return, or
+   * {@link Double#POSITIVE_INFINITY} if the ray misses this shape.
+   * Shadow queries use it to find an occluder without building its local
+   * geometry.
+   */
+  public double hitDistance(Ray r);
+  
   public boolean contains(Point3D p);
   
   public boolean strictlyContains(Point3D p);
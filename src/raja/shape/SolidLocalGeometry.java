@@ -40,6 +40,14 @@ public class SolidLocalGeometry extends TexturedLocalGeometry
   {
     return tlg.getOutLocalTexture();
   }
+  public LocalTexture getInLocalTexture(LocalTexture result)
+  {
+    return tlg.getInLocalTexture(result);
+  }
+  public LocalTexture getOutLocalTexture(LocalTexture result)
+  {
+    return tlg.getOutLocalTexture(result);
+  }
   public double getInRefractiveIndex()
   {
     return in.refractiveIndex(this);
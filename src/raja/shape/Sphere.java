@@ -54,16 +54,34 @@ public class Sphere extends BasicForm implements java.io.Serializable, Writable
   {
     double a, b, c;
     
-    Vector3D alpha = new Vector3D(center, r.origin);
+    double alphaX = r.origin.x - center.x;
+    double alphaY = r.origin.y - center.y;
+    double alphaZ = r.origin.z - center.z;
     Vector3D beta = r.direction;
     
     a = beta.normSq();
-    b = 2 * Vector3D.dotProduct(alpha, beta);
-    c = alpha.normSq() - radius*radius;
+    b = 2 * ((alphaX * beta.x) + (alphaY * beta.y) + (alphaZ * beta.z));
+    c = (alphaX*alphaX + alphaY*alphaY + alphaZ*alphaZ) - radius*radius;
     
     return solve2ndOrder(a, b, c, r);
   }
   @Override
+  protected Point3D[] computeCrossings(Ray r)
+  {
+    double a, b, c;
+    
+    double alphaX = r.origin.x - center.x;
+    double alphaY = r.origin.y - center.y;
+    double alphaZ = r.origin.z - center.z;
+    Vector3D beta = r.direction;
+    
+    a = beta.normSq();
+    b = 2 * ((alphaX * beta.x) + (alphaY * beta.y) + (alphaZ * beta.z));
+    c = (alphaX*alphaX + alphaY*alphaY + alphaZ*alphaZ) - radius*radius;
+    
+    return solve2ndOrderCrossings(a, b, c, r);
+  }
+  @Override
   public boolean exactlyContains(Point3D p)
   {
     return (Point3D.distance(p, center) <= radius);
@@ -76,8 +94,14 @@ public class Sphere extends BasicForm implements java.io.Serializable, Writable
   @Override
   public Vector3D computeNormal(Point3D p)
   {
-    Vector3D result = new Vector3D(center, p);
-    return Vector3D.normalization(result);
+    return new Vector3D(center, p).normalizeInPlace();
+  }
+  
+  @Override
+  protected BoundingBox getLocalBounds()
+  {
+    return new BoundingBox(center.x - radius, center.y - radius, center.z - radius,
+    center.x + radius, center.y + radius, center.z + radius);
   }
   
   // ADDED by Murat Inan
@@ -24,6 +24,7 @@ import raja.Vector3D;
 public abstract class TexturedLocalGeometry extends LocalGeometry
 {
   private LocalGeometry lg;
+  private double footprint;
   
   protected TexturedLocalGeometry(LocalGeometry lg)
   {
@@ -31,6 +32,27 @@ public abstract class TexturedLocalGeometry extends LocalGeometry
     this.lg = lg;
   }
   
+  /**
+   * Returns the width of the pixel footprint at this point, or 0 if it is
+   * unknown.  Textures use it to filter what the pixel covers.
+   */
+  public double getFootprint()
+  {
+    return footprint;
+  }
+  
+  /**
+   * Sets the width of the pixel footprint at this point, here and in the
+   * geometries this one wraps, since textures are looked up on them.
+   */
+  public void setFootprint(double footprint)
+  {
+    this.footprint = footprint;
+    if (lg instanceof TexturedLocalGeometry) {
+      ((TexturedLocalGeometry) lg).setFootprint(footprint);
+    }
+  }
+  
   AcneCorrection getAcneCorrection()
   {
     return lg.getAcneCorrection();
@@ -41,4 +63,29 @@ public abstract class TexturedLocalGeometry extends LocalGeometry
   }
   public abstract LocalTexture getInLocalTexture();
   public abstract LocalTexture getOutLocalTexture();
+
+  /**
+   * Returns the inside local texture, computed into <code>result</code>
+   * when the texture can fill it.  The returned value is either
+   * <code>result</code> or a value shared by the texture, so it must not
+   * be modified.
+   *
+   * @param result a local texture built by {@link LocalTexture#LocalTexture()}
+   *        and owned by the caller.
+   */
+  public LocalTexture getInLocalTexture(LocalTexture result)
+  {
+    return getInLocalTexture();
+  }
+
+  /**
+   * Returns the outside local texture, computed into <code>result</code>
+   * when the texture can fill it.
+   *
+   * @see #getInLocalTexture(LocalTexture)
+   */
+  public LocalTexture getOutLocalTexture(LocalTexture result)
+  {
+    return getOutLocalTexture();
+  }
 }
@@ -0,0 +1,1028 @@
+package raja.shape;
+
+import raja.*;
+import raja.io.*;
+import raja.util.RenderStatistics;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+
+
+/**
+ * A form made of triangles sharing their vertices, typically loaded from a
+ * Wavefront OBJ file.
+ * <p>
+ * Vertices, vertex normals and triangle indices are kept in flat arrays in
+ * the local space of the mesh, and the triangles are found through a
+ * {@link FlatHierarchy}, so that a mesh of a million triangles takes a few
+ * tens of megabytes.  Rays are mapped into the local space of the mesh
+ * instead of mapping the vertices into the world, and queries keep their
+ * state in per-thread objects rather than allocating it for each ray.
+ * <p>
+ * A mesh where every edge is shared by exactly two triangles is closed: it
+ * bounds a volume, and its triangles must be wound counter clockwise seen
+ * from the outside.  Any other mesh is a surface that contains no point but
+ * its own, as {@link MTriangle} does.
+ */
+public class TriangleMesh extends BasicForm implements java.io.Serializable, Writable
+{
+  // Direction of the rays cast to count crossings in exactlyContains,
+  // chosen so as not to run along the edges of usual models
+  private static final double PROBE_X = 0.5773502691896258;
+  private static final double PROBE_Y = 0.5776388502657414;
+  private static final double PROBE_Z = 0.5770615105620063;
+
+  private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+    protected Scratch initialValue()
+    {
+      return new Scratch();
+    }
+  };
+
+  private double[] vertices;   // x, y, z per vertex
+  private double[] normals;    // x, y, z per vertex, or null for flat shading
+  private int[] triangles;     // 3 vertex indices per triangle, in leaf order
+  private boolean closed;
+
+  private FlatHierarchy tree;
+
+  private String fileName;
+  private boolean smooth;
+
+  private Matrix4 transform = Matrix4.identity();
+  private Matrix4 inverseTransform = Matrix4.identity();
+
+  /**
+   * Creates a mesh from flat arrays.  The vertex and normal arrays are used
+   * as is and must not be modified afterwards; the triangle array is
+   * copied.
+   *
+   * @param vertices  the coordinates of the vertices, 3 per vertex.
+   * @param normals   the normals of the vertices, 3 per vertex, or
+   *                  <code>null</code> to use the normal of each triangle.
+   * @param triangles the indices of the vertices of the triangles, 3 per
+   *                  triangle, wound counter clockwise.
+   */
+  public TriangleMesh(double[] vertices, double[] normals, int[] triangles)
+  {
+    if ((vertices.length % 3 != 0) || (triangles.length % 3 != 0)) {
+      throw new IllegalArgumentException("vertex and triangle arrays must hold 3 values per item");
+    }
+    if ((normals != null) && (normals.length != vertices.length)) {
+      throw new IllegalArgumentException("normal array must have the size of the vertex array");
+    }
+    int vertexCount = vertices.length / 3;
+    for(int i = 0 ; i < triangles.length ; i++)
+    {
+      if ((triangles[i] < 0) || (triangles[i] >= vertexCount)) {
+        throw new IllegalArgumentException("vertex index out of range: " + triangles[i]);
+      }
+    }
+
+    this.vertices = vertices;
+    this.normals = normals;
+    this.triangles = triangles.clone();
+    this.smooth = (normals != null);
+    this.closed = computeClosed(this.triangles);
+
+    buildHierarchy();
+  }
+
+  /**
+   * Loads a mesh from a Wavefront OBJ file.
+   *
+   * @param fileName the name of the file.
+   * @param smooth   whether normals are interpolated across triangles:
+   *                 the normals of the file are used if every face has
+   *                 them, otherwise they are averaged from the faces.
+   */
+  public static TriangleMesh load(String fileName, boolean smooth) throws IOException
+  {
+    Reader in = new FileReader(fileName);
+    try {
+      TriangleMesh mesh = read(in, smooth);
+      mesh.fileName = fileName;
+      return mesh;
+    }
+    finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Reads a mesh in the Wavefront OBJ format.  Only vertices (<code>v</code>),
+   * vertex normals (<code>vn</code>) and faces (<code>f</code>) are
+   * read; faces with more than 3 vertices are split into fans.  Other
+   * statements are ignored.
+   */
+  public static TriangleMesh read(Reader in, boolean smooth) throws IOException
+  {
+    BufferedReader lines = new BufferedReader(in);
+    DoubleList positions = new DoubleList();
+    DoubleList fileNormals = new DoubleList();
+    IntList corners = new IntList();       // vertex, normal pairs, 3 per triangle
+    boolean allNormals = true;
+
+    int[] faceVertices = new int[16];
+    int[] faceNormals = new int[16];
+    int lineNumber = 0;
+    String line;
+
+    while ((line = lines.readLine()) != null)
+    {
+      lineNumber++;
+      line = line.trim();
+      if ((line.length() == 0) || (line.charAt(0) == '#')) {
+        continue;
+      }
+      String[] tokens = line.split("\\s+");
+
+      try {
+        if (tokens[0].equals("v")) {
+          positions.add(Double.parseDouble(tokens[1]));
+          positions.add(Double.parseDouble(tokens[2]));
+          positions.add(Double.parseDouble(tokens[3]));
+        }
+        else if (tokens[0].equals("vn")) {
+          fileNormals.add(Double.parseDouble(tokens[1]));
+          fileNormals.add(Double.parseDouble(tokens[2]));
+          fileNormals.add(Double.parseDouble(tokens[3]));
+        }
+        else if (tokens[0].equals("f")) {
+          int n = tokens.length - 1;
+          if (n < 3) {
+            throw new IOException("line " + lineNumber + ": face with less than 3 vertices");
+          }
+          if (n > faceVertices.length) {
+            faceVertices = new int[n];
+            faceNormals = new int[n];
+          }
+          for(int i = 0 ; i < n ; i++)
+          {
+            String[] parts = tokens[i + 1].split("/");
+            faceVertices[i] = objIndex(parts[0], positions.size / 3, lineNumber);
+            if ((parts.length > 2) && (parts[2].length() > 0)) {
+              faceNormals[i] = objIndex(parts[2], fileNormals.size / 3, lineNumber);
+            }
+            else {
+              faceNormals[i] = -1;
+              allNormals = false;
+            }
+          }
+          for(int i = 1 ; i < n - 1 ; i++)
+          {
+            corners.add(faceVertices[0]); corners.add(faceNormals[0]);
+            corners.add(faceVertices[i]); corners.add(faceNormals[i]);
+            corners.add(faceVertices[i + 1]); corners.add(faceNormals[i + 1]);
+          }
+        }
+      }
+      catch (NumberFormatException e) {
+        throw new IOException("line " + lineNumber + ": " + e.getMessage());
+      }
+      catch (ArrayIndexOutOfBoundsException e) {
+        throw new IOException("line " + lineNumber + ": missing value");
+      }
+    }
+
+    int[] triangles = new int[corners.size / 2];
+    for(int i = 0 ; i < triangles.length ; i++)
+    {
+      triangles[i] = corners.data[2 * i];
+    }
+
+    if (! smooth) {
+      return new TriangleMesh(positions.toArray(), null, triangles);
+    }
+    if (! allNormals || (triangles.length == 0)) {
+      double[] vertices = positions.toArray();
+      return new TriangleMesh(vertices, averageNormals(vertices, triangles), triangles);
+    }
+
+    // Use the normals of the file, duplicating the vertices that are
+    // given different normals by different faces.  The duplicates do not
+    // open the mesh: its edges are those of the positions of the file.
+    boolean closed = computeClosed(triangles);
+    int vertexCount = positions.size / 3;
+    int[] assigned = new int[vertexCount];
+    Arrays.fill(assigned, -1);
+    HashMap duplicates = new HashMap();
+    DoubleList vertices = new DoubleList();
+    vertices.addAll(positions);
+    DoubleList vertexNormals = new DoubleList();
+    vertexNormals.addAll(new double[positions.size]);
+
+    for(int i = 0 ; i < triangles.length ; i++)
+    {
+      int v = corners.data[2 * i];
+      int vn = corners.data[2 * i + 1];
+
+      if (assigned[v] < 0) {
+        assigned[v] = vn;
+        vertexNormals.set(3 * v, fileNormals.data, 3 * vn);
+      }
+      else if (assigned[v] != vn) {
+        Long key = Long.valueOf((((long) v) << 32) | vn);
+        Integer copy = (Integer) duplicates.get(key);
+        if (copy == null) {
+          copy = Integer.valueOf(vertices.size / 3);
+          duplicates.put(key, copy);
+          vertices.add(positions.data[3 * v]);
+          vertices.add(positions.data[3 * v + 1]);
+          vertices.add(positions.data[3 * v + 2]);
+          vertexNormals.add(fileNormals.data[3 * vn]);
+          vertexNormals.add(fileNormals.data[3 * vn + 1]);
+          vertexNormals.add(fileNormals.data[3 * vn + 2]);
+        }
+        triangles[i] = copy.intValue();
+      }
+    }
+
+    double[] normals = vertexNormals.toArray();
+    for(int i = 0 ; i < normals.length ; i += 3)
+    {
+      normalize(normals, i);
+    }
+    TriangleMesh mesh = new TriangleMesh(vertices.toArray(), normals, triangles);
+    mesh.closed = closed;
+    return mesh;
+  }
+
+  private static int objIndex(String token, int count, int lineNumber) throws IOException
+  {
+    int index = Integer.parseInt(token);
+    index = (index < 0) ? (count + index) : (index - 1);
+    if ((index < 0) || (index >= count)) {
+      throw new IOException("line " + lineNumber + ": index out of range: " + token);
+    }
+    return index;
+  }
+
+  /**
+   * Returns the vertex normals of the given mesh, averaged from the normals
+   * of the triangles weighted by their area.
+   */
+  private static double[] averageNormals(double[] vertices, int[] triangles)
+  {
+    double[] normals = new double[vertices.length];
+
+    for(int i = 0 ; i < triangles.length ; i += 3)
+    {
+      int i0 = 3 * triangles[i], i1 = 3 * triangles[i + 1], i2 = 3 * triangles[i + 2];
+      double e1x = vertices[i1] - vertices[i0];
+      double e1y = vertices[i1 + 1] - vertices[i0 + 1];
+      double e1z = vertices[i1 + 2] - vertices[i0 + 2];
+      double e2x = vertices[i2] - vertices[i0];
+      double e2y = vertices[i2 + 1] - vertices[i0 + 1];
+      double e2z = vertices[i2 + 2] - vertices[i0 + 2];
+      // The cross product is twice the area times the unit normal
+      double nx = e1y * e2z - e1z * e2y;
+      double ny = e1z * e2x - e1x * e2z;
+      double nz = e1x * e2y - e1y * e2x;
+
+      for(int k = 0 ; k < 3 ; k++)
+      {
+        int base = 3 * triangles[i + k];
+        normals[base] += nx;
+        normals[base + 1] += ny;
+        normals[base + 2] += nz;
+      }
+    }
+
+    for(int i = 0 ; i < normals.length ; i += 3)
+    {
+      normalize(normals, i);
+    }
+    return normals;
+  }
+
+  private static void normalize(double[] v, int i)
+  {
+    double norm = Math.sqrt(v[i] * v[i] + v[i + 1] * v[i + 1] + v[i + 2] * v[i + 2]);
+    if (norm > 0) {
+      v[i] /= norm;
+      v[i + 1] /= norm;
+      v[i + 2] /= norm;
+    }
+  }
+
+  /**
+   * A mesh is closed when every edge is shared by exactly two triangles.
+   */
+  private static boolean computeClosed(int[] triangles)
+  {
+    int n = triangles.length;
+    if (n == 0) {
+      return false;
+    }
+
+    long[] edges = new long[n];
+    for(int i = 0 ; i < n ; i += 3)
+    {
+      for(int k = 0 ; k < 3 ; k++)
+      {
+        long a = triangles[i + k];
+        long b = triangles[i + (k + 1) % 3];
+        edges[i + k] = (a < b) ? ((a << 32) | b) : ((b << 32) | a);
+      }
+    }
+    Arrays.sort(edges);
+
+    for(int i = 0 ; i < n ; i += 2)
+    {
+      if ((i + 1 >= n) || (edges[i] != edges[i + 1]) ||
+      ((i + 2 < n) && (edges[i + 2] == edges[i]))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public static Object build(ObjectReader reader)
+  throws java.io.IOException
+  {
+    HashMap map = new HashMap();
+    map.put("file", null);
+    map.put("smooth", Boolean.TRUE);
+
+    reader.readFields(map);
+
+    return load((String) map.get("file"), ((Boolean) map.get("smooth")).booleanValue());
+  }
+
+  public int getVertexCount()
+  {
+    return vertices.length / 3;
+  }
+
+  public int getTriangleCount()
+  {
+    return triangles.length / 3;
+  }
+
+  /**
+   * Returns whether every edge of this mesh is shared by exactly two
+   * triangles, that is whether this mesh bounds a volume.
+   */
+  public boolean isClosed()
+  {
+    return closed;
+  }
+
+  public String getFileName()
+  {
+    return fileName;
+  }
+
+  @Override
+  public void setTransform(Matrix4 transform)
+  {
+    this.transform = transform;
+    Matrix4 inv = transform.inverse();
+    this.inverseTransform = (inv != null) ? inv : Matrix4.identity();
+  }
+
+  @Override
+  public Matrix4 getTransform()
+  {
+    return this.transform;
+  }
+
+  @Override
+  protected BoundingBox getLocalBounds()
+  {
+    return tree.getBounds();
+  }
+
+  /**
+   * Identifies the triangle, and the position on it, of a point returned by
+   * {@link #intersection}.
+   */
+  private static class Patch extends AcneCorrection
+  {
+    final TriangleMesh mesh;
+    final int triangle;
+    final double u, v;
+
+    Patch(TriangleMesh mesh, int triangle, double u, double v)
+    {
+      this.mesh = mesh;
+      this.triangle = triangle;
+      this.u = u;
+      this.v = v;
+    }
+
+    BasicForm getBasicForm()
+    {
+      return mesh;
+    }
+  }
+
+  private static class MeshLocalGeometry extends LocalGeometry
+  {
+    private final Patch patch;
+
+    MeshLocalGeometry(Point3D p, Patch patch)
+    {
+      super(p);
+      this.patch = patch;
+    }
+
+    AcneCorrection getAcneCorrection()
+    {
+      return patch;
+    }
+
+    public Vector3D getNormal()
+    {
+      return patch.mesh.normalAt(patch.triangle, patch.u, patch.v);
+    }
+  }
+
+  /**
+   * Returns the patch of this mesh that the given point lies on, if the
+   * point was returned by {@link #intersection}.
+   */
+  private Patch patchOf(Point3D p)
+  {
+    if (p instanceof LocalGeometry) {
+      AcneCorrection acne = ((LocalGeometry) p).getAcneCorrection();
+      if ((acne instanceof Patch) && (((Patch) acne).mesh == this)) {
+        return (Patch) acne;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public LocalGeometry intersection(Ray r)
+  {
+    Tracer tracer = trace(r, Double.POSITIVE_INFINITY, false);
+    if (RenderStatistics.isEnabled()) {
+      RenderStatistics.countIntersection(this, tracer.found >= 0);
+    }
+    if (tracer.found < 0) {
+      return null;
+    }
+    Point3D p = new Point3D(r.origin, Vector3D.product(r.direction, tracer.t));
+    return new MeshLocalGeometry(p, new Patch(this, tracer.found, tracer.u, tracer.v));
+  }
+
+  @Override
+  public Point3D computeIntersection(Ray r)
+  {
+    Tracer tracer = trace(r, Double.POSITIVE_INFINITY, false);
+    if (RenderStatistics.isEnabled()) {
+      RenderStatistics.countIntersection(this, tracer.found >= 0);
+    }
+    if (tracer.found < 0) {
+      return null;
+    }
+    return new Point3D(r.origin, Vector3D.product(r.direction, tracer.t));
+  }
+
+  @Override
+  public double hitDistance(Ray r)
+  {
+    Tracer tracer = trace(r, Double.POSITIVE_INFINITY, false);
+    if (RenderStatistics.isEnabled()) {
+      RenderStatistics.countIntersection(this, tracer.found >= 0);
+    }
+    return (tracer.found < 0) ? Double.POSITIVE_INFINITY : tracer.t;
+  }
+
+  @Override
+  public boolean intersects(LightRay r)
+  {
+    // Any triangle closer than the light will do
+    Tracer tracer = trace(r, r.distance, true);
+    if (RenderStatistics.isEnabled()) {
+      RenderStatistics.countIntersection(this, tracer.found >= 0);
+    }
+    return (tracer.found >= 0);
+  }
+
+  /**
+   * Finds the closest triangle hit by the ray before <code>maxDistance</code>,
+   * ignoring the triangle the ray starts from.  The result is held by the
+   * tracer of the current thread until its next query.
+   *
+   * @param any whether to stop at the first triangle found.
+   */
+  private Tracer trace(Ray r, double maxDistance, boolean any)
+  {
+    Tracer tracer = SCRATCH.get().tracer;
+    tracer.found = -1;
+
+    Patch origin = patchOf(r.origin);
+    tracer.skip = (origin != null) ? origin.triangle : -1;
+    tracer.any = any;
+
+    // The ray in local space, with a direction that is not normed so that
+    // distances along it are world distances
+    double[][] m = inverseTransform.m;
+    double wx = r.origin.x, wy = r.origin.y, wz = r.origin.z;
+    double ox = m[0][0] * wx + m[0][1] * wy + m[0][2] * wz + m[0][3];
+    double oy = m[1][0] * wx + m[1][1] * wy + m[1][2] * wz + m[1][3];
+    double oz = m[2][0] * wx + m[2][1] * wy + m[2][2] * wz + m[2][3];
+    wx = r.direction.x; wy = r.direction.y; wz = r.direction.z;
+    double dx = m[0][0] * wx + m[0][1] * wy + m[0][2] * wz;
+    double dy = m[1][0] * wx + m[1][1] * wy + m[1][2] * wz;
+    double dz = m[2][0] * wx + m[2][1] * wy + m[2][2] * wz;
+
+    tracer.mesh = this;
+    tracer.ox = ox; tracer.oy = oy; tracer.oz = oz;
+    tracer.dx = dx; tracer.dy = dy; tracer.dz = dz;
+    tree.traverse(ox, oy, oz, 1 / dx, 1 / dy, 1 / dz, maxDistance, tracer, null);
+    tracer.mesh = null;
+    return tracer;
+  }
+
+  /**
+   * Möller-Trumbore intersection of a ray in local space with a triangle.
+   * On a hit strictly between <code>minDistance</code> and
+   * <code>maxDistance</code>, stores the distance and the barycentric
+   * coordinates u, v of the hit in <code>hit</code>.
+   */
+  private boolean intersect(int triangle, double ox, double oy, double oz,
+    double dx, double dy, double dz,
+  double minDistance, double maxDistance, double[] hit)
+  {
+    int i0 = 3 * triangles[3 * triangle];
+    int i1 = 3 * triangles[3 * triangle + 1];
+    int i2 = 3 * triangles[3 * triangle + 2];
+
+    double e1x = vertices[i1] - vertices[i0];
+    double e1y = vertices[i1 + 1] - vertices[i0 + 1];
+    double e1z = vertices[i1 + 2] - vertices[i0 + 2];
+    double e2x = vertices[i2] - vertices[i0];
+    double e2y = vertices[i2 + 1] - vertices[i0 + 1];
+    double e2z = vertices[i2 + 2] - vertices[i0 + 2];
+
+    double px = dy * e2z - dz * e2y;
+    double py = dz * e2x - dx * e2z;
+    double pz = dx * e2y - dy * e2x;
+    double det = e1x * px + e1y * py + e1z * pz;
+    if (det == 0) {
+      return false;
+    }
+    double invDet = 1 / det;
+
+    double sx = ox - vertices[i0];
+    double sy = oy - vertices[i0 + 1];
+    double sz = oz - vertices[i0 + 2];
+    double u = (sx * px + sy * py + sz * pz) * invDet;
+    if ((u < 0) || (u > 1)) {
+      return false;
+    }
+
+    double qx = sy * e1z - sz * e1y;
+    double qy = sz * e1x - sx * e1z;
+    double qz = sx * e1y - sy * e1x;
+    double v = (dx * qx + dy * qy + dz * qz) * invDet;
+    if ((v < 0) || (u + v > 1)) {
+      return false;
+    }
+
+    double t = (e2x * qx + e2y * qy + e2z * qz) * invDet;
+    if ((t <= minDistance) || (t >= maxDistance)) {
+      return false;
+    }
+    hit[0] = t;
+    hit[1] = u;
+    hit[2] = v;
+    return true;
+  }
+
+  /**
+   * Returns the world normal of the given triangle at the given barycentric
+   * coordinates: the interpolated vertex normal if the mesh has normals,
+   * the normal of the triangle otherwise.
+   */
+  private Vector3D normalAt(int triangle, double u, double v)
+  {
+    int i0 = 3 * triangles[3 * triangle];
+    int i1 = 3 * triangles[3 * triangle + 1];
+    int i2 = 3 * triangles[3 * triangle + 2];
+    double nx, ny, nz;
+
+    if (normals != null) {
+      double w = 1 - u - v;
+      nx = w * normals[i0] + u * normals[i1] + v * normals[i2];
+      ny = w * normals[i0 + 1] + u * normals[i1 + 1] + v * normals[i2 + 1];
+      nz = w * normals[i0 + 2] + u * normals[i1 + 2] + v * normals[i2 + 2];
+    }
+    else {
+      double e1x = vertices[i1] - vertices[i0];
+      double e1y = vertices[i1 + 1] - vertices[i0 + 1];
+      double e1z = vertices[i1 + 2] - vertices[i0 + 2];
+      double e2x = vertices[i2] - vertices[i0];
+      double e2y = vertices[i2 + 1] - vertices[i0 + 1];
+      double e2z = vertices[i2 + 2] - vertices[i0 + 2];
+      nx = e1y * e2z - e1z * e2y;
+      ny = e1z * e2x - e1x * e2z;
+      nz = e1x * e2y - e1y * e2x;
+    }
+
+    // Normals are mapped to the world by the transposed inverse transform
+    double[][] m = inverseTransform.m;
+    return Vector3D.normalization(new Vector3D(
+      m[0][0] * nx + m[1][0] * ny + m[2][0] * nz,
+      m[0][1] * nx + m[1][1] * ny + m[2][1] * nz,
+    m[0][2] * nx + m[1][2] * ny + m[2][2] * nz));
+  }
+
+  /**
+   * Returns the normal at a point returned by {@link #intersection}, or at
+   * a point lying on a triangle of the mesh; <code>null</code> otherwise.
+   */
+  @Override
+  public Vector3D computeNormal(Point3D p)
+  {
+    Patch patch = patchOf(p);
+    if (patch != null) {
+      return normalAt(patch.triangle, patch.u, patch.v);
+    }
+
+    Locator locator = locate(p);
+    if (locator.found < 0) {
+      return null;
+    }
+    return normalAt(locator.found, locator.u, locator.v);
+  }
+
+  /**
+   * Finds the triangle whose plane is closest to the given point among the
+   * triangles the point lies on, up to Ray.EPSILON, with the barycentric
+   * coordinates of the point on it.  The result, and the point in local
+   * space, are held by the locator of the current thread until its next
+   * query.
+   */
+  private Locator locate(Point3D p)
+  {
+    Locator locator = SCRATCH.get().locator;
+    double[][] m = inverseTransform.m;
+    locator.x = m[0][0] * p.x + m[0][1] * p.y + m[0][2] * p.z + m[0][3];
+    locator.y = m[1][0] * p.x + m[1][1] * p.y + m[1][2] * p.z + m[1][3];
+    locator.z = m[2][0] * p.x + m[2][1] * p.y + m[2][2] * p.z + m[2][3];
+    locator.found = -1;
+    locator.best = Ray.EPSILON;
+
+    locator.mesh = this;
+    tree.visitContaining(locator.x, locator.y, locator.z, Ray.EPSILON, locator, null);
+    locator.mesh = null;
+    return locator;
+  }
+
+  /**
+   * Returns whether the point is on the mesh or, for a closed mesh, inside
+   * it.  Inside points are found by counting the triangles crossed by a ray
+   * leaving the point.
+   */
+  @Override
+  public boolean exactlyContains(Point3D p)
+  {
+    Locator locator = locate(p);
+    if (locator.found >= 0) {
+      return true;
+    }
+    return closed && isInside(locator.x, locator.y, locator.z);
+  }
+
+  @Override
+  public boolean exactlyStrictlyContains(Point3D p)
+  {
+    if (! closed) {
+      return false;
+    }
+    Locator locator = locate(p);
+    if (locator.found >= 0) {
+      return false;
+    }
+    return isInside(locator.x, locator.y, locator.z);
+  }
+
+  private boolean isInside(double x, double y, double z)
+  {
+    CrossingCounter counter = SCRATCH.get().counter;
+    counter.x = x; counter.y = y; counter.z = z;
+    counter.crossings = 0;
+
+    counter.mesh = this;
+    tree.traverse(x, y, z, 1 / PROBE_X, 1 / PROBE_Y, 1 / PROBE_Z, Double.POSITIVE_INFINITY, counter, null);
+    counter.mesh = null;
+    return (counter.crossings % 2) == 1;
+  }
+
+  /**
+   * The queries of a thread on any mesh.  A mesh query runs no other
+   * query, so one of each kind per thread is enough.
+   */
+  private static final class Scratch
+  {
+    final Tracer tracer = new Tracer();
+    final Locator locator = new Locator();
+    final CrossingCounter counter = new CrossingCounter();
+  }
+
+  /**
+   * Looks for the closest triangle hit by a ray in local space.
+   */
+  private static final class Tracer implements FlatHierarchy.LeafVisitor
+  {
+    TriangleMesh mesh;
+    double ox, oy, oz, dx, dy, dz;
+    int skip;
+    boolean any;
+    final double[] hit = new double[3];
+
+    // Result
+    int found;
+    double t, u, v;
+
+    public double visitLeaf(int first, int count, double maxDistance, Object context)
+    {
+      for(int i = first ; i < first + count ; i++)
+      {
+        if ((i != skip) && mesh.intersect(i, ox, oy, oz, dx, dy, dz, Ray.EPSILON, maxDistance, hit)) {
+          maxDistance = hit[0];
+          found = i;
+          t = hit[0];
+          u = hit[1];
+          v = hit[2];
+          if (any) {
+            return -1;
+          }
+        }
+      }
+      return maxDistance;
+    }
+  }
+
+  /**
+   * Counts the triangles crossed by the probe ray leaving a local point.
+   */
+  private static final class CrossingCounter implements FlatHierarchy.LeafVisitor
+  {
+    TriangleMesh mesh;
+    double x, y, z;
+    int crossings;
+    final double[] hit = new double[3];
+
+    public double visitLeaf(int first, int count, double maxDistance, Object context)
+    {
+      for(int i = first ; i < first + count ; i++)
+      {
+        if (mesh.intersect(i, x, y, z, PROBE_X, PROBE_Y, PROBE_Z, 0, Double.POSITIVE_INFINITY, hit)) {
+          crossings++;
+        }
+      }
+      return maxDistance;
+    }
+  }
+
+  /**
+   * Looks for the triangle a local point lies on.
+   */
+  private static final class Locator implements FlatHierarchy.LeafVisitor
+  {
+    TriangleMesh mesh;
+    double x, y, z;
+    double best;
+
+    // Result
+    int found;
+    double u, v;
+
+    public double visitLeaf(int first, int count, double maxDistance, Object context)
+    {
+      double[] vertices = mesh.vertices;
+      int[] triangles = mesh.triangles;
+
+      for(int i = first ; i < first + count ; i++)
+      {
+        int i0 = 3 * triangles[3 * i];
+        int i1 = 3 * triangles[3 * i + 1];
+        int i2 = 3 * triangles[3 * i + 2];
+
+        double e1x = vertices[i1] - vertices[i0];
+        double e1y = vertices[i1 + 1] - vertices[i0 + 1];
+        double e1z = vertices[i1 + 2] - vertices[i0 + 2];
+        double e2x = vertices[i2] - vertices[i0];
+        double e2y = vertices[i2 + 1] - vertices[i0 + 1];
+        double e2z = vertices[i2 + 2] - vertices[i0 + 2];
+        double px = x - vertices[i0];
+        double py = y - vertices[i0 + 1];
+        double pz = z - vertices[i0 + 2];
+
+        double nx = e1y * e2z - e1z * e2y;
+        double ny = e1z * e2x - e1x * e2z;
+        double nz = e1x * e2y - e1y * e2x;
+        double norm = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (norm == 0) {
+          continue;
+        }
+        double distance = Math.abs(px * nx + py * ny + pz * nz) / norm;
+        if (distance > best) {
+          continue;
+        }
+
+        double d11 = e1x * e1x + e1y * e1y + e1z * e1z;
+        double d12 = e1x * e2x + e1y * e2y + e1z * e2z;
+        double d22 = e2x * e2x + e2y * e2y + e2z * e2z;
+        double dp1 = px * e1x + py * e1y + pz * e1z;
+        double dp2 = px * e2x + py * e2y + pz * e2z;
+        double invDenom = 1 / (d11 * d22 - d12 * d12);
+        double bu = (d22 * dp1 - d12 * dp2) * invDenom;
+        double bv = (d11 * dp2 - d12 * dp1) * invDenom;
+
+        if ((bu >= 0) && (bv >= 0) && (bu + bv <= 1)) {
+          best = distance;
+          found = i;
+          u = bu;
+          v = bv;
+        }
+      }
+      return 0;
+    }
+  }
+
+  private void buildHierarchy()
+  {
+    int n = triangles.length / 3;
+    tree = new FlatHierarchy(n, new FlatHierarchy.Items() {
+        public void addBounds(int triangle, double[] box, int base)
+        {
+          addTriangle(box, base, triangle);
+        }
+    });
+
+    // Store the triangles in the order of the leaves
+    int[] order = tree.getOrder();
+    int[] sorted = new int[triangles.length];
+    for(int i = 0 ; i < n ; i++)
+    {
+      System.arraycopy(triangles, 3 * order[i], sorted, 3 * i, 3);
+    }
+    triangles = sorted;
+    tree.releaseOrder();
+  }
+
+  private void addTriangle(double[] box, int base, int triangle)
+  {
+    for(int k = 0 ; k < 3 ; k++)
+    {
+      int vertex = 3 * triangles[3 * triangle + k];
+      for(int axis = 0 ; axis < 3 ; axis++)
+      {
+        double c = vertices[vertex + axis];
+        if (c < box[base + axis]) box[base + axis] = c;
+        if (c > box[base + axis + 3]) box[base + axis + 3] = c;
+      }
+    }
+  }
+
+  // ADDED by Murat Inan
+  @Override
+  public String getUsageInformation()
+  {
+    String MESH_STR = "Constructor is: TriangleMesh.load(String objFile, boolean smooth);\nExample -last value is volume-:\n\"models/mesh.obj\", true, 1\nEnter your values after three diyez symbol\n###\n";
+    return MESH_STR;
+  }
+
+  private String exampleString = "null";
+  @Override
+  public String toExampleString()
+  {
+    return this.exampleString;
+  }
+
+  @Override
+  public BasicForm getInstance(String info)
+  {
+    this.exampleString = info;
+
+    String str = info.trim();
+
+    int diyezIndex = str.lastIndexOf("###");
+    if (diyezIndex < 0) return null;
+
+    str = str.substring(diyezIndex+3);
+    str = str.replaceAll("\n", "");
+
+    String [] split = str.split (",");
+    if (split.length < 3) return null;
+
+    //"models/mesh.obj", true, 1
+    try {
+      String file = split[0].trim().replaceAll("\"", "");
+      boolean smooth = Boolean.valueOf(split[1].trim()).booleanValue();
+      BasicForm bform = TriangleMesh.load(file, smooth);
+      bform.setVolumeValue(Double.parseDouble(split[2].trim()));
+      return bform;
+      } catch (NumberFormatException nfe) {
+      nfe.printStackTrace();
+      return null;
+      } catch (IOException ioe) {
+      ioe.printStackTrace();
+      return null;
+    }
+  }
+
+  private double volumeValue = 1.0;
+  public double getVolumeValue()
+  {
+    return this.volumeValue;
+  }
+
+  public void setVolumeValue(double vlm)
+  {
+    this.volumeValue = vlm;
+  }
+  ////////////
+
+  @Override
+  public String toString()
+  {
+    return ObjectWriter.toString(this);
+  }
+
+  /**
+   * Writes the file this mesh was loaded from; a mesh built from arrays
+   * cannot be written.
+   */
+  @Override
+  public void write(ObjectWriter writer) throws java.io.IOException
+  {
+    if (fileName == null) {
+      throw new IOException("TriangleMesh not loaded from a file");
+    }
+    Object[][] fields = {
+      { "file", fileName },
+      { "smooth", Boolean.valueOf(smooth) }
+    };
+    writer.writeFields(fields);
+  }
+
+  /**
+   * A growable array of doubles, used while reading a file.
+   */
+  private static class DoubleList
+  {
+    double[] data = new double[1024];
+    int size;
+
+    void add(double value)
+    {
+      if (size == data.length) {
+        data = Arrays.copyOf(data, 2 * size);
+      }
+      data[size++] = value;
+    }
+
+    void addAll(DoubleList other)
+    {
+      addAll(other.toArray());
+    }
+
+    void addAll(double[] values)
+    {
+      if (size + values.length > data.length) {
+        data = Arrays.copyOf(data, Math.max(2 * data.length, size + values.length));
+      }
+      System.arraycopy(values, 0, data, size, values.length);
+      size += values.length;
+    }
+
+    void set(int index, double[] values, int from)
+    {
+      System.arraycopy(values, from, data, index, 3);
+    }
+
+    double[] toArray()
+    {
+      return Arrays.copyOf(data, size);
+    }
+  }
+
+  /**
+   * A growable array of ints, used while reading a file.
+   */
+  private static class IntList
+  {
+    int[] data = new int[1024];
+    int size;
+
+    void add(int value)
+    {
+      if (size == data.length) {
+        data = Arrays.copyOf(data, 2 * size);
+      }
+      data[size++] = value;
+    }
+  }
+}
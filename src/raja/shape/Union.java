@@ -52,99 +52,28 @@ public class Union extends CompositeForm implements java.io.Serializable
     return new Union((List) map.get("texturedForms"));
   }
   
-  public TexturedLocalGeometry intersection(Ray r)
+  protected boolean isInside(int insideCount, int formCount)
   {
-    List formsToIntersect = new List();
-    
-    for(Iterator iterForm = formIterator() ; iterForm.hasNext() ;)
-    {
-      TexturedForm currentForm = (TexturedForm) iterForm.next();
-      if (currentForm.strictlyContains(r.origin)) {
-        formsToIntersect.add(currentForm);
-      }
-    }
-    
-    if (formsToIntersect.isEmpty()) {
-      TexturedLocalGeometry intersection = null;
-      double dist = Double.POSITIVE_INFINITY;
-      
-      for(Iterator iterForm = formIterator() ; iterForm.hasNext() ;)
-      {
-        TexturedForm currentForm = (TexturedForm) iterForm.next();
-        TexturedLocalGeometry currentIntersection = currentForm.intersection(r);
-        
-        if (currentIntersection != null) {
-          double currentDist = Point3D.distanceSq(r.origin, currentIntersection);
-          if (currentDist < dist) {
-            intersection = currentIntersection;
-            dist = currentDist;
-          }
-        }
-      }
-      
-      if (intersection == null) {
-        return null;
-      }
-      if (! strictlyContains(intersection)) {
-        return intersection;
-      }
-      
-      List newFormsToIntersect = new List();
-      
-      for(Iterator iterForm = formIterator() ; iterForm.hasNext() ;)
-      {
-        TexturedForm currentForm = (TexturedForm) iterForm.next();
-        if (currentForm.strictlyContains(intersection)) {
-          newFormsToIntersect.add(currentForm);
-        }
-      }
-      Ray newR = new Ray(intersection, r.direction);
-      return recursiveIntersection(newR, newFormsToIntersect);
-    }
-    return recursiveIntersection(r, formsToIntersect);
+    return (insideCount > 0);
   }
-  private TexturedLocalGeometry recursiveIntersection(Ray r, List formsToIntersect)
+  
+  /**
+   * Returns the box enclosing the boxes of all the forms, or
+   * <code>null</code> if one of them is unbounded.
+   */
+  public BoundingBox getBounds()
   {
-    TexturedLocalGeometry intersection = null;
-    double dist = 0;
-    
-    for(Iterator iterForm = formsToIntersect.iterator() ; iterForm.hasNext() ;)
-    {
-      TexturedForm currentForm = (TexturedForm) iterForm.next();
-      TexturedLocalGeometry currentIntersection = currentForm.intersection(r);
-      
-      if (currentIntersection == null)
-      {
-        return null;
-      }
-      else
-      {
-        double currentDist = Point3D.distanceSq(r.origin, currentIntersection);
-        if (currentDist > dist)
-        {
-          intersection = currentIntersection;
-          dist = currentDist;
-        }
-      }
+    BoundingBox[] bounds = getFormBounds();
+    if (bounds.length == 0) {
+      return null;
     }
     
-    List newFormsToIntersect = new List();
-    
-    for(Iterator iterForm = formIterator() ; iterForm.hasNext() ;)
+    BoundingBox result = bounds[0];
+    for (int i = 1 ; i < bounds.length ; i++)
     {
-      TexturedForm currentForm = (TexturedForm) iterForm.next();
-      if (currentForm.strictlyContains(intersection)) {
-        newFormsToIntersect.add(currentForm);
-      }
-    }
-    
-    if (newFormsToIntersect.isEmpty()) {
-      return intersection;
-    }
-    else {
-      Ray newR = new Ray(intersection, r.direction);
-      return recursiveIntersection(newR, newFormsToIntersect);
+      result = BoundingBox.union(result, bounds[i]);
     }
+    return result;
   }
   
   public boolean intersects(LightRay r)
@@ -153,23 +82,37 @@ public class Union extends CompositeForm implements java.io.Serializable
       return super.intersects(r);
     }
     else {
-      for(Iterator iterForm = formIterator() ; iterForm.hasNext() ;)
+      BoundingBox[] bounds = getFormBounds();
+      int i = 0;
+      for(Iterator iterForm = formIterator() ; iterForm.hasNext() ; i++)
       {
         TexturedForm currentForm = (TexturedForm) iterForm.next();
-        if (currentForm.intersects(r)) {
+        if (mayHit(bounds[i], r, r.distance) && currentForm.intersects(r)) {
           return true;
         }
       }
       return false;
     }
   }
+  public double hitDistance(Ray r)
+  {
+    // Outside of the union, the first hit of a form is on its boundary
+    if (contains(r.origin)) {
+      return super.hitDistance(r);
+    }
+    else {
+      return firstHitDistance(r);
+    }
+  }
   
   public boolean contains(Point3D p)
   {
-    for(Iterator iterForm = formIterator() ; iterForm.hasNext() ;)
+    BoundingBox[] bounds = getFormBounds();
+    int i = 0;
+    for(Iterator iterForm = formIterator() ; iterForm.hasNext() ; i++)
     {
       TexturedForm currentForm = (TexturedForm) iterForm.next();
-      if (currentForm.contains(p)) {
+      if (mayContain(bounds[i], p) && currentForm.contains(p)) {
         return true;
       }
     }
@@ -177,10 +120,12 @@ public class Union extends CompositeForm implements java.io.Serializable
   }
   public boolean strictlyContains(Point3D p)
   {
-    for(Iterator iterForm = formIterator() ; iterForm.hasNext() ;)
+    BoundingBox[] bounds = getFormBounds();
+    int i = 0;
+    for(Iterator iterForm = formIterator() ; iterForm.hasNext() ; i++)
     {
       TexturedForm currentForm = (TexturedForm) iterForm.next();
-      if (currentForm.strictlyContains(p)) {
+      if (mayContain(bounds[i], p) && currentForm.strictlyContains(p)) {
         return true;
       }
     }
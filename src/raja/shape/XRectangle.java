@@ -154,6 +154,25 @@ public class XRectangle extends BasicForm implements java.io.Serializable, Writa
     (Math.abs(z) < this.height / 2.0 - Ray.EPSILON2);
   }
   
+  /**
+   * Returns the box of the untransformed rectangle: half its width along
+   * <i>y</i>, half its height along <i>z</i>, and along <i>x</i> the span
+   * of its plane over them.  When the normal is orthogonal to the
+   * <i>x</i> axis, the rectangle is an infinite strip and is unbounded.
+   */
+  @Override
+  protected BoundingBox getLocalBounds()
+  {
+    if (Math.abs(normal.x) < Ray.EPSILON2) {
+      return null;
+    }
+    
+    double halfWidth = width / 2.0;
+    double halfHeight = height / 2.0;
+    double halfDepth = (Math.abs(normal.y) * halfWidth + Math.abs(normal.z) * halfHeight) / Math.abs(normal.x);
+    return new BoundingBox(-halfDepth, -halfWidth, -halfHeight, halfDepth, halfWidth, halfHeight);
+  }
+  
   // ADDED by Murat Inan
   @Override
   public String getUsageInformation()
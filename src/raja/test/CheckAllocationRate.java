@@ -0,0 +1,91 @@
+package raja.test;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.awt.image.BufferedImage;
+import raja.io.*;
+import raja.renderer.*;
+
+
+/*
+ * Program to check the memory allocation rate of the ray tracer.  The
+ * scene is rendered twice on the current thread (the first rendering
+ * warms up the JVM), and the number of bytes allocated by the second
+ * rendering is reported per pixel.
+ *
+ * Usage: java raja.test.CheckAllocationRate [-max bytes] depth sceneFile
+ *
+ * The program exits with status 1 when more than the given number of
+ * bytes are allocated per pixel (3000 by default, a negative value turns
+ * the check off).  The default is set just above what tool/Transparency.raj
+ * allocates at depth 5, about 2700 bytes per pixel.  Most of that is made
+ * of the objects that the Form and LightSource interfaces return for each
+ * hit (LocalGeometry chains, LightRay), which cannot go without changing
+ * those interfaces; the program guards against new allocations in the
+ * hierarchies, the aggregates and the samplers.
+ *
+ * WARNING: This class is not part of the core Raja API.  It is primarily
+ * used by Raja developpers to validate their implementations.  It does not
+ * contain much error handling.  It relies on the HotSpot extension of
+ * ThreadMXBean to measure allocations.
+ */
+
+class CheckAllocationRate
+{
+    private static final long DEFAULT_MAX = 3000;
+
+    public static void main(String[] argv) throws IOException
+    {
+        // Parse command line arguments
+        long max = DEFAULT_MAX;
+        int index = 0;
+
+        if (argv[index].equals("-max"))
+        {
+            index++;
+            max = Long.parseLong(argv[index++]);
+        }
+
+        int depth = Integer.parseInt(argv[index++]);
+        String sceneFileName = argv[index++];
+
+
+        // Read the scene
+        Reader in = new InputStreamReader(new FileInputStream(sceneFileName));
+        ObjectReader reader = new ObjectReader(in);
+        Scene scene = (Scene) reader.readObject();
+        reader.close();
+
+        RayTracer rayTracer = new AdvancedRayTracer(scene.getWorld(), depth);
+        Sampler sampler = new BasicSampler();
+        BufferedImage image = new BufferedImage(192, 144, BufferedImage.TYPE_INT_RGB);
+        long pixels = image.getWidth() * image.getHeight();
+
+
+        // Warm up, then measure the second rendering
+        System.out.println("Warming up...");
+        sampler.compute(scene.getCamera(), rayTracer, image);
+        System.out.println("done.\n");
+
+        com.sun.management.ThreadMXBean bean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+
+        System.out.println("Rendering " + image.getWidth() + "x" + image.getHeight() + " pixels...");
+        long before = bean.getThreadAllocatedBytes(id);
+        sampler.compute(scene.getCamera(), rayTracer, image);
+        long allocated = bean.getThreadAllocatedBytes(id) - before;
+        System.out.println("done.\n");
+
+        long perPixel = allocated / pixels;
+        System.out.println("Allocated bytes: " + allocated);
+        System.out.println("Allocated bytes per pixel: " + perPixel);
+
+        if ((max >= 0) && (perPixel > max))
+        {
+            System.err.println("More than " + max + " bytes allocated per pixel.");
+            System.err.println("CheckAllocationRate failed.");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package raja.test;
+
+import java.io.*;
+import java.awt.image.BufferedImage;
+import raja.*;
+import raja.io.*;
+import raja.light.*;
+import raja.material.*;
+import raja.renderer.*;
+import raja.shape.*;
+
+
+/*
+ * Program to check the Wavefront OBJ loader of TriangleMesh, and its
+ * cost on a large model.  Small meshes are read from OBJ text and checked
+ * against the expected geometry:
+ *
+ *   - faces of more than 3 vertices are split into fans;
+ *   - negative indices are relative to the last vertex or normal read;
+ *   - the v//vn and v/vt/vn forms give the normals of the file to a
+ *     smooth mesh, and a flat mesh ignores them;
+ *   - a closed mesh contains the points inside it, and only them, even
+ *     when its vertices are duplicated for their normals and when it is
+ *     transformed.
+ *
+ * Then a sphere of about -triangles triangles (default 1000000) is written
+ * to a temporary OBJ file as quads, loaded, and rendered at 192x144 on the
+ * current thread.  The check fails if the mesh retains more than
+ * -maxMemory megabytes (default 64), or if the loading and the rendering
+ * take more than -maxTime seconds (default 30).  The JVM needs a heap of
+ * about 512 megabytes for the default size.
+ *
+ * Usage: java raja.test.CheckTriangleMesh [-triangles n] [-maxMemory mb]
+ *            [-maxTime seconds]
+ *
+ * The program exits with status 1 if a check fails.
+ *
+ * WARNING: This class is not part of the core Raja API.  It is primarily
+ * used by Raja developpers to validate their implementations.  It does not
+ * contain much error handling.
+ */
+
+class CheckTriangleMesh
+{
+    static int failures = 0;
+
+    public static void main(String[] argv) throws IOException
+    {
+        // Parse command line arguments
+        int triangles = 1000000;
+        long maxMemory = 64;
+        double maxTime = 30;
+
+        for (int index = 0 ; index < argv.length ; index++) {
+            if (argv[index].equals("-triangles")) {
+                triangles = Integer.parseInt(argv[++index]);
+            }
+            else if (argv[index].equals("-maxMemory")) {
+                maxMemory = Long.parseLong(argv[++index]);
+            }
+            else if (argv[index].equals("-maxTime")) {
+                maxTime = Double.parseDouble(argv[++index]);
+            }
+            else {
+                System.err.println("Unknown option: " + argv[index]);
+                System.exit(2);
+            }
+        }
+
+        checkFans();
+        checkNegativeIndices();
+        checkNormals();
+        checkContains();
+        checkLargeMesh(triangles, maxMemory, maxTime);
+
+        if (failures > 0)
+        {
+            System.err.println(failures + " checks failed.");
+            System.err.println("CheckTriangleMesh failed.");
+            System.exit(1);
+        }
+        System.out.println("All checks passed.");
+    }
+
+    static void check(boolean condition, String description)
+    {
+        System.out.println((condition ? "  ok      " : "  FAILED  ") + description);
+        if (!condition) {
+            failures++;
+        }
+    }
+
+    static TriangleMesh read(String obj, boolean smooth) throws IOException
+    {
+        return TriangleMesh.read(new StringReader(obj), smooth);
+    }
+
+    /*
+     * Returns the distance at which the vertical ray going down from
+     * (x, y, 10) hits the mesh, or infinity.
+     */
+    static double hitFromAbove(TriangleMesh mesh, double x, double y)
+    {
+        return mesh.hitDistance(new Ray(new Point3D(x, y, 10), new Vector3D(0, 0, -1)));
+    }
+
+    static final String PENTAGON =
+        "v 0 0 0\n" +
+        "v 2 0 0\n" +
+        "v 3 2 0\n" +
+        "v 1 3 0\n" +
+        "v -1 2 0\n";
+
+
+    /*
+     * Faces of more than 3 vertices.
+     */
+    static void checkFans() throws IOException
+    {
+        System.out.println("Fans:");
+        TriangleMesh mesh = read(PENTAGON + "f 1 2 3 4 5\n", false);
+
+        check(mesh.getTriangleCount() == 3, "a pentagon gives 3 triangles");
+        check(mesh.getVertexCount() == 5, "the fan shares the 5 vertices");
+        // The centroids of the triangles (1 2 3), (1 3 4) and (1 4 5)
+        check(Math.abs(hitFromAbove(mesh, 5.0 / 3, 2.0 / 3) - 10) < 1e-9, "the first triangle is hit");
+        check(Math.abs(hitFromAbove(mesh, 4.0 / 3, 5.0 / 3) - 10) < 1e-9, "the second triangle is hit");
+        check(Math.abs(hitFromAbove(mesh, 0.0, 5.0 / 3) - 10) < 1e-9, "the third triangle is hit");
+        check(hitFromAbove(mesh, 2.5, 3.0) == Double.POSITIVE_INFINITY, "a point outside the pentagon is missed");
+        check(!mesh.isClosed(), "the pentagon is not closed");
+    }
+
+
+    /*
+     * Indices counted back from the last vertex read.
+     */
+    static void checkNegativeIndices() throws IOException
+    {
+        System.out.println("Negative indices:");
+        TriangleMesh mesh = read(PENTAGON + "f -5 -4 -3 -2 -1\n", false);
+
+        check(mesh.getTriangleCount() == 3, "a pentagon gives 3 triangles");
+        check(Math.abs(hitFromAbove(mesh, 0.0, 5.0 / 3) - 10) < 1e-9, "the last triangle is hit");
+
+        // Each face refers to the 3 vertices just before it
+        mesh = read("v 0 0 0\nv 1 0 0\nv 0 1 0\nf -3 -2 -1\n" +
+                    "v 0 0 1\nv 1 0 1\nv 0 1 1\nf -3 -2 -1\n", false);
+        check(mesh.getTriangleCount() == 2, "two faces give 2 triangles");
+        check(Math.abs(hitFromAbove(mesh, 0.2, 0.2) - 9) < 1e-9, "the second face is at z = 1");
+        mesh.setTransform(Matrix4.translate(new Vector3D(0, 0, -1)));
+        check(Math.abs(hitFromAbove(mesh, 0.2, 0.2) - 10) < 1e-9, "the second face is at z = 0 once translated");
+
+        boolean rejected = false;
+        try {
+            read("v 0 0 0\nv 1 0 0\nf -3 -2 -1\n", false);
+        }
+        catch (IOException e) {
+            rejected = true;
+        }
+        check(rejected, "an index before the first vertex is rejected");
+    }
+
+
+    /*
+     * Normals of the file.
+     */
+    static void checkNormals() throws IOException
+    {
+        System.out.println("Normals:");
+        String square =
+            "v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\n" +
+            "vn 0.6 0 0.8\n";
+        Ray ray = new Ray(new Point3D(0.3, 0.6, 5), new Vector3D(0, 0, -1));
+
+        TriangleMesh mesh = read(square + "f 1//1 2//1 3//1 4//1\n", true);
+        Vector3D normal = mesh.intersection(ray).getNormal();
+        check(same(normal, 0.6, 0, 0.8), "v//vn gives the normal of the file to a smooth mesh: " + format(normal));
+
+        mesh = read(square + "vt 0 0\nf 1/1/1 2/1/1 3/1/1 4/1/1\n", true);
+        normal = mesh.intersection(ray).getNormal();
+        check(same(normal, 0.6, 0, 0.8), "v/vt/vn gives the normal of the file to a smooth mesh: " + format(normal));
+
+        mesh = read(square + "f 1//-1 2//-1 3//-1 4//-1\n", true);
+        normal = mesh.intersection(ray).getNormal();
+        check(same(normal, 0.6, 0, 0.8), "vn may be counted back from the last normal: " + format(normal));
+
+        mesh = read(square + "f 1//1 2//1 3//1 4//1\n", false);
+        normal = mesh.intersection(ray).getNormal();
+        check(same(normal, 0, 0, 1), "a flat mesh uses the normal of its triangles: " + format(normal));
+
+        // A cube with one normal per face: every vertex gets 3 normals
+        mesh = read(cube(true), true);
+        check(mesh.getTriangleCount() == 12, "a cube of quads gives 12 triangles");
+        check(mesh.getVertexCount() == 24, "each corner of the cube is duplicated for its 3 normals");
+        check(mesh.isClosed(), "the cube with duplicated vertices is closed");
+        normal = mesh.intersection(new Ray(new Point3D(0.3, 0.4, 5), new Vector3D(0, 0, -1))).getNormal();
+        check(same(normal, 0, 0, 1), "the top face has the normal of the file: " + format(normal));
+    }
+
+    static String format(Vector3D v)
+    {
+        return "(" + v.x + ", " + v.y + ", " + v.z + ")";
+    }
+
+    static boolean same(Vector3D v, double x, double y, double z)
+    {
+        return (Math.abs(v.x - x) < 1e-9) && (Math.abs(v.y - y) < 1e-9) && (Math.abs(v.z - z) < 1e-9);
+    }
+
+    /*
+     * Returns the OBJ text of the cube [-1, 1]^3, wound counter clockwise
+     * seen from the outside, with a normal per face or without normals.
+     */
+    static String cube(boolean normals)
+    {
+        String obj =
+            "v -1 -1 -1\nv 1 -1 -1\nv 1 1 -1\nv -1 1 -1\n" +
+            "v -1 -1 1\nv 1 -1 1\nv 1 1 1\nv -1 1 1\n" +
+            "vn 0 0 -1\nvn 0 0 1\nvn 0 -1 0\nvn 1 0 0\nvn 0 1 0\nvn -1 0 0\n";
+        int[][] faces = {
+            { 1, 4, 3, 2 }, { 5, 6, 7, 8 }, { 1, 2, 6, 5 },
+            { 2, 3, 7, 6 }, { 3, 4, 8, 7 }, { 4, 1, 5, 8 }
+        };
+
+        for (int f = 0 ; f < faces.length ; f++) {
+            obj += "f";
+            for (int k = 0 ; k < 4 ; k++) {
+                obj += " " + faces[f][k] + (normals ? ("//" + (f + 1)) : "");
+            }
+            obj += "\n";
+        }
+        return obj;
+    }
+
+
+    /*
+     * Inside and outside points of closed meshes.
+     */
+    static void checkContains() throws IOException
+    {
+        System.out.println("Contains:");
+        checkCubeContains(read(cube(false), false), "the cube", 0, 1);
+        checkCubeContains(read(cube(true), true), "the cube with normals", 0, 1);
+
+        TriangleMesh moved = read(cube(false), false);
+        Matrix4 transform = Matrix4.translate(new Vector3D(3, 0, 0));
+        transform.set(0, 0, 2);
+        transform.set(1, 1, 2);
+        transform.set(2, 2, 2);
+        moved.setTransform(transform);
+        checkCubeContains(moved, "the cube scaled by 2 and moved to x = 3", 3, 2);
+
+        check(read(cube(false), false).contains(new Point3D(0.3, 0.2, 1)), "a point on a face is contained");
+        check(!read(cube(false), false).strictlyContains(new Point3D(0.3, 0.2, 1)), "a point on a face is not strictly contained");
+        check(!read(PENTAGON + "f 1 2 3 4 5\n", false).contains(new Point3D(1, 1, -0.5)), "an open mesh contains no volume");
+
+        // A sphere of quads, closed by triangle fans at its poles
+        TriangleMesh sphere = read(sphere(24, 12), false);
+        check(sphere.isClosed(), "the sphere is closed");
+        int wrong = 0;
+        int count = 0;
+        for (double x = -1.3 ; x <= 1.3 ; x += 0.1) {
+            for (double y = -1.3 ; y <= 1.3 ; y += 0.1) {
+                for (double z = -1.3 ; z <= 1.3 ; z += 0.1) {
+                    double r = Math.sqrt(x * x + y * y + z * z);
+                    if ((r > 0.9) && (r < 1.01)) {
+                        continue; // Between the sphere and its facets
+                    }
+                    count++;
+                    if (sphere.contains(new Point3D(x, y, z)) != (r < 1)) {
+                        wrong++;
+                    }
+                }
+            }
+        }
+        check(wrong == 0, wrong + " of " + count + " points of a grid are wrongly inside or outside the sphere");
+    }
+
+    static void checkCubeContains(TriangleMesh mesh, String name, double center, double size)
+    {
+        int wrong = 0;
+        int count = 0;
+        // A grid aligned with the faces and edges of the cube
+        for (int i = -6 ; i <= 6 ; i++) {
+            for (int j = -6 ; j <= 6 ; j++) {
+                for (int k = -6 ; k <= 6 ; k++) {
+                    if ((Math.abs(i) == 4) || (Math.abs(j) == 4) || (Math.abs(k) == 4)) {
+                        continue; // On the surface
+                    }
+                    boolean inside = (Math.abs(i) < 4) && (Math.abs(j) < 4) && (Math.abs(k) < 4);
+                    Point3D p = new Point3D(center + size * i / 4.0, size * j / 4.0, size * k / 4.0);
+                    count++;
+                    if ((mesh.contains(p) != inside) || (mesh.strictlyContains(p) != inside)) {
+                        wrong++;
+                    }
+                }
+            }
+        }
+        check(wrong == 0, wrong + " of " + count + " points are wrongly inside or outside " + name);
+    }
+
+    /*
+     * Returns the OBJ text of a unit sphere with the given numbers of
+     * slices and stacks, made of quads and of a triangle fan at each pole.
+     */
+    static String sphere(int slices, int stacks) throws IOException
+    {
+        StringWriter out = new StringWriter();
+        writeSphere(new PrintWriter(out), slices, stacks);
+        return out.toString();
+    }
+
+    static void writeSphere(PrintWriter out, int slices, int stacks)
+    {
+        out.println("v 0 0 1");
+        for (int i = 1 ; i < stacks ; i++) {
+            double theta = Math.PI * i / stacks;
+            for (int j = 0 ; j < slices ; j++) {
+                double phi = 2 * Math.PI * j / slices;
+                out.println("v " + (Math.sin(theta) * Math.cos(phi)) + " " +
+                            (Math.sin(theta) * Math.sin(phi)) + " " + Math.cos(theta));
+            }
+        }
+        out.println("v 0 0 -1");
+
+        // Vertex 1 is the north pole, then ring i starts at 2 + i * slices
+        int south = 2 + (stacks - 1) * slices;
+        for (int j = 0 ; j < slices ; j++) {
+            out.println("f 1 " + (2 + j) + " " + (2 + (j + 1) % slices));
+        }
+        for (int i = 0 ; i < stacks - 2 ; i++) {
+            for (int j = 0 ; j < slices ; j++) {
+                int a = 2 + i * slices + j;
+                int b = 2 + i * slices + (j + 1) % slices;
+                out.println("f " + a + " " + (a + slices) + " " + (b + slices) + " " + b);
+            }
+        }
+        for (int j = 0 ; j < slices ; j++) {
+            int a = 2 + (stacks - 2) * slices + j;
+            int b = 2 + (stacks - 2) * slices + (j + 1) % slices;
+            out.println("f " + south + " " + b + " " + a);
+        }
+    }
+
+
+    /*
+     * Memory and time taken by a large mesh.
+     */
+    static void checkLargeMesh(int triangles, long maxMemory, double maxTime) throws IOException
+    {
+        // A sphere of s slices and s / 2 stacks has s * (s - 2) triangles
+        int slices = 2 * (int) Math.round(Math.sqrt(triangles / 4.0) + 0.5);
+        int stacks = slices / 2;
+        File file = File.createTempFile("raja", ".obj");
+        file.deleteOnExit();
+        PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+        writeSphere(out, slices, stacks);
+        out.close();
+
+        System.out.println("Large mesh:");
+        long memoryBefore = usedMemory();
+        long start = System.nanoTime();
+        TriangleMesh mesh = TriangleMesh.load(file.getPath(), true);
+        double loadTime = (System.nanoTime() - start) / 1e9;
+        long retained = (usedMemory() - memoryBefore) >> 20;
+        file.delete();
+
+        Aggregate aggregate = new Aggregate();
+        aggregate.addSolid(new BasicSolid(new BasicTexturedForm(mesh, new LambertianTexture(new RGB(0.7, 0.3, 0.3))),
+                                          new IsotropicVolume(1.0)));
+        World world = new World(aggregate);
+        world.addLightSource(new PointLightSource(-5, -3, 6, RGB.white));
+        world.setBackgroundLight(new RGB(0.0, 0.0, 0.4));
+        world.setAmbiantLight(new RGB(0.1, 0.1, 0.1));
+        Camera camera = new HorizontalCamera(new Point3D(-4, 0, 0.8), new Vector3D(1, 0, -0.2), 1.8, 2.0, 1.5);
+
+        BufferedImage image = new BufferedImage(192, 144, BufferedImage.TYPE_INT_RGB);
+        start = System.nanoTime();
+        new BasicSampler().compute(camera, new AdvancedRayTracer(world, 5), image);
+        double renderTime = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("  " + mesh.getTriangleCount() + " triangles, " + mesh.getVertexCount() + " vertices, " +
+                           "loaded in " + loadTime + " s, rendered in " + renderTime + " s, " + retained + " MB retained");
+        check(mesh.isClosed(), "the large sphere is closed");
+        check(retained <= maxMemory, "the mesh retains at most " + maxMemory + " MB");
+        check(loadTime + renderTime <= maxTime, "the mesh is loaded and rendered in at most " + maxTime + " s");
+        check(image.getRGB(96, 72) != image.getRGB(0, 0), "the sphere is visible");
+    }
+
+    static long usedMemory()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0 ; i < 4 ; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -20,16 +20,23 @@ package raja.test;
 
 import java.io.*;
 import java.awt.image.*;
+import java.util.concurrent.*;
 import raja.io.*;
 
 
 /*
  * Program to diff images.  The maximum and average differences between
- * pixels (RGBcomponentwise) are reported.
+ * pixels (RGBcomponentwise) are reported, as well as the number of pixels
+ * differing by more than a tolerance.
  *
- * Usage: java raja.test.DiffImages [-v] file1 file2
+ * Usage: java raja.test.DiffImages [-v] [-t tolerance] file1 file2
  *
  * The -v option turns verbosity on: all differing pixels will be reported.
+ * The -t option sets the tolerance (default 0): pixels whose components
+ * all differ by at most the tolerance are not counted as differing.
+ *
+ * The images are compared by compare(), which splits them into bands of
+ * rows diffed in parallel, and can be called by other test programs.
  *
  * WARNING: This class is not part of the core Raja API.  It is primarily
  * used by Raja developpers to validate their implementations.  It does not
@@ -38,16 +45,76 @@ import raja.io.*;
 
 class DiffImages
 {
+    // Number of rows below which a band is not split any more
+    static final int BAND_HEIGHT = 16;
+
+    /*
+     * The differences between two images of the same resolution.
+     */
+    static class Difference
+    {
+        int width;
+        int height;
+        int tolerance;
+        int[] max = {0, 0, 0};
+        long[] sum = {0, 0, 0};
+        long count;     // pixels differing by more than the tolerance
+
+        Difference(int width, int height, int tolerance)
+        {
+            this.width = width;
+            this.height = height;
+            this.tolerance = tolerance;
+        }
+
+        void add(Difference d)
+        {
+            for (int k = 0 ; k < 3 ; k++) {
+                max[k] = Math.max(max[k], d.max[k]);
+                sum[k] += d.sum[k];
+            }
+            count += d.count;
+        }
+
+        // Largest difference between two components
+        int getMax()
+        {
+            return Math.max(max[0], Math.max(max[1], max[2]));
+        }
+
+        double getAverage(int k)
+        {
+            return (double) sum[k] / ((long) width * height);
+        }
+
+        // Average difference between two components, from 0 to 255
+        double getAverage()
+        {
+            return (getAverage(0) + getAverage(1) + getAverage(2)) / 3;
+        }
+
+        // Fraction of the pixels differing by more than the tolerance
+        double getFraction()
+        {
+            return (double) count / ((long) width * height);
+        }
+    }
+
     public static void main(String[] argv) throws java.io.IOException
     {
         // Parse command line arguments
         boolean verbose = false;
+        int tolerance = 0;
         int index = 0;
 
-        if (argv[index].equals("-v"))
+        for ( ; argv[index].startsWith("-") ; index++)
         {
-            verbose = true;
-            index++;
+            if (argv[index].equals("-v")) {
+                verbose = true;
+            }
+            else if (argv[index].equals("-t")) {
+                tolerance = Integer.parseInt(argv[++index]);
+            }
         }
 
         String fileName1 = argv[index++];
@@ -113,7 +180,7 @@ class DiffImages
 
         // Diff the images
         System.out.println("Diffing images...");
-        diff(image1, image2, verbose);
+        diff(image1, image2, verbose, tolerance);
         System.out.println("done.");
 
 
@@ -125,6 +192,11 @@ class DiffImages
     }
 
     static void diff(RenderedImage image1, RenderedImage image2, boolean verbose)
+    {
+        diff(image1, image2, verbose, 0);
+    }
+
+    static void diff(RenderedImage image1, RenderedImage image2, boolean verbose, int tolerance)
     {
         int width = image1.getWidth();
         int height = image2.getHeight();
@@ -138,67 +210,168 @@ class DiffImages
 
         System.out.println("Resolution: " + width + " x " + height);
 
-        Raster r1 = image1.getData();
-        Raster r2 = image2.getData();
-        ColorModel cm1 = image1.getColorModel();
-        ColorModel cm2 = image2.getColorModel();
-
-        int[] max = {0, 0, 0};
-        double[] sum = {0, 0, 0};
+        int[] rgb1 = getRGB(image1);
+        int[] rgb2 = getRGB(image2);
 
-        int[] pix1 = new int[3];
-        int[] pix2 = new int[3];
-
-        for (int i = 0 ; i < width ; i++)
+        if (verbose)
         {
-            for (int j = 0 ; j < height ; j++)
+            for (int i = 0 ; i < width ; i++)
             {
-                int rgb1 = cm1.getRGB(r1.getDataElements(i, j, null));
-                int rgb2 = cm2.getRGB(r2.getDataElements(i, j, null));
-
-                pix1[0] = (rgb1 >> 16) & 0xFF;   // red
-                pix1[1] = (rgb1 >> 8)  & 0xFF;   // green
-                pix1[2] = (rgb1 >> 0)  & 0xFF;   // blue
-
-                pix2[0] = (rgb2 >> 16) & 0xFF;   // red
-                pix2[1] = (rgb2 >> 8)  & 0xFF;   // green
-                pix2[2] = (rgb2 >> 0)  & 0xFF;   // blue
-
-                if ((pix1[0] != pix2[0]) ||
-                    (pix1[1] != pix2[1]) ||
-                    (pix1[2] != pix2[2]))
+                for (int j = 0 ; j < height ; j++)
                 {
-                    if (verbose)
+                    int p1 = rgb1[j * width + i];
+                    int p2 = rgb2[j * width + i];
+
+                    if (delta(p1, p2) > tolerance)
                     {
                         System.out.println("Difference at pixel (" +
                                            i + ", " + j + ")");
                         System.out.println("   image 1 : [" +
-                                           pix1[0] + ", " +
-                                           pix1[1] + ", " +
-                                           pix1[2] + "]");
+                                           ((p1 >> 16) & 0xFF) + ", " +
+                                           ((p1 >> 8) & 0xFF) + ", " +
+                                           (p1 & 0xFF) + "]");
                         System.out.println("   image 2 : [" +
-                                           pix2[0] + ", " +
-                                           pix2[1] + ", " +
-                                           pix2[2] + "]");
+                                           ((p2 >> 16) & 0xFF) + ", " +
+                                           ((p2 >> 8) & 0xFF) + ", " +
+                                           (p2 & 0xFF) + "]");
                         System.out.println();
                     }
-
-                    for(int k = 0 ; k < 3 ; k++)
-                    {
-                        max[k] = Math.max(max[k], Math.abs(pix1[k] - pix2[k]));
-                        sum[k] = sum[k] + Math.abs(pix1[k] - pix2[k]);
-                    }
                 }
             }
         }
 
+        Difference d = compare(rgb1, rgb2, width, height, tolerance);
+
         System.out.println("Maximum difference: [" +
-                           max[0] + ", " +
-                           max[1] + ", " +
-                           max[2] + "]");
+                           d.max[0] + ", " +
+                           d.max[1] + ", " +
+                           d.max[2] + "]");
         System.out.println("Average difference: [" +
-                           (sum[0] / (width*height)) + ", " +
-                           (sum[1] / (width*height)) + ", " +
-                           (sum[2] / (width*height)) + "]");
+                           d.getAverage(0) + ", " +
+                           d.getAverage(1) + ", " +
+                           d.getAverage(2) + "]");
+        System.out.println("Pixels differing by more than " + tolerance + ": " +
+                           d.count + " (" + (100 * d.getFraction()) + "%)");
+    }
+
+    /*
+     * Compares two images of the same resolution in parallel.
+     */
+    static Difference compare(RenderedImage image1, RenderedImage image2, int tolerance)
+    {
+        int width = image1.getWidth();
+        int height = image1.getHeight();
+
+        if ((image2.getWidth() != width) || (image2.getHeight() != height)) {
+            throw new IllegalArgumentException("the 2 images have a different resolution");
+        }
+
+        return compare(getRGB(image1), getRGB(image2), width, height, tolerance);
+    }
+
+    static Difference compare(int[] rgb1, int[] rgb2, int width, int height, int tolerance)
+    {
+        return (Difference) ForkJoinPool.commonPool().invoke(
+            new Band(rgb1, rgb2, width, 0, height, tolerance));
+    }
+
+    /*
+     * Compares rows top to bottom (excluded), splitting them in halves
+     * until they are at most BAND_HEIGHT rows high.
+     */
+    static class Band extends RecursiveTask
+    {
+        int[] rgb1;
+        int[] rgb2;
+        int width;
+        int top;
+        int bottom;
+        int tolerance;
+
+        Band(int[] rgb1, int[] rgb2, int width, int top, int bottom, int tolerance)
+        {
+            this.rgb1 = rgb1;
+            this.rgb2 = rgb2;
+            this.width = width;
+            this.top = top;
+            this.bottom = bottom;
+            this.tolerance = tolerance;
+        }
+
+        protected Object compute()
+        {
+            if (bottom - top > BAND_HEIGHT) {
+                int middle = (top + bottom) / 2;
+                Band upper = new Band(rgb1, rgb2, width, top, middle, tolerance);
+                Band lower = new Band(rgb1, rgb2, width, middle, bottom, tolerance);
+                upper.fork();
+                Difference d = (Difference) lower.compute();
+                d.add((Difference) upper.join());
+                d.height = bottom - top;
+                return d;
+            }
+
+            Difference d = new Difference(width, bottom - top, tolerance);
+            for (int n = top * width ; n < bottom * width ; n++)
+            {
+                int p1 = rgb1[n];
+                int p2 = rgb2[n];
+                if (p1 == p2) {
+                    continue;
+                }
+
+                for (int k = 0, shift = 16 ; k < 3 ; k++, shift -= 8)
+                {
+                    int delta = Math.abs(((p1 >> shift) & 0xFF) - ((p2 >> shift) & 0xFF));
+                    d.max[k] = Math.max(d.max[k], delta);
+                    d.sum[k] += delta;
+                }
+                if (delta(p1, p2) > tolerance) {
+                    d.count++;
+                }
+            }
+            return d;
+        }
+    }
+
+    /*
+     * Returns the largest difference between the components of two
+     * pixels.
+     */
+    static int delta(int p1, int p2)
+    {
+        int max = 0;
+        for (int shift = 0 ; shift <= 16 ; shift += 8)
+        {
+            max = Math.max(max, Math.abs(((p1 >> shift) & 0xFF) - ((p2 >> shift) & 0xFF)));
+        }
+        return max;
+    }
+
+    /*
+     * Returns the pixels of an image in the default RGB color model, row
+     * after row.
+     */
+    static int[] getRGB(RenderedImage image)
+    {
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        if (image instanceof BufferedImage) {
+            return ((BufferedImage) image).getRGB(0, 0, width, height, null, 0, width);
+        }
+
+        Raster r = image.getData();
+        ColorModel cm = image.getColorModel();
+        int[] rgb = new int[width * height];
+
+        for (int j = 0 ; j < height ; j++)
+        {
+            for (int i = 0 ; i < width ; i++)
+            {
+                rgb[j * width + i] = cm.getRGB(r.getDataElements(i, j, null));
+            }
+        }
+        return rgb;
     }
 }
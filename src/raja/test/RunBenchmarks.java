@@ -0,0 +1,611 @@
+package raja.test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+import raja.*;
+import raja.io.*;
+import raja.light.*;
+import raja.material.*;
+import raja.renderer.*;
+import raja.shape.*;
+
+
+/*
+ * Program to measure the throughput of the ray tracing hot paths: form
+ * intersections, aggregate intersections, the ray tracer, procedural
+ * textures and scene parsing, textual or binary.
+ *
+ * Usage: java raja.test.RunBenchmarks [-warmup n] [-iterations n] [-time ms]
+ *                                     [-json file] [filter]
+ *
+ * Each benchmark runs -warmup iterations (default 3) that are discarded,
+ * then -iterations measured iterations (default 5) of -time milliseconds
+ * each (default 1000).  Only the benchmarks whose name contains the
+ * filter are run.  Results are printed on the standard output and, with
+ * the -json option, written to a file in the JSON layout of JMH, so that
+ * the results of two releases can be compared with the usual JMH tools.
+ * The program does not open any window.
+ *
+ * WARNING: This class is not part of the core Raja API.  It is primarily
+ * used by Raja developpers to validate their implementations.  It does not
+ * contain much error handling.
+ */
+
+class RunBenchmarks
+{
+    // Number of precomputed inputs (rays, points) cycled through
+    static final int INPUTS = 1024;
+
+    // Sink for the results of the benchmarked calls, so that the JIT
+    // cannot discard them
+    static long sink;
+
+    /*
+     * A benchmark: setUp() builds its fixture, then op(i) performs one
+     * operation on the i-th input.
+     */
+    static abstract class Benchmark
+    {
+        String name;
+        String paramName;
+        String paramValue;
+
+        Benchmark(String name, String paramName, String paramValue)
+        {
+            this.name = name;
+            this.paramName = paramName;
+            this.paramValue = paramValue;
+        }
+
+        abstract void setUp() throws IOException;
+        abstract long op(int i);
+
+        String getLabel()
+        {
+            if (paramName == null) {
+                return name;
+            }
+            return name + " (" + paramName + "=" + paramValue + ")";
+        }
+    }
+
+    static class Result
+    {
+        Benchmark benchmark;
+        double[] scores;    // ops/s of each measured iteration
+        double mean;
+        double error;
+
+        Result(Benchmark benchmark, double[] scores)
+        {
+            this.benchmark = benchmark;
+            this.scores = scores;
+
+            for (int i = 0 ; i < scores.length ; i++) {
+                mean += scores[i];
+            }
+            mean /= scores.length;
+
+            if (scores.length > 1) {
+                double variance = 0;
+                for (int i = 0 ; i < scores.length ; i++) {
+                    variance += (scores[i] - mean) * (scores[i] - mean);
+                }
+                variance /= (scores.length - 1);
+                // Half-width of the 99.9% confidence interval (normal approximation)
+                error = 3.29 * Math.sqrt(variance / scores.length);
+            }
+            else {
+                error = Double.NaN;
+            }
+        }
+    }
+
+    public static void main(String[] argv) throws IOException
+    {
+        // Parse command line arguments
+        int warmup = 3;
+        int iterations = 5;
+        long time = 1000;
+        String jsonFileName = null;
+        String filter = "";
+        int index;
+
+        for(index = 0 ; index < argv.length ; index++)
+        {
+            if (argv[index].equals("-warmup")) {
+                warmup = Integer.parseInt(argv[++index]);
+            }
+            else if (argv[index].equals("-iterations")) {
+                iterations = Integer.parseInt(argv[++index]);
+            }
+            else if (argv[index].equals("-time")) {
+                time = Long.parseLong(argv[++index]);
+            }
+            else if (argv[index].equals("-json")) {
+                jsonFileName = argv[++index];
+            }
+            else {
+                filter = argv[index];
+            }
+        }
+
+        if (iterations < 1) {
+            throw new IllegalArgumentException("iterations < 1");
+        }
+
+
+        // Run the selected benchmarks
+        ArrayList results = new ArrayList();
+
+        for(Iterator iter = createBenchmarks().iterator() ; iter.hasNext() ;)
+        {
+            Benchmark benchmark = (Benchmark) iter.next();
+
+            if (benchmark.getLabel().indexOf(filter) < 0) {
+                continue;
+            }
+
+            System.out.println("Running " + benchmark.getLabel() + "...");
+            benchmark.setUp();
+
+            for (int i = 0 ; i < warmup ; i++) {
+                System.out.println("  warmup " + (i + 1) + ": " + format(measure(benchmark, time)) + " ops/s");
+            }
+
+            double[] scores = new double[iterations];
+            for (int i = 0 ; i < iterations ; i++) {
+                scores[i] = measure(benchmark, time);
+                System.out.println("  iteration " + (i + 1) + ": " + format(scores[i]) + " ops/s");
+            }
+
+            Result result = new Result(benchmark, scores);
+            results.add(result);
+            System.out.println("done: " + format(result.mean) + " +- " + format(result.error) + " ops/s\n");
+        }
+
+
+        // Summary
+        System.out.println("Summary:");
+        for(Iterator iter = results.iterator() ; iter.hasNext() ;)
+        {
+            Result result = (Result) iter.next();
+            System.out.println("  " + result.benchmark.getLabel() + ": " +
+                               format(result.mean) + " +- " + format(result.error) + " ops/s");
+        }
+
+
+        // Write JSON results
+        if (jsonFileName != null)
+        {
+            PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(jsonFileName)));
+            writeJSON(out, results, warmup, iterations, time);
+            out.close();
+            System.out.println("\nResults written to " + jsonFileName);
+        }
+    }
+
+    /*
+     * Runs the benchmark for about the given time and returns its
+     * throughput in operations per second.
+     */
+    static double measure(Benchmark benchmark, long time)
+    {
+        long duration = time * 1000000L;
+        long ops = 0;
+        int batch = 1;
+        long start = System.nanoTime();
+        long elapsed;
+
+        do
+        {
+            long acc = 0;
+            for (int i = 0 ; i < batch ; i++) {
+                acc += benchmark.op((int) ((ops + i) % INPUTS));
+            }
+            sink += acc;
+            ops += batch;
+            elapsed = System.nanoTime() - start;
+
+            if (elapsed < duration / 100) {
+                batch = Math.min(batch * 2, 1 << 20);
+            }
+        }
+        while (elapsed < duration);
+
+        return (ops * 1e9) / elapsed;
+    }
+
+    static String format(double d)
+    {
+        if (Double.isNaN(d)) {
+            return "NaN";
+        }
+        return String.format("%.2f", new Object[] { Double.valueOf(d) });
+    }
+
+    static void writeJSON(PrintWriter out, ArrayList results, int warmup, int iterations, long time)
+    {
+        out.println("[");
+
+        for(Iterator iter = results.iterator() ; iter.hasNext() ;)
+        {
+            Result result = (Result) iter.next();
+            Benchmark benchmark = result.benchmark;
+
+            out.println("    {");
+            out.println("        \"benchmark\" : \"raja.test.RunBenchmarks." + benchmark.name + "\",");
+            out.println("        \"mode\" : \"thrpt\",");
+            out.println("        \"threads\" : 1,");
+            out.println("        \"forks\" : 0,");
+            out.println("        \"jdkVersion\" : \"" + System.getProperty("java.version") + "\",");
+            out.println("        \"warmupIterations\" : " + warmup + ",");
+            out.println("        \"warmupTime\" : \"" + time + " ms\",");
+            out.println("        \"measurementIterations\" : " + iterations + ",");
+            out.println("        \"measurementTime\" : \"" + time + " ms\",");
+            if (benchmark.paramName != null) {
+                out.println("        \"params\" : {");
+                out.println("            \"" + benchmark.paramName + "\" : \"" + benchmark.paramValue + "\"");
+                out.println("        },");
+            }
+            out.println("        \"primaryMetric\" : {");
+            out.println("            \"score\" : " + result.mean + ",");
+            out.println("            \"scoreError\" : " + (Double.isNaN(result.error) ? "\"NaN\"" : Double.toString(result.error)) + ",");
+            out.println("            \"scoreUnit\" : \"ops/s\",");
+            out.print("            \"rawData\" : [ [ ");
+            for (int i = 0 ; i < result.scores.length ; i++) {
+                out.print(((i > 0) ? ", " : "") + result.scores[i]);
+            }
+            out.println(" ] ]");
+            out.println("        },");
+            out.println("        \"secondaryMetrics\" : {}");
+            out.println(iter.hasNext() ? "    }," : "    }");
+        }
+
+        out.println("]");
+    }
+
+
+    /*
+     * The benchmarks.
+     */
+    static ArrayList createBenchmarks()
+    {
+        ArrayList benchmarks = new ArrayList();
+
+        benchmarks.add(new FormBenchmark("MSphere.computeIntersection") {
+            MSphere sphere = new MSphere(1.0);
+
+            Point3D computeIntersection(Ray r)
+            {
+                return sphere.computeIntersection(r);
+            }
+        });
+        benchmarks.add(new FormBenchmark("MTriangle.computeIntersection") {
+            MTriangle triangle = new MTriangle(-1, -1, 0, 1, -1, 0, 0, 1, 0.5);
+
+            Point3D computeIntersection(Ray r)
+            {
+                return triangle.computeIntersection(r);
+            }
+        });
+        benchmarks.add(new FormBenchmark("MTorus.computeIntersection") {
+            MTorus torus = new MTorus(0.8, 0.3);
+
+            Point3D computeIntersection(Ray r)
+            {
+                return torus.computeIntersection(r);
+            }
+        });
+        benchmarks.add(new FormBenchmark("MBox.computeIntersection") {
+            MBox box = new MBox(new Point3D(-1, -1, -1), new Point3D(1, 1, 1));
+
+            Point3D computeIntersection(Ray r)
+            {
+                return box.computeIntersection(r);
+            }
+        });
+
+        benchmarks.add(new AggregateBenchmark(10));
+        benchmarks.add(new AggregateBenchmark(1000));
+        benchmarks.add(new AggregateBenchmark(100000));
+
+        benchmarks.add(new Benchmark("AdvancedRayTracer.getLight", "scene", "scenes/test.txt") {
+            RayTracer rayTracer;
+            Ray[] rays;
+
+            void setUp()
+            {
+                rayTracer = new AdvancedRayTracer(createTestScene().getWorld(), 3);
+                rays = cameraRays();
+            }
+            long op(int i)
+            {
+                return rayTracer.getLight(rays[i]).getColor().getRGB();
+            }
+        });
+
+        benchmarks.add(new TextureBenchmark(new MarbleTexture()));
+        benchmarks.add(new TextureBenchmark(new WoodTexture()));
+        benchmarks.add(new TextureBenchmark(new SandTexture()));
+        benchmarks.add(new TextureBenchmark(new StormTexture()));
+        benchmarks.add(new TextureBenchmark(new CrystalCaveTexture()));
+        benchmarks.add(new TextureBenchmark(new AnodizedTexture()));
+        benchmarks.add(new TextureBenchmark(new MarbleTexture(), new LocalTexture()));
+        benchmarks.add(new TextureBenchmark(new WoodTexture(), new LocalTexture()));
+        benchmarks.add(new TextureBenchmark(new SandTexture(), new LocalTexture()));
+
+        benchmarks.add(new Benchmark("ImageTexture.getLocalTexture", "image", "textures/elena.png") {
+            Texture texture;
+            Point3D[] points;
+
+            void setUp() throws IOException
+            {
+                texture = new ImageTexture(TextureCache.getShared().load(paramValue).getImage(),
+                                           new RGB(0.5), new RGB(0.1), new RGB(0.0), 50, 10);
+                points = new Point3D[INPUTS];
+                Random random = new Random(1);
+                for (int i = 0 ; i < INPUTS ; i++) {
+                    points[i] = new Point3D(10 * random.nextDouble() - 5,
+                                            10 * random.nextDouble() - 5,
+                                            10 * random.nextDouble() - 5);
+                }
+            }
+            long op(int i)
+            {
+                return texture.getLocalTexture(points[i]).hashCode();
+            }
+        });
+
+        benchmarks.add(new Benchmark("ObjectReader.readObject", "solids", "1000") {
+            String text;
+
+            void setUp()
+            {
+                World world = new World(createSpheres(1000, new Random(1)));
+                world.addLightSource(new PointLightSource(-10, 0, 10, RGB.white));
+                text = ObjectWriter.toString(new Scene(world, createTestScene().getCamera()));
+                System.out.println("  scene text: " + text.length() + " characters");
+            }
+            long op(int i)
+            {
+                try {
+                    ObjectReader reader = new ObjectReader(new StringReader(text));
+                    Object scene = reader.readObject();
+                    reader.close();
+                    return scene.hashCode();
+                }
+                catch (IOException e) {
+                    throw new RuntimeException(e.toString());
+                }
+            }
+        });
+
+        // Same scene as above, mapped from a binary scene file at each
+        // operation
+        benchmarks.add(new Benchmark("BinaryObjectReader.readObject", "solids", "1000") {
+            File file;
+
+            void setUp() throws IOException
+            {
+                World world = new World(createSpheres(1000, new Random(1)));
+                world.addLightSource(new PointLightSource(-10, 0, 10, RGB.white));
+                file = File.createTempFile("raja", ".rajb");
+                file.deleteOnExit();
+                ObjectWriter writer = new BinaryObjectWriter(new FileOutputStream(file));
+                writer.writeObject(new Scene(world, createTestScene().getCamera()));
+                writer.close();
+                System.out.println("  scene file: " + file.length() + " bytes");
+            }
+            long op(int i)
+            {
+                try {
+                    ObjectReader reader = new BinaryObjectReader(file);
+                    Object scene = reader.readObject();
+                    reader.close();
+                    return scene.hashCode();
+                }
+                catch (IOException e) {
+                    throw new RuntimeException(e.toString());
+                }
+            }
+        });
+
+        return benchmarks;
+    }
+
+    /*
+     * Intersects a form at the origin with rays coming from a sphere of
+     * radius 4 around it; about half of them miss the form.
+     */
+    static abstract class FormBenchmark extends Benchmark
+    {
+        Ray[] rays;
+
+        FormBenchmark(String name)
+        {
+            super(name, null, null);
+        }
+
+        abstract Point3D computeIntersection(Ray r);
+
+        void setUp()
+        {
+            rays = new Ray[INPUTS];
+            Random random = new Random(1);
+            for (int i = 0 ; i < INPUTS ; i++) {
+                Vector3D v = randomDirection(random);
+                Point3D origin = new Point3D(4 * v.x, 4 * v.y, 4 * v.z);
+                Point3D target = new Point3D(3 * random.nextDouble() - 1.5,
+                                             3 * random.nextDouble() - 1.5,
+                                             3 * random.nextDouble() - 1.5);
+                rays[i] = new Ray(origin, target);
+            }
+        }
+        long op(int i)
+        {
+            return (computeIntersection(rays[i]) == null) ? 0 : 1;
+        }
+    }
+
+    /*
+     * Looks up a procedural texture at points spread in a cube, into a
+     * reused local texture if one is given.
+     */
+    static class TextureBenchmark extends Benchmark
+    {
+        Texture texture;
+        LocalTexture result;
+        Point3D[] points;
+
+        TextureBenchmark(Texture texture)
+        {
+            this(texture, null);
+        }
+        TextureBenchmark(Texture texture, LocalTexture result)
+        {
+            super(texture.getClass().getName().substring(texture.getClass().getName().lastIndexOf('.') + 1) +
+                  ((result == null) ? ".getLocalTexture" : ".getLocalTexture(result)"), null, null);
+            this.texture = texture;
+            this.result = result;
+        }
+
+        void setUp()
+        {
+            points = new Point3D[INPUTS];
+            Random random = new Random(1);
+            for (int i = 0 ; i < INPUTS ; i++) {
+                points[i] = new Point3D(10 * random.nextDouble() - 5,
+                                        10 * random.nextDouble() - 5,
+                                        10 * random.nextDouble() - 5);
+            }
+        }
+        long op(int i)
+        {
+            if (result != null) {
+                return ((FillableTexture) texture).getLocalTexture(points[i], result).getKd().getR() > 0.5 ? 1 : 0;
+            }
+            return texture.getLocalTexture(points[i]).getKd().getR() > 0.5 ? 1 : 0;
+        }
+    }
+
+    /*
+     * Intersects an aggregate of spheres, at constant density, with rays
+     * crossing it.
+     */
+    static class AggregateBenchmark extends Benchmark
+    {
+        int n;
+        Aggregate aggregate;
+        Ray[] rays;
+
+        AggregateBenchmark(int n)
+        {
+            super("Aggregate.intersection", "solids", Integer.toString(n));
+            this.n = n;
+        }
+
+        void setUp()
+        {
+            Random random = new Random(1);
+            double size = 2 * Math.cbrt(n);
+            aggregate = createSpheres(n, random);
+            rays = new Ray[INPUTS];
+            for (int i = 0 ; i < INPUTS ; i++) {
+                Vector3D v = randomDirection(random);
+                Point3D origin = new Point3D(size * v.x, size * v.y, size * v.z);
+                Point3D target = new Point3D(size * (random.nextDouble() - 0.5),
+                                             size * (random.nextDouble() - 0.5),
+                                             size * (random.nextDouble() - 0.5));
+                rays[i] = new Ray(origin, target);
+            }
+            // Build the hierarchy outside of the measurement
+            aggregate.intersection(rays[0]);
+        }
+        long op(int i)
+        {
+            return (aggregate.intersection(rays[i]) == null) ? 0 : 1;
+        }
+    }
+
+    /*
+     * Returns n spheres of radius 0.1 to 0.4, spread over a cube of side
+     * 2 * cbrt(n) centered on the origin.  Sphere is used rather than
+     * MSphere because its text form can be read back.
+     */
+    static Aggregate createSpheres(int n, Random random)
+    {
+        double size = 2 * Math.cbrt(n);
+        Aggregate aggregate = new Aggregate();
+        Texture texture = new LambertianTexture(new RGB(0.7, 0.3, 0.3));
+
+        for (int i = 0 ; i < n ; i++) {
+            double radius = 0.1 + 0.3 * random.nextDouble();
+            Sphere sphere = new Sphere(new Point3D(size * (random.nextDouble() - 0.5),
+                                                   size * (random.nextDouble() - 0.5),
+                                                   size * (random.nextDouble() - 0.5)),
+                                       radius);
+            aggregate.addSolid(new BasicSolid(new BasicTexturedForm(sphere, texture),
+                                              new IsotropicVolume(1.0)));
+        }
+        return aggregate;
+    }
+
+    static Vector3D randomDirection(Random random)
+    {
+        Vector3D v;
+        do {
+            v = new Vector3D(2 * random.nextDouble() - 1,
+                             2 * random.nextDouble() - 1,
+                             2 * random.nextDouble() - 1);
+        }
+        while ((v.normSq() > 1) || (v.normSq() < 1e-6));
+        return Vector3D.normalization(v);
+    }
+
+    /*
+     * Returns the scene saved in scenes/test.txt by the GUI: that file is a
+     * human readable summary that cannot be read back, so the scene is
+     * rebuilt here from its values.
+     */
+    static Scene createTestScene()
+    {
+        MSphere sphere = new MSphere(1.0);
+        sphere.setTransform(new Matrix4(0.8660254037844387, -0.024429647691750673, -0.4996954135095478, 1.0,
+                                        0.0, 1.399147157826734, -0.03489949670250097, 0.5,
+                                        0.49999999999999994, 0.04231339101311992, 0.8654978445076765, 0.0,
+                                        0.0, 0.0, 0.0, 1.0));
+
+        Aggregate aggregate = new Aggregate();
+        aggregate.addSolid(new BasicSolid(new BasicTexturedForm(sphere, new LambertianTexture(new RGB(0.7, 0.7, 0.7))),
+                                          new IsotropicVolume(1.0)));
+
+        World world = new World(aggregate);
+        world.addLightSource(new PointLightSource(-5, 0, 5, RGB.white));
+        world.setBackgroundLight(new RGB(0.0, 0.0, 0.7));
+        world.setAmbiantLight(new RGB(0.1, 0.1, 0.1));
+
+        Camera camera = new HorizontalCamera(new Point3D(-3, 0, 0), new Vector3D(1, 0, 0), 1.8, 2.0, 1.5);
+        return new Scene(world, camera);
+    }
+
+    /*
+     * Returns rays through a 32x32 grid of the screen of the camera of
+     * scenes/test.txt (Camera.getRay is not accessible from here).
+     */
+    static Ray[] cameraRays()
+    {
+        Point3D origin = new Point3D(-3, 0, 0);
+        Ray[] rays = new Ray[INPUTS];
+
+        for (int i = 0 ; i < INPUTS ; i++) {
+            double x = ((i % 32) + 0.5) / 32;
+            double y = ((i / 32) + 0.5) / 32;
+            Point3D pixel = new Point3D(-3 + 1.8, 2.0 * (0.5 - x), 1.5 * (0.5 - y));
+            rays[i] = new Ray(pixel, new Vector3D(origin, pixel));
+        }
+        return rays;
+    }
+}
@@ -0,0 +1,585 @@
+package raja.test;
+
+import java.io.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import raja.*;
+import raja.io.*;
+import raja.light.*;
+import raja.material.*;
+import raja.renderer.*;
+import raja.shape.*;
+import raja.util.RenderStatistics;
+
+
+/*
+ * Program to check that the ray tracer still renders the same images, and
+ * not slower.  A corpus of small scenes, one per BasicForm and one per
+ * texture of raja.material, is rendered and each image is compared with
+ * a golden image by DiffImages.compare().  The wall time and the number
+ * of rays traced per second of each scene are compared with the recorded
+ * ones.  All the scenes are rendered once, counting their rays, then again
+ * without statistics for WARMUP_TIME before any is timed, so that the
+ * timed renders run on a warm JVM.
+ *
+ * Usage: java raja.test.RunRegressionSuite [-update] [-updateTimings]
+ *            [-golden dir] [-timings file] [-threads n] [-runs n]
+ *            [-tolerance n] [-maxPixels fraction] [-maxSlowdown factor]
+ *            [-maxTotalSlowdown factor] [filter]
+ *
+ * Golden images are read from -golden (default tests/golden), as
+ * <scene>.png, and are shared by all machines.  Timings depend on the
+ * machine, so they are not shared: they are read from -timings (default
+ * tests/timings.txt, which is not under version control), and recorded
+ * there by the first run on a machine, which then checks no timing.
+ * With -update, images and timings are written instead of being
+ * checked; with -updateTimings, only the timings are.
+ *
+ * A scene fails if more than -maxPixels of its pixels (default 0.001)
+ * differ from the golden image by more than -tolerance (default 2) on a
+ * component, or if its wall time or its rays per second are worse than
+ * recorded by more than -maxSlowdown (default 2).  The suite fails if
+ * its total wall time is worse than recorded by more than
+ * -maxTotalSlowdown (default 1.5): the JIT compiler does not compile the
+ * hot paths the same way in every JVM, which makes a single scene up to
+ * about 1.7 times slower, but not the whole corpus.  The wall time of a
+ * scene is the best of -runs runs (default 3), each run rendering the
+ * scene again and again for at least RUN_TIME and averaging these
+ * renders.  Only the scenes whose name contains the filter are run.  The
+ * program exits with status 1 if a scene or the suite fails.
+ *
+ * The program must be run from the root of the distribution, for the
+ * image textures.  It does not open any window and runs with
+ * java.awt.headless set.
+ *
+ * WARNING: This class is not part of the core Raja API.  It is primarily
+ * used by Raja developpers to validate their implementations.  It does not
+ * contain much error handling.
+ */
+
+class RunRegressionSuite
+{
+    static final int WIDTH = 160;
+    static final int HEIGHT = 120;
+    static final int ANTIALIAS_LEVEL = 2;
+    static final int DEPTH = 5;
+
+    // Minimum wall time (ms) of a timed run, over which renders are averaged
+    static final long RUN_TIME = 1000;
+
+    // Minimum wall time (ms) of the renders warming up the JVM
+    static final long WARMUP_TIME = 5000;
+
+    /*
+     * A scene of the corpus: its world is built from a form and a
+     * texture, and named after the class that is tested.
+     */
+    static class Case
+    {
+        String name;
+        Form form;
+        Texture texture;
+
+        // Set by the first render
+        Scene scene;
+        RayTracer rayTracer;
+        long rays;
+
+        Case(String name, Form form, Texture texture)
+        {
+            this.name = name;
+            this.form = form;
+            this.texture = texture;
+        }
+    }
+
+    /*
+     * The recorded or measured timing of a scene.
+     */
+    static class Timing
+    {
+        double time;            // best wall time in ms
+        double raysPerSecond;
+
+        Timing(double time, double raysPerSecond)
+        {
+            this.time = time;
+            this.raysPerSecond = raysPerSecond;
+        }
+    }
+
+    public static void main(String[] argv) throws IOException
+    {
+        System.setProperty("java.awt.headless", "true");
+
+        // Parse command line arguments
+        boolean updateImages = false;
+        boolean updateTimings = false;
+        File golden = new File("tests/golden");
+        File timingsFile = new File("tests/timings.txt");
+        int threads = 0;
+        int runs = 3;
+        int tolerance = 2;
+        double maxPixels = 0.001;
+        double maxSlowdown = 2;
+        double maxTotalSlowdown = 1.5;
+        String filter = "";
+        int index;
+
+        for(index = 0 ; index < argv.length ; index++)
+        {
+            if (argv[index].equals("-update")) {
+                updateImages = true;
+                updateTimings = true;
+            }
+            else if (argv[index].equals("-updateTimings")) {
+                updateTimings = true;
+            }
+            else if (argv[index].equals("-golden")) {
+                golden = new File(argv[++index]);
+            }
+            else if (argv[index].equals("-timings")) {
+                timingsFile = new File(argv[++index]);
+            }
+            else if (argv[index].equals("-threads")) {
+                threads = Integer.parseInt(argv[++index]);
+            }
+            else if (argv[index].equals("-runs")) {
+                runs = Integer.parseInt(argv[++index]);
+            }
+            else if (argv[index].equals("-tolerance")) {
+                tolerance = Integer.parseInt(argv[++index]);
+            }
+            else if (argv[index].equals("-maxPixels")) {
+                maxPixels = Double.parseDouble(argv[++index]);
+            }
+            else if (argv[index].equals("-maxSlowdown")) {
+                maxSlowdown = Double.parseDouble(argv[++index]);
+            }
+            else if (argv[index].equals("-maxTotalSlowdown")) {
+                maxTotalSlowdown = Double.parseDouble(argv[++index]);
+            }
+            else {
+                filter = argv[index];
+            }
+        }
+
+        if (runs < 1) {
+            throw new IllegalArgumentException("runs < 1");
+        }
+        if (maxSlowdown < 1) {
+            throw new IllegalArgumentException("maxSlowdown < 1");
+        }
+        if (maxTotalSlowdown < 1) {
+            throw new IllegalArgumentException("maxTotalSlowdown < 1");
+        }
+
+        golden.mkdirs();
+        if (! timingsFile.exists()) {
+            System.out.println("No timings in " + timingsFile + ", they are recorded by this run.\n");
+            updateTimings = true;
+        }
+        HashMap recorded = updateTimings ? new HashMap() : readTimings(timingsFile);
+        HashMap measured = new HashMap();
+        ParallelSampler sampler = new ParallelSampler(threads, ANTIALIAS_LEVEL);
+
+
+        // Select the scenes
+        ArrayList cases = new ArrayList();
+
+        for(Iterator iter = createCases().iterator() ; iter.hasNext() ;)
+        {
+            Case c = (Case) iter.next();
+
+            if (c.name.indexOf(filter) >= 0) {
+                cases.add(c);
+            }
+        }
+
+
+        // Render each scene once, counting its rays, and check its image.
+        // This also warms up the JVM for the timed renders, which do not
+        // pay for the statistics.
+        ArrayList failures = new ArrayList();
+        RenderStatistics statistics = RenderStatistics.getShared();
+        RenderStatistics.setEnabled(true);
+
+        for(Iterator iter = cases.iterator() ; iter.hasNext() ;)
+        {
+            Case c = (Case) iter.next();
+
+            System.out.println("Rendering " + c.name + "...");
+            c.scene = createScene(c);
+            c.rayTracer = new AdvancedRayTracer(c.scene.getWorld(), DEPTH);
+
+            statistics.reset();
+            BufferedImage image = render(c, sampler);
+            c.rays = statistics.getPrimaryRays() + statistics.getReflectedRays() +
+                     statistics.getRefractedRays() + statistics.getShadowRays();
+
+            File imageFile = new File(golden, c.name + ".png");
+
+            if (updateImages) {
+                writeImage(image, imageFile);
+                System.out.println("  golden image written to " + imageFile);
+            }
+            else if (! imageFile.exists()) {
+                failures.add(c.name + ": no golden image " + imageFile);
+            }
+            else {
+                DiffImages.Difference d = DiffImages.compare(image, readImage(imageFile), tolerance);
+                System.out.println("  " + d.count + " pixels differ by more than " + tolerance +
+                                   ", maximum difference " + d.getMax() +
+                                   ", average difference " + format(d.getAverage()));
+                if (d.getFraction() > maxPixels) {
+                    failures.add(c.name + ": " + format(100 * d.getFraction()) + "% of the pixels differ");
+                    writeImage(image, new File(golden, c.name + ".failed.png"));
+                }
+            }
+        }
+
+        RenderStatistics.setEnabled(false);
+
+
+        // Time each scene, after rendering all of them without statistics
+        // for WARMUP_TIME, as the hot paths are compiled again once
+        // statistics are turned off
+        double totalTime = 0;
+        double recordedTotalTime = 0;
+
+        System.out.println("\nWarming up...");
+        long warmupStart = System.nanoTime();
+        do
+        {
+            for(Iterator iter = cases.iterator() ; iter.hasNext() ;)
+            {
+                measure((Case) iter.next(), sampler);
+            }
+        }
+        while (System.nanoTime() - warmupStart < WARMUP_TIME * 1000000L);
+        System.out.println("done.\n");
+
+        for(Iterator iter = cases.iterator() ; iter.hasNext() ;)
+        {
+            Case c = (Case) iter.next();
+
+            System.out.println("Timing " + c.name + "...");
+            double time = Double.MAX_VALUE;
+            for (int i = 0 ; i < runs ; i++) {
+                time = Math.min(time, measure(c, sampler));
+            }
+            Timing timing = new Timing(time, c.rays / (time / 1000));
+            measured.put(c.name, timing);
+            totalTime += time;
+            System.out.println("  " + format(time) + " ms, " + format(timing.raysPerSecond) + " rays/s");
+
+            if (updateTimings) {
+                continue;
+            }
+
+            Timing expected = (Timing) recorded.get(c.name);
+
+            if (expected == null) {
+                failures.add(c.name + ": no recorded timing in " + timingsFile);
+                continue;
+            }
+
+            recordedTotalTime += expected.time;
+            System.out.println("  recorded " + format(expected.time) + " ms, " +
+                               format(expected.raysPerSecond) + " rays/s");
+            if ((time > expected.time * maxSlowdown) ||
+                (timing.raysPerSecond * maxSlowdown < expected.raysPerSecond)) {
+                failures.add(c.name + ": " + format(time / expected.time) + " times slower, " +
+                             format(expected.raysPerSecond / timing.raysPerSecond) +
+                             " times fewer rays per second");
+            }
+        }
+
+        if ((recordedTotalTime > 0) && (totalTime > recordedTotalTime * maxTotalSlowdown)) {
+            failures.add("suite: " + format(totalTime / recordedTotalTime) + " times slower");
+        }
+
+
+        // Record timings
+        if (updateTimings)
+        {
+            writeTimings(measured, timingsFile);
+            System.out.println("\nTimings written to " + timingsFile);
+        }
+
+
+        // Report
+        System.out.println("\nTotal wall time: " + format(totalTime) + " ms");
+
+        if (! failures.isEmpty())
+        {
+            System.err.println(failures.size() + " failures:");
+            for(Iterator iter = failures.iterator() ; iter.hasNext() ;)
+            {
+                System.err.println("  " + iter.next());
+            }
+            System.err.println("RunRegressionSuite failed.");
+            System.exit(1);
+        }
+
+        System.out.println(measured.size() + " scenes passed.");
+    }
+
+    /*
+     * Renders the scene of a case for at least RUN_TIME and returns the
+     * average wall time of a render in ms.
+     */
+    static double measure(Case c, Sampler sampler)
+    {
+        long duration = RUN_TIME * 1000000L;
+        int n = 0;
+        long start = System.nanoTime();
+        long elapsed;
+
+        do
+        {
+            render(c, sampler);
+            n++;
+            elapsed = System.nanoTime() - start;
+        }
+        while (elapsed < duration);
+
+        return elapsed / 1e6 / n;
+    }
+
+    static BufferedImage render(Case c, Sampler sampler)
+    {
+        BasicRenderer renderer = new BasicRenderer(c.scene.getCamera(), new Resolution(WIDTH, HEIGHT),
+                                                   c.rayTracer, sampler, BufferedImage.TYPE_INT_RGB);
+        renderer.run();
+        return renderer.getImage();
+    }
+
+    static String format(double d)
+    {
+        return String.format("%.2f", new Object[] { Double.valueOf(d) });
+    }
+
+
+    /*
+     * The corpus: every BasicForm with a plain texture, then every texture
+     * of raja.material on a sphere.
+     */
+    static ArrayList createCases() throws IOException
+    {
+        ArrayList cases = new ArrayList();
+        Texture plain = new LambertianTexture(new RGB(0.7, 0.3, 0.3));
+
+        Form[] forms = {
+            new Billboard(1.5, 1.5),
+            new Cone(new Point3D(0, 0, 1), new Vector3D(0, 0, -1), 0.4),
+            new Cylinder(new Vector3D(0, 0, 1), new Point3D(0, 0, 0), 0.6),
+            new MBox(new Point3D(-0.6, -0.6, -0.6), new Point3D(0.6, 0.6, 0.6)),
+            new MCone(new Point3D(0, 0, 0.8), new Vector3D(0, 0, -1), 1.6, 0.7),
+            new MCylinder(0.6, 1.5),
+            new MPlane(new Vector3D(-1, 0.5, 1)),
+            new MSphere(0.9),
+            new MTorus(0.7, 0.25),
+            new MTriangle(new Point3D(0, -1, -0.8), new Point3D(0, 1, -0.8), new Point3D(0, 0, 0.9)),
+            new Plane(new Point3D(0, 0, 0), new Vector3D(-1, 0.5, 1)),
+            new Sphere(new Point3D(0, 0, 0), 0.9),
+            createTetrahedron(),
+            new XRectangle(new Vector3D(-1, 0, 0), 1.5, 1.2)
+        };
+
+        for (int i = 0 ; i < forms.length ; i++) {
+            cases.add(new Case(getName(forms[i]), forms[i], plain));
+        }
+
+        BufferedImage elena = TextureCache.getShared().load("textures/elena.png").getImage();
+        RGB kd = new RGB(0.5, 0.5, 0.5);
+        RGB kr = new RGB(0.1, 0.1, 0.1);
+
+        Texture[] textures = {
+            new AfricanKenteTexture(),
+            new AnisotropicMetalTexture(),
+            new AnodizedTexture(),
+            new AuroraCeramicTexture(),
+            new CeramicTileTexture(new RGB(1, 1, 1), new RGB(0.9, 0.9, 0.9), new RGB(0.8, 0.82, 0.8), 4.0, 0.005, 0),
+            new CheckerboardTexture(new RGB(1.0, 0.0, 0.0), new RGB(0.0, 1.0, 0.0), new RGB(0.5, 0.5, 0.5),
+                                    new RGB(0.0, 0.0, 0.0), 150, 10, 0.3, 0.0, 0.0, 0.0),
+            new ColorWheelTexture(),
+            new CrystalCaveTexture(),
+            new DielectricTexture(new RGB(0.0, 0.0, 0.8), 0.7, 0.4, 200),
+            new DreamMistTexture(),
+            new EmissiveTexture(RGB.red, 0.35),
+            new GridTexture(),
+            new HokusaiTexture(),
+            new HologramTexture(),
+            new ImageSpheringTexture(elena),
+            new ImageTexture(elena, kd, kr, RGB.black, 50, 10),
+            new KilimRosemalingTexture(),
+            new LambertianTexture(),
+            new LavaTexture(),
+            new MarbleTexture(),
+            new MetalTexture(RGB.red),
+            new NordicWeaveTexture(),
+            new NorthernLightTexture(),
+            new NorwegianRoseTexture(),
+            new ObsidianHeartTexture(),
+            new PatternTexture(),
+            new PlasticTexture(),
+            new PrismTexture(),
+            new SandTexture(),
+            new StormTexture(),
+            new StripesTexture(),
+            new TiledRoofTexture(),
+            new TransparentPNGTexture(elena, kd, RGB.black, RGB.black, 30, 10),
+            new TurkishTileTexture(),
+            new VoidTexture(),
+            new WaterTexture(),
+            new WoodTexture(),
+            new XDamierTexture(new RGB(1.0, 0.0, 0.0), new RGB(1.0, 1.0, 1.0), new RGB(0.0, 0.3, 0.0),
+                               new RGB(0.2, 0.0, 0.0), 100, 10, 4.0, 0.0, 0.0),
+            new XPlainTexture(),
+            new XRayTexture()
+        };
+
+        for (int i = 0 ; i < textures.length ; i++) {
+            cases.add(new Case(getName(textures[i]), new MSphere(0.9), textures[i]));
+        }
+
+        return cases;
+    }
+
+    static String getName(Object o)
+    {
+        String name = o.getClass().getName();
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    static TriangleMesh createTetrahedron()
+    {
+        double[] vertices = {
+            -0.6, -0.8, -0.6,
+            -0.6,  0.8, -0.6,
+             0.7,  0.0, -0.6,
+             0.0,  0.0,  0.8
+        };
+        int[] triangles = {
+            0, 2, 1,
+            0, 1, 3,
+            1, 2, 3,
+            2, 0, 3
+        };
+        return new TriangleMesh(vertices, null, triangles);
+    }
+
+    /*
+     * Returns the scene of a case: its form with its texture at the
+     * origin, above a checkered floor, seen from the front.
+     */
+    static Scene createScene(Case c)
+    {
+        Texture floor = new CheckerboardTexture(new RGB(0.8, 0.8, 0.8), new RGB(0.2, 0.2, 0.2), new RGB(0.0, 0.0, 0.0),
+                                                new RGB(0.0, 0.0, 0.0), 10, 10, 0.5, 0.0, 0.0, 0.0);
+
+        Aggregate aggregate = new Aggregate();
+        aggregate.addSolid(new BasicSolid(new BasicTexturedForm(c.form, c.texture),
+                                          new IsotropicVolume(1.0)));
+        aggregate.addSolid(new BasicSolid(new BasicTexturedForm(new Plane(new Point3D(0, 0, -1), new Vector3D(0, 0, 1)), floor),
+                                          new IsotropicVolume(1.0)));
+
+        World world = new World(aggregate);
+        world.addLightSource(new PointLightSource(-5, -3, 6, RGB.white));
+        world.setBackgroundLight(new RGB(0.0, 0.0, 0.4));
+        world.setAmbiantLight(new RGB(0.1, 0.1, 0.1));
+
+        Camera camera = new HorizontalCamera(new Point3D(-4, 0, 0.8), new Vector3D(1, 0, -0.2), 1.8, 2.0, 1.5);
+        return new Scene(world, camera);
+    }
+
+
+    /*
+     * Golden files.
+     */
+    static RenderedImage readImage(File file) throws IOException
+    {
+        InputStream is = new BufferedInputStream(new FileInputStream(file));
+        RenderedImage read = ImageIO.createImageReader("PNG", is).read();
+
+        // Decoded before the stream is closed
+        int width = read.getWidth();
+        BufferedImage image = new BufferedImage(width, read.getHeight(), BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, width, read.getHeight(), DiffImages.getRGB(read), 0, width);
+        is.close();
+        return image;
+    }
+
+    static void writeImage(RenderedImage image, File file) throws IOException
+    {
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+        ImageWriter writer = ImageIO.createImageWriter("PNG", os);
+        writer.setImageWriteParam(writer.createDefaultImageWriteParam(image));
+        writer.write(image);
+        os.close();
+    }
+
+    /*
+     * Reads the timings file: one line per scene with its name, its wall
+     * time in ms and its rays per second.  Lines starting with # are
+     * comments.
+     */
+    static HashMap readTimings(File file) throws IOException
+    {
+        HashMap timings = new HashMap();
+
+        if (! file.exists()) {
+            return timings;
+        }
+
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        String line;
+        while ((line = in.readLine()) != null)
+        {
+            line = line.trim();
+            if ((line.length() == 0) || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            timings.put(fields[0], new Timing(Double.parseDouble(fields[1]), Double.parseDouble(fields[2])));
+        }
+        in.close();
+        return timings;
+    }
+
+    static void writeTimings(HashMap timings, File file) throws IOException
+    {
+        // Keep the recorded timings of the scenes that were not run
+        HashMap all = readTimings(file);
+        all.putAll(timings);
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+
+        PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+        out.println("# scene, wall time (ms), rays per second");
+        out.println("# " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version") + ", " +
+                    System.getProperty("os.name") + " " + System.getProperty("os.arch") + ", " +
+                    Runtime.getRuntime().availableProcessors() + " processors");
+
+        ArrayList names = new ArrayList(all.keySet());
+        Collections.sort(names);
+
+        for(Iterator iter = names.iterator() ; iter.hasNext() ;)
+        {
+            String name = (String) iter.next();
+            Timing timing = (Timing) all.get(name);
+            // Not formatted, whose decimal separator depends on the locale
+            out.println(name + " " + (Math.round(100 * timing.time) / 100.0) + " " +
+                        Math.round(timing.raysPerSecond));
+        }
+        out.close();
+    }
+}
@@ -0,0 +1,328 @@
+package raja.ui;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.*;
+
+import raja.io.*;
+import raja.renderer.*;
+import raja.shape.Bounded;
+
+
+/**
+ * Renders the frames of a camera travelling (a serialized
+ * <code>Camera[]</code>, as written by
+ * <code>raja.test.CreateMickeyTravelling</code>) through a single scene.
+ * <p>
+ * Frames are rendered concurrently, one frame per thread, all of them
+ * sharing the same world, ray tracer and sampler: the world is only read
+ * while rendering, and its acceleration structures are built once before
+ * the first frame starts.  Each frame is written with
+ * <code>javax.imageio</code> as soon as it is finished, first to a
+ * temporary file that is then renamed, so that a frame file that exists
+ * is always complete.  When resuming, the frames whose file exists are
+ * skipped, and a crashed or interrupted animation goes on where it
+ * stopped.
+ * <p>
+ * Usage: <code>java raja.ui.AnimationRenderer [options] DEPTH SCENE_FILE
+ * TRAVELLING_FILE BASE_NAME</code>
+ */
+public class AnimationRenderer
+{
+  private static final String usage =
+  "Usage: java raja.ui.AnimationRenderer [OPTIONS] DEPTH SCENE_FILE TRAVELLING_FILE BASE_NAME\n" +
+  "\n" +
+  "Renders the frames of a camera travelling, writing frame i to\n" +
+  "BASE_NAME-i.FORMAT as soon as it is finished.\n" +
+  "\n" +
+  "  -threads N\t\trender N frames at a time (default: one per processor)\n" +
+  "  -scale SCALE\t\tscale the 384x288 resolution\n" +
+  "  -exact\t\tfollow rays without any threshold\n" +
+  "  -antialias LEVEL\tcast LEVEL x LEVEL rays per pixel\n" +
+  "  -n FIRST-LAST\t\trender frames FIRST to LAST only (from 1)\n" +
+  "  -format FORMAT\timage format known to javax.imageio (default: png)\n" +
+  "  -resume\t\tskip the frames already written";
+
+  private World world;
+  private Camera[] travelling;
+  private Resolution resolution;
+  private RayTracer rayTracer;
+  private Sampler sampler;
+  private String baseName;
+  private String format;
+  private int parallelism;
+  private boolean resume;
+  private PrintStream log;
+
+  /**
+   * @param world the world rendered in every frame.
+   * @param travelling the camera of each frame.
+   * @param rayTracer a ray tracer of <code>world</code>.
+   * @param sampler the sampler of every frame.  It is shared by frames
+   *        rendered concurrently.
+   * @param baseName frame <i>i</i> (from 1) is written to
+   *        <code>baseName-i.format</code>.
+   * @param format an image format name known to <code>javax.imageio</code>.
+   */
+  public AnimationRenderer(World world, Camera[] travelling, Resolution resolution,
+    RayTracer rayTracer, Sampler sampler,
+  String baseName, String format)
+  {
+    if (! javax.imageio.ImageIO.getImageWritersByFormatName(format).hasNext()) {
+      throw new IllegalArgumentException("no image writer for format " + format);
+    }
+
+    this.world = world;
+    this.travelling = travelling;
+    this.resolution = resolution;
+    this.rayTracer = rayTracer;
+    this.sampler = sampler;
+    this.baseName = baseName;
+    this.format = format;
+    parallelism = Runtime.getRuntime().availableProcessors();
+    log = System.out;
+  }
+
+  /**
+   * Sets the number of frames rendered at the same time.
+   */
+  public void setParallelism(int parallelism)
+  {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism < 1");
+    }
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Sets whether frames already written are skipped.
+   */
+  public void setResume(boolean resume)
+  {
+    this.resume = resume;
+  }
+
+  /**
+   * Sets the stream progress is reported to, or <code>null</code> for none.
+   */
+  public void setLog(PrintStream log)
+  {
+    this.log = log;
+  }
+
+  /**
+   * Returns the file frame <code>i</code> (from 1) is written to.
+   */
+  public File getFrameFile(int i)
+  {
+    return new File(baseName + "-" + i + "." + format);
+  }
+
+  /**
+   * Renders frames <code>first</code> to <code>last</code> (from 1) and
+   * returns the number of frames rendered.  The first frame that cannot be
+   * written stops the animation.
+   */
+  public int render(int first, int last) throws IOException, InterruptedException
+  {
+    if ((first < 1) || (last > travelling.length) || (first > last)) {
+      throw new IllegalArgumentException("invalid frames " + first + "-" + last);
+    }
+
+    if (world.getSolid() instanceof Bounded) {
+      ((Bounded) world.getSolid()).getBounds();
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    CompletionService done = new ExecutorCompletionService(executor);
+    int count = 0;
+    int skipped = 0;
+
+    for(int i = first ; i <= last ; i++)
+    {
+      if (resume && getFrameFile(i).exists()) {
+        skipped++;
+      }
+      else {
+        final int frame = i;
+        done.submit(new Callable() {
+          public Object call() throws IOException
+          {
+            renderFrame(frame);
+            return Integer.valueOf(frame);
+          }
+        });
+        count++;
+      }
+    }
+
+    if ((skipped > 0) && (log != null)) {
+      log.println(skipped + " frames already written");
+    }
+
+    long starttime = System.currentTimeMillis();
+
+    try {
+      for(int n = 1 ; n <= count ; n++)
+      {
+        int frame;
+        try {
+          frame = ((Integer) done.take().get()).intValue();
+        }
+        catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof IOException) {
+            throw (IOException) cause;
+          }
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          throw (Error) cause;
+        }
+
+        if (log != null) {
+          long elapsed = System.currentTimeMillis() - starttime;
+          log.println("Frame " + frame + "/" + travelling.length + " written to " + getFrameFile(frame) +
+          "   (" + n + "/" + count + ", " + format(framesPerMinute(n, elapsed)) + " frames/min)");
+        }
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+
+    if ((count > 0) && (log != null)) {
+      long elapsed = System.currentTimeMillis() - starttime;
+      log.println(count + " frames rendered in " + Util.getTime(elapsed) +
+      ": " + format(framesPerMinute(count, elapsed)) + " frames/min");
+    }
+    return count;
+  }
+
+  private void renderFrame(int i) throws IOException
+  {
+    BufferedImage image = new BufferedImage(resolution.width, resolution.height, BufferedImage.TYPE_INT_RGB);
+    sampler.compute(travelling[i-1], rayTracer, image);
+
+    File file = getFrameFile(i);
+    File part = new File(file.getPath() + ".part");
+    if (! javax.imageio.ImageIO.write(image, format, part)) {
+      throw new IOException("no image writer for format " + format);
+    }
+    Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private static double framesPerMinute(int frames, long millis)
+  {
+    return (60000.0 * frames) / Math.max(millis, 1);
+  }
+
+  private static String format(double d)
+  {
+    return String.valueOf(Math.round(d * 10) / 10.0);
+  }
+
+  public static void main(String[] argv)
+  {
+    int threads = 0;
+    boolean exact = false;
+    boolean resume = false;
+    float scale = 1;
+    int antialias = 0;
+    int first = 1;
+    int last = 0;
+    String format = "png";
+    int index;
+
+    try {
+      for(index = 0 ; (index < argv.length) && argv[index].startsWith("-") ; index++)
+      {
+        if (argv[index].equals("-threads")) {
+          threads = Integer.parseInt(argv[++index]);
+        }
+        else if (argv[index].equals("-scale")) {
+          scale = Float.parseFloat(argv[++index]);
+        }
+        else if (argv[index].equals("-antialias")) {
+          antialias = Integer.parseInt(argv[++index]);
+        }
+        else if (argv[index].equals("-exact")) {
+          exact = true;
+        }
+        else if (argv[index].equals("-resume")) {
+          resume = true;
+        }
+        else if (argv[index].equals("-format")) {
+          format = argv[++index];
+        }
+        else if (argv[index].equals("-n")) {
+          String region = argv[++index];
+          int i = region.indexOf('-');
+          first = Integer.parseInt(region.substring(0, i));
+          last  = Integer.parseInt(region.substring(i+1));
+        }
+        else {
+          throw new IllegalArgumentException("unknown option " + argv[index]);
+        }
+      }
+    }
+    catch (RuntimeException e) {
+      System.err.println(usage);
+      System.exit(1);
+      return;
+    }
+
+    if (argv.length - index != 4) {
+      System.err.println(usage);
+      System.exit(1);
+    }
+
+    try {
+      int depth = Integer.parseInt(argv[index++]);
+
+      File sceneFile = new File(argv[index++]);
+      ObjectReader reader;
+      if (BinaryObjectReader.isBinary(sceneFile)) {
+        reader = new BinaryObjectReader(sceneFile);
+      }
+      else {
+        reader = new ObjectReader(new InputStreamReader(new FileInputStream(sceneFile)));
+      }
+      Scene scene = (Scene) reader.readObject();
+      reader.close();
+
+      ObjectInput objectInput = new ObjectInputStream(new BufferedInputStream(new FileInputStream(argv[index++])));
+      Camera[] travelling = (Camera[]) objectInput.readObject();
+      objectInput.close();
+
+      Resolution resolution = new Resolution(Math.round(384 * scale), Math.round(288 * scale));
+      RayTracer rayTracer = exact ? new AdvancedRayTracer(scene.getWorld(), depth, 0) : new AdvancedRayTracer(scene.getWorld(), depth);
+      Sampler sampler = (antialias > 0) ? (Sampler) new NaiveSuperSampler(antialias) : new BasicSampler();
+
+      AnimationRenderer animation = new AnimationRenderer(scene.getWorld(), travelling, resolution,
+      rayTracer, sampler, argv[index], format);
+      if (threads > 0) {
+        animation.setParallelism(threads);
+      }
+      animation.setResume(resume);
+      animation.render(first, (last == 0) ? travelling.length : last);
+    }
+    catch (IOException e) {
+      System.err.println("I/O Error: " + e.getMessage());
+      System.exit(1);
+    }
+    catch (ClassNotFoundException e) {
+      System.err.println("Invalid travelling file: " + e.getMessage());
+      System.exit(1);
+    }
+    catch (InterruptedException e) {
+      System.exit(1);
+    }
+    catch (IllegalArgumentException e) {
+      System.err.println("Error: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+}
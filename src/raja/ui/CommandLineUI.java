@@ -28,9 +28,23 @@ import javax.swing.event.*;
 import raja.renderer.Scene;
 import raja.renderer.Renderer;
 import raja.renderer.Resolution;
+import raja.renderer.BasicRenderer;
+import raja.renderer.AdaptiveSampler;
+import raja.renderer.DistributedRenderer;
+import raja.renderer.FrameBuffer;
+import raja.renderer.Checkpoint;
+import raja.renderer.ParallelSampler;
+import raja.renderer.StreamingRenderer;
+import raja.renderer.CropRenderer;
+import raja.renderer.RenderWorker;
 import raja.io.ObjectReader;
+import raja.io.BinaryObjectReader;
 import raja.io.ImageIO;
 import raja.io.ImageWriter;
+import raja.io.ScanlineWriter;
+import raja.io.PNGScanlineWriter;
+import raja.io.PPMScanlineWriter;
+import raja.util.RenderStatistics;
 
 import gnu.getopt.*;
 
@@ -53,6 +67,10 @@ public class CommandLineUI
   
   private static final String usage =
   "Usage: " + progName + " [OPTIONS] INPUT_FILE\n" +
+  "   or: " + progName + " [OPTIONS] --worker=HOST:PORT\n" +
+  "\n" +
+  "INPUT_FILE is a textual scene, or a binary scene converted by\n" +
+  "raja.ui.SceneConverter.\n" +
   "\n" +
   "Options:\n" +
   "\n" +
@@ -63,14 +81,41 @@ public class CommandLineUI
   "  -x, --xview\t\t\tshow image during its computation\n" +
   "  -p, --progress={X, txt}\tturns progress display on and\n" +
   "                         \tchose between graphical or textual display\n" +
+  "  -S, --stats\t\t\tcount rays, intersections and textures, print\n" +
+  "             \t\t\tthem after rendering and publish them over JMX\n" +
   "\n" +
   "  -r, --resolution=RES\t\tset resolution to RES (default 256x192)\n" +
   "  -d, --depth=DEPTH\t\tset recursivity depth (default 5)\n" +
   "  -e, --exact\t\t\tdisable optimization mode\n" +
   "  -a, --antialias=LEVEL\t\tuse antialiasing with level LEVEL\n" +
+  "  -A, --adaptive=THRESHOLD\tonly antialias pixels whose contrast with a\n" +
+  "                         \tneighbour exceeds THRESHOLD (0 to 1)\n" +
   "  -D, --diadic\t\t\tuse diadic sampling\n" +
+  "  -t, --threads=N\t\trender with N threads (default 1,\n" +
+  "                 \t\t0 for one per processor)\n" +
+  "  -C, --crop=WxH+X+Y\t\trender only the W by H pixels at (X, Y)\n" +
+  "  -B, --composite=FILE\t\tdraw the --crop window into a copy of the\n" +
+  "                      \t\tprevious image FILE, of the whole frame\n" +
+  "\n" +
+  "  -s, --serve=PORT\t\thave the image rendered by workers connecting\n" +
+  "                  \t\ton PORT (0 for any free port)\n" +
+  "  -w, --workers=N\t\tstart N local worker processes (serving on\n" +
+  "                 \t\tany free port unless --serve is given)\n" +
+  "  -W, --worker=HOST:PORT\trender tiles for the raja serving on\n" +
+  "                        \tHOST:PORT, --threads tiles at a time\n" +
   "\n" +
   "  -o, --output=FILE\t\tsave image into FILE\n" +
+  "  -H, --hdr=FILE\t\tsave the unclamped image into FILE, in the\n" +
+  "                \t\tPFM format\n" +
+  "  -E, --exposure=STOPS\t\tbrighten image by STOPS (darken if negative)\n" +
+  "                      \t\tbefore saving it\n" +
+  "  -O, --stream=FILE\t\twrite image into FILE a row of tiles at a\n" +
+  "                   \t\ttime, without holding it in memory\n" +
+  "                   \t\t(PPM for a .ppm or .pnm suffix, else PNG)\n" +
+  "  -k, --checkpoint=FILE\t\tsave finished tiles into FILE, which is\n" +
+  "                       \t\tdeleted once the image is saved\n" +
+  "  -R, --resume\t\t\tresume the render saved in the --checkpoint\n" +
+  "              \t\t\tFILE, if any, for the same scene and options\n" +
   "  -c, --codec=CODEC\t\tset encoding codec to CODEC\n" +
   "                   \t\tavailable codecs: PNG, TIFF, JPEG, PNM, BMP";
   
@@ -103,11 +148,24 @@ public class CommandLineUI
     boolean xview = false;
     int antialiasLevel = 0;
     int depth = 5;
+    int threads = 1;
+    double adaptiveThreshold = -1;
     String codec = null;
     String inputFile = null;
     String outputFile = null;
     String progress = NO_PROGRESS;
     Resolution resolution = new Resolution(256, 192);
+    int servePort = -1;
+    int workers = 0;
+    String worker = null;
+    boolean stats = false;
+    String hdrFile = null;
+    double exposure = 0;
+    String streamFile = null;
+    String checkpointFile = null;
+    boolean resume = false;
+    Rectangle crop = null;
+    String compositeFile = null;
     MessageWriter msgWriter = new MessageWriter(System.out,
       System.err,
     MessageWriter.VERBOSITY_NORMAL);
@@ -117,7 +175,7 @@ public class CommandLineUI
     // Parsing command line --------------------------------------------
     
     // Init LongOpt array for Getopt initialization
-    LongOpt[] longopts = new LongOpt[14];
+    LongOpt[] longopts = new LongOpt[27];
     
     // Init flag options
     longopts[0]  = new LongOpt("diadic",  LongOpt.NO_ARGUMENT, null, 'D');
@@ -138,9 +196,26 @@ public class CommandLineUI
     longopts[11] = new LongOpt("output",     LongOpt.REQUIRED_ARGUMENT, null, 'o');
     longopts[12] = new LongOpt("progress",   LongOpt.REQUIRED_ARGUMENT, null, 'p');
     longopts[13] = new LongOpt("resolution", LongOpt.REQUIRED_ARGUMENT, null, 'r');
+    longopts[14] = new LongOpt("threads",    LongOpt.REQUIRED_ARGUMENT, null, 't');
+    longopts[15] = new LongOpt("adaptive",   LongOpt.REQUIRED_ARGUMENT, null, 'A');
+    longopts[16] = new LongOpt("serve",      LongOpt.REQUIRED_ARGUMENT, null, 's');
+    longopts[17] = new LongOpt("workers",    LongOpt.REQUIRED_ARGUMENT, null, 'w');
+    longopts[18] = new LongOpt("worker",     LongOpt.REQUIRED_ARGUMENT, null, 'W');
+    
+    // Init late flag options
+    longopts[19] = new LongOpt("stats",      LongOpt.NO_ARGUMENT, null, 'S');
+    
+    // Init late valued options
+    longopts[20] = new LongOpt("hdr",        LongOpt.REQUIRED_ARGUMENT, null, 'H');
+    longopts[21] = new LongOpt("exposure",   LongOpt.REQUIRED_ARGUMENT, null, 'E');
+    longopts[22] = new LongOpt("stream",     LongOpt.REQUIRED_ARGUMENT, null, 'O');
+    longopts[23] = new LongOpt("checkpoint", LongOpt.REQUIRED_ARGUMENT, null, 'k');
+    longopts[24] = new LongOpt("resume",     LongOpt.NO_ARGUMENT, null, 'R');
+    longopts[25] = new LongOpt("crop",       LongOpt.REQUIRED_ARGUMENT, null, 'C');
+    longopts[26] = new LongOpt("composite",  LongOpt.REQUIRED_ARGUMENT, null, 'B');
     
     // Init Getopt object to parse options
-    Getopt g = new Getopt(progName, argv, "+:DehqVxv::a:c:d:o:p:r:", longopts);
+    Getopt g = new Getopt(progName, argv, "+:DehqRSVxv::a:A:B:c:C:d:E:H:k:o:O:p:r:s:t:w:W:", longopts);
     
     // Get options
     int c;
@@ -174,6 +249,14 @@ public class CommandLineUI
           xview = true;
         break;
         
+        case 'S':
+          stats = true;
+        break;
+        
+        case 'R':
+          resume = true;
+        break;
+        
         case 'v':
           arg = g.getOptarg();
         if (arg != null)
@@ -207,6 +290,23 @@ public class CommandLineUI
         }
         break;
         
+        case 'A':
+          arg = g.getOptarg();
+        try
+        {
+          adaptiveThreshold = Double.parseDouble(arg);
+          if ((adaptiveThreshold < 0) || (adaptiveThreshold > 1))
+          {
+            throw new NumberFormatException();
+          }
+        }
+        catch(NumberFormatException err)
+        {
+          printInvalidArgumentError(msgWriter, "adaptive", arg);
+          System.exit(1);
+        }
+        break;
+        
         case 'c':
           arg = g.getOptarg();
         codec = arg.toUpperCase();
@@ -230,6 +330,132 @@ public class CommandLineUI
         outputFile = arg;
         break;
         
+        case 'H':
+          arg = g.getOptarg();
+        hdrFile = arg;
+        break;
+        
+        case 'O':
+          arg = g.getOptarg();
+        streamFile = arg;
+        break;
+        
+        case 'k':
+          arg = g.getOptarg();
+        checkpointFile = arg;
+        break;
+        
+        case 'C':
+          arg = g.getOptarg();
+        try
+        {
+          int x = arg.indexOf('x');
+          int plus = arg.indexOf('+');
+          int plus2 = arg.indexOf('+', plus + 1);
+          if ((x <= 0) || (plus <= x) || (plus2 <= plus))
+          {
+            throw new NumberFormatException();
+          }
+          crop = new Rectangle(parseNonNegativeInt(arg.substring(plus + 1, plus2)),
+            parseNonNegativeInt(arg.substring(plus2 + 1)),
+            parseNonNegativeInt(arg.substring(0, x)),
+          parseNonNegativeInt(arg.substring(x + 1, plus)));
+          if (crop.isEmpty())
+          {
+            throw new NumberFormatException();
+          }
+        }
+        catch(NumberFormatException err)
+        {
+          printInvalidArgumentError(msgWriter, "crop", arg);
+          System.exit(1);
+        }
+        break;
+        
+        case 'B':
+          arg = g.getOptarg();
+        compositeFile = arg;
+        break;
+        
+        case 'E':
+          arg = g.getOptarg();
+        try
+        {
+          exposure = Double.parseDouble(arg);
+          if (Double.isNaN(exposure) || Double.isInfinite(exposure))
+          {
+            throw new NumberFormatException();
+          }
+        }
+        catch(NumberFormatException err)
+        {
+          printInvalidArgumentError(msgWriter, "exposure", arg);
+          System.exit(1);
+        }
+        break;
+        
+        case 't':
+          arg = g.getOptarg();
+        try
+        {
+          threads = parseNonNegativeInt(arg);
+        }
+        catch(NumberFormatException err)
+        {
+          printInvalidArgumentError(msgWriter, "threads", arg);
+          System.exit(1);
+        }
+        break;
+        
+        case 's':
+          arg = g.getOptarg();
+        try
+        {
+          servePort = parseNonNegativeInt(arg);
+          if (servePort > 65535)
+          {
+            throw new NumberFormatException();
+          }
+        }
+        catch(NumberFormatException err)
+        {
+          printInvalidArgumentError(msgWriter, "serve", arg);
+          System.exit(1);
+        }
+        break;
+        
+        case 'w':
+          arg = g.getOptarg();
+        try
+        {
+          workers = parseNonNegativeInt(arg);
+        }
+        catch(NumberFormatException err)
+        {
+          printInvalidArgumentError(msgWriter, "workers", arg);
+          System.exit(1);
+        }
+        break;
+        
+        case 'W':
+          arg = g.getOptarg();
+        try
+        {
+          int colon = arg.lastIndexOf(':');
+          if (colon <= 0)
+          {
+            throw new NumberFormatException();
+          }
+          parseNonNegativeInt(arg.substring(colon + 1));
+        }
+        catch(NumberFormatException err)
+        {
+          printInvalidArgumentError(msgWriter, "worker", arg);
+          System.exit(1);
+        }
+        worker = arg;
+        break;
+        
         case 'p':
           arg = g.getOptarg();
         if (arg.equals("X"))
@@ -296,6 +522,77 @@ public class CommandLineUI
       System.exit(0);
     }
     
+    // Worker mode: no input file, the scene comes from the coordinator
+    if (worker != null)
+    {
+      if (g.getOptind() < argv.length)
+      {
+        msgWriter.message(MessageWriter.MSG_ERROR,
+        "No input file expected with option `--worker'.");
+        System.exit(1);
+      }
+      System.exit(runWorker(msgWriter, worker, threads, stats));
+    }
+    
+    // Workers render pixels as the parallel sampler does
+    if (((servePort >= 0) || (workers > 0)) && (diadic || (adaptiveThreshold >= 0)))
+    {
+      msgWriter.message(MessageWriter.MSG_ERROR,
+      "Options `--diadic' and `--adaptive' cannot be used with workers.");
+      System.exit(1);
+    }
+    
+    // The whole image is never held when streaming
+    if ((streamFile != null) &&
+    ((outputFile != null) || xview || (hdrFile != null) || (exposure != 0) ||
+    diadic || (adaptiveThreshold >= 0) || (servePort >= 0) || (workers > 0)))
+    {
+      msgWriter.message(MessageWriter.MSG_ERROR,
+      "Option `--stream' cannot be used with `--output', `--xview', `--hdr', `--exposure', " +
+      "`--diadic', `--adaptive' or workers.");
+      System.exit(1);
+    }
+    
+    // Checkpoints hold the tiles of the parallel sampler
+    if (resume && (checkpointFile == null))
+    {
+      msgWriter.message(MessageWriter.MSG_ERROR,
+      "Option `--resume' requires option `--checkpoint'.");
+      System.exit(1);
+    }
+    if ((checkpointFile != null) &&
+    ((streamFile != null) || diadic || (adaptiveThreshold >= 0) || (servePort >= 0) || (workers > 0)))
+    {
+      msgWriter.message(MessageWriter.MSG_ERROR,
+      "Option `--checkpoint' cannot be used with `--stream', `--diadic', `--adaptive' or workers.");
+      System.exit(1);
+    }
+    
+    // Crop windows are rendered by the parallel sampler
+    if ((compositeFile != null) && (crop == null))
+    {
+      msgWriter.message(MessageWriter.MSG_ERROR,
+      "Option `--composite' requires option `--crop'.");
+      System.exit(1);
+    }
+    if ((crop != null) &&
+    ((streamFile != null) || (checkpointFile != null) || (hdrFile != null) || (exposure != 0) ||
+    diadic || (adaptiveThreshold >= 0) || (servePort >= 0) || (workers > 0)))
+    {
+      msgWriter.message(MessageWriter.MSG_ERROR,
+      "Option `--crop' cannot be used with `--stream', `--checkpoint', `--hdr', `--exposure', " +
+      "`--diadic', `--adaptive' or workers.");
+      System.exit(1);
+    }
+    if ((crop != null) &&
+    ((crop.x + crop.width > resolution.width) || (crop.y + crop.height > resolution.height)))
+    {
+      msgWriter.message(MessageWriter.MSG_ERROR,
+      "Crop window " + crop.width + "x" + crop.height + "+" + crop.x + "+" + crop.y +
+      " is out of the " + resolution + " image.");
+      System.exit(1);
+    }
+    
     // Check that there remains exactly one argument
     int index = g.getOptind();
     if (index > (argv.length - 1))
@@ -347,11 +644,36 @@ public class CommandLineUI
     "   antialias:\t" + ((antialiasLevel == 0) ?
       "none" :
     "enabled with level " + antialiasLevel) + "\n" +
+    "   adaptive:\t" + ((adaptiveThreshold < 0) ?
+      "none" :
+    "threshold " + adaptiveThreshold) + "\n" +
     "   exact:\t" + exact + "\n" +
     "   diadic:\t" + diadic + "\n" +
+    "   threads:\t" + ((threads == 0) ?
+      "one per processor" :
+    "" + threads) + "\n" +
+    "   serve:\t" + ((servePort < 0) ?
+      ((workers > 0) ? "any free port" : "none") :
+    "port " + servePort) + "\n" +
+    "   workers:\t" + workers + " local\n" +
+    "   stats:\t" + stats + "\n" +
     "   output:\t" + ((outputFile == null) ?
       "none" :
     outputFile) + "\n" +
+    "   hdr:\t\t" + ((hdrFile == null) ?
+      "none" :
+    hdrFile) + "\n" +
+    "   exposure:\t" + exposure + "\n" +
+    "   stream:\t" + ((streamFile == null) ?
+      "none" :
+    streamFile) + "\n" +
+    "   checkpoint:\t" + ((checkpointFile == null) ?
+      "none" :
+    checkpointFile + (resume ? ", resumed" : "")) + "\n" +
+    "   crop:\t" + ((crop == null) ?
+      "none" :
+      crop.width + "x" + crop.height + "+" + crop.x + "+" + crop.y +
+    ((compositeFile == null) ? "" : " into " + compositeFile)) + "\n" +
     "   codec:\t" + ((codec == null) ?
       "unspecified" :
     codec);
@@ -359,7 +681,7 @@ public class CommandLineUI
     msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_LOW,
     selectedOptions + "\n");
     
-    if ((! xview) && (outputFile == null))
+    if ((! xview) && (outputFile == null) && (hdrFile == null) && (streamFile == null))
     {
       // Warn user that image will be lost
       msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_NORMAL,
@@ -461,9 +783,17 @@ public class CommandLineUI
     Scene scene = null;
     try
     {
-      Reader in = new InputStreamReader(new FileInputStream(inputFile));
-      ObjectReader reader = new ObjectReader(in);
+      File file = new File(inputFile);
+      ObjectReader reader;
       starttime = System.currentTimeMillis();
+      if (BinaryObjectReader.isBinary(file))
+      {
+        reader = new BinaryObjectReader(file);
+      }
+      else
+      {
+        reader = new ObjectReader(new InputStreamReader(new FileInputStream(file)));
+      }
       scene = (Scene) reader.readObject();
       endtime = System.currentTimeMillis();
     }
@@ -483,15 +813,71 @@ public class CommandLineUI
     
     msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_NORMAL, "");
     
+    // Open checkpoint, and read the tiles it saved
+    Checkpoint checkpoint = null;
+    if (checkpointFile != null)
+    {
+      checkpoint = openCheckpoint(msgWriter,
+        inputFile,
+        checkpointFile,
+        resume,
+        resolution,
+        exact,
+        depth,
+      antialiasLevel);
+    }
+    
     // Init renderer
     msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_VERY_LOW,
     "Initializing renderer...");
-    Renderer renderer = Util.getRenderer(scene,
-      resolution,
-      exact,
-      depth,
-      diadic,
-    antialiasLevel);
+    Renderer renderer;
+    if (crop != null)
+    {
+      renderer = getCropRenderer(msgWriter,
+        scene,
+        compositeFile,
+        resolution,
+        exact,
+        depth,
+        antialiasLevel,
+        threads,
+      crop);
+    }
+    else if (streamFile != null)
+    {
+      renderer = getStreamingRenderer(msgWriter,
+        scene,
+        streamFile,
+        resolution,
+        exact,
+        depth,
+        antialiasLevel,
+      threads);
+    }
+    else if ((servePort >= 0) || (workers > 0))
+    {
+      renderer = getDistributedRenderer(msgWriter,
+        inputFile,
+        resolution,
+        exact,
+        depth,
+        antialiasLevel,
+        Math.max(servePort, 0),
+        workers,
+      threads);
+    }
+    else
+    {
+      renderer = Util.getRenderer(scene,
+        resolution,
+        exact,
+        depth,
+        diadic,
+        antialiasLevel,
+        threads,
+        adaptiveThreshold,
+      checkpoint);
+    }
     msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_VERY_LOW,
       "done." +
     "\n");
@@ -566,6 +952,12 @@ public class CommandLineUI
     // Tune thread priority
     rendering.setPriority(Thread.MIN_PRIORITY);
     
+    // Start counting, before the rendering threads start
+    if (stats)
+    {
+      startStatistics(msgWriter);
+    }
+    
     // Start rendering
     msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_NORMAL,
     "Rendering...");
@@ -590,6 +982,57 @@ public class CommandLineUI
     msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_LOW,
     "Rendering time: " + Util.getTime(endtime - starttime));
     
+    // Close checkpoint, which is kept until the image is saved
+    if (checkpoint != null)
+    {
+      try
+      {
+        checkpoint.close();
+      }
+      catch (IOException err)
+      {
+        // Reported below, as errors while saving tiles
+      }
+      if (checkpoint.getError() != null)
+      {
+        msgWriter.message(MessageWriter.MSG_ERROR,
+        "Warning: tiles could not be saved into " + checkpointFile + ": " +
+        checkpoint.getError().getMessage());
+      }
+    }
+    
+    // Report a failure to write the streamed image
+    if ((renderer instanceof StreamingRenderer) &&
+    (((StreamingRenderer) renderer).getError() != null))
+    {
+      msgWriter.message(MessageWriter.MSG_ERROR,
+      "I/O Error: " + ((StreamingRenderer) renderer).getError().getMessage());
+      System.exit(1);
+    }
+    
+    // Display sampling cost of adaptive antialiasing
+    if ((renderer instanceof BasicRenderer) &&
+    (((BasicRenderer) renderer).getSampler() instanceof AdaptiveSampler))
+    {
+      AdaptiveSampler adaptiveSampler = (AdaptiveSampler) ((BasicRenderer) renderer).getSampler();
+      msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_LOW,
+        "Samples per pixel: " + adaptiveSampler.getAverageSamplesPerPixel() +
+      " (" + adaptiveSampler.getRefinedPixelCount() + " pixels refined)");
+    }
+    
+    // Display render statistics
+    if (stats)
+    {
+      msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_CRUCIAL, "");
+      msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_CRUCIAL,
+      RenderStatistics.getShared().getSummary());
+      if ((servePort >= 0) || (workers > 0))
+      {
+        msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_CRUCIAL,
+        "(rays traced by workers are counted in their processes)");
+      }
+    }
+    
     msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_VERY_LOW,
       "\n" +
     "--- [End of] Rendering stage ---------------------------------------------");
@@ -625,6 +1068,25 @@ public class CommandLineUI
       "done.");
     }
     
+    // Expose the image again, from the frame buffer
+    FrameBuffer frameBuffer = null;
+    if (renderer instanceof BasicRenderer)
+    {
+      frameBuffer = ((BasicRenderer) renderer).getFrameBuffer();
+    }
+    else if (renderer instanceof DistributedRenderer)
+    {
+      frameBuffer = ((DistributedRenderer) renderer).getFrameBuffer();
+    }
+    if ((exposure != 0) && (frameBuffer != null))
+    {
+      frameBuffer.toImage(image, exposure);
+      if (xview)
+      {
+        imageFrame.repaint();
+      }
+    }
+    
     // Save image
     if (outputFile != null)
     {
@@ -661,6 +1123,45 @@ public class CommandLineUI
       }
     }
     
+    // Save unclamped image
+    if ((hdrFile != null) && (frameBuffer != null))
+    {
+      try
+      {
+        msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_NORMAL, "");
+        
+        msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_NORMAL,
+        "Writing PFM file: " + hdrFile + "...");
+        
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(hdrFile));
+        frameBuffer.writePFM(os);
+        os.close();
+        
+        msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_NORMAL,
+        "done.");
+      }
+      catch (IOException err)
+      {
+        msgWriter.message(MessageWriter.MSG_ERROR,
+        "I/O Error: " + err.getMessage());
+        System.exit(1);
+      }
+    }
+    
+    // The checkpoint is no longer needed once the image is saved
+    if ((checkpoint != null) && ((outputFile != null) || (hdrFile != null)))
+    {
+      try
+      {
+        checkpoint.delete();
+      }
+      catch (IOException err)
+      {
+        msgWriter.message(MessageWriter.MSG_ERROR,
+        "I/O Error: " + err.getMessage());
+      }
+    }
+    
     msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_VERY_LOW,
       "\n" +
     "--- [End of] Post-rendering tasks ----------------------------------------");
@@ -696,6 +1197,250 @@ public class CommandLineUI
     // [End of] Exit gracefully ----------------------------------------
   }
   
+  /**
+   * Returns a renderer serving tiles to workers on the given port, after
+   * starting the given number of worker processes on this machine.
+   */
+  private static Renderer getDistributedRenderer(MessageWriter msgWriter,
+    String inputFile,
+    Resolution resolution,
+    boolean exact,
+    int depth,
+    int antialiasLevel,
+    int port,
+    int workers,
+  int threads)
+  {
+    DistributedRenderer renderer = null;
+    
+    try
+    {
+      byte[] scene = java.nio.file.Files.readAllBytes(new File(inputFile).toPath());
+      renderer = new DistributedRenderer(scene, resolution, depth, exact, Math.max(1, antialiasLevel), port);
+      renderer.setLog(msgWriter.getStream(MessageWriter.MSG_SIGNIFICANCE_LOW));
+      msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_NORMAL,
+      "Serving tiles on port " + renderer.getPort());
+      
+      // Local workers run this program with the same class path
+      String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+      for (int i = 0 ; i < workers ; i++)
+      {
+        ProcessBuilder builder = new ProcessBuilder(java,
+          "-cp", System.getProperty("java.class.path"),
+          CommandLineUI.class.getName(),
+          "--quiet",
+          "--threads=" + threads,
+        "--worker=localhost:" + renderer.getPort());
+        builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        builder.start();
+      }
+    }
+    catch (IOException err)
+    {
+      msgWriter.message(MessageWriter.MSG_ERROR,
+      "I/O Error: " + err.getMessage());
+      System.exit(1);
+    }
+    
+    return renderer;
+  }
+  
+  /**
+   * Returns a renderer writing the image into <code>outputFile</code> as
+   * it is rendered, in the PPM format for a .ppm or .pnm suffix, and in
+   * the PNG format otherwise.
+   */
+  private static Renderer getStreamingRenderer(MessageWriter msgWriter,
+    Scene scene,
+    String outputFile,
+    Resolution resolution,
+    boolean exact,
+    int depth,
+    int antialiasLevel,
+  int threads)
+  {
+    ScanlineWriter writer = null;
+    
+    try
+    {
+      OutputStream os = new BufferedOutputStream(new FileOutputStream(outputFile));
+      String suffix = raja.util.FileHelper.getSuffix(new File(outputFile));
+      if ((suffix != null) && (suffix.equals("ppm") || suffix.equals("pnm")))
+      {
+        writer = new PPMScanlineWriter(os, resolution.width, resolution.height);
+      }
+      else
+      {
+        writer = new PNGScanlineWriter(os, resolution.width, resolution.height);
+      }
+    }
+    catch (IOException err)
+    {
+      msgWriter.message(MessageWriter.MSG_ERROR,
+      "I/O Error: " + err.getMessage());
+      System.exit(1);
+    }
+    
+    return Util.getStreamingRenderer(scene, resolution, exact, depth, antialiasLevel, threads, writer);
+  }
+  
+  /**
+   * Returns a renderer computing only the <code>crop</code> window, drawn
+   * into a copy of the image read from <code>compositeFile</code> if not
+   * <code>null</code>.
+   */
+  private static Renderer getCropRenderer(MessageWriter msgWriter,
+    Scene scene,
+    String compositeFile,
+    Resolution resolution,
+    boolean exact,
+    int depth,
+    int antialiasLevel,
+    int threads,
+  Rectangle crop)
+  {
+    BufferedImage background = null;
+    
+    if (compositeFile != null)
+    {
+      try
+      {
+        background = javax.imageio.ImageIO.read(new File(compositeFile));
+      }
+      catch (IOException err)
+      {
+        msgWriter.message(MessageWriter.MSG_ERROR,
+        "I/O Error: " + err.getMessage());
+        System.exit(1);
+      }
+      if (background == null)
+      {
+        msgWriter.message(MessageWriter.MSG_ERROR,
+        "Error: Could not read image: " + compositeFile);
+        System.exit(1);
+      }
+      if ((background.getWidth() != resolution.width) || (background.getHeight() != resolution.height))
+      {
+        msgWriter.message(MessageWriter.MSG_ERROR,
+          "Error: Image " + compositeFile + " is " + background.getWidth() + "x" +
+        background.getHeight() + ", not " + resolution);
+        System.exit(1);
+      }
+    }
+    
+    return Util.getCropRenderer(scene, resolution, exact, depth, antialiasLevel, threads, crop, background);
+  }
+  
+  /**
+   * Returns a checkpoint of the render of <code>inputFile</code> with the
+   * given options, which resumes the one in <code>checkpointFile</code>
+   * if requested and there is one.
+   */
+  private static Checkpoint openCheckpoint(MessageWriter msgWriter,
+    String inputFile,
+    String checkpointFile,
+    boolean resume,
+    Resolution resolution,
+    boolean exact,
+    int depth,
+  int antialiasLevel)
+  {
+    Checkpoint checkpoint = null;
+    
+    try
+    {
+      byte[] scene = java.nio.file.Files.readAllBytes(new File(inputFile).toPath());
+      byte[] hash = Checkpoint.getHash(scene, resolution, depth, exact, Math.max(1, antialiasLevel));
+      File file = new File(checkpointFile);
+      
+      if (resume && file.exists())
+      {
+        checkpoint = Checkpoint.resume(file, hash, resolution.width, resolution.height,
+        ParallelSampler.DEFAULT_TILE_SIZE, Checkpoint.DEFAULT_SYNC_PERIOD);
+        msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_NORMAL,
+        "Resuming from " + checkpointFile + ": " + checkpoint.getSavedTileCount() + " tiles saved");
+      }
+      else
+      {
+        if (resume)
+        {
+          msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_NORMAL,
+          "No checkpoint " + checkpointFile + " to resume, starting from scratch");
+        }
+        checkpoint = Checkpoint.create(file, hash, resolution.width, resolution.height,
+        ParallelSampler.DEFAULT_TILE_SIZE, Checkpoint.DEFAULT_SYNC_PERIOD);
+      }
+    }
+    catch (IOException err)
+    {
+      msgWriter.message(MessageWriter.MSG_ERROR,
+      "I/O Error: " + err.getMessage());
+      System.exit(1);
+    }
+    
+    return checkpoint;
+  }
+  
+  /**
+   * Renders tiles for the coordinator at <code>address</code>
+   * (<code>HOST:PORT</code>) and returns the exit status.
+   */
+  private static int runWorker(MessageWriter msgWriter, String address, int threads, boolean stats)
+  {
+    int colon = address.lastIndexOf(':');
+    
+    if (stats)
+    {
+      startStatistics(msgWriter);
+    }
+    
+    msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_NORMAL,
+    "Rendering tiles for " + address + "...");
+    try
+    {
+      RenderWorker worker = new RenderWorker(address.substring(0, colon),
+        Integer.parseInt(address.substring(colon + 1)),
+      threads);
+      int tiles = worker.run();
+      msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_NORMAL,
+      tiles + " tiles rendered.");
+      if (stats)
+      {
+        msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_CRUCIAL,
+        RenderStatistics.getShared().getSummary());
+      }
+      return 0;
+    }
+    catch (IOException err)
+    {
+      msgWriter.message(MessageWriter.MSG_ERROR,
+      "I/O Error: " + err.getMessage());
+      return 1;
+    }
+  }
+  
+  /**
+   * Turns the render statistics on, and publishes them over JMX so that
+   * long renders can be followed from a console.
+   */
+  private static void startStatistics(MessageWriter msgWriter)
+  {
+    RenderStatistics.setEnabled(true);
+    RenderStatistics.getShared().reset();
+    try
+    {
+      RenderStatistics.registerMBean();
+      msgWriter.message(MessageWriter.MSG_SIGNIFICANCE_LOW,
+      "Render statistics published as JMX MBean " + RenderStatistics.OBJECT_NAME);
+    }
+    catch (javax.management.JMException err)
+    {
+      msgWriter.message(MessageWriter.MSG_ERROR,
+      "Warning: could not publish render statistics over JMX: " + err.getMessage());
+    }
+  }
+  
   private static int parseNonNegativeInt(String s)
   {
     int result = Integer.parseInt(s);
@@ -757,6 +1502,15 @@ class MessageWriter
     verbosity++;
   }
   
+  /**
+   * Returns the stream messages of the given significance are printed
+   * on, or <code>null</code> if they are filtered out.
+   */
+  PrintStream getStream(int significance)
+  {
+    return (significance <= verbosity) ? out : null;
+  }
+  
   void message(int significance, String msg)
   {
     if (significance == MSG_ERROR)
@@ -0,0 +1,79 @@
+package raja.ui;
+
+import java.io.*;
+
+import raja.io.*;
+
+
+/**
+ * Converts scene files between the textual format (<code>.txt</code>,
+ * <code>.raj</code>) and the binary format of {@link BinaryObjectWriter},
+ * which loads much faster.  A textual scene is converted to binary, and a
+ * binary scene back to text.
+ * <p>
+ * Usage: <code>java raja.ui.SceneConverter INPUT_FILE OUTPUT_FILE</code>
+ */
+public class SceneConverter
+{
+  private static final String usage =
+  "Usage: java raja.ui.SceneConverter INPUT_FILE OUTPUT_FILE\n" +
+  "\n" +
+  "Converts a textual scene (.txt, .raj) to the binary format,\n" +
+  "or a binary scene to the textual format.";
+
+  public static void main(String[] argv)
+  {
+    if (argv.length != 2) {
+      System.err.println(usage);
+      System.exit(1);
+    }
+
+    File input = new File(argv[0]);
+    File output = new File(argv[1]);
+
+    try {
+      if (BinaryObjectReader.isBinary(input)) {
+        toText(input, output);
+        System.out.println(input + " (binary) converted to " + output + " (text)");
+      }
+      else {
+        toBinary(input, output);
+        System.out.println(input + " (text) converted to " + output + " (binary)");
+      }
+    }
+    catch (IOException e) {
+      System.err.println("I/O Error: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Converts the textual scene file <code>input</code> to a binary scene
+   * file.
+   */
+  public static void toBinary(File input, File output) throws IOException
+  {
+    ObjectReader reader = new ObjectReader(new InputStreamReader(new FileInputStream(input)));
+    Object scene = reader.readObject();
+    reader.close();
+
+    ObjectWriter writer = new BinaryObjectWriter(new FileOutputStream(output));
+    writer.writeObject(scene);
+    writer.close();
+  }
+
+  /**
+   * Converts the binary scene file <code>input</code> to a textual scene
+   * file.
+   */
+  public static void toText(File input, File output) throws IOException
+  {
+    ObjectReader reader = new BinaryObjectReader(input);
+    Object scene = reader.readObject();
+    reader.close();
+
+    ObjectWriter writer = new ObjectWriter(new FileWriter(output));
+    writer.writeObject(scene);
+    writer.close();
+  }
+}
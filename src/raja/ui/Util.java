@@ -129,20 +129,79 @@ class Util
     boolean diadic,
   int antialiasLevel)
   {
-    RayTracer rayTracer;
-    
-    if (exact) {
-      rayTracer = new AdvancedRayTracer(scene.getWorld(), depth, 0);
-    }
-    else {
-      rayTracer = new AdvancedRayTracer(scene.getWorld(), depth);
+    return getRenderer(scene, resolution, exact, depth, diadic, antialiasLevel, 1);
+  }
+  
+  /**
+   * Returns a renderer intialized with the given arguments, rendering with
+   * the given number of threads (0 for one per available processor).
+   * Diadic sampling is inherently sequential and always uses one thread.
+   */
+  static Renderer getRenderer(Scene scene,
+    Resolution resolution,
+    boolean exact,
+    int depth,
+    boolean diadic,
+    int antialiasLevel,
+  int threads)
+  {
+    return getRenderer(scene, resolution, exact, depth, diadic, antialiasLevel, threads, -1);
+  }
+  
+  /**
+   * Returns a renderer intialized with the given arguments.  A nonnegative
+   * <code>adaptiveThreshold</code> selects adaptive antialiasing, where
+   * only contrasted pixels are sampled <code>antialiasLevel</code> squared
+   * times; it renders with one thread.
+   */
+  static Renderer getRenderer(Scene scene,
+    Resolution resolution,
+    boolean exact,
+    int depth,
+    boolean diadic,
+    int antialiasLevel,
+    int threads,
+  double adaptiveThreshold)
+  {
+    return getRenderer(scene, resolution, exact, depth, diadic, antialiasLevel, threads, adaptiveThreshold, null);
+  }
+  
+  /**
+   * Returns a renderer intialized with the given arguments, saving its
+   * tiles into <code>checkpoint</code> if not <code>null</code>.  Tiles
+   * of <code>ParallelSampler.DEFAULT_TILE_SIZE</code> are rendered by a
+   * parallel sampler then, even with one thread, and neither diadic nor
+   * adaptive sampling may be selected.
+   */
+  static Renderer getRenderer(Scene scene,
+    Resolution resolution,
+    boolean exact,
+    int depth,
+    boolean diadic,
+    int antialiasLevel,
+    int threads,
+    double adaptiveThreshold,
+  Checkpoint checkpoint)
+  {
+    if ((checkpoint != null) && (diadic || (adaptiveThreshold >= 0))) {
+      throw new IllegalArgumentException("checkpoint with diadic or adaptive sampling");
     }
     
+    RayTracer rayTracer = getRayTracer(scene, exact, depth);
+    
     Sampler sampler;
     
     if (diadic) {
       sampler = new DiadicSampler();
     }
+    else if (adaptiveThreshold >= 0) {
+      sampler = new AdaptiveSampler(Math.max(1, antialiasLevel), adaptiveThreshold);
+    }
+    else if ((threads != 1) || (checkpoint != null)) {
+      ParallelSampler parallelSampler = new ParallelSampler(threads, Math.max(1, antialiasLevel));
+      parallelSampler.setCheckpoint(checkpoint);
+      sampler = parallelSampler;
+    }
     else if (antialiasLevel > 0) {
       sampler = new NaiveSuperSampler(antialiasLevel);
     }
@@ -157,4 +216,63 @@ class Util
     BufferedImage.TYPE_3BYTE_BGR);
     return renderer;
   }
+  
+  /**
+   * Returns a renderer writing the image to <code>writer</code> by bands
+   * of a row of tiles, rendered with the given number of threads (0 for
+   * one per available processor).
+   */
+  static StreamingRenderer getStreamingRenderer(Scene scene,
+    Resolution resolution,
+    boolean exact,
+    int depth,
+    int antialiasLevel,
+    int threads,
+  ScanlineWriter writer)
+  {
+    ParallelSampler sampler = new ParallelSampler(threads, Math.max(1, antialiasLevel));
+    
+    return new StreamingRenderer(scene.getCamera(),
+      resolution,
+      getRayTracer(scene, exact, depth),
+      sampler,
+      ParallelSampler.DEFAULT_TILE_SIZE,
+    writer);
+  }
+  
+  /**
+   * Returns a renderer computing only the <code>crop</code> window of
+   * the image, rendered with the given number of threads (0 for one per
+   * available processor), and drawn into a copy of
+   * <code>background</code> if not <code>null</code>.
+   */
+  static CropRenderer getCropRenderer(Scene scene,
+    Resolution resolution,
+    boolean exact,
+    int depth,
+    int antialiasLevel,
+    int threads,
+    java.awt.Rectangle crop,
+  BufferedImage background)
+  {
+    ParallelSampler sampler = new ParallelSampler(threads, Math.max(1, antialiasLevel));
+    
+    return new CropRenderer(scene.getCamera(),
+      resolution,
+      getRayTracer(scene, exact, depth),
+      sampler,
+      crop,
+      background,
+    BufferedImage.TYPE_3BYTE_BGR);
+  }
+  
+  private static RayTracer getRayTracer(Scene scene, boolean exact, int depth)
+  {
+    if (exact) {
+      return new AdvancedRayTracer(scene.getWorld(), depth, 0);
+    }
+    else {
+      return new AdvancedRayTracer(scene.getWorld(), depth);
+    }
+  }
 }
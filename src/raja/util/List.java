@@ -29,6 +29,16 @@ public class List extends LinkedList implements java.io.Serializable, Writable
     super();
   }
   
+  /**
+   * Returns the number of structural modifications made to this list so
+   * far, so that structures derived from its content can detect that they
+   * are stale.
+   */
+  public int getModificationCount()
+  {
+    return modCount;
+  }
+  
   public String toString()
   {
     return ObjectWriter.toString(this);
@@ -0,0 +1,377 @@
+package raja.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+
+/**
+ * Counters of the work done by a render: the rays traced by the ray
+ * tracer, the intersections computed per form class and the local
+ * textures looked up per texture class.
+ * <p>
+ * Counting is off unless {@link #setEnabled} is called, and then each
+ * thread counts into its own counters, which are only added up when
+ * they are read.  The hot paths check {@link #isEnabled} before calling
+ * the <code>count</code> methods, so that renders without statistics do
+ * not pay for them.  Values read while a render runs are approximate.
+ * <p>
+ * The counters are shown to JMX consoles by {@link #registerMBean}.
+ */
+public final class RenderStatistics implements RenderStatisticsMBean
+{
+  public static final int PRIMARY_RAY   = 0;
+  public static final int REFLECTED_RAY = 1;
+  public static final int REFRACTED_RAY = 2;
+  public static final int SHADOW_RAY    = 3;
+
+  public static final String OBJECT_NAME = "raja:type=RenderStatistics";
+
+  private static final RenderStatistics shared = new RenderStatistics();
+
+  private static boolean enabled;
+  private static long start = System.nanoTime();
+
+  // Counted classes, by index
+  private static final ArrayList classes = new ArrayList();
+  private static final ClassValue indices = new ClassValue() {
+    protected Object computeValue(Class type)
+    {
+      synchronized(classes) {
+        classes.add(type);
+        return Integer.valueOf(classes.size() - 1);
+      }
+    }
+  };
+
+  // Counters of all the threads that counted since the last reset
+  private static final ArrayList counters = new ArrayList();
+  private static final ThreadLocal local = new ThreadLocal() {
+    protected Object initialValue()
+    {
+      Counters c = new Counters();
+      synchronized(counters) {
+        counters.add(c);
+      }
+      return c;
+    }
+  };
+
+  /**
+   * The counters of a thread.  Per class counters are indexed by the
+   * index of the class in <code>classes</code>.
+   */
+  private static class Counters
+  {
+    WeakReference thread = new WeakReference(Thread.currentThread());
+    long[] rays = new long[4];
+    long depths;      // sum of the depths of the paths of the primary rays
+    int pathDepth;    // depth of the current path
+    long[] calls = new long[0];
+    long[] hits = new long[0];
+    long[] textures = new long[0];
+
+    void ensureIndex(int index)
+    {
+      if (index >= calls.length) {
+        int n = Math.max(index + 1, 2 * calls.length);
+        calls = Arrays.copyOf(calls, n);
+        hits = Arrays.copyOf(hits, n);
+        textures = Arrays.copyOf(textures, n);
+      }
+    }
+
+    void clear()
+    {
+      Arrays.fill(rays, 0);
+      depths = 0;
+      Arrays.fill(calls, 0);
+      Arrays.fill(hits, 0);
+      Arrays.fill(textures, 0);
+    }
+  }
+
+  private RenderStatistics()
+  {
+  }
+
+  /**
+   * Returns the statistics of this process.
+   */
+  public static RenderStatistics getShared()
+  {
+    return shared;
+  }
+
+  public static boolean isEnabled()
+  {
+    return enabled;
+  }
+
+  /**
+   * Turns counting on or off.  It should be turned on before the
+   * rendering threads are started.
+   */
+  public static void setEnabled(boolean enabled)
+  {
+    RenderStatistics.enabled = enabled;
+  }
+
+  /**
+   * Registers the statistics with the platform MBean server, under
+   * {@link #OBJECT_NAME}.  Registering them again does nothing.
+   */
+  public static void registerMBean() throws JMException
+  {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(shared, new ObjectName(OBJECT_NAME));
+    }
+    catch (InstanceAlreadyExistsException e) {
+      // Already registered
+    }
+  }
+
+  /**
+   * Counts a ray traced at <code>depth</code>, which is 0 for primary
+   * rays and one more than its parent for reflected and refracted rays.
+   * The depth of shadow rays is ignored.
+   */
+  public static void countRay(int type, int depth)
+  {
+    Counters c = (Counters) local.get();
+    c.rays[type]++;
+
+    if (type == PRIMARY_RAY) {
+      c.pathDepth = 1;
+      c.depths++;
+    }
+    else if ((type != SHADOW_RAY) && (depth >= c.pathDepth)) {
+      c.depths += depth + 1 - c.pathDepth;
+      c.pathDepth = depth + 1;
+    }
+  }
+
+  /**
+   * Counts an intersection computed by <code>form</code>.
+   */
+  public static void countIntersection(Object form, boolean hit)
+  {
+    Counters c = (Counters) local.get();
+    int index = ((Integer) indices.get(form.getClass())).intValue();
+    c.ensureIndex(index);
+    c.calls[index]++;
+    if (hit) {
+      c.hits[index]++;
+    }
+  }
+
+  /**
+   * Counts a local texture looked up from <code>texture</code>.
+   */
+  public static void countLocalTexture(Object texture)
+  {
+    Counters c = (Counters) local.get();
+    int index = ((Integer) indices.get(texture.getClass())).intValue();
+    c.ensureIndex(index);
+    c.textures[index]++;
+  }
+
+  private static long sumRays(int type)
+  {
+    long sum = 0;
+    synchronized(counters) {
+      for (Iterator iter = counters.iterator() ; iter.hasNext() ;)
+      {
+        sum += ((Counters) iter.next()).rays[type];
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the sums over the threads of a per class counter:
+   * 0 for calls, 1 for hits and 2 for local textures.
+   */
+  private static long[] sumPerClass(int which)
+  {
+    long[] sums;
+    synchronized(classes) {
+      sums = new long[classes.size()];
+    }
+    synchronized(counters) {
+      for (Iterator iter = counters.iterator() ; iter.hasNext() ;)
+      {
+        Counters c = (Counters) iter.next();
+        long[] values = (which == 0) ? c.calls : (which == 1) ? c.hits : c.textures;
+        for (int i = 0 ; i < Math.min(values.length, sums.length) ; i++)
+        {
+          sums[i] += values[i];
+        }
+      }
+    }
+    return sums;
+  }
+
+  private static long sum(long[] values)
+  {
+    long sum = 0;
+    for (int i = 0 ; i < values.length ; i++)
+    {
+      sum += values[i];
+    }
+    return sum;
+  }
+
+  private static String getClassName(int index)
+  {
+    String name;
+    synchronized(classes) {
+      name = ((Class) classes.get(index)).getName();
+    }
+    return name.substring(name.lastIndexOf('.') + 1);
+  }
+
+  public long getPrimaryRays()
+  {
+    return sumRays(PRIMARY_RAY);
+  }
+  public long getReflectedRays()
+  {
+    return sumRays(REFLECTED_RAY);
+  }
+  public long getRefractedRays()
+  {
+    return sumRays(REFRACTED_RAY);
+  }
+  public long getShadowRays()
+  {
+    return sumRays(SHADOW_RAY);
+  }
+
+  /**
+   * Returns the average number of levels of rays traced from a primary
+   * ray, 1 meaning that no reflected or refracted ray was traced.
+   */
+  public double getAverageDepth()
+  {
+    long paths = 0;
+    long depths = 0;
+    synchronized(counters) {
+      for (Iterator iter = counters.iterator() ; iter.hasNext() ;)
+      {
+        Counters c = (Counters) iter.next();
+        paths += c.rays[PRIMARY_RAY];
+        depths += c.depths;
+      }
+    }
+    return (paths == 0) ? 0 : (double) depths / paths;
+  }
+
+  /**
+   * Returns the number of rays of all types traced per second since the
+   * last reset.
+   */
+  public double getRaysPerSecond()
+  {
+    long rays = getPrimaryRays() + getReflectedRays() + getRefractedRays() + getShadowRays();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    return (seconds > 0) ? rays / seconds : 0;
+  }
+
+  public long getIntersectionCalls()
+  {
+    return sum(sumPerClass(0));
+  }
+  public long getIntersectionHits()
+  {
+    return sum(sumPerClass(1));
+  }
+  public long getLocalTextureCalls()
+  {
+    return sum(sumPerClass(2));
+  }
+
+  public String[] getIntersectionsPerForm()
+  {
+    long[] calls = sumPerClass(0);
+    long[] hits = sumPerClass(1);
+    ArrayList lines = new ArrayList();
+    for (int i = 0 ; i < calls.length ; i++)
+    {
+      if (calls[i] > 0) {
+        lines.add(getClassName(i) + ": " + calls[i] + " calls, " + hits[i] + " hits (" +
+        (100 * hits[i] / calls[i]) + "%)");
+      }
+    }
+    return (String[]) lines.toArray(new String[lines.size()]);
+  }
+
+  public String[] getLocalTexturesPerTexture()
+  {
+    long[] textures = sumPerClass(2);
+    ArrayList lines = new ArrayList();
+    for (int i = 0 ; i < textures.length ; i++)
+    {
+      if (textures[i] > 0) {
+        lines.add(getClassName(i) + ": " + textures[i] + " calls");
+      }
+    }
+    return (String[]) lines.toArray(new String[lines.size()]);
+  }
+
+  /**
+   * Returns the counters as lines of text.
+   */
+  public String getSummary()
+  {
+    StringBuffer buffer = new StringBuffer();
+    buffer.append("Rays: " + getPrimaryRays() + " primary, " + getReflectedRays() + " reflected, " +
+    getRefractedRays() + " refracted, " + getShadowRays() + " shadow\n");
+    buffer.append("Rays per second: " + Math.round(getRaysPerSecond()) + "\n");
+    buffer.append("Average depth: " + Math.round(100 * getAverageDepth()) / 100.0 + "\n");
+    buffer.append("Intersections: " + getIntersectionCalls() + " calls, " + getIntersectionHits() + " hits\n");
+    String[] lines = getIntersectionsPerForm();
+    for (int i = 0 ; i < lines.length ; i++)
+    {
+      buffer.append("   " + lines[i] + "\n");
+    }
+    buffer.append("Local textures: " + getLocalTextureCalls() + " calls\n");
+    lines = getLocalTexturesPerTexture();
+    for (int i = 0 ; i < lines.length ; i++)
+    {
+      buffer.append("   " + lines[i] + "\n");
+    }
+    return buffer.toString();
+  }
+
+  /**
+   * Sets all the counters back to 0, and restarts the clock of
+   * {@link #getRaysPerSecond}.  It should be called while no render
+   * runs.
+   */
+  public void reset()
+  {
+    synchronized(counters) {
+      for (Iterator iter = counters.iterator() ; iter.hasNext() ;)
+      {
+        Counters c = (Counters) iter.next();
+        c.clear();
+        if (c.thread.get() == null) {
+          // The thread ended, and its counters are no longer needed
+          iter.remove();
+        }
+      }
+    }
+    start = System.nanoTime();
+  }
+
+  public String toString()
+  {
+    return "RenderStatistics[" + getPrimaryRays() + " primary rays, " + getIntersectionCalls() + " intersections]";
+  }
+}
@@ -0,0 +1,32 @@
+package raja.util;
+
+
+/**
+ * The management interface of {@link RenderStatistics}, through which
+ * JMX consoles follow a render while it runs.
+ */
+public interface RenderStatisticsMBean
+{
+  public long getPrimaryRays();
+  public long getReflectedRays();
+  public long getRefractedRays();
+  public long getShadowRays();
+  public double getAverageDepth();
+  public double getRaysPerSecond();
+  public long getIntersectionCalls();
+  public long getIntersectionHits();
+  public long getLocalTextureCalls();
+
+  /**
+   * Returns a line per form class, with its intersection calls and hits.
+   */
+  public String[] getIntersectionsPerForm();
+
+  /**
+   * Returns a line per texture class, with its local texture calls.
+   */
+  public String[] getLocalTexturesPerTexture();
+
+  public String getSummary();
+  public void reset();
+}